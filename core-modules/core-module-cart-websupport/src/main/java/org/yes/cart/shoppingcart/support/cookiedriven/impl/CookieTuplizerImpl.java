@@ -33,6 +33,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,7 +64,7 @@ public class CookieTuplizerImpl extends AbstractCryptedTuplizerImpl implements C
 
     private static final Cookie[] EMPTY_COOKIES = new Cookie[0];
 
-    private static final Map<String, Pattern> PATTERNS_CACHE = new HashMap<String, Pattern>();
+    private static final Map<String, Pattern> PATTERNS_CACHE = new ConcurrentHashMap<String, Pattern>();
 
     private final int chunkSize;
 
@@ -166,12 +167,7 @@ public class CookieTuplizerImpl extends AbstractCryptedTuplizerImpl implements C
     }
 
     Pattern getOrCreatePattern(final String key) {
-        if (PATTERNS_CACHE.containsKey(key)) {
-            return PATTERNS_CACHE.get(key);
-        }
-        final Pattern pattern = Pattern.compile(key + "(\\d+)");
-        PATTERNS_CACHE.put(key, pattern);
-        return pattern;
+        return PATTERNS_CACHE.computeIfAbsent(key, k -> Pattern.compile(k + "(\\d+)"));
     }
 
     int countOldCookies(final Cookie[] oldCookies, final String objectKey) {
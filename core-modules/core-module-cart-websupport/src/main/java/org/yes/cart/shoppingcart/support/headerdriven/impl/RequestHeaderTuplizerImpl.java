@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -58,7 +59,7 @@ public class RequestHeaderTuplizerImpl extends AbstractCryptedTuplizerImpl imple
 
     private static final Map<String, String> EMPTY_HEADERS = new HashMap<String, String>();
 
-    private static final Map<String, Pattern> PATTERNS_CACHE = new HashMap<String, Pattern>();
+    private static final Map<String, Pattern> PATTERNS_CACHE = new ConcurrentHashMap<String, Pattern>();
 
     private final int chunkSize;
 
@@ -149,12 +150,7 @@ public class RequestHeaderTuplizerImpl extends AbstractCryptedTuplizerImpl imple
     }
 
     Pattern getOrCreatePattern(final String key) {
-        if (PATTERNS_CACHE.containsKey(key)) {
-            return PATTERNS_CACHE.get(key);
-        }
-        final Pattern pattern = Pattern.compile(key + "(\\d+)");
-        PATTERNS_CACHE.put(key, pattern);
-        return pattern;
+        return PATTERNS_CACHE.computeIfAbsent(key, k -> Pattern.compile(k + "(\\d+)"));
     }
 
     /**
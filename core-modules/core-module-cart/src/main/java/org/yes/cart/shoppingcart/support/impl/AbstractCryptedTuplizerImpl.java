@@ -37,6 +37,11 @@ import java.security.InvalidKeyException;
  * bytes per cookie, so it allow to store 1228800 bytes aprox 1 Mb.
  * Base64 representation will be splited to chunks.
  * <p/>
+ * If cipher name is AEAD transformation (e.g. "AES/GCM/NoPadding" with "PBKDF2WithHmacSHA256" key
+ * factory) tuples are crypted using {@link AeadTupleCipher}, which has no shared mutable state,
+ * otherwise (e.g. "DES/ECB/PKCS5Padding") single encrypt and decrypt cipher per instance is used,
+ * which requires instances to be pooled.
+ * <p/>
  * User: dogma
  * Date: 2011-May-17
  * Time: 2:17:57 PM
@@ -50,6 +55,8 @@ public abstract class AbstractCryptedTuplizerImpl {
     private final Cipher desCipher;
     private final Cipher desUnCipher;
 
+    private final AeadTupleCipher aeadCipher;
+
     private SecretKey secretKey;
 
     /**
@@ -63,6 +70,19 @@ public abstract class AbstractCryptedTuplizerImpl {
                                        final String secretKeyFactoryName,
                                        final String cipherName) {
 
+        if (AeadTupleCipher.isAead(cipherName)) {
+            try {
+                aeadCipher = new AeadTupleCipher(keyRingPassword, secretKeyFactoryName, cipherName);
+                desCipher = null;
+                desUnCipher = null;
+                return;
+            } catch (Exception ike) {
+                LOG.error(ike.getMessage(), ike);
+                throw new RuntimeException("Unable to load Cipher for CookieTuplizer", ike);
+            }
+        }
+
+        aeadCipher = null;
         try {
             final DESKeySpec desKeySpec = new DESKeySpec(keyRingPassword.getBytes());
 
@@ -94,6 +114,10 @@ public abstract class AbstractCryptedTuplizerImpl {
      */
     protected String toToken(final Serializable serializable) throws CartTuplizationException {
 
+        if (aeadCipher != null) {
+            return toAeadToken(serializable);
+        }
+
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         synchronized (desCipher) {
             Base64OutputStream base64EncoderStream = new Base64OutputStream(byteArrayOutputStream, true, Integer.MAX_VALUE, null); //will be split manually
@@ -142,6 +166,9 @@ public abstract class AbstractCryptedTuplizerImpl {
         if (tuple == null || tuple.length() == 0) {
             return null;
         }
+        if (aeadCipher != null) {
+            return toAeadObject(tuple);
+        }
         final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(tuple.getBytes());
         final Base64InputStream base64DecoderStream = new Base64InputStream(byteArrayInputStream);
         final CipherInputStream cipherInputStream = new CipherInputStream(base64DecoderStream, desUnCipher);
@@ -174,4 +201,37 @@ public abstract class AbstractCryptedTuplizerImpl {
         }
     }
 
+
+    private String toAeadToken(final Serializable serializable) throws CartTuplizationException {
+
+        try {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(2048);
+            final ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+            objectOutputStream.writeObject(serializable);
+            objectOutputStream.close();
+            return aeadCipher.encrypt(byteArrayOutputStream.toByteArray());
+        } catch (Throwable ioe) {
+            LOG.error(
+                    "Unable to serialize object: " + serializable,
+                    ioe
+            );
+            throw new CartTuplizationException(ioe);
+        }
+
+    }
+
+    private ShoppingCart toAeadObject(final String tuple) throws CartDetuplizationException {
+
+        try {
+            final byte[] plain = aeadCipher.decrypt(tuple);
+            final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(plain));
+            return (ShoppingCart) objectInputStream.readObject();
+        } catch (Exception exception) {
+            final String errMsg = "Unable to convert bytes assembled from tuple into object";
+            LOG.error(errMsg, exception);
+            throw new CartDetuplizationException(errMsg, exception);
+        }
+
+    }
+
 }
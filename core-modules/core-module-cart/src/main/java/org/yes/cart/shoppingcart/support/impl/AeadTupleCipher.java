@@ -0,0 +1,164 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.shoppingcart.support.impl;
+
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Authenticated (AEAD) cipher for cart tuples, e.g. "AES/GCM/NoPadding".
+ *
+ * Key is derived once from key ring password using given secret key factory (e.g. "PBKDF2WithHmacSHA256")
+ * and is never modified afterwards. Each thread gets its own {@link Cipher} and {@link SecureRandom},
+ * so instances of this class have no shared mutable state and can be used by any number of threads
+ * without synchronisation or pooling.
+ *
+ * Token is Base64 (without line breaks) of random IV followed by cipher text and authentication tag,
+ * therefore any modification of the token is detected on decryption.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:01
+ */
+public final class AeadTupleCipher {
+
+    private static final byte[] SALT = "yes-cart-tuplizer".getBytes(StandardCharsets.US_ASCII);
+    private static final int KEY_ITERATIONS = 10000;
+    private static final int KEY_LENGTH = 256;
+
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private final SecretKey secretKey;
+    private final ThreadLocal<ThreadCipher> threadCipher;
+
+    /**
+     * Construct AEAD cipher.
+     *
+     * @param keyRingPassword      key ring password to use.
+     * @param secretKeyFactoryName Secret Key Factory Name (PBKDF2 algorithm).
+     * @param cipherName           Cipher name (AEAD transformation).
+     *
+     * @throws GeneralSecurityException if key cannot be derived or cipher is not available
+     */
+    public AeadTupleCipher(final String keyRingPassword,
+                           final String secretKeyFactoryName,
+                           final String cipherName) throws GeneralSecurityException {
+
+        final SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(secretKeyFactoryName);
+        final PBEKeySpec keySpec = new PBEKeySpec(keyRingPassword.toCharArray(), SALT, KEY_ITERATIONS, KEY_LENGTH);
+        try {
+            final String algorithm = cipherName.substring(0, cipherName.indexOf('/'));
+            this.secretKey = new SecretKeySpec(keyFactory.generateSecret(keySpec).getEncoded(), algorithm);
+        } finally {
+            keySpec.clearPassword();
+        }
+
+        // fail fast on misconfiguration rather than on first request
+        final ThreadCipher probe = new ThreadCipher(cipherName);
+        this.threadCipher = ThreadLocal.withInitial(() -> {
+            try {
+                return new ThreadCipher(cipherName);
+            } catch (GeneralSecurityException gse) {
+                throw new IllegalStateException(gse);
+            }
+        });
+        this.threadCipher.set(probe);
+
+    }
+
+    /**
+     * Check if given transformation is supported by this cipher.
+     *
+     * @param cipherName cipher name
+     *
+     * @return true for GCM transformations
+     */
+    public static boolean isAead(final String cipherName) {
+        return cipherName != null && cipherName.toUpperCase().contains("/GCM/");
+    }
+
+    /**
+     * Encrypt data.
+     *
+     * @param plain plain data
+     *
+     * @return Base64 token
+     *
+     * @throws GeneralSecurityException on encryption error
+     */
+    public String encrypt(final byte[] plain) throws GeneralSecurityException {
+
+        final ThreadCipher tc = this.threadCipher.get();
+        final byte[] iv = new byte[IV_LENGTH];
+        tc.random.nextBytes(iv);
+        tc.cipher.init(Cipher.ENCRYPT_MODE, this.secretKey, new GCMParameterSpec(TAG_LENGTH, iv));
+
+        final byte[] out = new byte[IV_LENGTH + tc.cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, out, 0, IV_LENGTH);
+        final int len = tc.cipher.doFinal(plain, 0, plain.length, out, IV_LENGTH);
+
+        return Base64.encodeBase64String(len + IV_LENGTH == out.length ? out : Arrays.copyOf(out, len + IV_LENGTH));
+
+    }
+
+    /**
+     * Decrypt and verify data.
+     *
+     * @param token Base64 token
+     *
+     * @return plain data
+     *
+     * @throws GeneralSecurityException on decryption error, including failed authentication of the token
+     */
+    public byte[] decrypt(final String token) throws GeneralSecurityException {
+
+        final byte[] data = Base64.decodeBase64(token);
+        if (data.length < IV_LENGTH + TAG_LENGTH / 8) {
+            throw new GeneralSecurityException("Token is too short");
+        }
+
+        final ThreadCipher tc = this.threadCipher.get();
+        tc.cipher.init(Cipher.DECRYPT_MODE, this.secretKey, new GCMParameterSpec(TAG_LENGTH, data, 0, IV_LENGTH));
+        return tc.cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+
+    }
+
+    private static final class ThreadCipher {
+
+        private final Cipher cipher;
+        private final SecureRandom random;
+
+        private ThreadCipher(final String cipherName) throws GeneralSecurityException {
+            this.cipher = Cipher.getInstance(cipherName);
+            // per thread SHA1PRNG, since default NativePRNG serialises all instances on a global lock
+            this.random = SecureRandom.getInstance("SHA1PRNG");
+        }
+
+    }
+
+}
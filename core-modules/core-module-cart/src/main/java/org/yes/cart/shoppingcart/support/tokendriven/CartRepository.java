@@ -43,6 +43,16 @@ public interface CartRepository {
      */
     String storeShoppingCart(ShoppingCart shoppingCart);
 
+    /**
+     * Store shopping cart immediately bypassing any deferred persistence, so that the state
+     * is in storage (and merged with other states if necessary) when this method returns.
+     *
+     * @param shoppingCart shopping cart
+     *
+     * @return token for later retrieval
+     */
+    String flushShoppingCart(ShoppingCart shoppingCart);
+
     /**
      * Evict shopping cart.
      *
@@ -18,6 +18,8 @@ package org.yes.cart.shoppingcart.support.tokendriven;
 
 import org.yes.cart.shoppingcart.ShoppingCart;
 
+import java.util.List;
+
 /**
  * User: denispavlov
  * Date: 22/08/2014
@@ -37,6 +39,14 @@ public interface CartUpdateProcessor {
      */
     void updateShoppingCart(ShoppingCart shoppingCart);
 
+    /**
+     * Perform {@link #updateShoppingCart(ShoppingCart)} for all given carts in single transaction.
+     * Used by deferred persistence in order to reduce number of transactions under load.
+     *
+     * @param shoppingCarts carts to merge (if required) and persist
+     */
+    void updateShoppingCarts(List<ShoppingCart> shoppingCarts);
+
     /**
      * Invalidate given cart by removing all customer auth related information
      *
@@ -89,11 +89,14 @@ public class CartUpdateProcessorImpl implements CartUpdateProcessor {
                         // 4.3. Only merge carts from the same shop as we may have mismatch on SKU's
                         if (shoppingCart.getShoppingContext().getShopCode().equals(oldCart.getShoppingContext().getShopCode())) {
 
-                            mergeNonGiftSKU(shoppingCart, oldCart, cmdParams);
-                            mergeCouponCodes(shoppingCart, oldCart, cmdParams);
-                            mergeShoppingContext(shoppingCart, oldCart, cmdParams);
-                            performOrderSplittingBeforeShipping(shoppingCart, oldCart, cmdParams);
-                            mergeOrderInfo(shoppingCart, oldCart, cmdParams);
+                            // Merge as single chain, so that cart is recalculated once (if factory defers recalculation)
+                            shoppingCartCommandFactory.executeChain(shoppingCart, () -> {
+                                mergeNonGiftSKU(shoppingCart, oldCart, cmdParams);
+                                mergeCouponCodes(shoppingCart, oldCart, cmdParams);
+                                mergeShoppingContext(shoppingCart, oldCart, cmdParams);
+                                performOrderSplittingBeforeShipping(shoppingCart, oldCart, cmdParams);
+                                mergeOrderInfo(shoppingCart, oldCart, cmdParams);
+                            });
 
                             // 4.4. Remove merged cart state
                             shoppingCartStateService.delete(oldCartState);
@@ -120,6 +123,16 @@ public class CartUpdateProcessorImpl implements CartUpdateProcessor {
 
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void updateShoppingCarts(final List<ShoppingCart> shoppingCarts) {
+
+        for (final ShoppingCart shoppingCart : shoppingCarts) {
+            updateShoppingCart(shoppingCart);
+        }
+
+    }
+
     private void performOrderSplittingBeforeShipping(final ShoppingCart shoppingCart, final ShoppingCart oldCart, final Map<String, Object> cmdParams) {
 
         if (shoppingCart.getCartItemsCount() > 0) {
@@ -21,10 +21,12 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.hibernate.StaleStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.TaskScheduler;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.ShoppingCartState;
@@ -36,12 +38,28 @@ import org.yes.cart.shoppingcart.support.tokendriven.CartRepository;
 import org.yes.cart.shoppingcart.support.tokendriven.CartUpdateProcessor;
 import org.yes.cart.utils.ShopCodeContext;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * Cart repository backed by cache and persistent cart state.
+ *
+ * By default modified carts are persisted straight away (or using task executor if one is provided).
+ * When write behind scheduler is set ({@link #setWriteBehindScheduler(TaskScheduler)}) cart writes are
+ * deferred and coalesced per cart GUID, so that a burst of updates for the same cart results in a single
+ * write of its latest state once the cart is quiet for {@link #setWriteBehindQuietPeriodMs(long)} or was
+ * waiting for longer than {@link #setWriteBehindMaxDelayMs(long)}. Due carts are written in batches (one
+ * transaction per batch). Carts are written immediately on {@link #flushShoppingCart(ShoppingCart)} (e.g.
+ * login), when payment method is selected (checkout) and all pending carts are written on shutdown.
+ *
  * User: denispavlov
  * Date: 21/08/2014
  * Time: 20:11
  */
-public class ResilientCartRepositoryImpl implements CartRepository {
+public class ResilientCartRepositoryImpl implements CartRepository, DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(ResilientCartRepositoryImpl.class);
 
@@ -53,6 +71,23 @@ public class ResilientCartRepositoryImpl implements CartRepository {
     private final CartUpdateProcessor cartUpdateProcessor;
     private final TaskExecutor taskExecutor;
 
+    private final ConcurrentMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicBoolean writeBehindStarted = new AtomicBoolean(false);
+    private TaskScheduler writeBehindScheduler;
+    private long writeBehindQuietPeriodMs = 500L;
+    private long writeBehindMaxDelayMs = 3000L;
+    private int writeBehindBatchSize = 50;
+
+    private final AtomicLong writesRequested = new AtomicLong(0L);
+    private final AtomicLong writesCoalesced = new AtomicLong(0L);
+    private final AtomicLong writesImmediate = new AtomicLong(0L);
+    private final AtomicLong writesFlushed = new AtomicLong(0L);
+    private final AtomicLong flushBatches = new AtomicLong(0L);
+    private final AtomicLong flushBatchFailures = new AtomicLong(0L);
+    private final AtomicLong flushLagTotalMs = new AtomicLong(0L);
+    private final AtomicLong flushLagMaxMs = new AtomicLong(0L);
+    private volatile long flushLagLastMs = 0L;
+
     public ResilientCartRepositoryImpl(final ShoppingCartStateService shoppingCartStateService,
                                        final ShopService shopService,
                                        final CartUpdateProcessor cartUpdateProcessor,
@@ -116,6 +151,14 @@ public class ResilientCartRepositoryImpl implements CartRepository {
             }
         }
 
+        // Try pending writes, which are newer than DB (e.g. cache entry expired before write)
+        final PendingWrite pending = this.pendingWrites.get(token);
+        if (pending != null) {
+            final ShoppingCart pendingCart = pending.shoppingCart;
+            CART_CACHE.put(token, pendingCart);
+            return pendingCart;
+        }
+
         // Try DB
         final ShoppingCartState state = shoppingCartStateService.findByGuid(token);
         if (state != null) {
@@ -218,9 +261,35 @@ public class ResilientCartRepositoryImpl implements CartRepository {
 
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String flushShoppingCart(final ShoppingCart shoppingCart) {
+
+        final boolean pending = this.pendingWrites.remove(shoppingCart.getGuid()) != null;
+        if (pending || shoppingCart.isModified()) {
+
+            CART_CACHE.put(shoppingCart.getGuid(), shoppingCart);
+
+            writesImmediate.incrementAndGet();
+            createRunnable(shoppingCart, null, null).run();
+
+        }
+
+        return shoppingCart.getGuid();
+
+    }
+
     void storeAsynchronously(final ShoppingCart shoppingCart) {
 
-        if (taskExecutor == null) {
+        if (writeBehindScheduler != null) {
+            if (isImmediateWriteRequired(shoppingCart)) {
+                this.pendingWrites.remove(shoppingCart.getGuid());
+                writesImmediate.incrementAndGet();
+                createRunnable(shoppingCart, null, null).run();
+            } else {
+                storeWriteBehind(shoppingCart);
+            }
+        } else if (taskExecutor == null) {
             createRunnable(shoppingCart, null, null).run();
         } else {
             taskExecutor.execute(createRunnable(shoppingCart,
@@ -229,6 +298,138 @@ public class ResilientCartRepositoryImpl implements CartRepository {
         }
     }
 
+    /**
+     * Carts in checkout (payment method selected) are written immediately since payment callbacks
+     * may need to resolve cart state from storage (e.g. on another node).
+     *
+     * @param shoppingCart cart
+     *
+     * @return true if deferred write should not be used
+     */
+    boolean isImmediateWriteRequired(final ShoppingCart shoppingCart) {
+        return shoppingCart.getOrderInfo() != null &&
+                StringUtils.isNotBlank(shoppingCart.getOrderInfo().getPaymentGatewayLabel());
+    }
+
+    private void storeWriteBehind(final ShoppingCart shoppingCart) {
+
+        if (writeBehindStarted.compareAndSet(false, true)) {
+            final long tick = Math.max(50L, Math.min(writeBehindQuietPeriodMs, writeBehindMaxDelayMs) / 2L);
+            writeBehindScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    flushPendingWrites(false);
+                } catch (Exception exp) {
+                    LOG.error("Unable to flush pending cart states", exp);
+                }
+            }, tick);
+        }
+
+        writesRequested.incrementAndGet();
+        final long now = System.currentTimeMillis();
+        this.pendingWrites.compute(shoppingCart.getGuid(), (guid, pending) -> {
+            if (pending == null) {
+                return new PendingWrite(shoppingCart, now);
+            }
+            writesCoalesced.incrementAndGet();
+            pending.shoppingCart = shoppingCart;
+            pending.lastQueued = now;
+            return pending;
+        });
+
+    }
+
+    /**
+     * Write pending carts which are due (or all pending carts).
+     *
+     * @param all true to write all pending carts regardless of their quiet period
+     */
+    void flushPendingWrites(final boolean all) {
+
+        if (this.pendingWrites.isEmpty()) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Map<String, List<PendingWrite>> dueByShop = new HashMap<>();
+        for (final String guid : this.pendingWrites.keySet()) {
+            final PendingWrite[] due = new PendingWrite[1];
+            this.pendingWrites.computeIfPresent(guid, (key, pending) -> {
+                if (all
+                        || now - pending.lastQueued >= writeBehindQuietPeriodMs
+                        || now - pending.firstQueued >= writeBehindMaxDelayMs) {
+                    due[0] = pending;
+                    return null;
+                }
+                return pending;
+            });
+            if (due[0] != null) {
+                final String shopCode = due[0].shoppingCart.getShoppingContext().getShopCode();
+                dueByShop.computeIfAbsent(shopCode == null ? "" : shopCode, k -> new ArrayList<>()).add(due[0]);
+            }
+        }
+
+        for (final List<PendingWrite> due : dueByShop.values()) {
+            for (int i = 0; i < due.size(); i += writeBehindBatchSize) {
+                flushBatch(due.subList(i, Math.min(i + writeBehindBatchSize, due.size())));
+            }
+        }
+
+    }
+
+    private void flushBatch(final List<PendingWrite> batch) {
+
+        final ShoppingCart first = batch.get(0).shoppingCart;
+        final String sccCode = first.getShoppingContext().getShopCode();
+        if (sccCode != null) {
+            ShopCodeContext.setShopCode(sccCode);
+            ShopCodeContext.setShopId(first.getShoppingContext().getShopId());
+        }
+
+        try {
+
+            final List<ShoppingCart> carts = new ArrayList<>(batch.size());
+            for (final PendingWrite pending : batch) {
+                carts.add(pending.shoppingCart);
+            }
+
+            try {
+
+                // Update process potentially can merge the cart with other stored states (e.g. when user logs in)
+                cartUpdateProcessor.updateShoppingCarts(carts);
+                // So we re-save it in cache
+                for (final ShoppingCart cart : carts) {
+                    CART_CACHE.put(cart.getGuid(), cart);
+                }
+
+            } catch (Exception exp) {
+
+                // Whole batch is rolled back, so fallback to one transaction per cart to isolate problem cart
+                flushBatchFailures.incrementAndGet();
+                LOG.warn("Unable to persist batch of {} cart states, caused by {}, retrying individually", carts.size(), exp.getMessage());
+                for (final ShoppingCart cart : carts) {
+                    createRunnable(cart, null, null).run();
+                }
+
+            }
+
+            flushBatches.incrementAndGet();
+            writesFlushed.addAndGet(batch.size());
+            final long now = System.currentTimeMillis();
+            for (final PendingWrite pending : batch) {
+                final long lag = now - pending.firstQueued;
+                flushLagLastMs = lag;
+                flushLagTotalMs.addAndGet(lag);
+                flushLagMaxMs.accumulateAndGet(lag, Math::max);
+            }
+
+        } finally {
+            if (sccCode != null) {
+                ShopCodeContext.clear();
+            }
+        }
+
+    }
+
     private Runnable createRunnable(final ShoppingCart shoppingCart, final String sccCode, final Long sccId) {
         return () -> {
 
@@ -269,6 +470,7 @@ public class ResilientCartRepositoryImpl implements CartRepository {
     @Override
     public void evictShoppingCart(final ShoppingCart shoppingCart) {
 
+        this.pendingWrites.remove(shoppingCart.getGuid());
         CART_CACHE.evict(shoppingCart.getGuid());
         final ShoppingCartState state = shoppingCartStateService.findByGuid(shoppingCart.getGuid());
         if (state != null) {
@@ -277,4 +479,94 @@ public class ResilientCartRepositoryImpl implements CartRepository {
 
     }
 
+    /**
+     * @return write behind statistics
+     */
+    public Map<String, String> getWriteBehindStatistics() {
+
+        final long requested = writesRequested.get();
+        final long flushed = writesFlushed.get();
+
+        final Map<String, String> stats = new TreeMap<>();
+        stats.put("pending", String.valueOf(this.pendingWrites.size()));
+        stats.put("requested", String.valueOf(requested));
+        stats.put("coalesced", String.valueOf(writesCoalesced.get()));
+        stats.put("immediate", String.valueOf(writesImmediate.get()));
+        stats.put("flushed", String.valueOf(flushed));
+        stats.put("batches", String.valueOf(flushBatches.get()));
+        stats.put("batchFailures", String.valueOf(flushBatchFailures.get()));
+        stats.put("lagLastMs", String.valueOf(flushLagLastMs));
+        stats.put("lagMaxMs", String.valueOf(flushLagMaxMs.get()));
+        stats.put("lagAvgMs", String.valueOf(flushed == 0L ? 0L : flushLagTotalMs.get() / flushed));
+        return stats;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void destroy() throws Exception {
+
+        if (!this.pendingWrites.isEmpty()) {
+            LOG.info("Flushing {} pending cart states on shutdown", this.pendingWrites.size());
+            flushPendingWrites(true);
+        }
+        if (writeBehindScheduler != null) {
+            LOG.info("Cart write behind statistics: {}", getWriteBehindStatistics());
+        }
+
+    }
+
+    /**
+     * Latest state of the cart awaiting write.
+     */
+    private static class PendingWrite {
+
+        private final long firstQueued;
+        private volatile long lastQueued;
+        private volatile ShoppingCart shoppingCart;
+
+        private PendingWrite(final ShoppingCart shoppingCart, final long queued) {
+            this.shoppingCart = shoppingCart;
+            this.firstQueued = queued;
+            this.lastQueued = queued;
+        }
+
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param writeBehindScheduler scheduler for deferred cart writes (null to write carts straight away)
+     */
+    public void setWriteBehindScheduler(final TaskScheduler writeBehindScheduler) {
+        this.writeBehindScheduler = writeBehindScheduler;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param writeBehindQuietPeriodMs time without updates after which cart is written
+     */
+    public void setWriteBehindQuietPeriodMs(final long writeBehindQuietPeriodMs) {
+        this.writeBehindQuietPeriodMs = writeBehindQuietPeriodMs;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param writeBehindMaxDelayMs max time cart write can be deferred for continuously updated cart
+     */
+    public void setWriteBehindMaxDelayMs(final long writeBehindMaxDelayMs) {
+        this.writeBehindMaxDelayMs = writeBehindMaxDelayMs;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param writeBehindBatchSize max number of carts written in single transaction
+     */
+    public void setWriteBehindBatchSize(final int writeBehindBatchSize) {
+        this.writeBehindBatchSize = writeBehindBatchSize;
+    }
+
 }
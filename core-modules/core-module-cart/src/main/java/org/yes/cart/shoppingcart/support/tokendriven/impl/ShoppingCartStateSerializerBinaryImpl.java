@@ -0,0 +1,709 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.shoppingcart.support.tokendriven.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
+import org.yes.cart.shoppingcart.MutableOrderInfo;
+import org.yes.cart.shoppingcart.MutableShoppingContext;
+import org.yes.cart.shoppingcart.ShoppingCart;
+import org.yes.cart.shoppingcart.Total;
+import org.yes.cart.shoppingcart.impl.*;
+import org.yes.cart.shoppingcart.support.tokendriven.ShoppingCartStateSerializer;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact versioned binary cart state serializer.
+ *
+ * Format is a four byte header ('Y', 'C', schema version, flags) followed by the cart body, which is
+ * optionally deflated when it exceeds compression threshold (off by default since deflate roughly
+ * doubles the save time, enable if state storage or transfer size matters more than CPU). Body uses variable length integers,
+ * compact decimals and a string dictionary so that repeated values (supplier, delivery group, tax
+ * codes, promotions) are only written once.
+ *
+ * States saved by {@link ShoppingCartStateSerializerJacksonImpl} and {@link ShoppingCartStateSerializerSdkImpl}
+ * are recognised and restored by the respective serializer, so that existing carts can be migrated
+ * transparently (next save will use binary format).
+ * The opposite is not true, hence this serializer is opt-in (Jackson JSON is the default wiring)
+ * and switching back from it resets carts already saved in binary format.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 18:39
+ */
+public class ShoppingCartStateSerializerBinaryImpl implements ShoppingCartStateSerializer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShoppingCartStateSerializerBinaryImpl.class);
+
+    static final byte MAGIC_0 = 'Y';
+    static final byte MAGIC_1 = 'C';
+    static final byte VERSION_1 = 1;
+
+    private static final int HEADER = 4;
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final Field CART_ITEMS = field(ShoppingCartImpl.class, "items");
+    private static final Field CART_GIFTS = field(ShoppingCartImpl.class, "gifts");
+    private static final Field CART_COUPONS = field(ShoppingCartImpl.class, "coupons");
+    private static final Field CART_SHIPPING = field(ShoppingCartImpl.class, "shipping");
+    private static final Field CART_GUID = field(ShoppingCartImpl.class, "guid");
+    private static final Field CART_MODIFIED = field(ShoppingCartImpl.class, "modifiedTimestamp");
+    private static final Field CART_PROCESSING = field(ShoppingCartImpl.class, "processingStartTimestamp");
+    private static final Field CART_CONTEXT = field(ShoppingCartImpl.class, "shoppingContext");
+    private static final Field CART_ORDER_INFO = field(ShoppingCartImpl.class, "orderInfo");
+    private static final Field CART_TOTAL = field(ShoppingCartImpl.class, "total");
+    private static final Field ITEM_SKU = field(CartItemImpl.class, "productSkuCode");
+
+    // zlib streams are expensive to create, so keep one per thread and reset it after use
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final ShoppingCartStateSerializer jsonSerializer;
+    private final ShoppingCartStateSerializer sdkSerializer;
+
+    private boolean compress = false;
+    private int compressThreshold = 1024;
+
+    public ShoppingCartStateSerializerBinaryImpl() {
+        this(new ShoppingCartStateSerializerJacksonImpl(), new ShoppingCartStateSerializerSdkImpl());
+    }
+
+    public ShoppingCartStateSerializerBinaryImpl(final ShoppingCartStateSerializer jsonSerializer,
+                                                 final ShoppingCartStateSerializer sdkSerializer) {
+        this.jsonSerializer = jsonSerializer;
+        this.sdkSerializer = sdkSerializer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ShoppingCart restoreState(final byte[] bytes) {
+
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        if (bytes.length >= HEADER && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1) {
+
+            try {
+                final int version = bytes[2];
+                if (version != VERSION_1) {
+                    LOG.error("Unable to restore cart state, unsupported binary format version {}", version);
+                    return null;
+                }
+                final byte[] body = (bytes[3] & FLAG_DEFLATE) != 0 ? inflate(bytes) : Arrays.copyOfRange(bytes, HEADER, bytes.length);
+                return readCartV1(new Reader(body));
+            } catch (Exception exception) {
+                LOG.error("Unable to convert bytes assembled from tuple into object: " + exception.getMessage(), exception);
+                return null;
+            }
+
+        } else if (bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+
+            LOG.debug("Restoring cart state from Java SDK serialisation");
+            return this.sdkSerializer.restoreState(bytes);
+
+        }
+
+        LOG.debug("Restoring cart state from JSON serialisation");
+        return this.jsonSerializer.restoreState(bytes);
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] saveState(final ShoppingCart shoppingCart) {
+
+        try {
+
+            final Writer writer = new Writer();
+            writer.bytes(new byte[] { MAGIC_0, MAGIC_1, VERSION_1, 0 });
+            writeCartV1(writer, (ShoppingCartImpl) shoppingCart);
+
+            final byte[] plain = writer.toByteArray();
+            if (this.compress && plain.length - HEADER > this.compressThreshold) {
+                return deflate(plain);
+            }
+            return plain;
+
+        } catch (Exception exception) {
+            LOG.error(
+                    "Unable to serialize object: " + shoppingCart,
+                    exception
+            );
+        }
+
+        return null;
+
+    }
+
+    private void writeCartV1(final Writer out, final ShoppingCartImpl cart) {
+
+        out.string((String) ReflectionUtils.getField(CART_GUID, cart));
+        out.string(cart.getCurrentLocale());
+        out.string(cart.getCurrencyCode());
+        out.string(cart.getOrdernum());
+        out.varLong((Long) ReflectionUtils.getField(CART_MODIFIED, cart));
+        out.varLong((Long) ReflectionUtils.getField(CART_PROCESSING, cart));
+        out.flags(cart.isPromotionsDisabled());
+        out.strings((Collection<String>) ReflectionUtils.getField(CART_COUPONS, cart));
+        writeItems(out, (List<CartItemImpl>) ReflectionUtils.getField(CART_ITEMS, cart));
+        writeItems(out, (List<CartItemImpl>) ReflectionUtils.getField(CART_GIFTS, cart));
+        writeItems(out, (List<CartItemImpl>) ReflectionUtils.getField(CART_SHIPPING, cart));
+        writeContext(out, (MutableShoppingContext) ReflectionUtils.getField(CART_CONTEXT, cart));
+        writeOrderInfo(out, (MutableOrderInfo) ReflectionUtils.getField(CART_ORDER_INFO, cart));
+        writeTotal(out, (Total) ReflectionUtils.getField(CART_TOTAL, cart));
+
+    }
+
+    private ShoppingCartImpl readCartV1(final Reader in) {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+        ReflectionUtils.setField(CART_GUID, cart, in.string());
+        cart.setCurrentLocale(in.string());
+        cart.setCurrencyCode(in.string());
+        cart.setOrdernum(in.string());
+        ReflectionUtils.setField(CART_MODIFIED, cart, in.varLong());
+        ReflectionUtils.setField(CART_PROCESSING, cart, in.varLong());
+        final int flags = in.flags();
+        cart.setPromotionsDisabled((flags & 1) != 0);
+        ReflectionUtils.setField(CART_COUPONS, cart, in.strings(new TreeSet<>()));
+        ReflectionUtils.setField(CART_ITEMS, cart, readItems(in));
+        ReflectionUtils.setField(CART_GIFTS, cart, readItems(in));
+        ReflectionUtils.setField(CART_SHIPPING, cart, readItems(in));
+        ReflectionUtils.setField(CART_CONTEXT, cart, readContext(in));
+        ReflectionUtils.setField(CART_ORDER_INFO, cart, readOrderInfo(in));
+        ReflectionUtils.setField(CART_TOTAL, cart, readTotal(in));
+        return cart;
+
+    }
+
+    private void writeItems(final Writer out, final List<CartItemImpl> items) {
+
+        out.size(items);
+        if (items != null) {
+            for (final CartItemImpl item : items) {
+                out.string(item.getProductSkuCode());
+                out.string(item.getProductName());
+                out.decimal(item.getQty());
+                out.string(item.getSupplierCode());
+                out.string(item.getDeliveryGroup());
+                out.decimal(item.getPrice());
+                out.decimal(item.getSalePrice());
+                out.decimal(item.getListPrice());
+                out.decimal(item.getNetPrice());
+                out.decimal(item.getGrossPrice());
+                out.decimal(item.getTaxRate());
+                out.string(item.getTaxCode());
+                out.flags(item.isTaxExclusiveOfPrice(), item.isGift(), item.isPromoApplied(), item.isFixedPrice());
+                out.string(item.getAppliedPromo());
+            }
+        }
+
+    }
+
+    private List<CartItemImpl> readItems(final Reader in) {
+
+        final int size = in.size();
+        final List<CartItemImpl> items = new ArrayList<>(Math.max(size, 0));
+        for (int i = 0; i < size; i++) {
+            final CartItemImpl item = new CartItemImpl();
+            ReflectionUtils.setField(ITEM_SKU, item, in.string());
+            item.setProductName(in.string());
+            item.setQuantity(in.decimal());
+            item.setSupplierCode(in.string());
+            item.setDeliveryGroup(in.string());
+            item.setPrice(in.decimal());
+            item.setSalePrice(in.decimal());
+            item.setListPrice(in.decimal());
+            item.setNetPrice(in.decimal());
+            item.setGrossPrice(in.decimal());
+            item.setTaxRate(in.decimal());
+            item.setTaxCode(in.string());
+            final int flags = in.flags();
+            item.setTaxExclusiveOfPrice((flags & 1) != 0);
+            item.setGift((flags & 2) != 0);
+            item.setPromoApplied((flags & 4) != 0);
+            item.setFixedPrice((flags & 8) != 0);
+            item.setAppliedPromo(in.string());
+            items.add(item);
+        }
+        return items;
+
+    }
+
+    private void writeContext(final Writer out, final MutableShoppingContext context) {
+
+        out.flags(context != null);
+        if (context != null) {
+            out.string(context.getCustomerName());
+            out.varLong(context.getShopId());
+            out.string(context.getShopCode());
+            out.varLong(context.getCustomerShopId());
+            out.string(context.getCustomerShopCode());
+            out.string(context.getCountryCode());
+            out.string(context.getStateCode());
+            out.string(context.getCustomerEmail());
+            out.strings(context.getCustomerShops());
+            out.flags(context.isTaxInfoChangeViewEnabled(), context.isTaxInfoEnabled(), context.isTaxInfoUseNet(),
+                    context.isTaxInfoShowAmount(), context.isHidePrices());
+            out.string(context.getManagerEmail());
+            out.string(context.getManagerName());
+            out.strings(context.getLatestViewedSkus());
+            out.strings(context.getLatestViewedCategories());
+            out.string(context.getResolvedIp());
+        }
+
+    }
+
+    private MutableShoppingContext readContext(final Reader in) {
+
+        if (in.flags() == 0) {
+            return null;
+        }
+        final ShoppingContextImpl context = new ShoppingContextImpl();
+        context.setCustomerName(in.string());
+        context.setShopId(in.varLong());
+        context.setShopCode(in.string());
+        context.setCustomerShopId(in.varLong());
+        context.setCustomerShopCode(in.string());
+        context.setCountryCode(in.string());
+        context.setStateCode(in.string());
+        context.setCustomerEmail(in.string());
+        context.setCustomerShops(in.strings(null));
+        final int flags = in.flags();
+        context.setTaxInfoChangeViewEnabled((flags & 1) != 0);
+        context.setTaxInfoEnabled((flags & 2) != 0);
+        context.setTaxInfoUseNet((flags & 4) != 0);
+        context.setTaxInfoShowAmount((flags & 8) != 0);
+        context.setHidePrices((flags & 16) != 0);
+        context.setManagerEmail(in.string());
+        context.setManagerName(in.string());
+        context.setLatestViewedSkus(in.strings(null));
+        context.setLatestViewedCategories(in.strings(null));
+        context.setResolvedIp(in.string());
+        return context;
+
+    }
+
+    private void writeOrderInfo(final Writer out, final MutableOrderInfo orderInfo) {
+
+        out.flags(orderInfo != null);
+        if (orderInfo != null) {
+            out.string(orderInfo.getPaymentGatewayLabel());
+            out.flags(orderInfo.isMultipleDelivery(), orderInfo.isSeparateBillingAddress(), orderInfo.isSeparateBillingAddressEnabled(),
+                    orderInfo.isBillingAddressNotRequired(), orderInfo.isDeliveryAddressNotRequired());
+            final Map<String, Boolean> multipleDeliveryAvailable = orderInfo.getMultipleDeliveryAvailable();
+            out.size(multipleDeliveryAvailable.keySet());
+            for (final Map.Entry<String, Boolean> entry : multipleDeliveryAvailable.entrySet()) {
+                out.string(entry.getKey());
+                out.flags(entry.getValue());
+            }
+            final Map<String, Long> carrierSlaId = orderInfo.getCarrierSlaId();
+            out.size(carrierSlaId.keySet());
+            for (final Map.Entry<String, Long> entry : carrierSlaId.entrySet()) {
+                out.string(entry.getKey());
+                out.nullableLong(entry.getValue());
+            }
+            out.nullableLong(orderInfo.getBillingAddressId());
+            out.nullableLong(orderInfo.getDeliveryAddressId());
+            final Map<String, String> details = orderInfo.getDetails();
+            out.size(details.keySet());
+            for (final Map.Entry<String, String> entry : details.entrySet()) {
+                out.string(entry.getKey());
+                out.string(entry.getValue());
+            }
+        }
+
+    }
+
+    private MutableOrderInfo readOrderInfo(final Reader in) {
+
+        if (in.flags() == 0) {
+            return null;
+        }
+        final OrderInfoImpl orderInfo = new OrderInfoImpl();
+        orderInfo.setPaymentGatewayLabel(in.string());
+        final int flags = in.flags();
+        orderInfo.setMultipleDelivery((flags & 1) != 0);
+        orderInfo.setSeparateBillingAddress((flags & 2) != 0);
+        orderInfo.setSeparateBillingAddressEnabled((flags & 4) != 0);
+        orderInfo.setBillingAddressNotRequired((flags & 8) != 0);
+        orderInfo.setDeliveryAddressNotRequired((flags & 16) != 0);
+        final int multipleDeliveryAvailable = in.size();
+        for (int i = 0; i < multipleDeliveryAvailable; i++) {
+            orderInfo.putMultipleDeliveryAvailable(in.string(), in.flags() != 0);
+        }
+        final int carrierSlaId = in.size();
+        for (int i = 0; i < carrierSlaId; i++) {
+            orderInfo.putCarrierSlaId(in.string(), in.nullableLong());
+        }
+        orderInfo.setBillingAddressId(in.nullableLong());
+        orderInfo.setDeliveryAddressId(in.nullableLong());
+        final int details = in.size();
+        final Map<String, String> detailsMap = new HashMap<>(details * 2);
+        for (int i = 0; i < details; i++) {
+            detailsMap.put(in.string(), in.string());
+        }
+        orderInfo.setDetails(detailsMap);
+        return orderInfo;
+
+    }
+
+    private void writeTotal(final Writer out, final Total total) {
+
+        out.flags(total != null);
+        if (total != null) {
+            out.decimal(total.getListSubTotal());
+            out.decimal(total.getSaleSubTotal());
+            out.decimal(total.getNonSaleSubTotal());
+            out.decimal(total.getPriceSubTotal());
+            out.flags(total.isOrderPromoApplied(), total.isDeliveryPromoApplied());
+            out.string(total.getAppliedOrderPromo());
+            out.decimal(total.getSubTotal());
+            out.decimal(total.getSubTotalTax());
+            out.decimal(total.getSubTotalAmount());
+            out.decimal(total.getDeliveryListCost());
+            out.decimal(total.getDeliveryCost());
+            out.string(total.getAppliedDeliveryPromo());
+            out.decimal(total.getDeliveryTax());
+            out.decimal(total.getDeliveryCostAmount());
+            out.decimal(total.getTotal());
+            out.decimal(total.getTotalTax());
+            out.decimal(total.getListTotalAmount());
+            out.decimal(total.getTotalAmount());
+        }
+
+    }
+
+    private Total readTotal(final Reader in) {
+
+        if (in.flags() == 0) {
+            return null;
+        }
+        final BigDecimal listSubTotal = in.decimal();
+        final BigDecimal saleSubTotal = in.decimal();
+        final BigDecimal nonSaleSubTotal = in.decimal();
+        final BigDecimal priceSubTotal = in.decimal();
+        final int flags = in.flags();
+        final String appliedOrderPromo = in.string();
+        final BigDecimal subTotal = in.decimal();
+        final BigDecimal subTotalTax = in.decimal();
+        final BigDecimal subTotalAmount = in.decimal();
+        final BigDecimal deliveryListCost = in.decimal();
+        final BigDecimal deliveryCost = in.decimal();
+        final String appliedDeliveryPromo = in.string();
+        return new TotalImpl(
+                listSubTotal,
+                saleSubTotal,
+                nonSaleSubTotal,
+                priceSubTotal,
+                (flags & 1) != 0,
+                appliedOrderPromo,
+                subTotal,
+                subTotalTax,
+                subTotalAmount,
+                deliveryListCost,
+                deliveryCost,
+                (flags & 2) != 0,
+                appliedDeliveryPromo,
+                in.decimal(),
+                in.decimal(),
+                in.decimal(),
+                in.decimal(),
+                in.decimal(),
+                in.decimal()
+        );
+
+    }
+
+    private static byte[] deflate(final byte[] plain) {
+
+        final Deflater deflater = DEFLATER.get();
+        try {
+            final Writer out = new Writer();
+            out.bytes(new byte[] { MAGIC_0, MAGIC_1, VERSION_1, FLAG_DEFLATE });
+            out.varLong(plain.length - HEADER);
+            deflater.setInput(plain, HEADER, plain.length - HEADER);
+            deflater.finish();
+            final byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                final int len = deflater.deflate(buffer);
+                out.bytes(buffer, len);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+
+    }
+
+    private static byte[] inflate(final byte[] bytes) throws DataFormatException {
+
+        final Reader header = new Reader(bytes);
+        header.position = HEADER;
+        final byte[] body = new byte[(int) header.varLong()];
+        final Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(bytes, header.position, bytes.length - header.position);
+            int read = 0;
+            while (read < body.length && !inflater.finished()) {
+                final int len = inflater.inflate(body, read, body.length - read);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated cart state");
+                }
+                read += len;
+            }
+            return body;
+        } finally {
+            inflater.reset();
+        }
+
+    }
+
+    private static Field field(final Class<?> clazz, final String name) {
+        final Field field = ReflectionUtils.findField(clazz, name);
+        if (field == null) {
+            throw new IllegalStateException("Field " + clazz.getName() + "." + name + " does not exist");
+        }
+        ReflectionUtils.makeAccessible(field);
+        return field;
+    }
+
+    /**
+     * Binary writer. Strings are written to dictionary on first occurrence and referenced by index afterwards.
+     */
+    static class Writer {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private byte[] buffer = new byte[512];
+        private int size = 0;
+
+        void bytes(final byte[] bytes) {
+            bytes(bytes, bytes.length);
+        }
+
+        void bytes(final byte[] bytes, final int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, this.buffer, this.size, length);
+            this.size += length;
+        }
+
+        void varLong(final long value) {
+            // zig zag, so that small negative numbers are also compact
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0L) {
+                this.buffer[this.size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            this.buffer[this.size++] = (byte) zigzag;
+        }
+
+        void flags(final boolean... flags) {
+            int value = 0;
+            for (int i = 0; i < flags.length; i++) {
+                if (flags[i]) {
+                    value |= 1 << i;
+                }
+            }
+            varLong(value);
+        }
+
+        void size(final Collection<?> collection) {
+            varLong(collection == null ? -1 : collection.size());
+        }
+
+        void nullableLong(final Long value) {
+            if (value == null) {
+                varLong(0);
+            } else {
+                varLong(1);
+                varLong(value);
+            }
+        }
+
+        void string(final String value) {
+            if (value == null) {
+                varLong(0);
+                return;
+            }
+            final Integer ref = this.dictionary.get(value);
+            if (ref != null) {
+                varLong(ref + 2);
+                return;
+            }
+            this.dictionary.put(value, this.dictionary.size());
+            final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varLong(1);
+            varLong(utf8.length);
+            bytes(utf8);
+        }
+
+        void strings(final Collection<String> values) {
+            size(values);
+            if (values != null) {
+                for (final String value : values) {
+                    string(value);
+                }
+            }
+        }
+
+        void decimal(final BigDecimal value) {
+            if (value == null) {
+                varLong(0);
+                return;
+            }
+            final BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                varLong(1);
+                varLong(value.scale());
+                varLong(unscaled.longValue());
+            } else {
+                final byte[] big = unscaled.toByteArray();
+                varLong(2);
+                varLong(value.scale());
+                varLong(big.length);
+                bytes(big);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.size);
+        }
+
+        private void ensure(final int more) {
+            if (this.size + more > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.size + more));
+            }
+        }
+
+    }
+
+    /**
+     * Binary reader, counterpart of {@link Writer}.
+     */
+    static class Reader {
+
+        private final List<String> dictionary = new ArrayList<>();
+        private final byte[] buffer;
+        private int position = 0;
+
+        Reader(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        long varLong() {
+            long zigzag = 0L;
+            int shift = 0;
+            while (true) {
+                final byte b = this.buffer[this.position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1L);
+        }
+
+        int flags() {
+            return (int) varLong();
+        }
+
+        int size() {
+            return (int) varLong();
+        }
+
+        Long nullableLong() {
+            if (varLong() == 0L) {
+                return null;
+            }
+            return varLong();
+        }
+
+        String string() {
+            final int tag = (int) varLong();
+            if (tag == 0) {
+                return null;
+            }
+            if (tag > 1) {
+                return this.dictionary.get(tag - 2);
+            }
+            final int length = (int) varLong();
+            final String value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            this.dictionary.add(value);
+            return value;
+        }
+
+        <C extends Collection<String>> C strings(final C target) {
+            final int size = size();
+            if (size < 0) {
+                return target;
+            }
+            final Collection<String> values = target != null ? target : new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(string());
+            }
+            return (C) values;
+        }
+
+        BigDecimal decimal() {
+            final int tag = (int) varLong();
+            if (tag == 0) {
+                return null;
+            }
+            final int scale = (int) varLong();
+            if (tag == 1) {
+                return BigDecimal.valueOf(varLong(), scale);
+            }
+            final int length = (int) varLong();
+            final byte[] big = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+            this.position += length;
+            return new BigDecimal(new BigInteger(big), scale);
+        }
+
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param compress compress state (deflate) if it exceeds compression threshold
+     */
+    public void setCompress(final boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param compressThreshold minimum size of state in bytes to compress
+     */
+    public void setCompressThreshold(final int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+}
@@ -16,11 +16,21 @@
 
 package org.yes.cart.shoppingcart.support.impl;
 
+import org.junit.Ignore;
 import org.junit.Test;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.target.CommonsPoolTargetSource;
+import org.springframework.aop.target.SingletonTargetSource;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
+import org.yes.cart.shoppingcart.support.CartDetuplizationException;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static org.junit.Assert.*;
 
@@ -58,4 +68,190 @@ public class AbstractCryptedTuplizerImplTest {
 
     }
 
-}
\ No newline at end of file
+
+
+    @Test
+    public void testCryptoAead() throws Exception {
+
+        final ShoppingCartImpl cart = createCart(1);
+
+        final AbstractCryptedTuplizerImpl tup = new AeadTuplizer();
+
+        final String base64 = tup.toToken(cart);
+        assertFalse("Splitting happens manually as it is media dependent", base64.contains("\n"));
+        assertFalse("Random IV per token", base64.equals(tup.toToken(cart)));
+
+        final ShoppingCart restored = tup.toObject(base64);
+
+        assertNotNull(restored);
+        assertEquals(1, restored.getCartItemList().size());
+
+        final ShoppingCart restoredByOther = new AeadTuplizer().toObject(base64);
+
+        assertNotNull(restoredByOther);
+        assertEquals(1, restoredByOther.getCartItemList().size());
+
+    }
+
+    @Test
+    public void testCryptoAeadTampered() throws Exception {
+
+        final AbstractCryptedTuplizerImpl tup = new AeadTuplizer();
+
+        final String base64 = tup.toToken(createCart(1));
+        final char[] tampered = base64.toCharArray();
+        final int pos = tampered.length / 2;
+        tampered[pos] = tampered[pos] == 'A' ? 'B' : 'A';
+
+        try {
+            tup.toObject(new String(tampered));
+            fail("Tampered token must be rejected");
+        } catch (CartDetuplizationException cde) {
+            // expected
+        }
+
+        try {
+            tup.toObject("AAAA");
+            fail("Short token must be rejected");
+        } catch (CartDetuplizationException cde) {
+            // expected
+        }
+
+        // cipher is still usable after failures
+        assertNotNull(tup.toObject(base64));
+
+    }
+
+    @Test
+    public void testCryptoAeadConcurrent() throws Exception {
+
+        final AbstractCryptedTuplizerImpl tup = new AeadTuplizer();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 1; i <= 64; i++) {
+                final int lines = i % 5 + 1;
+                results.add(executor.submit(() -> {
+                    int total = 0;
+                    for (int j = 0; j < 20; j++) {
+                        total += tup.toObject(tup.toToken(createCart(lines))).getCartItemList().size();
+                    }
+                    return total;
+                }));
+            }
+            for (int i = 1; i <= 64; i++) {
+                assertEquals(Integer.valueOf((i % 5 + 1) * 20), results.get(i - 1).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    /**
+     * Throughput of cart to token and back (3 line cart) for pooled DES tuplizer (pool settings as
+     * in websupport-storefront.xml) and single shared AES/GCM tuplizer, 20000 round trips per run, sample
+     * results on single CPU sandbox (ops/s):
+     *
+     * threads:        1       2       4       8      16      32      64
+     * DES pool:    ~2.7K   ~2.7K   ~2.5K   ~2.2K   ~2.9K   ~2.5K   ~2.2K
+     * AES/GCM:     ~4.9K   ~6.1K   ~5.3K   ~5.1K   ~6.9K   ~5.3K   ~6.0K
+     *
+     * Conclusion: AES/GCM is about twice as fast per call and does not degrade with number of threads since
+     * there is no pool or monitor to queue on, so the pool can be replaced with singleton target source
+     *
+     * @throws Exception errors
+     */
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testCryptoThroughput() throws Exception {
+
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("desTuplizer",
+                BeanDefinitionBuilder.genericBeanDefinition(DesTuplizer.class).setScope("prototype").getBeanDefinition());
+        final CommonsPoolTargetSource desPool = new CommonsPoolTargetSource();
+        desPool.setTargetBeanName("desTuplizer");
+        desPool.setMaxIdle(10);
+        desPool.setMinIdle(5);
+        desPool.setBeanFactory(beanFactory);
+
+        final SingletonTargetSource aead = new SingletonTargetSource(new AeadTuplizer());
+
+        final ShoppingCartImpl cart = createCart(3);
+
+        for (final int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 }) {
+            throughputRoutine("DES pool", desPool, cart, threads, 20000); // warm up
+            final double des = throughputRoutine("DES pool", desPool, cart, threads, 20000);
+            throughputRoutine("AES/GCM", aead, cart, threads, 20000); // warm up
+            final double gcm = throughputRoutine("AES/GCM", aead, cart, threads, 20000);
+            System.out.println(String.format("threads: %2d, DES pool: %8.0f ops/s, AES/GCM: %8.0f ops/s", threads, des, gcm));
+        }
+
+        desPool.destroy();
+
+    }
+
+    private double throughputRoutine(final String name,
+                                     final TargetSource tuplizers,
+                                     final ShoppingCart cart,
+                                     final int threads,
+                                     final int roundTrips) throws Exception {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < roundTrips / threads; j++) {
+                    final AbstractCryptedTuplizerImpl tup = (AbstractCryptedTuplizerImpl) tuplizers.getTarget();
+                    try {
+                        assertNotNull(name, tup.toObject(tup.toToken(cart)));
+                    } finally {
+                        tuplizers.releaseTarget(tup);
+                    }
+                }
+                return null;
+            }));
+        }
+        final long begin = System.nanoTime();
+        start.countDown();
+        for (final Future<?> result : results) {
+            result.get();
+        }
+        final long took = System.nanoTime() - begin;
+        executor.shutdown();
+
+        return (roundTrips / threads) * threads * 1000000000d / took;
+
+    }
+
+    private static ShoppingCartImpl createCart(final int lines) {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+        for (int i = 0; i < lines; i++) {
+            cart.addProductSkuToCart("s01","SKU00" + i, "SKU00" + i, BigDecimal.ONE);
+            cart.setProductSkuPrice("s01","SKU00" + i, new BigDecimal("9.99"), new BigDecimal("9.99"));
+        }
+        return cart;
+
+    }
+
+    public static class DesTuplizer extends AbstractCryptedTuplizerImpl {
+
+        public DesTuplizer() {
+            super("CHANGE_PASSWORD", "DES", "DES/ECB/PKCS5Padding");
+        }
+
+    }
+
+    public static class AeadTuplizer extends AbstractCryptedTuplizerImpl {
+
+        public AeadTuplizer() {
+            super("CHANGE_PASSWORD", "PBKDF2WithHmacSHA256", "AES/GCM/NoPadding");
+        }
+
+    }
+
+}
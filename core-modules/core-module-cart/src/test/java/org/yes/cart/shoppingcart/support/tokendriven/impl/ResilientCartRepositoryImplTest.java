@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.ShoppingCartState;
@@ -37,6 +38,8 @@ import org.yes.cart.shoppingcart.support.tokendriven.CartUpdateProcessor;
 import java.io.*;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -964,4 +967,112 @@ public class ResilientCartRepositoryImplTest {
 
     }
 
+    @Test
+    public void testStoreShoppingCartWriteBehindCoalesced() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = context.mock(ShoppingCartStateService.class, "shoppingCartStateService");
+        final ShopService shopService = context.mock(ShopService.class, "shopService");
+        final CartUpdateProcessor cartUpdateProcessor = context.mock(CartUpdateProcessor.class, "cartUpdateProcessor");
+        final TaskScheduler taskScheduler = context.mock(TaskScheduler.class, "taskScheduler");
+        final CacheManager cacheManager = context.mock(CacheManager.class, "cacheManager");
+        final Cache cartCache = context.mock(Cache.class, "cartCache");
+
+        final MutableShoppingCart cart1 = new ShoppingCartImpl();
+        cart1.getShoppingContext().setShopCode("SHOP10");
+        final MutableShoppingCart cart2 = new ShoppingCartImpl();
+        cart2.getShoppingContext().setShopCode("SHOP10");
+
+        context.checking(new Expectations() {{
+            oneOf(cacheManager).getCache("web.shoppingCart"); will(returnValue(cartCache));
+            oneOf(taskScheduler).scheduleWithFixedDelay(with(any(Runnable.class)), with(equal(250L))); will(returnValue(null));
+            allowing(cartCache).put(with(any(String.class)), with(any(ShoppingCart.class)));
+            oneOf(cartUpdateProcessor).updateShoppingCarts(with(any(List.class)));
+            will(throwException(new IllegalStateException("stale")));
+            oneOf(cartUpdateProcessor).updateShoppingCart(cart1);
+            oneOf(cartUpdateProcessor).updateShoppingCart(cart2);
+        }});
+
+        final ResilientCartRepositoryImpl repo = new ResilientCartRepositoryImpl(shoppingCartStateService, shopService, cartUpdateProcessor, 60, cacheManager);
+        repo.setWriteBehindScheduler(taskScheduler);
+        repo.setWriteBehindQuietPeriodMs(500L);
+        repo.setWriteBehindMaxDelayMs(60000L);
+
+        for (int i = 0; i < 3; i++) {
+            cart1.markDirty();
+            repo.storeShoppingCart(cart1);
+        }
+        cart2.markDirty();
+        repo.storeShoppingCart(cart2);
+
+        // not due yet
+        repo.flushPendingWrites(false);
+
+        Map<String, String> stats = repo.getWriteBehindStatistics();
+        assertEquals("2", stats.get("pending"));
+        assertEquals("4", stats.get("requested"));
+        assertEquals("2", stats.get("coalesced"));
+        assertEquals("0", stats.get("flushed"));
+
+        // pending carts are visible even if evicted from cache
+        context.checking(new Expectations() {{
+            oneOf(cartCache).get(cart1.getGuid()); will(returnValue(null));
+        }});
+        assertSame(cart1, repo.getShoppingCart(cart1.getGuid()));
+
+        // batch fails, so each cart is written separately
+        repo.destroy();
+
+        stats = repo.getWriteBehindStatistics();
+        assertEquals("0", stats.get("pending"));
+        assertEquals("2", stats.get("flushed"));
+        assertEquals("1", stats.get("batches"));
+        assertEquals("1", stats.get("batchFailures"));
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testStoreShoppingCartWriteBehindImmediate() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = context.mock(ShoppingCartStateService.class, "shoppingCartStateService");
+        final ShopService shopService = context.mock(ShopService.class, "shopService");
+        final CartUpdateProcessor cartUpdateProcessor = context.mock(CartUpdateProcessor.class, "cartUpdateProcessor");
+        final TaskScheduler taskScheduler = context.mock(TaskScheduler.class, "taskScheduler");
+        final CacheManager cacheManager = context.mock(CacheManager.class, "cacheManager");
+        final Cache cartCache = context.mock(Cache.class, "cartCache");
+
+        final MutableShoppingCart cart = new ShoppingCartImpl();
+
+        context.checking(new Expectations() {{
+            oneOf(cacheManager).getCache("web.shoppingCart"); will(returnValue(cartCache));
+            oneOf(taskScheduler).scheduleWithFixedDelay(with(any(Runnable.class)), with(any(long.class))); will(returnValue(null));
+            allowing(cartCache).put(with(any(String.class)), with(any(ShoppingCart.class)));
+            exactly(2).of(cartUpdateProcessor).updateShoppingCart(cart);
+        }});
+
+        final ResilientCartRepositoryImpl repo = new ResilientCartRepositoryImpl(shoppingCartStateService, shopService, cartUpdateProcessor, 60, cacheManager);
+        repo.setWriteBehindScheduler(taskScheduler);
+
+        cart.markDirty();
+        repo.storeShoppingCart(cart);
+        assertEquals("1", repo.getWriteBehindStatistics().get("pending"));
+
+        // login merge
+        repo.flushShoppingCart(cart);
+        assertEquals("0", repo.getWriteBehindStatistics().get("pending"));
+
+        // checkout
+        cart.getOrderInfo().setPaymentGatewayLabel("testPaymentGatewayLabel");
+        cart.markDirty();
+        repo.storeShoppingCart(cart);
+        assertEquals("0", repo.getWriteBehindStatistics().get("pending"));
+        assertEquals("2", repo.getWriteBehindStatistics().get("immediate"));
+
+        repo.flushPendingWrites(true);
+
+        context.assertIsSatisfied();
+
+    }
+
 }
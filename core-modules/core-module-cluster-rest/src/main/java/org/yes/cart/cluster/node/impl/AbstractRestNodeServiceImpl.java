@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.context.ServletContextAware;
 import org.yes.cart.cluster.node.Message;
 import org.yes.cart.cluster.node.MessageListener;
@@ -33,7 +34,10 @@ import org.yes.cart.stream.xml.XStreamProvider;
 import javax.servlet.ServletContext;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 /**
  * User: denispavlov
@@ -56,6 +60,9 @@ public abstract class AbstractRestNodeServiceImpl implements NodeService, Servle
     private Resource restConfiguration;
     private XStreamProvider<List<Node>> restConfigurationLoader;
 
+    private AsyncTaskExecutor broadcastExecutor;
+    private final ConcurrentMap<String, NodeStats> broadcastStats = new ConcurrentHashMap<>();
+
     public AbstractRestNodeServiceImpl(final SystemService systemService) {
         this.systemService = systemService;
     }
@@ -220,6 +227,171 @@ public abstract class AbstractRestNodeServiceImpl implements NodeService, Servle
 
     }
 
+    /**
+     * Send a call to each node. If broadcast executor is configured all nodes are called in parallel and
+     * each response is awaited no longer than given deadline counting from start of the broadcast, so
+     * that whole broadcast takes roughly as long as the slowest node. Without executor nodes are called
+     * one after another in the current thread.
+     *
+     * Results are returned in the same order as nodes (null for nodes that failed or timed out), so
+     * that caller can collect them in its own thread.
+     *
+     * @param nodes      nodes to call
+     * @param deadlineMs deadline for each node in ms
+     * @param call       call to perform for each node
+     * @param onFailure  failure handler, invoked once per failed node (with {@link TimeoutException} if node
+     *                   missed the deadline, in which case failure of interrupted call is not reported)
+     * @param <T>        result type
+     *
+     * @return results in node order
+     */
+    protected <T> List<T> sendToNodes(final List<Node> nodes,
+                                      final long deadlineMs,
+                                      final NodeCall<T> call,
+                                      final BiConsumer<Node, Exception> onFailure) {
+
+        final List<T> results = new ArrayList<>(nodes.size());
+
+        if (this.broadcastExecutor == null || nodes.size() < 2) {
+
+            for (final Node node : nodes) {
+                results.add(callNode(node, call, onFailure, new AtomicBoolean(false)));
+            }
+            return results;
+
+        }
+
+        final List<Future<T>> futures = new ArrayList<>(nodes.size());
+        final List<AtomicBoolean> reported = new ArrayList<>(nodes.size());
+        for (final Node node : nodes) {
+            final AtomicBoolean failureReported = new AtomicBoolean(false);
+            reported.add(failureReported);
+            try {
+                futures.add(this.broadcastExecutor.submit(() -> callNode(node, call, onFailure, failureReported)));
+            } catch (RejectedExecutionException ree) {
+                log.warn("Broadcast executor is saturated, calling node {} in current thread", node.getId());
+                futures.add(CompletableFuture.completedFuture(callNode(node, call, onFailure, failureReported)));
+            }
+        }
+
+        final long deadline = System.currentTimeMillis() + deadlineMs;
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get(i);
+            final Future<T> future = futures.get(i);
+            try {
+                results.add(future.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException te) {
+                // mark as reported before cancelling, so that interrupted call does not report failure again
+                final boolean report = reported.get(i).compareAndSet(false, true);
+                future.cancel(true);
+                if (report) {
+                    statsFor(node).timeouts.incrementAndGet();
+                    onFailure.accept(node, te);
+                }
+                results.add(null);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                results.add(null);
+            } catch (ExecutionException ee) {
+                // callNode() handles all exceptions, so this should not really happen
+                onFailure.accept(node, ee.getCause() instanceof Exception ? (Exception) ee.getCause() : ee);
+                results.add(null);
+            }
+        }
+
+        return results;
+
+    }
+
+    private <T> T callNode(final Node node,
+                           final NodeCall<T> call,
+                           final BiConsumer<Node, Exception> onFailure,
+                           final AtomicBoolean failureReported) {
+
+        final NodeStats stats = statsFor(node);
+        final long start = System.currentTimeMillis();
+        try {
+            return call.call(node);
+        } catch (Exception exp) {
+            if (failureReported.compareAndSet(false, true)) {
+                // not yet reported as timed out
+                stats.failures.incrementAndGet();
+                onFailure.accept(node, exp);
+            }
+            return null;
+        } finally {
+            stats.record(System.currentTimeMillis() - start);
+        }
+
+    }
+
+    private NodeStats statsFor(final Node node) {
+        return this.broadcastStats.computeIfAbsent(node.getId(), id -> new NodeStats());
+    }
+
+    /**
+     * Per node broadcast statistics: number of calls, failures, timeouts and latency (last, average and max in ms).
+     *
+     * @return statistics by node id
+     */
+    public Map<String, String> getBroadcastStatistics() {
+
+        final Map<String, String> all = new TreeMap<>();
+        for (final Map.Entry<String, NodeStats> entry : this.broadcastStats.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().toString());
+        }
+        return all;
+
+    }
+
+    /**
+     * Single node call.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    protected interface NodeCall<T> {
+
+        /**
+         * @param node node to call
+         *
+         * @return result
+         *
+         * @throws Exception any error
+         */
+        T call(Node node) throws Exception;
+
+    }
+
+    private static class NodeStats {
+
+        private final AtomicLong calls = new AtomicLong(0L);
+        private final AtomicLong failures = new AtomicLong(0L);
+        private final AtomicLong timeouts = new AtomicLong(0L);
+        private final AtomicLong totalMs = new AtomicLong(0L);
+        private final AtomicLong lastMs = new AtomicLong(0L);
+        private final AtomicLong maxMs = new AtomicLong(0L);
+
+        private void record(final long latencyMs) {
+            calls.incrementAndGet();
+            totalMs.addAndGet(latencyMs);
+            lastMs.set(latencyMs);
+            maxMs.accumulateAndGet(latencyMs, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            final long callsCount = calls.get();
+            return "calls=" + callsCount
+                    + ", failures=" + failures.get()
+                    + ", timeouts=" + timeouts.get()
+                    + ", lastMs=" + lastMs.get()
+                    + ", avgMs=" + (callsCount == 0L ? 0L : totalMs.get() / callsCount)
+                    + ", maxMs=" + maxMs.get();
+        }
+    }
+
     /**
      * Reload configuration for this cluster.
      */
@@ -328,13 +500,22 @@ public abstract class AbstractRestNodeServiceImpl implements NodeService, Servle
         this.restConfigurationLoader = restConfigurationLoader;
     }
 
+    /**
+     * Spring IoC setter. If set, broadcast messages are sent to all nodes in parallel.
+     *
+     * @param broadcastExecutor bounded executor for broadcasting
+     */
+    public void setBroadcastExecutor(final AsyncTaskExecutor broadcastExecutor) {
+        this.broadcastExecutor = broadcastExecutor;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void destroy() throws Exception {
 
-        log.info("Closing REST channel for node {}", node.getId());
+        log.info("Closing REST channel for node {}, broadcast statistics {}", node.getId(), getBroadcastStatistics());
 
     }
 
@@ -42,6 +42,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 /**
  * User: denispavlov
@@ -86,72 +87,87 @@ public class ManagerRestNodeServiceImpl extends AbstractRestNodeServiceImpl impl
         }
 
 
-        final HttpHeaders headers = getRestServiceInboundChannelHeaders(context, context.getAttribute(AsyncContext.TIMEOUT_KEY));
+        final int timeout = NumberUtils.toInt(getConfiguration().get(context.getAttribute(AsyncContext.TIMEOUT_KEY)), 1000);
+        final HttpHeaders headers = getRestServiceInboundChannelHeaders(context, timeout);
 
-        for (final Node yesNode : cluster) {
-            try {
+        final long start = System.currentTimeMillis();
 
-                final HttpEntity<RestMessage> msg = new HttpEntity<>(new RestMessage(restMessage), headers);
+        // connect and read timeouts are applied separately, so node may legitimately take up to both
+        final List<RestMessage> responses = sendToNodes(cluster, 2L * timeout,
+                yesNode -> {
 
-                final ResponseEntity<RestMessage> rsp = this.restTemplate.postForEntity(
-                        yesNode.getChannel(), msg, RestMessage.class);
+                    final HttpEntity<RestMessage> msg = new HttpEntity<>(new RestMessage(restMessage), headers);
 
-                if (rsp != null && rsp.getBody() != null) {
-                    restMessage.addResponse(
-                            new BasicMessageImpl(
-                                    rsp.getBody().getSource(),
-                                    rsp.getBody().getTargets(),
-                                    rsp.getBody().getSubject(),
-                                    rsp.getBody().getPayloadObject()
-                            ));
-                }
+                    final ResponseEntity<RestMessage> rsp = this.restTemplate.postForEntity(
+                            yesNode.getChannel(), msg, RestMessage.class);
 
-            } catch (RestClientException rce) {
+                    return rsp != null ? rsp.getBody() : null;
 
-                if (rce.getCause() instanceof ConnectException) {
+                },
+                (yesNode, exp) -> onBroadcastFailure(message, yesNode, exp));
 
-                    blacklist(yesNode.getId());
+        for (final RestMessage rsp : responses) {
+            if (rsp != null) {
+                restMessage.addResponse(
+                        new BasicMessageImpl(
+                                rsp.getSource(),
+                                rsp.getTargets(),
+                                rsp.getSubject(),
+                                rsp.getPayloadObject()
+                        ));
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Broadcast {} to {} nodes in {}ms, statistics {}",
+                    message.getSubject(), cluster.size(), System.currentTimeMillis() - start, getBroadcastStatistics());
+        }
+
+    }
 
-                    if (log.isErrorEnabled()) {
-                        log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
-                                + yesNode.getId() + ":" + yesNode.getChannel() + "] . Blacklisting this node due to connection exception.");
-                    }
 
-                } else if (rce.getCause() instanceof JsonParseException) {
+    private void onBroadcastFailure(final Message message, final Node yesNode, final Exception exp) {
 
-                    blacklist(yesNode.getId());
+        if (exp instanceof TimeoutException) {
 
-                    if (log.isErrorEnabled()) {
-                        log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
-                                + yesNode.getId() + ":" + yesNode.getChannel() + "] . Blacklisting this node due to malformed message.");
-                    }
+            if (log.isErrorEnabled()) {
+                log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
+                        + yesNode.getId() + ":" + yesNode.getChannel() + "] . No response within deadline.");
+            }
+
+        } else if (exp instanceof RestClientException && exp.getCause() instanceof ConnectException) {
+
+            blacklist(yesNode.getId());
 
-                } else {
+            if (log.isErrorEnabled()) {
+                log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
+                        + yesNode.getId() + ":" + yesNode.getChannel() + "] . Blacklisting this node due to connection exception.");
+            }
 
-                    if (log.isErrorEnabled()) {
-                        log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
-                                        + yesNode.getId() + ":" + yesNode.getChannel() + "] . Exception occurred during ws call",
-                                rce);
-                    }
+        } else if (exp instanceof RestClientException && exp.getCause() instanceof JsonParseException) {
 
-                }
+            blacklist(yesNode.getId());
 
-            } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
+                        + yesNode.getId() + ":" + yesNode.getChannel() + "] . Blacklisting this node due to malformed message.");
+            }
 
-                if (log.isErrorEnabled()) {
-                    log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
-                                    + yesNode.getId() + ":" + yesNode.getChannel() + "] . Exception occurred during ws call",
-                            e);
-                }
+        } else {
 
+            if (log.isErrorEnabled()) {
+                log.error(Markers.alert(), "Node message failure [" + message + "] to channel ["
+                                + yesNode.getId() + ":" + yesNode.getChannel() + "] . Exception occurred during ws call",
+                        exp);
             }
+
         }
 
     }
 
 
     private HttpHeaders getRestServiceInboundChannelHeaders(final AsyncContext context,
-                                                            final String timeoutKey) {
+                                                            final int timeout) {
 
 
         final String userName = context.getAttribute(AsyncContext.USERNAME);
@@ -160,7 +176,6 @@ public class ManagerRestNodeServiceImpl extends AbstractRestNodeServiceImpl impl
         final boolean hashed = StringUtils.isNotBlank(passwordHash);
         final String pwd = hashed ? passwordHash : password;
 
-        final int timeout = NumberUtils.toInt(getConfiguration().get(timeoutKey), 1000);
         clientHttpRequestFactory.setConnectTimeout(timeout);
         clientHttpRequestFactory.setReadTimeout(timeout);
 
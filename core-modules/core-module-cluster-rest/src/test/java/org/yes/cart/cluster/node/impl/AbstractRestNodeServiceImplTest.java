@@ -0,0 +1,179 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.node.impl;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.yes.cart.cluster.node.Message;
+import org.yes.cart.cluster.node.Node;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 18:26
+ */
+public class AbstractRestNodeServiceImplTest {
+
+    @Test
+    public void testSendToNodesParallelWithDeadline() throws Exception {
+
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.initialize();
+
+        try {
+
+            final AbstractRestNodeServiceImpl service = new TestNodeService();
+            service.setBroadcastExecutor(executor);
+
+            final List<Node> nodes = Arrays.asList(node("SF0"), node("SF1"), node("SF2"), node("SF3"));
+            final Map<String, Exception> failures = new ConcurrentHashMap<>();
+            final Map<String, AtomicInteger> failureCalls = new ConcurrentHashMap<>();
+            final CountDownLatch interrupted = new CountDownLatch(1);
+
+            final long start = System.currentTimeMillis();
+            final List<String> results = service.sendToNodes(nodes, 500L,
+                    node -> {
+                        switch (node.getNodeId()) {
+                            case "SF1":
+                                throw new IllegalStateException("failed");
+                            case "SF2":
+                                try {
+                                    Thread.sleep(5000L);
+                                } finally {
+                                    interrupted.countDown();
+                                }
+                                return "late";
+                            default:
+                                Thread.sleep(300L);
+                                return node.getNodeId();
+                        }
+                    },
+                    (node, exp) -> {
+                        failures.put(node.getNodeId(), exp);
+                        failureCalls.computeIfAbsent(node.getNodeId(), id -> new AtomicInteger()).incrementAndGet();
+                    });
+            final long took = System.currentTimeMillis() - start;
+
+            // timed out call is cancelled, make sure interrupted call does not report failure again
+            assertTrue(interrupted.await(1000L, TimeUnit.MILLISECONDS));
+            Thread.sleep(100L);
+
+            assertEquals(Arrays.asList("SF0", null, null, "SF3"), results);
+            assertTrue("Nodes must be called in parallel, took " + took, took < 1500L);
+
+            assertEquals(2, failures.size());
+            assertTrue(failures.get("SF1") instanceof IllegalStateException);
+            assertTrue(failures.get("SF2") instanceof TimeoutException);
+            assertEquals(1, failureCalls.get("SF1").get());
+            assertEquals(1, failureCalls.get("SF2").get());
+
+            final Map<String, String> stats = service.getBroadcastStatistics();
+            assertTrue(stats.get("TEST.SF0").startsWith("calls=1, failures=0, timeouts=0"));
+            assertTrue(stats.get("TEST.SF1").startsWith("calls=1, failures=1, timeouts=0"));
+            assertTrue(stats.get("TEST.SF2").startsWith("calls=1, failures=0, timeouts=1"));
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testSendToNodesSaturatedExecutor() throws Exception {
+
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+
+        try {
+
+            final AbstractRestNodeServiceImpl service = new TestNodeService();
+            service.setBroadcastExecutor(executor);
+
+            final List<Node> nodes = Arrays.asList(node("SF0"), node("SF1"));
+            final Map<String, String> threads = new ConcurrentHashMap<>();
+
+            final List<String> results = service.sendToNodes(nodes, 1000L,
+                    node -> {
+                        threads.put(node.getNodeId(), Thread.currentThread().getName());
+                        Thread.sleep(200L);
+                        return node.getNodeId();
+                    },
+                    (node, exp) -> fail("Unexpected failure " + exp));
+
+            assertEquals(Arrays.asList("SF0", "SF1"), results);
+            assertFalse(Thread.currentThread().getName().equals(threads.get("SF0")));
+            assertEquals("Rejected call runs in current thread", Thread.currentThread().getName(), threads.get("SF1"));
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testSendToNodesSequentialWithoutExecutor() throws Exception {
+
+        final AbstractRestNodeServiceImpl service = new TestNodeService();
+
+        final List<Node> nodes = Arrays.asList(node("SF0"), node("SF1"));
+        final List<String> calls = new ArrayList<>();
+
+        final List<String> results = service.sendToNodes(nodes, 500L,
+                node -> {
+                    calls.add(Thread.currentThread().getName());
+                    return node.getNodeId();
+                },
+                (node, exp) -> fail("Unexpected failure " + exp));
+
+        assertEquals(Arrays.asList("SF0", "SF1"), results);
+        assertEquals(Arrays.asList(Thread.currentThread().getName(), Thread.currentThread().getName()), calls);
+
+    }
+
+    private Node node(final String nodeId) {
+        return new NodeImpl(false, nodeId, "SFW", "DEFAULT", "TEST", "N/A", "", false);
+    }
+
+    private static class TestNodeService extends AbstractRestNodeServiceImpl {
+
+        private TestNodeService() {
+            super(null);
+            log = LoggerFactory.getLogger(TestNodeService.class);
+        }
+
+        @Override
+        public void broadcast(final Message message) {
+            // not used
+        }
+    }
+
+}
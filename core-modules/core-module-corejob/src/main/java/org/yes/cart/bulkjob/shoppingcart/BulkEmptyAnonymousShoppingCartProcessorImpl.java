@@ -49,11 +49,16 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
 
     private static final long MS_IN_DAY = 86400000L;
 
+    private static final String CRITERIA = "e.empty = ?2 AND e.customerEmail IS NULL AND (e.updatedTimestamp < ?1 OR e.updatedTimestamp IS NULL)";
+
     private final ShoppingCartStateService shoppingCartStateService;
     private final CustomerOrderService customerOrderService;
     private final SystemService systemService;
     private long abandonedTimeoutMs = MS_IN_DAY;
     private int batchSize = 500;
+    private boolean setBasedPurge = true;
+
+    private final ShoppingCartPurgeSupport purgeSupport;
 
     private final JobStatusListener listener = new JobStatusListenerLoggerWrapperImpl(LOG);
 
@@ -63,6 +68,12 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
         this.shoppingCartStateService = shoppingCartStateService;
         this.customerOrderService = customerOrderService;
         this.systemService = systemService;
+        this.purgeSupport = new ShoppingCartPurgeSupport(
+                shoppingCartStateService.getGenericDao(),
+                customerOrderService.getGenericDao(),
+                CRITERIA,
+                2
+        );
     }
 
     /** {@inheritDoc} */
@@ -79,6 +90,11 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
 
         LOG.info("Look up all ShoppingCartStates not modified since {}", lastModification);
 
+        if (this.setBasedPurge) {
+            purge(lastModification);
+            return;
+        }
+
         final int count[] = new int[] { 0 };
         final int removedOrders[] = new int[] { 0 };
 
@@ -86,7 +102,7 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
         final List<ShoppingCartState> batch = new ArrayList<>();
 
         this.shoppingCartStateService.findByCriteriaIterator(
-                " where e.empty = ?2 AND e.customerEmail IS NULL AND (e.updatedTimestamp < ?1 OR e.updatedTimestamp IS NULL)",
+                " where " + CRITERIA,
                 new Object[] { lastModification, Boolean.TRUE },
                 cart -> {
 
@@ -118,6 +134,30 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
     }
 
 
+    private void purge(final Instant lastModification) {
+
+        this.purgeSupport.purge(
+                new Object[] { lastModification, Boolean.TRUE },
+                determineBatchSize(),
+                (fromId, toId) -> self().purgeCarts(lastModification, fromId, toId),
+                listener,
+                "empty carts"
+        );
+
+        LOG.info("Processing empty baskets ... completed");
+
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] purgeCarts(final Instant lastModification, final long fromId, final long toId) {
+
+        return this.purgeSupport.purge(new Object[] { lastModification, Boolean.TRUE }, fromId, toId);
+
+    }
+
+
     @Override
     public int removeCarts(final List<ShoppingCartState> carts) {
 
@@ -194,6 +234,18 @@ public class BulkEmptyAnonymousShoppingCartProcessorImpl implements BulkShopping
 
 
 
+    /**
+     * Use set based statements to remove carts in chunks keyed by PK range instead of removing
+     * carts one by one (default is true).
+     *
+     * @param setBasedPurge set based purge flag
+     */
+    public void setSetBasedPurge(final boolean setBasedPurge) {
+        this.setBasedPurge = setBasedPurge;
+    }
+
+
+
     private BulkShoppingCartRemoveProcessorInternal self;
 
     private BulkShoppingCartRemoveProcessorInternal self() {
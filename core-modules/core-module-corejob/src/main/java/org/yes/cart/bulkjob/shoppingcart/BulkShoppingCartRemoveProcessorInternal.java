@@ -18,6 +18,7 @@ package org.yes.cart.bulkjob.shoppingcart;
 
 import org.yes.cart.domain.entity.ShoppingCartState;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -36,4 +37,16 @@ public interface BulkShoppingCartRemoveProcessorInternal extends Runnable {
      */
     int removeCarts(List<ShoppingCartState> carts);
 
+    /**
+     * Remove carts (and associated temporary orders) within given primary key range using set
+     * based statements.
+     *
+     * @param lastModification carts not modified since
+     * @param fromId           first cart state PK (inclusive)
+     * @param toId             last cart state PK (exclusive)
+     *
+     * @return number of carts (index 0) and temporary orders (index 1) removed
+     */
+    int[] purgeCarts(Instant lastModification, long fromId, long toId);
+
 }
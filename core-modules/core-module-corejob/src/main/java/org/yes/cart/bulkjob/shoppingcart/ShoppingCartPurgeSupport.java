@@ -0,0 +1,250 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.shoppingcart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.CustomerOrder;
+import org.yes.cart.domain.entity.ShoppingCartState;
+import org.yes.cart.service.async.JobStatusListener;
+
+import java.util.*;
+
+/**
+ * Set based removal of shopping cart states and their temporary orders in chunks keyed by cart state
+ * primary key range. Carts are selected by criteria over alias "e" with positional parameters ?1..?n
+ * (same as used in {@link GenericDAO#findByCriteriaIterator(String, Object...)}), range and order
+ * status parameters are appended after criteria parameters.
+ *
+ * Temporary order graph consists of order, its details, deliveries, delivery details, coupon usages
+ * and billing/shipping address details. Addresses are referenced by order, so their PK's are collected
+ * before order is removed and addresses are removed after the order.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:05
+ */
+final class ShoppingCartPurgeSupport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShoppingCartPurgeSupport.class);
+
+    private static final int ADDRESS_BATCH = 500;
+
+    /**
+     * Removes single PK range chunk, so that each chunk can run in its own transaction.
+     */
+    interface ChunkPurge {
+
+        /**
+         * @param fromId first PK (inclusive)
+         * @param toId   last PK (exclusive)
+         *
+         * @return number of removed carts (index 0) and temporary orders (index 1)
+         */
+        int[] purge(long fromId, long toId);
+
+    }
+
+    private final GenericDAO<ShoppingCartState, Long> shoppingCartStateDao;
+    private final GenericDAO<CustomerOrder, Long> customerOrderDao;
+    private final int criteriaParams;
+
+    private final String nextIdQuery;
+    private final String maxIdQuery;
+    private final String orderAddressIdsQuery;
+    private final String removeOrderDeliveryDetQuery;
+    private final String removeOrderDeliveryQuery;
+    private final String removeOrderCouponUsageQuery;
+    private final String removeOrderDetQuery;
+    private final String removeOrderQuery;
+    private final String removeAddressQuery;
+    private final String removeCartQuery;
+
+    /**
+     * @param shoppingCartStateDao cart state DAO
+     * @param customerOrderDao     order DAO
+     * @param criteria             cart criteria over alias "e"
+     * @param criteriaParams       number of parameters in criteria
+     */
+    ShoppingCartPurgeSupport(final GenericDAO<ShoppingCartState, Long> shoppingCartStateDao,
+                             final GenericDAO<CustomerOrder, Long> customerOrderDao,
+                             final String criteria,
+                             final int criteriaParams) {
+
+        this.shoppingCartStateDao = shoppingCartStateDao;
+        this.customerOrderDao = customerOrderDao;
+        this.criteriaParams = criteriaParams;
+
+        final String from = "?" + (criteriaParams + 1);
+        final String to = "?" + (criteriaParams + 2);
+        final String status = "?" + (criteriaParams + 3);
+
+        final String carts = "(" + criteria + ") and e.shoppingCartStateId >= " + from + " and e.shoppingCartStateId < " + to;
+        final String cartGuids = "select e.guid from ShoppingCartStateEntity e where " + carts;
+        final String orders = "o.orderStatus = " + status + " and o.cartGuid in (" + cartGuids + ")";
+        final String orderIds = "select o.customerorderId from CustomerOrderEntity o where " + orders;
+
+        this.nextIdQuery = "select min(e.shoppingCartStateId) from ShoppingCartStateEntity e where (" + criteria + ") and e.shoppingCartStateId >= " + from;
+        this.maxIdQuery = "select max(e.shoppingCartStateId) from ShoppingCartStateEntity e where " + criteria;
+        this.orderAddressIdsQuery = "select b.addressId, s.addressId from CustomerOrderEntity o "
+                + "left join o.billingAddressDetails b left join o.shippingAddressDetails s where " + orders;
+        this.removeOrderDeliveryDetQuery = "delete from CustomerOrderDeliveryDetEntity dd where dd.delivery.customerOrderDeliveryId in ("
+                + "select d.customerOrderDeliveryId from CustomerOrderDeliveryEntity d where d.customerOrder.customerorderId in (" + orderIds + "))";
+        this.removeOrderDeliveryQuery = "delete from CustomerOrderDeliveryEntity d where d.customerOrder.customerorderId in (" + orderIds + ")";
+        this.removeOrderCouponUsageQuery = "delete from PromotionCouponUsageEntity u where u.customerOrder.customerorderId in (" + orderIds + ")";
+        this.removeOrderDetQuery = "delete from CustomerOrderDetEntity od where od.customerOrder.customerorderId in (" + orderIds + ")";
+        this.removeOrderQuery = "delete from CustomerOrderEntity o where " + orders;
+        this.removeAddressQuery = "delete from AddressEntity a where a.addressId in (?1)";
+        this.removeCartQuery = "delete from ShoppingCartStateEntity e where " + carts;
+
+    }
+
+    /**
+     * Remove all carts matching criteria and their temporary orders chunk by chunk, each chunk covering
+     * at most chunkSize PK's. Chunks are removed by given callback, which should delegate to
+     * {@link #purge(Object[], long, long)} within transaction.
+     *
+     * @param criteriaValues criteria parameters
+     * @param chunkSize      PK range size of a single chunk
+     * @param chunkPurge     chunk removal callback
+     * @param listener       listener to report progress to
+     * @param cartsLabel     carts name used in progress messages
+     *
+     * @return number of removed carts (index 0) and temporary orders (index 1)
+     */
+    int[] purge(final Object[] criteriaValues,
+                final int chunkSize,
+                final ChunkPurge chunkPurge,
+                final JobStatusListener listener,
+                final String cartsLabel) {
+
+        final Long maxId = findMaxId(criteriaValues);
+        Long fromId = maxId != null ? findNextId(criteriaValues, 0L) : null;
+
+        final long start = System.currentTimeMillis();
+        int count = 0;
+        int removedOrders = 0;
+        int chunks = 0;
+
+        while (fromId != null && fromId <= maxId) {
+
+            final long toId = Math.min(fromId + chunkSize, maxId + 1L);
+            final long chunkStart = System.currentTimeMillis();
+
+            final int[] removed = chunkPurge.purge(fromId, toId);
+
+            final long chunkMs = Math.max(1L, System.currentTimeMillis() - chunkStart);
+            count += removed[0];
+            removedOrders += removed[1];
+            chunks++;
+
+            LOG.info("Removed {} {} and {} temporary orders in PK range [{}, {}) in {}ms ({} carts/s)",
+                    removed[0], cartsLabel, removed[1], fromId, toId, chunkMs, removed[0] * 1000L / chunkMs);
+            listener.notifyPing("Removed " + count + " " + cartsLabel + " and " + removedOrders + " temporary orders, last chunk "
+                    + removed[0] * 1000L / chunkMs + " carts/s");
+
+            fromId = toId <= maxId ? findNextId(criteriaValues, toId) : null;
+
+        }
+
+        final long totalMs = Math.max(1L, System.currentTimeMillis() - start);
+        LOG.info("Removed {} {} and {} temporary orders in {} chunks in {}ms ({} carts/s)",
+                count, cartsLabel, removedOrders, chunks, totalMs, count * 1000L / totalMs);
+        listener.notifyPing("Removed " + count + " " + cartsLabel + " and " + removedOrders + " temporary orders in last run");
+
+        return new int[] { count, removedOrders };
+
+    }
+
+    /**
+     * Find first cart state PK matching criteria starting from given PK.
+     *
+     * @param criteriaValues criteria parameters
+     * @param fromId         PK to start from (inclusive)
+     *
+     * @return first matching PK or null if there are no more carts
+     */
+    Long findNextId(final Object[] criteriaValues, final long fromId) {
+
+        final Object[] params = Arrays.copyOf(criteriaValues, this.criteriaParams + 1);
+        params[this.criteriaParams] = fromId;
+        return (Long) this.shoppingCartStateDao.findSingleByQuery(this.nextIdQuery, params);
+
+    }
+
+    /**
+     * Find last cart state PK matching criteria.
+     *
+     * @param criteriaValues criteria parameters
+     *
+     * @return last matching PK or null if there are no carts
+     */
+    Long findMaxId(final Object[] criteriaValues) {
+
+        return (Long) this.shoppingCartStateDao.findSingleByQuery(this.maxIdQuery, criteriaValues);
+
+    }
+
+    /**
+     * Remove carts matching criteria within PK range and their temporary orders. Must be executed
+     * within transaction.
+     *
+     * @param criteriaValues criteria parameters
+     * @param fromId         first PK (inclusive)
+     * @param toId           last PK (exclusive)
+     *
+     * @return number of removed carts (index 0) and temporary orders (index 1)
+     */
+    int[] purge(final Object[] criteriaValues, final long fromId, final long toId) {
+
+        final Object[] params = Arrays.copyOf(criteriaValues, this.criteriaParams + 3);
+        params[this.criteriaParams] = fromId;
+        params[this.criteriaParams + 1] = toId;
+        params[this.criteriaParams + 2] = CustomerOrder.ORDER_STATUS_NONE;
+
+        // addresses are referenced by orders, so we can only select them before orders are removed
+        final Set<Long> addressIds = new HashSet<>();
+        for (final Object row : this.customerOrderDao.findByQuery(this.orderAddressIdsQuery, params)) {
+            for (final Object addressId : (Object[]) row) {
+                if (addressId != null) {
+                    addressIds.add((Long) addressId);
+                }
+            }
+        }
+
+        // orders must be removed first since they are selected by cart GUID
+        this.customerOrderDao.executeHsqlUpdate(this.removeOrderDeliveryDetQuery, params);
+        this.customerOrderDao.executeHsqlUpdate(this.removeOrderDeliveryQuery, params);
+        this.customerOrderDao.executeHsqlUpdate(this.removeOrderCouponUsageQuery, params);
+        this.customerOrderDao.executeHsqlUpdate(this.removeOrderDetQuery, params);
+        final int orders = this.customerOrderDao.executeHsqlUpdate(this.removeOrderQuery, params);
+
+        // keep "in" lists small as some databases limit number of elements
+        final List<Long> addresses = new ArrayList<>(addressIds);
+        for (int i = 0; i < addresses.size(); i += ADDRESS_BATCH) {
+            this.customerOrderDao.executeHsqlUpdate(this.removeAddressQuery,
+                    addresses.subList(i, Math.min(i + ADDRESS_BATCH, addresses.size())));
+        }
+
+        final int carts = this.shoppingCartStateDao.executeHsqlUpdate(this.removeCartQuery, Arrays.copyOf(params, this.criteriaParams + 2));
+
+        return new int[] { carts, orders };
+
+    }
+
+}
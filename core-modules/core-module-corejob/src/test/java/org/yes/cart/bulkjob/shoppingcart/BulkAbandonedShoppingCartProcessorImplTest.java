@@ -0,0 +1,166 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.shoppingcart;
+
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yes.cart.BaseCoreDBTestCase;
+import org.yes.cart.domain.entity.Address;
+import org.yes.cart.domain.entity.CustomerOrder;
+import org.yes.cart.domain.entity.ShoppingCartState;
+import org.yes.cart.service.domain.CustomerOrderService;
+import org.yes.cart.service.domain.ShoppingCartStateService;
+import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.shoppingcart.ShoppingCart;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:05
+ */
+public class BulkAbandonedShoppingCartProcessorImplTest extends BaseCoreDBTestCase {
+
+    @Test
+    public void testRunSetBasedPurge() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = ctx().getBean("shoppingCartStateService", ShoppingCartStateService.class);
+        final CustomerOrderService customerOrderService = ctx().getBean("customerOrderService", CustomerOrderService.class);
+        final SystemService systemService = ctx().getBean("systemService", SystemService.class);
+
+        createCustomer();
+
+        final ShoppingCart tempCart = getShoppingCart(true);
+        final CustomerOrder tempOrder = customerOrderService.createFromCart(tempCart);
+        assertEquals(CustomerOrder.ORDER_STATUS_NONE, tempOrder.getOrderStatus());
+        assertFalse(tempOrder.getDelivery().isEmpty());
+        assertFalse(tempOrder.getOrderDetail().isEmpty());
+        final Set<Long> tempAddressIds = addressIds(tempOrder);
+        assertFalse(tempAddressIds.isEmpty());
+
+        final ShoppingCart placedCart = getShoppingCart(false);
+        final CustomerOrder placedOrder = customerOrderService.createFromCart(placedCart);
+        placedOrder.setOrderStatus(CustomerOrder.ORDER_STATUS_PENDING);
+        customerOrderService.update(placedOrder);
+        final Set<Long> placedAddressIds = addressIds(placedOrder);
+        assertFalse(placedAddressIds.isEmpty());
+
+        final long addressesBefore = countAddresses(getTx(), customerOrderService);
+
+        final String noOrderGuid = UUID.randomUUID().toString();
+        final String recentGuid = UUID.randomUUID().toString();
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                createCartState(shoppingCartStateService, tempCart.getGuid());
+                createCartState(shoppingCartStateService, placedCart.getGuid());
+                createCartState(shoppingCartStateService, noOrderGuid);
+                createCartState(shoppingCartStateService, recentGuid);
+                shoppingCartStateService.getGenericDao().executeHsqlUpdate(
+                        "update ShoppingCartStateEntity e set e.updatedTimestamp = ?1 where e.guid <> ?2",
+                        Instant.now().minusSeconds(40 * 86400L), recentGuid
+                );
+            }
+        });
+
+        // carts left over by other tests sharing the same context are aged as well
+        final long expectedCarts = getTx().execute(status -> (Long) shoppingCartStateService.getGenericDao().findSingleByQuery(
+                "select count(e) from ShoppingCartStateEntity e where e.guid <> ?1", recentGuid));
+        assertTrue(expectedCarts >= 3L);
+
+        final BulkAbandonedShoppingCartProcessorImpl processor = new BulkAbandonedShoppingCartProcessorImpl(
+                shoppingCartStateService, customerOrderService, systemService) {
+            @Override
+            public BulkShoppingCartRemoveProcessorInternal getSelf() {
+                return this;
+            }
+        };
+        processor.setBatchSize(1);
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                processor.run();
+            }
+        });
+
+        assertNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", tempCart.getGuid()));
+        assertNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", placedCart.getGuid()));
+        assertNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", noOrderGuid));
+        assertNotNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", recentGuid));
+
+        assertNull(customerOrderService.findByReference(tempCart.getGuid()));
+        assertNotNull(customerOrderService.findByReference(placedCart.getGuid()));
+
+        // temporary order addresses must not be orphaned
+        assertEquals(addressesBefore - tempAddressIds.size(), countAddresses(getTx(), customerOrderService));
+        for (final Long addressId : tempAddressIds) {
+            assertEquals(0L, countAddress(getTx(), customerOrderService, addressId));
+        }
+        for (final Long addressId : placedAddressIds) {
+            assertEquals(1L, countAddress(getTx(), customerOrderService, addressId));
+        }
+
+        assertTrue(processor.getStatus(null).getReport().contains("Removed " + expectedCarts + " carts and 1 temporary orders"));
+
+    }
+
+    static Set<Long> addressIds(final CustomerOrder order) {
+
+        final Set<Long> ids = new HashSet<>();
+        for (final Address address : Arrays.asList(order.getBillingAddressDetails(), order.getShippingAddressDetails())) {
+            if (address != null) {
+                ids.add(address.getAddressId());
+            }
+        }
+        return ids;
+
+    }
+
+    static long countAddresses(final TransactionTemplate tx, final CustomerOrderService customerOrderService) {
+
+        return tx.execute(status -> (Long) customerOrderService.getGenericDao().findSingleByQuery(
+                "select count(a) from AddressEntity a"));
+
+    }
+
+    static long countAddress(final TransactionTemplate tx, final CustomerOrderService customerOrderService, final long addressId) {
+
+        return tx.execute(status -> (Long) customerOrderService.getGenericDao().findSingleByQuery(
+                "select count(a) from AddressEntity a where a.addressId = ?1", addressId));
+
+    }
+
+    private void createCartState(final ShoppingCartStateService shoppingCartStateService, final String guid) {
+
+        final ShoppingCartState state = shoppingCartStateService.getGenericDao().getEntityFactory().getByIface(ShoppingCartState.class);
+        state.setGuid(guid);
+        state.setShopId(10L);
+        state.setEmpty(false);
+        state.setState(new byte[] { 1 });
+        shoppingCartStateService.create(state);
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.shoppingcart;
+
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.yes.cart.BaseCoreDBTestCase;
+import org.yes.cart.domain.entity.CustomerOrder;
+import org.yes.cart.domain.entity.ShoppingCartState;
+import org.yes.cart.service.domain.CustomerOrderService;
+import org.yes.cart.service.domain.ShoppingCartStateService;
+import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.shoppingcart.ShoppingCart;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:45
+ */
+public class BulkEmptyAnonymousShoppingCartProcessorImplTest extends BaseCoreDBTestCase {
+
+    @Test
+    public void testRunSetBasedPurge() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = ctx().getBean("shoppingCartStateService", ShoppingCartStateService.class);
+        final CustomerOrderService customerOrderService = ctx().getBean("customerOrderService", CustomerOrderService.class);
+        final SystemService systemService = ctx().getBean("systemService", SystemService.class);
+
+        createCustomer();
+
+        final ShoppingCart tempCart = getShoppingCart(true);
+        final CustomerOrder tempOrder = customerOrderService.createFromCart(tempCart);
+        assertEquals(CustomerOrder.ORDER_STATUS_NONE, tempOrder.getOrderStatus());
+        final Set<Long> tempAddressIds = BulkAbandonedShoppingCartProcessorImplTest.addressIds(tempOrder);
+        assertFalse(tempAddressIds.isEmpty());
+
+        final long addressesBefore = BulkAbandonedShoppingCartProcessorImplTest.countAddresses(getTx(), customerOrderService);
+
+        final String emptyGuid = UUID.randomUUID().toString();
+        final String loggedInGuid = UUID.randomUUID().toString();
+        final String notEmptyGuid = UUID.randomUUID().toString();
+        final String recentGuid = UUID.randomUUID().toString();
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                createCartState(shoppingCartStateService, tempCart.getGuid(), null, true);
+                createCartState(shoppingCartStateService, emptyGuid, null, true);
+                createCartState(shoppingCartStateService, loggedInGuid, "bob@doe.com", true);
+                createCartState(shoppingCartStateService, notEmptyGuid, null, false);
+                createCartState(shoppingCartStateService, recentGuid, null, true);
+                shoppingCartStateService.getGenericDao().executeHsqlUpdate(
+                        "update ShoppingCartStateEntity e set e.updatedTimestamp = ?1 where e.guid <> ?2",
+                        Instant.now().minusSeconds(2 * 86400L), recentGuid
+                );
+            }
+        });
+
+        final BulkEmptyAnonymousShoppingCartProcessorImpl processor = new BulkEmptyAnonymousShoppingCartProcessorImpl(
+                shoppingCartStateService, customerOrderService, systemService) {
+            @Override
+            public BulkShoppingCartRemoveProcessorInternal getSelf() {
+                return this;
+            }
+        };
+        processor.setBatchSize(1);
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                processor.run();
+            }
+        });
+
+        assertNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", tempCart.getGuid()));
+        assertNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", emptyGuid));
+        assertNotNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", loggedInGuid));
+        assertNotNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", notEmptyGuid));
+        assertNotNull(shoppingCartStateService.findSingleByCriteria(" where e.guid = ?1", recentGuid));
+
+        assertNull(customerOrderService.findByReference(tempCart.getGuid()));
+        assertEquals(addressesBefore - tempAddressIds.size(),
+                BulkAbandonedShoppingCartProcessorImplTest.countAddresses(getTx(), customerOrderService));
+
+        assertTrue(processor.getStatus(null).getReport().contains("Removed 2 empty carts and 1 temporary orders"));
+
+    }
+
+    private void createCartState(final ShoppingCartStateService shoppingCartStateService,
+                                 final String guid,
+                                 final String email,
+                                 final boolean empty) {
+
+        final ShoppingCartState state = shoppingCartStateService.getGenericDao().getEntityFactory().getByIface(ShoppingCartState.class);
+        state.setGuid(guid);
+        state.setShopId(10L);
+        state.setCustomerEmail(email);
+        state.setEmpty(empty);
+        state.setState(new byte[] { 1 });
+        shoppingCartStateService.create(state);
+
+    }
+
+}
@@ -18,6 +18,7 @@ package org.yes.cart.bulkexport.csv;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 
 /**
@@ -51,6 +52,27 @@ public interface CsvFileWriter {
               String encoding,
               boolean printHeaders) throws FileNotFoundException, UnsupportedEncodingException;
 
+    /**
+     * Open a csv stream for export (e.g. compressed file or temporary segment of the file).
+     *
+     * @param outputStream    the output stream, which is closed when this writer is closed
+     * @param headers         the column headers
+     * @param columnDelimiter the column delimiter
+     * @param textQualifier   the text qualifier
+     * @param lineEnd         line end
+     * @param encoding        csv file encoding
+     * @param printHeaders    print headers flag.
+     * @throws UnsupportedEncodingException
+     *                                       in case if given encoding not supported.
+     */
+    void open(OutputStream outputStream,
+              String[] headers,
+              char columnDelimiter,
+              char textQualifier,
+              String lineEnd,
+              String encoding,
+              boolean printHeaders) throws UnsupportedEncodingException;
+
     /**
      * Write the line to csv file.
      *
@@ -60,6 +82,13 @@ public interface CsvFileWriter {
      */
     void writeLine(String[] line) throws IOException;
 
+    /**
+     * Flush written lines to the output.
+     *
+     * @throws IOException in case of error.
+     */
+    void flush() throws IOException;
+
     /**
      * Close csv file.
      *
@@ -33,9 +33,11 @@ import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.federation.FederationFacade;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User: denispavlov
@@ -67,35 +69,69 @@ public class CsvBulkExportServiceImpl extends AbstractExportService<CsvExportDes
 
         statusListener.notifyMessage("export file : {}", fileToExport);
 
-        CsvFileWriter csvFileWriter = new CsvFileWriterImpl();
-        ResultsIterator<Object> results = null;
+        final CsvFileWriter csvFileWriter = new CsvFileWriterImpl();
         try {
-            final String filename = fileToExport;
 
             final List<String> headers = new ArrayList<>(csvExportDescriptor.getColumns().size());
             for (final CsvExportColumn column : csvExportDescriptor.getColumns()) {
                 headers.add(column.getColumnHeader());
             }
+            final String[] header = headers.toArray(new String[headers.size()]);
+            final CsvExportFile file = csvExportDescriptor.getExportFileDescriptor();
 
+            final OutputStream out = openExportStream(fileToExport);
             csvFileWriter.open(
-                    filename,
-                    headers.toArray(new String[headers.size()]),
-                    csvExportDescriptor.getExportFileDescriptor().getColumnDelimiter(),
-                    csvExportDescriptor.getExportFileDescriptor().getTextQualifier(),
-                    csvExportDescriptor.getExportFileDescriptor().getLineEnd(),
-                    csvExportDescriptor.getExportFileDescriptor().getFileEncoding(),
-                    csvExportDescriptor.getExportFileDescriptor().isPrintHeader());
+                    out,
+                    header,
+                    file.getColumnDelimiter(),
+                    file.getTextQualifier(),
+                    file.getLineEnd(),
+                    file.getFileEncoding(),
+                    file.isPrintHeader());
+
+            final LookUpQuery query = getQuery(csvExportDescriptor, csvExportDescriptor.getSelectCmd(), null, null);
+            final List<ExportShard> shards = createShards(statusListener, genericDAO, query);
+
+            if (shards.size() > 1) {
+                // segments are appended to the underlying stream, so header must be written first
+                csvFileWriter.writeLine(null);
+                csvFileWriter.flush();
+            }
 
+            final AtomicLong segmentLines = new AtomicLong(0L);
+            exportShards(statusListener, fileToExport, shards, out, (shard, shardOut) -> {
+
+                final CsvFileWriter shardWriter;
+                if (shard.isSegment()) {
+                    shardWriter = new CsvFileWriterImpl();
+                    shardWriter.open(shardOut, header, file.getColumnDelimiter(), file.getTextQualifier(),
+                            file.getLineEnd(), file.getFileEncoding(), false);
+                } else {
+                    shardWriter = csvFileWriter;
+                }
+
+                final ResultsIterator<Object> results = genericDAO.findByQueryIterator(shard.getQuery().getQueryString(), shard.getQuery().getParameters());
+                try {
+                    while (results.hasNext()) {
+                        final Object entity = results.next();
+                        final CsvExportTuple tuple = new CsvExportTupleImpl(entity);
+                        shardWriter.writeLine(doExportTuple(shard.getListener(), tuple, csvExportDescriptorName, csvExportDescriptor, null));
+                        releaseEntity(entity);
+                        shard.exported();
+                    }
+                } finally {
+                    results.close();
+                }
+
+                if (shard.isSegment()) {
+                    shardWriter.flush();
+                    segmentLines.addAndGet(shardWriter.getRowsWritten());
+                }
+
+            });
 
-            results = getExistingEntities(csvExportDescriptor, csvExportDescriptor.getSelectCmd(), null, null);
-            while (results.hasNext()) {
-                final Object entity = results.next();
-                final CsvExportTuple tuple = new CsvExportTupleImpl(entity);
-                csvFileWriter.writeLine(doExportTuple(statusListener, tuple, csvExportDescriptorName, csvExportDescriptor, null));
-                releaseEntity(entity);
-            }
             statusListener.notifyMessage("total data lines : {}",
-                    (csvExportDescriptor.getExportFileDescriptor().isPrintHeader() ? csvFileWriter.getRowsWritten() - 1 : csvFileWriter.getRowsWritten()));
+                    (file.isPrintHeader() ? csvFileWriter.getRowsWritten() - 1 : csvFileWriter.getRowsWritten()) + segmentLines.get());
 
         } catch (UnsupportedEncodingException e) {
             statusListener.notifyError("wrong file encoding in xml descriptor : {} {}", e,
@@ -107,15 +143,6 @@ public class CsvBulkExportServiceImpl extends AbstractExportService<CsvExportDes
                     fileToExport,
                     e.getMessage());
         } finally {
-            try {
-                if (results != null) {
-                    results.close();
-                }
-            } catch (Exception exp) {
-                statusListener.notifyError("cannot close the csv resultset : {} {}", exp,
-                        fileToExport,
-                        exp.getMessage());
-            }
             try {
                 csvFileWriter.close();
             } catch (IOException ioe) {
@@ -260,11 +287,31 @@ public class CsvBulkExportServiceImpl extends AbstractExportService<CsvExportDes
                                                         final Object masterObject,
                                                         final CsvExportTuple tuple) {
 
-        final LookUpQuery query = columnLookUpQueryParameterStrategy.getQuery(exportDescriptor, masterObject, tuple, valueDataAdapter, queryTemplate);
+        final LookUpQuery query = getQuery(exportDescriptor, queryTemplate, masterObject, tuple);
         return genericDAO.findByQueryIterator(query.getQueryString(), query.getParameters());
 
     }
 
+    /**
+     * Create export query. In case of sub export master object will be used in parameters if
+     * {@link CsvExportColumn#isUseMasterObject()} set to true.
+     *
+     * @param exportDescriptor  descriptor
+     * @param queryTemplate     template to use with tuple columns as parameter values
+     * @param masterObject      in case of subexport will be not null, but will be used with flag only
+     * @param tuple             data row to get the parameter value for lookup query.
+     *
+     * @return export query
+     */
+    private LookUpQuery getQuery(final CsvExportDescriptor exportDescriptor,
+                                 final String queryTemplate,
+                                 final Object masterObject,
+                                 final CsvExportTuple tuple) {
+
+        return columnLookUpQueryParameterStrategy.getQuery(exportDescriptor, masterObject, tuple, valueDataAdapter, queryTemplate);
+
+    }
+
     /**
      * Release exported object from session.
      *
@@ -35,7 +35,7 @@ public class CsvFileWriterImpl implements CsvFileWriter {
 
     private CSVWriter csvWriter = null;
 
-    private FileOutputStream fileOutputStream = null;
+    private OutputStream fileOutputStream = null;
 
     private OutputStreamWriter outputStreamWriter = null;
 
@@ -54,7 +54,23 @@ public class CsvFileWriterImpl implements CsvFileWriter {
                      final String encoding,
                      final boolean printHeaders) throws FileNotFoundException, UnsupportedEncodingException {
 
-        fileOutputStream = new FileOutputStream(csvFileName);
+        open(new FileOutputStream(csvFileName), headers, columnDelimiter, textQualifier, lineEnd, encoding, printHeaders);
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open(final OutputStream outputStream,
+                     final String[] headers,
+                     final char columnDelimiter,
+                     final char textQualifier,
+                     final String lineEnd,
+                     final String encoding,
+                     final boolean printHeaders) throws UnsupportedEncodingException {
+
+        fileOutputStream = outputStream;
         outputStreamWriter = new OutputStreamWriter(fileOutputStream, encoding);
         if (lineEnd == null) {
             csvWriter = new CSVWriter(new BufferedWriter(outputStreamWriter), columnDelimiter, textQualifier);
@@ -81,6 +97,16 @@ public class CsvFileWriterImpl implements CsvFileWriter {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
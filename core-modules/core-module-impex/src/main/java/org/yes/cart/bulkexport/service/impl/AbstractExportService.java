@@ -17,17 +17,39 @@
 package org.yes.cart.bulkexport.service.impl;
 
 import org.apache.commons.lang.StringUtils;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.yes.cart.bulkcommon.service.ExportService;
+import org.yes.cart.bulkcommon.service.support.query.LookUpQuery;
+import org.yes.cart.bulkcommon.service.support.query.impl.HSQLQuery;
 import org.yes.cart.bulkexport.model.ExportDescriptor;
+import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.async.model.JobContext;
 import org.yes.cart.service.async.model.JobContextKeys;
 import org.yes.cart.service.federation.FederationFacade;
 import org.yes.cart.utils.DateUtils;
 
-import java.io.File;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * User: denispavlov
@@ -36,8 +58,25 @@ import java.io.File;
  */
 public abstract class AbstractExportService<ED extends ExportDescriptor> implements ExportService {
 
+    /**
+     * Simple select of single entity with optional where clause, e.g. "select p from ProductEntity p where ...".
+     */
+    private static final Pattern SHARDABLE_QUERY = Pattern.compile(
+            "^\\s*select\\s+(\\w+)\\s+from\\s+([\\w.]+)\\s+(?:as\\s+)?(\\w+)(?:\\s+where\\s+(.+?))?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern NOT_SHARDABLE_WHERE = Pattern.compile(
+            "\\s(order|group)\\s+by\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final long PROGRESS_PING_MS = 1000L;
+
     protected final FederationFacade federationFacade;
 
+    private TaskExecutor shardExecutor;
+    private PlatformTransactionManager transactionManager;
+    private int shards = 1;
+
     public AbstractExportService(final FederationFacade federationFacade) {
         this.federationFacade = federationFacade;
     }
@@ -117,6 +156,316 @@ public abstract class AbstractExportService<ED extends ExportDescriptor> impleme
                                      final String fileToExport) throws Exception;
 
 
+    /**
+     * Open output stream for export file. Files ending with ".gz" are gzipped and files with double extension
+     * ending with ".zip" (e.g. "products.xml.zip") are zipped as single entry named as file without ".zip".
+     * Plain ".zip" files are left as is, since handlers (e.g. site export) write own archives to them.
+     *
+     * @param fileToExport file to export
+     *
+     * @return buffered output stream
+     *
+     * @throws IOException if file cannot be opened
+     */
+    protected OutputStream openExportStream(final String fileToExport) throws IOException {
+
+        final OutputStream file = new BufferedOutputStream(new FileOutputStream(fileToExport), BUFFER_SIZE);
+        final String name = new File(fileToExport).getName();
+        if (name.endsWith(".gz")) {
+            return new GZIPOutputStream(file, BUFFER_SIZE);
+        } else if (name.endsWith(".zip")) {
+            final String entry = name.substring(0, name.length() - 4);
+            if (entry.indexOf('.') > 0) {
+                final ZipOutputStream zip = new ZipOutputStream(file);
+                zip.putNextEntry(new ZipEntry(entry));
+                return zip;
+            }
+        }
+        return file;
+
+    }
+
+    /**
+     * Split export query into shards by primary key range. Only simple selects of single entity with
+     * optional where clause (and no ordering or grouping) can be sharded, any other query is exported
+     * as single shard.
+     *
+     * @param statusListener status listener
+     * @param genericDAO     DAO
+     * @param query          export query
+     *
+     * @return shards (at least one)
+     */
+    protected List<ExportShard> createShards(final JobStatusListener statusListener,
+                                             final GenericDAO<Object, Long> genericDAO,
+                                             final LookUpQuery query) {
+
+        if (this.shards <= 1 || this.shardExecutor == null || this.transactionManager == null) {
+            return Collections.singletonList(new ExportShard(0, 1, query, statusListener, false));
+        }
+
+        final Matcher select = SHARDABLE_QUERY.matcher(query.getQueryString());
+        if (!select.matches() || !select.group(1).equals(select.group(3))
+                || (select.group(4) != null && NOT_SHARDABLE_WHERE.matcher(' ' + select.group(4) + ' ').find())) {
+            statusListener.notifyMessage("export query cannot be sharded, exporting in single thread: {}", query.getQueryString());
+            return Collections.singletonList(new ExportShard(0, 1, query, statusListener, false));
+        }
+
+        final String alias = select.group(1);
+        final String from = " from " + select.group(2) + " " + alias;
+        final String where = select.group(4);
+
+        final List<Object> range = genericDAO.findByQuery(
+                "select min(" + alias + ".id), max(" + alias + ".id)" + from + (where != null ? " where " + where : ""),
+                query.getParameters());
+        if (range.isEmpty() || !(range.get(0) instanceof Object[])) {
+            return Collections.singletonList(new ExportShard(0, 1, query, statusListener, false));
+        }
+        final Object[] minMax = (Object[]) range.get(0);
+        if (!(minMax[0] instanceof Number) || !(minMax[1] instanceof Number)) {
+            return Collections.singletonList(new ExportShard(0, 1, query, statusListener, false)); // no data or non numeric PK
+        }
+
+        final long min = ((Number) minMax[0]).longValue();
+        final long max = ((Number) minMax[1]).longValue();
+        final int count = (int) Math.max(1L, Math.min((long) this.shards, max - min + 1L));
+        if (count == 1) {
+            return Collections.singletonList(new ExportShard(0, 1, query, statusListener, false));
+        }
+        final long shardSize = (max - min) / count + 1L;
+
+        statusListener.notifyMessage("export shards : {} of {} PK's, range {}..{}", count, shardSize, min, max);
+
+        final int params = query.getParameters().length;
+        final String shardQuery = "select " + alias + from
+                + " where " + alias + ".id >= ?" + (params + 1) + " and " + alias + ".id < ?" + (params + 2)
+                + (where != null ? " and (" + where + ")" : "")
+                + " order by " + alias + ".id";
+
+        final List<ExportShard> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long fromPk = min + i * shardSize;
+            final long toPk = i == count - 1 ? max + 1L : fromPk + shardSize;
+            final Object[] shardParams = Arrays.copyOf(query.getParameters(), params + 2);
+            shardParams[params] = fromPk;
+            shardParams[params + 1] = toPk;
+            shards.add(new ExportShard(i, count, new HSQLQuery(shardQuery, shardParams), new ExportShardStatusListener(), true));
+        }
+        return shards;
+
+    }
+
+    /**
+     * Export shards. Single shard is exported in current thread directly to output, otherwise each shard is
+     * exported by shard executor in its own read only transaction to temporary segment and segments are
+     * then appended to output in shard order.
+     *
+     * @param statusListener status listener
+     * @param fileToExport   file to export
+     * @param shards         shards (see {@link #createShards(JobStatusListener, GenericDAO, LookUpQuery)})
+     * @param out            export output
+     * @param writer         shard writer
+     *
+     * @throws Exception any errors of shard writers
+     */
+    protected void exportShards(final JobStatusListener statusListener,
+                                final String fileToExport,
+                                final List<ExportShard> shards,
+                                final OutputStream out,
+                                final ShardWriter writer) throws Exception {
+
+        if (shards.size() == 1 && !shards.get(0).isSegment()) {
+            writer.write(shards.get(0), out);
+            return;
+        }
+
+        final File dir = new File(fileToExport).getAbsoluteFile().getParentFile();
+        final File[] segments = new File[shards.size()];
+        final Exception[] errors = new Exception[shards.size()];
+        final CountDownLatch done = new CountDownLatch(shards.size());
+        final SecurityContext securityContext = SecurityContextHolder.getContext();
+        final Thread exportThread = Thread.currentThread();
+
+        try {
+
+            for (final ExportShard shard : shards) {
+
+                segments[shard.getIndex()] = File.createTempFile("export-shard" + shard.getIndex() + "-", ".part", dir);
+
+                final Runnable worker = () -> {
+                    final boolean ownThread = Thread.currentThread() != exportThread;
+                    try {
+                        if (ownThread) {
+                            SecurityContextHolder.setContext(securityContext);
+                        }
+                        final TransactionTemplate tx = new TransactionTemplate(this.transactionManager);
+                        tx.setReadOnly(true);
+                        tx.execute(status -> {
+                            try (OutputStream segment = new BufferedOutputStream(new FileOutputStream(segments[shard.getIndex()]), BUFFER_SIZE)) {
+                                writer.write(shard, segment);
+                            } catch (Exception exp) {
+                                errors[shard.getIndex()] = exp;
+                            }
+                            return null;
+                        });
+                    } catch (Exception exp) {
+                        errors[shard.getIndex()] = exp;
+                    } finally {
+                        if (ownThread) {
+                            SecurityContextHolder.clearContext();
+                        }
+                        done.countDown();
+                    }
+                };
+
+                try {
+                    this.shardExecutor.execute(worker);
+                } catch (TaskRejectedException rejected) {
+                    statusListener.notifyMessage("export shard executor is saturated, shard {} of {} will run in current thread", shard.getIndex() + 1, shard.getTotal());
+                    worker.run();
+                }
+                replay(statusListener, shards);
+
+            }
+
+            while (!done.await(PROGRESS_PING_MS, TimeUnit.MILLISECONDS)) {
+                replay(statusListener, shards);
+                final StringBuilder progress = new StringBuilder();
+                for (final ExportShard shard : shards) {
+                    progress.append(progress.length() > 0 ? ", " : "").append(shard.getExported());
+                }
+                statusListener.notifyPing("export shards progress : {}", progress);  // make sure we do not time out
+            }
+            replay(statusListener, shards);
+            for (final ExportShard shard : shards) {
+                statusListener.notifyMessage("export shard {} of {} : {} exported", shard.getIndex() + 1, shard.getTotal(), shard.getExported());
+            }
+
+            for (final Exception error : errors) {
+                if (error != null) {
+                    throw error;
+                }
+            }
+
+            for (final File segment : segments) {
+                Files.copy(segment.toPath(), out);
+            }
+
+        } finally {
+
+            for (final File segment : segments) {
+                if (segment != null && segment.exists() && !segment.delete()) {
+                    statusListener.notifyWarning("cannot remove export segment : {}", segment.getAbsolutePath());
+                }
+            }
+
+        }
+
+    }
+
+    private void replay(final JobStatusListener statusListener, final List<ExportShard> shards) {
+        for (final ExportShard shard : shards) {
+            if (shard.getListener() instanceof ExportShardStatusListener) {
+                ((ExportShardStatusListener) shard.getListener()).replay(statusListener);
+            }
+        }
+    }
+
+    /**
+     * Export shard.
+     */
+    protected static final class ExportShard {
+
+        private final int index;
+        private final int total;
+        private final LookUpQuery query;
+        private final JobStatusListener listener;
+        private final boolean segment;
+        private final AtomicLong exported = new AtomicLong(0L);
+
+        private ExportShard(final int index,
+                            final int total,
+                            final LookUpQuery query,
+                            final JobStatusListener listener,
+                            final boolean segment) {
+            this.index = index;
+            this.total = total;
+            this.query = query;
+            this.listener = listener;
+            this.segment = segment;
+        }
+
+        /**
+         * @return shard index (0 based)
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return total number of shards
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return query for this shard
+         */
+        public LookUpQuery getQuery() {
+            return query;
+        }
+
+        /**
+         * @return listener to use by shard writer (shard workers must not use job listener directly)
+         */
+        public JobStatusListener getListener() {
+            return listener;
+        }
+
+        /**
+         * @return true if shard is exported to temporary segment (i.e. shard output does not include header)
+         */
+        public boolean isSegment() {
+            return segment;
+        }
+
+        /**
+         * @return number of exported entities
+         */
+        public long getExported() {
+            return exported.get();
+        }
+
+        /**
+         * Count exported entity and report progress.
+         */
+        public void exported() {
+            final long count = exported.incrementAndGet();
+            if (count % PROGRESS_INTERVAL == 0) {
+                listener.notifyPing("export shard {} of {} : {} exported", index + 1, total, count);
+            }
+        }
+
+    }
+
+    /**
+     * Shard writer.
+     */
+    protected interface ShardWriter {
+
+        /**
+         * Export all entities of given shard.
+         *
+         * @param shard shard
+         * @param out   output (export file or temporary segment)
+         *
+         * @throws Exception any errors
+         */
+        void write(ExportShard shard, OutputStream out) throws Exception;
+
+    }
+
     /**
      * Verify access of the current user.
      *
@@ -130,4 +479,31 @@ public abstract class AbstractExportService<ED extends ExportDescriptor> impleme
         }
     }
 
+    /**
+     * Spring IoC.
+     *
+     * @param shardExecutor executor for exporting shards in parallel
+     */
+    public void setShardExecutor(final TaskExecutor shardExecutor) {
+        this.shardExecutor = shardExecutor;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param transactionManager transaction manager for shard transactions
+     */
+    public void setTransactionManager(final PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param shards max number of shards (1 to export in single thread)
+     */
+    public void setShards(final int shards) {
+        this.shards = shards;
+    }
+
 }
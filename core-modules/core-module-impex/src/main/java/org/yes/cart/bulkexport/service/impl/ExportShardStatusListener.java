@@ -0,0 +1,150 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkexport.service.impl;
+
+import org.yes.cart.service.async.JobStatusListener;
+import org.yes.cart.service.async.model.JobStatus;
+import org.yes.cart.service.async.model.impl.JobStatusImpl;
+import org.yes.cart.utils.MessageFormatUtils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Status listener used by export shard worker. Job listeners are not meant to be used by several threads,
+ * so messages, warnings and errors are queued and then replayed to the job listener by export thread
+ * (see {@link #replay(JobStatusListener)}). Pings are not queued since export thread reports shard progress.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:16
+ */
+public class ExportShardStatusListener implements JobStatusListener {
+
+    private final Queue<Notification> notifications = new ConcurrentLinkedQueue<>();
+
+    private volatile String lastPing;
+
+    @Override
+    public JobStatus getLatestStatus() {
+        return new JobStatusImpl(
+                null,
+                JobStatus.State.UNDEFINED,
+                null,
+                lastPing
+        );
+    }
+
+    @Override
+    public String getJobToken() {
+        return null;
+    }
+
+    @Override
+    public void notifyPing() {
+    }
+
+    @Override
+    public void notifyPing(final String msg, final Object... args) {
+        this.lastPing = MessageFormatUtils.format(msg, args);
+    }
+
+    @Override
+    public void notifyMessage(final String message, final Object... args) {
+        notifications.add(new Notification(Notification.MESSAGE, message, null, args));
+    }
+
+    @Override
+    public void notifyWarning(final String warning, final Object... args) {
+        notifications.add(new Notification(Notification.WARNING, warning, null, args));
+    }
+
+    @Override
+    public void notifyError(final String error, final Object... args) {
+        notifications.add(new Notification(Notification.ERROR, error, null, args));
+    }
+
+    @Override
+    public void notifyError(final String error, final Exception exp, final Object... args) {
+        notifications.add(new Notification(Notification.ERROR, error, exp, args));
+    }
+
+    @Override
+    public void notifyCompleted() {
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return false;
+    }
+
+    @Override
+    public long getTimeoutValue() {
+        return 0;
+    }
+
+    @Override
+    public boolean isTimedOut() {
+        return false;
+    }
+
+    /**
+     * Replay all queued notifications to job listener. Must be called by the thread that owns job listener.
+     *
+     * @param statusListener job listener
+     */
+    public void replay(final JobStatusListener statusListener) {
+        Notification notification;
+        while ((notification = notifications.poll()) != null) {
+            switch (notification.type) {
+                case Notification.WARNING:
+                    statusListener.notifyWarning(notification.message, notification.args);
+                    break;
+                case Notification.ERROR:
+                    if (notification.exp != null) {
+                        statusListener.notifyError(notification.message, notification.exp, notification.args);
+                    } else {
+                        statusListener.notifyError(notification.message, notification.args);
+                    }
+                    break;
+                default:
+                    statusListener.notifyMessage(notification.message, notification.args);
+            }
+        }
+    }
+
+    private static final class Notification {
+
+        private static final int MESSAGE = 0;
+        private static final int WARNING = 1;
+        private static final int ERROR = 2;
+
+        private final int type;
+        private final String message;
+        private final Exception exp;
+        private final Object[] args;
+
+        private Notification(final int type, final String message, final Exception exp, final Object[] args) {
+            this.type = type;
+            this.message = message;
+            this.exp = exp;
+            this.args = args;
+        }
+
+    }
+
+}
@@ -40,6 +40,8 @@ public abstract class AbstractXmlEntityHandler<T> implements XmlEntityExportHand
     protected static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";
     protected static final String DATE_FORMAT = "yyyy-MM-dd";
 
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
     private final String rootTag;
     private boolean prettyPrint = false;
 
@@ -418,7 +420,7 @@ public abstract class AbstractXmlEntityHandler<T> implements XmlEntityExportHand
                         this.parent.xml.append('\n');
                     }
                 }
-                this.parent.xml.append(this.toXml());
+                this.parent.xml.append(this.xml); // no intermediate string
                 this.parent.hasTextOrTag = true;
                 return this.parent;
             }
@@ -485,9 +487,15 @@ public abstract class AbstractXmlEntityHandler<T> implements XmlEntityExportHand
     protected void handleInternal(final Tag tag,
                                   final OutputStreamWriter writer,
                                   final Map<String, Integer> entityCount) throws Exception {
-        final String xmlChunk = tag.toXml();
-        if (xmlChunk != null) {
-            write(writer, xmlChunk);
+        final StringBuilder xmlChunk = tag.xml;
+        if (xmlChunk.length() > 0) {
+            // copy chars directly from the builder to avoid creating string for large elements
+            final char[] buffer = new char[Math.min(xmlChunk.length(), WRITE_BUFFER_SIZE)];
+            for (int start = 0; start < xmlChunk.length(); start += buffer.length) {
+                final int end = Math.min(start + buffer.length, xmlChunk.length());
+                xmlChunk.getChars(start, end, buffer, 0);
+                writer.write(buffer, 0, end - start);
+            }
             count(entityCount, tag.name);
         }
     }
@@ -35,6 +35,8 @@ import org.yes.cart.service.async.JobStatusListener;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -82,23 +84,44 @@ public class XmlFastBulkExportServiceImpl extends AbstractExportService<XmlExpor
             return;
         }
 
-        final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(new File(fileToExport)), StandardCharsets.UTF_8);
-        ResultsIterator<Object> results = null;
+        final OutputStream out = openExportStream(fileToExport);
+        final OutputStreamWriter writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
         try {
 
             handler.startXml(writer);
 
             final Map<String, Integer> counts = new ConcurrentHashMap<>();
 
-            results = getExistingEntities(xmlExportDescriptor, xmlExportDescriptor.getSelectCmd(), null, null);
-            while (results.hasNext()) {
-                final Object entity = results.next();
-                final XmlExportTuple tuple = new XmlExportTupleImpl(entity);
+            final LookUpQuery query = getQuery(xmlExportDescriptor, xmlExportDescriptor.getSelectCmd(), null, null);
+            final List<ExportShard> shards = createShards(statusListener, genericDAO, query);
 
-                handler.handle(statusListener, xmlExportDescriptor, tuple, valueDataAdapter, fileToExport, writer, counts);
+            // shards write to underlying stream, so header must be flushed first
+            writer.flush();
+            exportShards(statusListener, fileToExport, shards, out, (shard, shardOut) -> {
 
-                releaseEntity(entity);
-            }
+                final Map<String, Integer> shardCounts = new HashMap<>();
+                final OutputStreamWriter shardWriter = new OutputStreamWriter(shardOut, StandardCharsets.UTF_8);
+                final ResultsIterator<Object> results = genericDAO.findByQueryIterator(shard.getQuery().getQueryString(), shard.getQuery().getParameters());
+                try {
+                    while (results.hasNext()) {
+                        final Object entity = results.next();
+                        final XmlExportTuple tuple = new XmlExportTupleImpl(entity);
+
+                        handler.handle(shard.getListener(), xmlExportDescriptor, tuple, valueDataAdapter, fileToExport, shardWriter, shardCounts);
+
+                        releaseEntity(entity);
+                        shard.exported();
+                    }
+                } finally {
+                    results.close();
+                }
+                shardWriter.flush();
+
+                for (final Map.Entry<String, Integer> count : shardCounts.entrySet()) {
+                    counts.merge(count.getKey(), count.getValue(), Integer::sum);
+                }
+
+            });
 
             handler.endXml(writer);
 
@@ -119,16 +142,6 @@ public class XmlFastBulkExportServiceImpl extends AbstractExportService<XmlExpor
                     fileToExport,
                     e.getMessage());
         } finally {
-            try {
-                if (results != null) {
-                    results.close();
-                }
-            } catch (Exception exp) {
-                statusListener.notifyError("cannot close the xml resultset : {} {}",
-                        exp,
-                        fileToExport,
-                        exp.getMessage());
-            }
             try {
                 writer.close();
             } catch (IOException ioe) {
@@ -142,22 +155,21 @@ public class XmlFastBulkExportServiceImpl extends AbstractExportService<XmlExpor
     }
 
     /**
-     * Try to get existing entity for update.
+     * Create export query.
      *
      * @param exportDescriptor  descriptor
      * @param queryTemplate     template to use with tuple columns as parameter values
      * @param masterObject      in case of subexport will be not null, but will be used with flag only
      * @param tuple             data row to get the parameter value for lookup query.
      *
-     * @return existing entity or null if not found
+     * @return export query
      */
-    private ResultsIterator<Object> getExistingEntities(final XmlExportDescriptor exportDescriptor,
-                                                        final String queryTemplate,
-                                                        final Object masterObject,
-                                                        final XmlExportTuple tuple) {
+    private LookUpQuery getQuery(final XmlExportDescriptor exportDescriptor,
+                                 final String queryTemplate,
+                                 final Object masterObject,
+                                 final XmlExportTuple tuple) {
 
-        final LookUpQuery query = columnLookUpQueryParameterStrategy.getQuery(exportDescriptor, masterObject, tuple, valueDataAdapter, queryTemplate);
-        return genericDAO.findByQueryIterator(query.getQueryString(), query.getParameters());
+        return columnLookUpQueryParameterStrategy.getQuery(exportDescriptor, masterObject, tuple, valueDataAdapter, queryTemplate);
 
     }
 
@@ -21,13 +21,13 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.security.access.AccessDeniedException;
 import org.yes.cart.bulkcommon.csv.CsvImpExColumn;
 import org.yes.cart.bulkcommon.csv.CsvValueAdapter;
 import org.yes.cart.bulkcommon.service.ImportService;
 import org.yes.cart.bulkcommon.service.support.query.LookUpQuery;
 import org.yes.cart.bulkcommon.service.support.query.LookUpQueryParameterStrategy;
-import org.yes.cart.bulkimport.csv.CsvFileReader;
 import org.yes.cart.bulkimport.csv.CsvImportColumn;
 import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
 import org.yes.cart.bulkimport.csv.CsvImportTuple;
@@ -43,7 +43,6 @@ import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.federation.FederationFacade;
 import org.yes.cart.utils.MessageFormatUtils;
 
-import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.math.BigDecimal;
 import java.util.*;
@@ -73,6 +72,13 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
     private LookUpQueryParameterStrategy<CsvImportDescriptor, CsvImportTuple, CsvValueAdapter> columnLookUpQueryParameterStrategy;
     private EntityCacheKeyStrategy cacheKey;
 
+    private static final long THROUGHPUT_PING_ROWS = 1000L;
+
+    private TaskExecutor pipelineReaderExecutor;
+    private TaskExecutor pipelineWorkerExecutor;
+    private int pipelineQueueSize = 1000;
+    private int commitSize = 1;
+
     public CsvBulkImportServiceImpl(final FederationFacade federationFacade) {
         super(federationFacade);
     }
@@ -87,47 +93,113 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                                            final CsvImportDescriptor importDescriptor) throws Exception {
 
 
-        final CsvFileReader csvFileReader = new CsvFileReaderImpl();
+        final CsvImportDescriptor.ImportMode mode = importDescriptor.getMode();
+        statusListener.notifyMessage("import file : {} in {} mode", fileToImport.getAbsolutePath(), mode);
 
-        try {
+        final Map<String, Pair<Object, Boolean>> entityCache = new HashMap<>();
+        // plans reference descriptor columns, so these only live for the duration of the file
+        final Map<CsvImportDescriptor, CsvImportAccessorPlan> plans = new IdentityHashMap<>();
 
+        final CsvImportAccessorPlan plan = getAccessorPlan(importDescriptor, plans); // compile before first row
+        final boolean merge = mode != CsvImportDescriptor.ImportMode.DELETE && importDescriptor.getInsertCmd() == null;
 
-            final Map<String, Pair<Object, Boolean>> entityCache = new HashMap<>();
+        final CsvImportPipeline pipeline = new CsvImportPipeline(
+                fileToImport,
+                importDescriptor,
+                merge ? plan.getFieldColumns() : Collections.emptyList(),
+                valueDataAdapter,
+                pipelineReaderExecutor,
+                pipelineWorkerExecutor,
+                pipelineQueueSize
+        );
 
-            final CsvImportDescriptor.ImportMode mode = importDescriptor.getMode();
-            statusListener.notifyMessage("import file : {} in {} mode", fileToImport.getAbsolutePath(), mode);
+        try {
 
-            final String filename = fileToImport.getName();
-            long lineNumber = 0;
+            pipeline.start();
 
-            csvFileReader.open(
-                    fileToImport.getAbsolutePath(),
-                    importDescriptor.getImportFileDescriptor().getColumnDelimiter(),
-                    importDescriptor.getImportFileDescriptor().getTextQualifier(),
-                    importDescriptor.getImportFileDescriptor().getFileEncoding(),
-                    importDescriptor.getImportFileDescriptor().isIgnoreFirstLine());
+            long written = 0L;
+            int uncommitted = 0;
+            CsvImportTuple chunkStart = null;
+            CsvImportTuple chunkEnd = null;
 
-            String[] line;
-            while ((line = csvFileReader.readLine()) != null) {
-                final CsvImportTuple tuple = new CsvImportTupleImpl(filename, lineNumber++, line);
+            CsvImportTuple tuple;
+            while ((tuple = pipeline.next()) != null) {
+                if (chunkStart == null) {
+                    chunkStart = tuple;
+                }
+                chunkEnd = tuple;
                 if (mode == CsvImportDescriptor.ImportMode.DELETE) {
                     doImportDelete(statusListener, tuple, importDescriptorName, importDescriptor);
                 } else {
-                    doImportMerge(statusListener, tuple, importDescriptorName, importDescriptor, null, entityCache);
+                    doImportMerge(statusListener, tuple, importDescriptorName, importDescriptor, null, entityCache, plans);
+                }
+                if (++uncommitted >= commitSize) {
+                    flushChunk(statusListener, importDescriptorName, chunkStart, chunkEnd);
+                    uncommitted = 0;
+                    chunkStart = null;
                 }
+                if (++written % THROUGHPUT_PING_ROWS == 0L) {
+                    statusListener.notifyPing("Throughput: read {} ({}/s), converted {} ({}/s), written {} ({}/s)",
+                            throughput(pipeline, written));
+                }
+            }
+            if (uncommitted > 0) {
+                flushChunk(statusListener, importDescriptorName, chunkStart, chunkEnd);
             }
+
             statusListener.notifyMessage("total data lines : {} ({})",
-                    (importDescriptor.getImportFileDescriptor().isIgnoreFirstLine() ? csvFileReader.getRowsRead() - 1 : csvFileReader.getRowsRead()),
+                    (importDescriptor.getImportFileDescriptor().isIgnoreFirstLine() ? pipeline.getRowsRead() - 1 : pipeline.getRowsRead()),
                     fileToImport.getAbsolutePath());
+            if (pipeline.isPipelined()) {
+                statusListener.notifyMessage("Throughput: read {} ({}/s), converted {} ({}/s), written {} ({}/s)",
+                        throughput(pipeline, written));
+            }
 
         } finally {
 
-            csvFileReader.close();
+            pipeline.close();
 
         }
 
     }
 
+    /*
+     * Flush rows of current chunk. Rows are written to database only at this point, so errors (e.g. constraint
+     * violations) are reported for the whole chunk.
+     */
+    void flushChunk(final JobStatusListener statusListener,
+                    final String csvImportDescriptorName,
+                    final CsvImportTuple chunkStart,
+                    final CsvImportTuple chunkEnd) throws Exception {
+        try {
+
+            genericDAO.flushClear();
+
+        } catch (Exception e) {
+
+            statusListener.notifyError(
+                    "during flush of rows : {} - {} \ndescriptor {} \nerror {}",
+                    e,
+                    chunkStart.getSourceId(),
+                    chunkEnd.getSourceId(),
+                    csvImportDescriptorName,
+                    e.getMessage()
+                );
+            genericDAO.clear();
+
+            throw e;
+        }
+    }
+
+    private Object[] throughput(final CsvImportPipeline pipeline, final long written) {
+        final long elapsed = Math.max(pipeline.getElapsedMs(), 1L);
+        return new Object[] {
+                pipeline.getRead(), pipeline.getRead() * 1000L / elapsed,
+                pipeline.getConverted(), pipeline.getConverted() * 1000L / elapsed,
+                written, written * 1000L / elapsed
+        };
+    }
+
     /*
      * Delete single line.
      */
@@ -165,8 +237,6 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                         validateAccessBeforeUpdate(object, descriptor.getEntityTypeClass());
 
                         genericDAO.delete(object);
-
-                        genericDAO.flushClear();
                     }
 
                 }
@@ -213,7 +283,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                        final String csvImportDescriptorName,
                        final CsvImportDescriptor descriptor,
                        final Object masterObject,
-                       final Map<String, Pair<Object, Boolean>> entityCache) throws Exception {
+                       final Map<String, Pair<Object, Boolean>> entityCache,
+                       final Map<CsvImportDescriptor, CsvImportAccessorPlan> plans) throws Exception {
         Object object = null;
         try {
 
@@ -255,8 +326,9 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
 
                 } else {
 
-                    final boolean valueChanged = fillEntityFields(tuple, object, insert, descriptor.getColumns(CsvImpExColumn.FIELD));
-                    final Boolean fkChanged = fillEntityForeignKeys(tuple, object, insert, descriptor.getColumns(CsvImpExColumn.FK_FIELD), masterObject, descriptor, entityCache);
+                    final CsvImportAccessorPlan plan = getAccessorPlan(descriptor, plans);
+                    final boolean valueChanged = fillEntityFields(tuple, object, insert, plan.getFields());
+                    final Boolean fkChanged = fillEntityForeignKeys(tuple, object, insert, plan.getForeignKeys(), masterObject, descriptor, entityCache);
 
                     if (fkChanged == null) {
 
@@ -283,9 +355,9 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                         }
 
                         performSubImport(statusListener, tuple, csvImportDescriptorName, descriptor, object,
-                                descriptor.getColumns(CsvImpExColumn.SLAVE_INLINE_FIELD), entityCache);
+                                descriptor.getColumns(CsvImpExColumn.SLAVE_INLINE_FIELD), entityCache, plans);
                         performSubImport(statusListener, tuple, csvImportDescriptorName, descriptor, object,
-                                descriptor.getColumns(CsvImpExColumn.SLAVE_TUPLE_FIELD), entityCache);
+                                descriptor.getColumns(CsvImpExColumn.SLAVE_TUPLE_FIELD), entityCache, plans);
 
                         if (masterObject == null) {
                             // No need to validate sub imports
@@ -293,8 +365,6 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                             validateAccessAfterUpdate(object, descriptor.getEntityTypeClass());
                         }
 
-                        genericDAO.flushClear();
-
                     }
                 }
 
@@ -360,7 +430,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                                   final CsvImportDescriptor importDescriptor,
                                   final Object object,
                                   final Collection<CsvImportColumn> slaves,
-                                  final Map<String, Pair<Object, Boolean>> entityCache) throws Exception {
+                                  final Map<String, Pair<Object, Boolean>> entityCache,
+                                  final Map<CsvImportDescriptor, CsvImportAccessorPlan> plans) throws Exception {
         for (CsvImportColumn slaveTable : slaves) {
             final List<CsvImportTuple> subTuples = tuple.getSubTuples(importDescriptor, slaveTable, valueDataAdapter);
             CsvImportDescriptor innerCsvImportDescriptor = slaveTable.getDescriptor();
@@ -370,19 +441,33 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                         csvImportDescriptorName,
                         innerCsvImportDescriptor,
                         object,
-                        entityCache);
+                        entityCache,
+                        plans);
             }
         }
     }
 
 
+    /**
+     * Get accessor plan for given descriptor, which is compiled on first access.
+     *
+     * @param descriptor import descriptor
+     * @param plans      plans compiled for current file
+     *
+     * @return accessor plan
+     */
+    CsvImportAccessorPlan getAccessorPlan(final CsvImportDescriptor descriptor,
+                                          final Map<CsvImportDescriptor, CsvImportAccessorPlan> plans) {
+        return plans.computeIfAbsent(descriptor, CsvImportAccessorPlan::new);
+    }
+
     /**
      * Fill the given entity object with line information using import column descriptions.
      *
      * @param tuple         given csv line
      * @param object        entity object
      * @param insert        entity insert (true), update (false)
-     * @param importColumns particular type column collection
+     * @param importColumns particular type column accessors
      *
      * @return true if this tuple has changes, false otherwise
      *
@@ -390,74 +475,56 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
      *                   InvocationTargetException,
      *                   IllegalAccessException)
      */
-    private boolean fillEntityFields(final CsvImportTuple tuple,
-                                     final Object object,
-                                     final boolean insert,
-                                     final Collection<CsvImportColumn> importColumns) throws Exception {
-
-        final Class clz = object.getClass();
-
-        PropertyDescriptor propertyDescriptor = null;
+    boolean fillEntityFields(final CsvImportTuple tuple,
+                             final Object object,
+                             final boolean insert,
+                             final List<CsvImportAccessorPlan.ColumnAccessor> importColumns) throws Exception {
 
         boolean updated = false;
 
-        for (CsvImportColumn importColumn : importColumns) {
+        for (final CsvImportAccessorPlan.ColumnAccessor columnAccessor : importColumns) {
+            final CsvImportColumn importColumn = columnAccessor.getColumn();
             try {
-                if (StringUtils.isNotBlank(importColumn.getName())) { //can be just lookup query
-
-                    if (importColumn.isInsertOnly() && !insert) {
-                        continue; // skip update since this is insert only
-                    }
-                    if (importColumn.isUpdateOnly() && insert) {
-                        continue; // skip insert since this is update only
-                    }
-
-                    Object writeObject = object;
 
-                    if (importColumn.getName().indexOf('.') == -1) {
-                        // direct property
-                        propertyDescriptor = new PropertyDescriptor(importColumn.getName(), clz);
-                    } else {
-                        // object path
-                        final String[] chain = importColumn.getName().split("\\.");
-                        for (int i = 0; i < chain.length - 1; i++) {
-                            propertyDescriptor = new PropertyDescriptor(chain[i], writeObject.getClass());
-                            writeObject = propertyDescriptor.getReadMethod().invoke(writeObject);
-                        }
-                        propertyDescriptor = new PropertyDescriptor(chain[chain.length - 1], writeObject.getClass());
-                    }
+                if (importColumn.isInsertOnly() && !insert) {
+                    continue; // skip update since this is insert only
+                }
+                if (importColumn.isUpdateOnly() && insert) {
+                    continue; // skip insert since this is update only
+                }
 
+                final Object writeObject = columnAccessor.resolveWriteObject(object);
+                final CsvImportAccessorPlan.PropertyAccessor property = columnAccessor.resolveProperty(writeObject);
 
-                    Object singleObjectValue = tuple.getColumnValue(importColumn, valueDataAdapter);
-                    if (importColumn.getLanguage() != null) {
-                        final I18NModel current = (I18NModel) propertyDescriptor.getReadMethod().invoke(object);
-                        final I18NModel model = current == null ? new StringI18NModel() : current.copy();
-                        model.putValue(importColumn.getLanguage(),
-                                singleObjectValue instanceof String && StringUtils.isNotBlank((String) singleObjectValue) ? (String) singleObjectValue : null);
+                Object singleObjectValue = tuple.getColumnValue(importColumn, valueDataAdapter);
+                if (importColumn.getLanguage() != null) {
+                    final I18NModel current = (I18NModel) property.get(writeObject);
+                    final I18NModel model = current == null ? new StringI18NModel() : current.copy();
+                    model.putValue(importColumn.getLanguage(),
+                            singleObjectValue instanceof String && StringUtils.isNotBlank((String) singleObjectValue) ? (String) singleObjectValue : null);
 
-                        singleObjectValue = model.getAllValues().size() > 0 ? model : null;
-                    }
-                    if (singleObjectValue != null && !propertyDescriptor.getPropertyType().isAssignableFrom(singleObjectValue.getClass())) {
-                        // if we have mismatch try on the fly conversion - this happens if someone omits <data-type> for non String values
-                        singleObjectValue =
-                                extendedConversionService.convert(
-                                        singleObjectValue,
-                                        TypeDescriptor.valueOf(singleObjectValue.getClass()),
-                                        TypeDescriptor.valueOf((propertyDescriptor.getPropertyType())
-                                    ));
-                    }
+                    singleObjectValue = model.getAllValues().size() > 0 ? model : null;
+                }
+                if (singleObjectValue != null && !property.getPropertyType().isAssignableFrom(singleObjectValue.getClass())) {
+                    // if we have mismatch try on the fly conversion - this happens if someone omits <data-type> for non String values
+                    singleObjectValue =
+                            extendedConversionService.convert(
+                                    singleObjectValue,
+                                    TypeDescriptor.valueOf(singleObjectValue.getClass()),
+                                    property.getTypeDescriptor()
+                            );
+                }
 
-                    final Object current = propertyDescriptor.getReadMethod().invoke(writeObject);
+                final Object current = property.get(writeObject);
 
-                    boolean valueChanged = isValueChanged(singleObjectValue, current);
+                boolean valueChanged = isValueChanged(singleObjectValue, current);
 
-                    if (valueChanged) {
-                        propertyDescriptor.getWriteMethod().invoke(writeObject, singleObjectValue);
-                    }
+                if (valueChanged) {
+                    property.set(writeObject, singleObjectValue);
+                }
 
-                    updated = updated || valueChanged;
+                updated = updated || valueChanged;
 
-                }
             } catch (Exception exp) {
 
                 final String propName = importColumn.getName();
@@ -515,7 +582,7 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
      * @param tuple            given csv line
      * @param object           entity object
      * @param insert           entity insert (true), update (false)
-     * @param importColumns    particular type column collection
+     * @param importColumns    particular type column accessors
      * @param masterObject     master object , that set from main import in case of sub import
      * @param importDescriptor import descriptor
      * @param entityCache      runtime cache
@@ -529,19 +596,20 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
     private Boolean fillEntityForeignKeys(final CsvImportTuple tuple,
                                           final Object object,
                                           final boolean insert,
-                                          final Collection<CsvImportColumn> importColumns,
+                                          final List<CsvImportAccessorPlan.ColumnAccessor> importColumns,
                                           final Object masterObject,
                                           final CsvImportDescriptor importDescriptor,
                                           final Map<String, Pair<Object, Boolean>> entityCache) throws Exception {
 
         CsvImportColumn currentColumn = null;
-        final Class clz = object.getClass();
         Object singleObjectValue = null;
         boolean updated = false;
-        PropertyDescriptor propertyDescriptor = null;
+        CsvImportAccessorPlan.PropertyAccessor property = null;
 
         try {
-            for (CsvImportColumn importColumn : importColumns) {
+            for (final CsvImportAccessorPlan.ColumnAccessor columnAccessor : importColumns) {
+
+                final CsvImportColumn importColumn = columnAccessor.getColumn();
 
                 if (importColumn.isInsertOnly() && !insert) {
                     continue; // skip update since this is insert only
@@ -564,13 +632,13 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
                         throw new Exception("Unable to resolve entity for tuple " + tuple.getSourceId() + " column + " + importColumn);
                     }
                 }
-                propertyDescriptor = new PropertyDescriptor(importColumn.getName(), clz);
-                final Object oldValue = propertyDescriptor.getReadMethod().invoke(object);
+                property = columnAccessor.resolveProperty(object);
+                final Object oldValue = property.get(object);
 
                 boolean valueChanged = isValueChanged(singleObjectValue, oldValue);
 
                 if (valueChanged) {
-                    propertyDescriptor.getWriteMethod().invoke(object, singleObjectValue);
+                    property.set(object, singleObjectValue);
                 }
 
                 updated = updated || valueChanged;
@@ -581,8 +649,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
 
         } catch (Exception exp) {
 
-            final String propName = propertyDescriptor != null ? propertyDescriptor.getName() : null;
-            final String propType = propertyDescriptor != null ? propertyDescriptor.getPropertyType().getName() : null;
+            final String propName = property != null ? property.getName() : null;
+            final String propType = property != null ? property.getPropertyType().getName() : null;
 
             throw new Exception(MessageFormatUtils.format(
                     "Failed to process property name '{}' type '{}' object is '{}' caused by column '{}' with value '{}'",
@@ -764,4 +832,41 @@ public class CsvBulkImportServiceImpl extends AbstractImportService<CsvImportDes
     }
 
 
-}
\ No newline at end of file
+    /**
+     * Spring IoC.
+     *
+     * @param pipelineReaderExecutor executor for reader stage, if not set file is read in import thread
+     */
+    public void setPipelineReaderExecutor(final TaskExecutor pipelineReaderExecutor) {
+        this.pipelineReaderExecutor = pipelineReaderExecutor;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param pipelineWorkerExecutor executor for value extraction and conversion stage, if not set values are
+     *                               extracted by writer
+     */
+    public void setPipelineWorkerExecutor(final TaskExecutor pipelineWorkerExecutor) {
+        this.pipelineWorkerExecutor = pipelineWorkerExecutor;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param pipelineQueueSize max number of rows read ahead of writer
+     */
+    public void setPipelineQueueSize(final int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param commitSize number of rows after which changes are flushed and session is cleared (default is 1)
+     */
+    public void setCommitSize(final int commitSize) {
+        this.commitSize = Math.max(commitSize, 1);
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.csv.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.core.convert.TypeDescriptor;
+import org.yes.cart.bulkcommon.csv.CsvImpExColumn;
+import org.yes.cart.bulkimport.csv.CsvImportColumn;
+import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accessor plan for import descriptor, which is compiled once per descriptor so that per row
+ * work is limited to value conversion and invocation of getters and setters.
+ * <p/>
+ * Column names are split into property chains up front and each property is resolved into
+ * {@link MethodHandle} getter and setter on first use for given runtime class (entities may be
+ * proxies or different implementations of descriptor entity type). Resolved accessors are shared
+ * by all plans and are held by {@link ClassValue}, so these do not prevent classes from being unloaded.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:52
+ */
+public class CsvImportAccessorPlan {
+
+    private static final ClassValue<Map<String, PropertyAccessor>> ACCESSORS = new ClassValue<Map<String, PropertyAccessor>>() {
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final List<ColumnAccessor> fields;
+    private final List<CsvImportColumn> fieldColumns;
+    private final List<ColumnAccessor> foreignKeys;
+
+    /**
+     * Compile accessor plan for given descriptor.
+     *
+     * @param descriptor import descriptor
+     */
+    public CsvImportAccessorPlan(final CsvImportDescriptor descriptor) {
+        this.fields = compile(descriptor.getColumns(CsvImpExColumn.FIELD));
+        final List<CsvImportColumn> fieldColumns = new ArrayList<>(this.fields.size());
+        for (final ColumnAccessor field : this.fields) {
+            fieldColumns.add(field.getColumn());
+        }
+        this.fieldColumns = Collections.unmodifiableList(fieldColumns);
+        this.foreignKeys = compile(descriptor.getColumns(CsvImpExColumn.FK_FIELD));
+    }
+
+    private static List<ColumnAccessor> compile(final Collection<CsvImportColumn> columns) {
+        final List<ColumnAccessor> compiled = new ArrayList<>(columns.size());
+        for (final CsvImportColumn column : columns) {
+            if (StringUtils.isNotBlank(column.getName())) { // can be just lookup query
+                compiled.add(new ColumnAccessor(column));
+            }
+        }
+        return Collections.unmodifiableList(compiled);
+    }
+
+    /**
+     * @return accessors for {@link CsvImpExColumn#FIELD} columns that have a name
+     */
+    public List<ColumnAccessor> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return columns of {@link #getFields()}
+     */
+    public List<CsvImportColumn> getFieldColumns() {
+        return fieldColumns;
+    }
+
+    /**
+     * @return accessors for {@link CsvImpExColumn#FK_FIELD} columns that have a name
+     */
+    public List<ColumnAccessor> getForeignKeys() {
+        return foreignKeys;
+    }
+
+    /**
+     * Resolve accessor for given class and property.
+     *
+     * @param clz      class
+     * @param property property name
+     *
+     * @return accessor
+     *
+     * @throws IntrospectionException if property does not exist
+     * @throws IllegalAccessException if accessor methods are not accessible
+     */
+    static PropertyAccessor accessor(final Class clz, final String property) throws IntrospectionException, IllegalAccessException {
+
+        final Map<String, PropertyAccessor> byName = ACCESSORS.get(clz);
+        PropertyAccessor accessor = byName.get(property);
+        if (accessor == null) {
+            accessor = new PropertyAccessor(clz, new PropertyDescriptor(property, clz));
+            byName.put(property, accessor);
+        }
+        return accessor;
+
+    }
+
+    /**
+     * Column with property chain resolved.
+     */
+    public static final class ColumnAccessor {
+
+        private final CsvImportColumn column;
+        private final String[] chain;
+
+        private final PropertyAccessor[] resolved;
+
+        private ColumnAccessor(final CsvImportColumn column) {
+            this.column = column;
+            this.chain = column.getName().indexOf('.') == -1 ? new String[] { column.getName() } : column.getName().split("\\.");
+            this.resolved = new PropertyAccessor[this.chain.length];
+        }
+
+        /**
+         * @return import column
+         */
+        public CsvImportColumn getColumn() {
+            return column;
+        }
+
+        /**
+         * Walk the property chain and return the object that owns last property.
+         *
+         * @param object root object
+         *
+         * @return object to write to
+         *
+         * @throws Exception reflection errors
+         */
+        public Object resolveWriteObject(final Object object) throws Exception {
+            Object writeObject = object;
+            for (int i = 0; i < chain.length - 1; i++) {
+                writeObject = step(i, writeObject.getClass()).get(writeObject);
+            }
+            return writeObject;
+        }
+
+        /**
+         * @param writeObject object returned by {@link #resolveWriteObject(Object)}
+         *
+         * @return accessor for last property in chain
+         *
+         * @throws Exception reflection errors
+         */
+        public PropertyAccessor resolveProperty(final Object writeObject) throws Exception {
+            return step(chain.length - 1, writeObject.getClass());
+        }
+
+        private PropertyAccessor step(final int idx, final Class clz) throws Exception {
+            // monomorphic cache, in most cases all rows have the same class at each step
+            PropertyAccessor accessor = resolved[idx];
+            if (accessor == null || accessor.owner != clz) {
+                accessor = accessor(clz, chain[idx]);
+                resolved[idx] = accessor;
+            }
+            return accessor;
+        }
+
+    }
+
+    /**
+     * Property getter and setter.
+     */
+    public static final class PropertyAccessor {
+
+        private final Class owner;
+        private final String name;
+        private final Class propertyType;
+        private final TypeDescriptor typeDescriptor;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private PropertyAccessor(final Class owner, final PropertyDescriptor descriptor) throws IllegalAccessException {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            this.owner = owner;
+            this.name = descriptor.getName();
+            this.propertyType = descriptor.getPropertyType();
+            this.typeDescriptor = TypeDescriptor.valueOf(this.propertyType);
+            this.getter = descriptor.getReadMethod() != null ? lookup.unreflect(descriptor.getReadMethod()).asType(GETTER) : null;
+            this.setter = descriptor.getWriteMethod() != null ? lookup.unreflect(descriptor.getWriteMethod()).asType(SETTER) : null;
+        }
+
+        /**
+         * @return property name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return property type
+         */
+        public Class getPropertyType() {
+            return propertyType;
+        }
+
+        /**
+         * @return property type descriptor (conversion target)
+         */
+        public TypeDescriptor getTypeDescriptor() {
+            return typeDescriptor;
+        }
+
+        /**
+         * @param object object
+         *
+         * @return property value
+         *
+         * @throws Exception reflection errors
+         */
+        public Object get(final Object object) throws Exception {
+            if (getter == null) {
+                throw new IllegalAccessException("Property '" + name + "' is not readable");
+            }
+            try {
+                return (Object) getter.invokeExact(object);
+            } catch (Exception | Error exp) {
+                throw exp;
+            } catch (Throwable trw) {
+                throw new Exception(trw.getMessage(), trw);
+            }
+        }
+
+        /**
+         * @param object object
+         * @param value  property value
+         *
+         * @throws Exception reflection errors
+         */
+        public void set(final Object object, final Object value) throws Exception {
+            if (setter == null) {
+                throw new IllegalAccessException("Property '" + name + "' is not writable");
+            }
+            try {
+                setter.invokeExact(object, value);
+            } catch (Exception | Error exp) {
+                throw exp;
+            } catch (Throwable trw) {
+                throw new Exception(trw.getMessage(), trw);
+            }
+        }
+
+    }
+
+}
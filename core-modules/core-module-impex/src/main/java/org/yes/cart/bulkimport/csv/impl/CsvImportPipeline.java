@@ -0,0 +1,282 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.csv.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.yes.cart.bulkcommon.csv.CsvValueAdapter;
+import org.yes.cart.bulkimport.csv.CsvFileReader;
+import org.yes.cart.bulkimport.csv.CsvImportColumn;
+import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
+import org.yes.cart.bulkimport.csv.CsvImportTuple;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged reading of CSV file for import.
+ * <p/>
+ * Reader stage parses file on reader executor and worker stage extracts and converts column values
+ * (see {@link CsvImportTupleImpl#precompute(Collection, CsvValueAdapter)}) on worker executor. Tuples
+ * are handed over to the writer (import transaction thread, which does look ups and persistence) via
+ * bounded queue in the order of the file, so rows are always written in file order.
+ * <p/>
+ * If reader executor is not set or is saturated file is read in writer thread as it was done
+ * before stages were introduced.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:58
+ */
+public class CsvImportPipeline implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CsvImportPipeline.class);
+
+    private static final Future<CsvImportTuple> END = CompletableFuture.completedFuture(null);
+
+    private final File file;
+    private final CsvImportDescriptor descriptor;
+    private final Collection<CsvImportColumn> precompute;
+    private final CsvValueAdapter valueAdapter;
+    private final TaskExecutor readerExecutor;
+    private final TaskExecutor workerExecutor;
+
+    private final BlockingQueue<Future<CsvImportTuple>> queue;
+    private final CsvFileReader csvFileReader = new CsvFileReaderImpl();
+
+    private final AtomicLong read = new AtomicLong(0L);
+    private final AtomicLong converted = new AtomicLong(0L);
+
+    private volatile boolean closed = false;
+    private boolean pipelined = false;
+    private boolean finished = false;
+    private long lineNumber = 0L;
+    private long started;
+
+    /**
+     * Construct pipeline for single file.
+     *
+     * @param file           file to import
+     * @param descriptor     import descriptor
+     * @param precompute     columns, which values should be extracted by worker stage
+     * @param valueAdapter   value adapter for precomputed columns
+     * @param readerExecutor executor for reader stage (optional)
+     * @param workerExecutor executor for worker stage (optional)
+     * @param queueSize      max number of tuples read ahead of writer
+     */
+    public CsvImportPipeline(final File file,
+                             final CsvImportDescriptor descriptor,
+                             final Collection<CsvImportColumn> precompute,
+                             final CsvValueAdapter valueAdapter,
+                             final TaskExecutor readerExecutor,
+                             final TaskExecutor workerExecutor,
+                             final int queueSize) {
+        this.file = file;
+        this.descriptor = descriptor;
+        this.precompute = precompute;
+        this.valueAdapter = valueAdapter;
+        this.readerExecutor = readerExecutor;
+        this.workerExecutor = workerExecutor;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+    }
+
+    /**
+     * Open file and start reader stage.
+     *
+     * @throws IOException if file cannot be opened
+     */
+    public void start() throws IOException {
+
+        csvFileReader.open(
+                file.getAbsolutePath(),
+                descriptor.getImportFileDescriptor().getColumnDelimiter(),
+                descriptor.getImportFileDescriptor().getTextQualifier(),
+                descriptor.getImportFileDescriptor().getFileEncoding(),
+                descriptor.getImportFileDescriptor().isIgnoreFirstLine());
+
+        started = System.currentTimeMillis();
+
+        if (readerExecutor != null) {
+            try {
+                readerExecutor.execute(this::readAll);
+                pipelined = true;
+            } catch (RejectedExecutionException ree) {
+                LOG.warn("Reader stage is saturated, reading {} in import thread", file.getAbsolutePath());
+            }
+        }
+
+    }
+
+    /**
+     * Next tuple in file order.
+     *
+     * @return next tuple or null if end of file is reached
+     *
+     * @throws Exception if file cannot be read
+     */
+    public CsvImportTuple next() throws Exception {
+
+        if (finished) {
+            return null;
+        }
+
+        if (!pipelined) {
+            final String[] line = csvFileReader.readLine();
+            if (line == null) {
+                finished = true;
+                return null;
+            }
+            read.incrementAndGet();
+            return new CsvImportTupleImpl(file.getName(), lineNumber++, line);
+        }
+
+        final Future<CsvImportTuple> next = queue.take();
+        try {
+            final CsvImportTuple tuple = next.get();
+            finished = tuple == null;
+            return tuple;
+        } catch (ExecutionException ee) {
+            finished = true;
+            if (ee.getCause() instanceof Exception) {
+                throw (Exception) ee.getCause();
+            }
+            throw ee;
+        }
+
+    }
+
+    private void readAll() {
+
+        try {
+
+            String[] line;
+            while (!closed && (line = csvFileReader.readLine()) != null) {
+                final CsvImportTupleImpl tuple = new CsvImportTupleImpl(file.getName(), lineNumber++, line);
+                read.incrementAndGet();
+                put(convert(tuple));
+            }
+            put(END);
+
+        } catch (Exception exp) {
+
+            final CompletableFuture<CsvImportTuple> failed = new CompletableFuture<>();
+            failed.completeExceptionally(exp);
+            put(failed);
+
+        } finally {
+
+            closeReader();
+
+        }
+
+    }
+
+    private Future<CsvImportTuple> convert(final CsvImportTupleImpl tuple) {
+
+        if (workerExecutor == null || precompute.isEmpty()) {
+            return CompletableFuture.completedFuture(tuple);
+        }
+
+        final CompletableFuture<CsvImportTuple> future = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                tuple.precompute(precompute, valueAdapter);
+                converted.incrementAndGet();
+            } finally {
+                future.complete(tuple);
+            }
+        };
+
+        try {
+            workerExecutor.execute(task);
+        } catch (RejectedExecutionException ree) {
+            task.run(); // workers are saturated, do it in reader
+        }
+        return future;
+
+    }
+
+    private void put(final Future<CsvImportTuple> tuple) {
+        try {
+            while (!closed && !queue.offer(tuple, 100L, TimeUnit.MILLISECONDS)) {
+                // wait for writer to catch up
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeReader() {
+        try {
+            csvFileReader.close();
+        } catch (IOException ioe) {
+            LOG.error("Unable to close " + file.getAbsolutePath() + ", caused by " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * @return rows read from file (see {@link CsvFileReader#getRowsRead()}), only valid once end of file is reached
+     */
+    public int getRowsRead() {
+        return csvFileReader.getRowsRead();
+    }
+
+    /**
+     * @return number of tuples read by reader stage
+     */
+    public long getRead() {
+        return read.get();
+    }
+
+    /**
+     * @return number of tuples converted by worker stage
+     */
+    public long getConverted() {
+        return converted.get();
+    }
+
+    /**
+     * @return time since pipeline was started
+     */
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - started;
+    }
+
+    /**
+     * @return true if reader stage runs in its own thread
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Stop reader stage and release file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear(); // unblock reader
+        if (!pipelined) {
+            closeReader();
+        }
+    }
+
+}
@@ -22,9 +22,7 @@ import org.yes.cart.bulkimport.csv.CsvImportColumn;
 import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
 import org.yes.cart.bulkimport.csv.CsvImportTuple;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * User: denispavlov
@@ -39,6 +37,9 @@ public class CsvImportTupleImpl implements CsvImportTuple {
     private final long lineNumber;
     private final String[] line;
 
+    private CsvValueAdapter precomputedAdapter;
+    private Map<CsvImportColumn, Object> precomputed;
+
     public CsvImportTupleImpl(final String filename, final long lineNumber, final String[] line) {
         this.filename = filename;
         this.lineNumber = lineNumber;
@@ -57,9 +58,36 @@ public class CsvImportTupleImpl implements CsvImportTuple {
         return line;
     }
 
+    /**
+     * Extract and convert values of given columns in advance, so that subsequent {@link #getColumnValue(CsvImportColumn, CsvValueAdapter)}
+     * calls with the same adapter do not need to. Columns that fail to convert are skipped, so that error is raised
+     * when value is actually requested.
+     *
+     * @param columns      columns to extract
+     * @param valueAdapter value adapter
+     */
+    void precompute(final Collection<CsvImportColumn> columns, final CsvValueAdapter valueAdapter) {
+        final Map<CsvImportColumn, Object> values = new IdentityHashMap<>(columns.size() * 2);
+        for (final CsvImportColumn column : columns) {
+            try {
+                values.put(column, getColumnValue(column, valueAdapter));
+            } catch (Exception exp) {
+                // skip, will be reported in context of the row
+            }
+        }
+        this.precomputedAdapter = valueAdapter;
+        this.precomputed = values;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Object getColumnValue(final CsvImportColumn column, final CsvValueAdapter valueAdapter) {
+        if (precomputed != null && valueAdapter == precomputedAdapter) {
+            final Object value = precomputed.get(column);
+            if (value != null || precomputed.containsKey(column)) {
+                return value;
+            }
+        }
         final int colIndex = column.getColumnIndex();
         String rawValue = null;
         if (colIndex > -1 && line != null && colIndex < line.length) {
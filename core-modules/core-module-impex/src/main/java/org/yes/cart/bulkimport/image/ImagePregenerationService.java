@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.image;
+
+import org.yes.cart.service.async.JobStatusAware;
+
+/**
+ * Background generation of resized variants of original images in all allowed sizes, so that
+ * storefront does not need to resize images on first request after import.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:47
+ */
+public interface ImagePregenerationService extends JobStatusAware {
+
+    /**
+     * Enqueue original image for generation of all allowed size variants.
+     *
+     * @param storagePrefix    image name strategy url path (e.g. /imgvault/product/)
+     * @param fileName         original file name
+     * @param code             object code
+     * @param pathToRepository image vault root
+     */
+    void enqueue(String storagePrefix, String fileName, String code, String pathToRepository);
+
+    /**
+     * Start background job that generates variants for all images enqueued so far. Variants that
+     * are newer than original are skipped.
+     *
+     * @return job token (see {@link #getStatus(String)}) or null if nothing is enqueued
+     */
+    String generateEnqueued();
+
+}
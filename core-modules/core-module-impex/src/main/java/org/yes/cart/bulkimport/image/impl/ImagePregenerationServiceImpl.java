@@ -0,0 +1,300 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.image.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.yes.cart.bulkimport.image.ImagePregenerationService;
+import org.yes.cart.service.async.JobStatusListener;
+import org.yes.cart.service.async.SingletonJobRunner;
+import org.yes.cart.service.async.impl.JobStatusListenerImpl;
+import org.yes.cart.service.async.impl.JobStatusListenerWithLoggerImpl;
+import org.yes.cart.service.async.model.JobContext;
+import org.yes.cart.service.async.model.JobStatus;
+import org.yes.cart.service.async.model.impl.JobContextImpl;
+import org.yes.cart.service.domain.ImageService;
+import org.yes.cart.service.media.MediaFileNameStrategy;
+import org.yes.cart.stream.io.IOProvider;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates resized variants on worker executor, with at most {@code parallelism} resizes in progress
+ * at any time so that pre-generation does not starve other tasks. Originals are enqueued by importers
+ * and processed by a single job at a time, progress is reported through job status.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:47
+ */
+public class ImagePregenerationServiceImpl extends SingletonJobRunner implements ImagePregenerationService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImagePregenerationServiceImpl.class);
+
+    private static final String ORIGINALS = "ORIGINALS";
+
+    private final ImageService imageService;
+    private final IOProvider ioProvider;
+    private final TaskExecutor workerExecutor;
+
+    private final Set<Original> enqueued = new LinkedHashSet<>();
+    private final Deque<String> tokens = new ArrayDeque<>();
+
+    private int parallelism = 2;
+    private int reportMaxChars = 80000;
+    private long timeoutMs = 60000L;
+
+    /**
+     * Construct pre-generation service.
+     *
+     * @param jobExecutor    executor for pre-generation job
+     * @param workerExecutor executor for resizing
+     * @param imageService   image service
+     * @param ioProvider     IO provider
+     */
+    public ImagePregenerationServiceImpl(final TaskExecutor jobExecutor,
+                                         final TaskExecutor workerExecutor,
+                                         final ImageService imageService,
+                                         final IOProvider ioProvider) {
+        super(jobExecutor);
+        this.workerExecutor = workerExecutor;
+        this.imageService = imageService;
+        this.ioProvider = ioProvider;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void enqueue(final String storagePrefix, final String fileName, final String code, final String pathToRepository) {
+        synchronized (this.enqueued) {
+            this.enqueued.add(new Original(storagePrefix, fileName, code, pathToRepository));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String generateEnqueued() {
+
+        final List<Original> originals;
+        synchronized (this.enqueued) {
+            forgetFinished();
+            if (this.enqueued.isEmpty()) {
+                return null;
+            }
+            originals = new ArrayList<>(this.enqueued);
+            this.enqueued.clear();
+        }
+
+        final JobStatusListener listener = new JobStatusListenerWithLoggerImpl(new JobStatusListenerImpl(this.reportMaxChars, this.timeoutMs), LOG);
+        final String token = doJob(new JobContextImpl(true, listener, Collections.singletonMap(ORIGINALS, originals)));
+        synchronized (this.enqueued) {
+            this.tokens.add(token);
+        }
+        return token;
+
+    }
+
+    /*
+     * Importers only log the token and never poll status, so finished jobs are polled here for the last time
+     * which releases their listeners in job runner.
+     */
+    private void forgetFinished() {
+        final Iterator<String> it = this.tokens.iterator();
+        while (it.hasNext()) {
+            try {
+                final JobStatus.State state = getStatus(it.next()).getState();
+                if (state == JobStatus.State.FINISHED || state == JobStatus.State.UNDEFINED) {
+                    it.remove();
+                }
+            } catch (IllegalArgumentException iae) {
+                it.remove(); // already polled for the last time
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Runnable createJobRunnable(final JobContext ctx) {
+        return () -> {
+
+            final JobStatusListener listener = ctx.getListener();
+            final List<Original> originals = ctx.getAttribute(ORIGINALS);
+            final List<String> sizes = imageService.getAllowedSizes();
+
+            try {
+                generate(originals, sizes, listener);
+            } catch (Throwable trw) {
+                LOG.error(trw.getMessage(), trw);
+                listener.notifyError("Image variants pre-generation was terminated. Error: {}", trw.getMessage());
+            } finally {
+                listener.notifyCompleted();
+            }
+
+        };
+    }
+
+    private void generate(final List<Original> originals,
+                          final List<String> sizes,
+                          final JobStatusListener listener) throws InterruptedException {
+
+        final int total = originals.size() * sizes.size();
+        listener.notifyMessage("Pre-generating {} image variants for {} images in sizes {}", total, originals.size(), sizes);
+
+        final Semaphore inProgress = new Semaphore(this.parallelism);
+        final AtomicInteger generated = new AtomicInteger(0);
+        final AtomicInteger failed = new AtomicInteger(0);
+        int skipped = 0;
+        int submitted = 0;
+
+        final Map<String, Object> ctx = Collections.emptyMap();
+
+        for (final Original original : originals) {
+
+            final MediaFileNameStrategy strategy = imageService.getImageNameStrategy(original.storagePrefix);
+            final String locale = strategy.resolveLocale(original.fileName);
+            final String originalPath = original.pathToRepository
+                    + strategy.resolveRelativeInternalFileNamePath(original.fileName, original.code, locale);
+
+            for (final String size : sizes) {
+
+                final String width = size.substring(0, size.indexOf('x'));
+                final String height = size.substring(size.indexOf('x') + 1);
+                final String resizedPath = original.pathToRepository
+                        + strategy.resolveRelativeInternalFileNamePath(original.fileName, original.code, locale, width, height);
+
+                if (ioProvider.isNewerThan(resizedPath, originalPath, ctx)) {
+                    skipped++;
+                } else {
+
+                    while (!inProgress.tryAcquire(1, TimeUnit.SECONDS)) {
+                        listener.notifyPing("Processed {} of {} image variants", generated.get() + failed.get() + skipped, total);
+                    }
+
+                    final Runnable resize = () -> {
+                        try {
+                            final byte[] content = imageService.resizeImage(originalPath, resizedPath, width, height);
+                            if (content.length > 0 && ioProvider.isNewerThan(resizedPath, originalPath, ctx)) {
+                                generated.incrementAndGet();
+                            } else {
+                                // resize service serves original if resize times out, so only count stored variants
+                                failed.incrementAndGet();
+                            }
+                        } catch (Exception exp) {
+                            LOG.error("Unable to pre-generate " + resizedPath + ", caused by " + exp.getMessage(), exp);
+                            failed.incrementAndGet();
+                        } finally {
+                            inProgress.release();
+                        }
+                    };
+
+                    try {
+                        this.workerExecutor.execute(resize);
+                    } catch (RejectedExecutionException ree) {
+                        // worker pool is shared and saturated, so do this one in job thread
+                        resize.run();
+                    }
+                    submitted++;
+
+                }
+
+                listener.notifyPing("Processed {} of {} image variants", generated.get() + failed.get() + skipped, total);
+
+            }
+
+        }
+
+        // wait for last resizes
+        while (!inProgress.tryAcquire(this.parallelism, 1, TimeUnit.SECONDS)) {
+            listener.notifyPing("Processed {} of {} image variants", generated.get() + failed.get() + skipped, total);
+        }
+        inProgress.release(this.parallelism);
+
+        if (failed.get() > 0) {
+            listener.notifyWarning("Unable to pre-generate {} of {} image variants, these will be generated on first request", failed.get(), submitted);
+        }
+        listener.notifyMessage("Image variants pre-generation completed: {} generated, {} skipped (up to date), {} failed",
+                generated.get(), skipped, failed.get());
+
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param parallelism max number of resizes in progress at any time
+     */
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param reportMaxChars max size of job report
+     */
+    public void setReportMaxChars(final int reportMaxChars) {
+        this.reportMaxChars = reportMaxChars;
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param timeoutMs job timeout (without progress notifications)
+     */
+    public void setTimeoutMs(final long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    private static final class Original {
+
+        private final String storagePrefix;
+        private final String fileName;
+        private final String code;
+        private final String pathToRepository;
+
+        private Original(final String storagePrefix, final String fileName, final String code, final String pathToRepository) {
+            this.storagePrefix = storagePrefix;
+            this.fileName = fileName;
+            this.code = code;
+            this.pathToRepository = pathToRepository;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Original original = (Original) o;
+            return Objects.equals(storagePrefix, original.storagePrefix)
+                    && Objects.equals(fileName, original.fileName)
+                    && Objects.equals(code, original.code)
+                    && Objects.equals(pathToRepository, original.pathToRepository);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(storagePrefix, fileName, code, pathToRepository);
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import org.apache.commons.io.FileUtils;
 import org.yes.cart.bulkcommon.service.ImportService;
 import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
 import org.yes.cart.bulkimport.image.ImageImportDomainObjectStrategy;
+import org.yes.cart.bulkimport.image.ImagePregenerationService;
 import org.yes.cart.bulkimport.service.impl.ImportFileUtils;
 import org.yes.cart.constants.Constants;
 import org.yes.cart.service.async.JobStatusListener;
@@ -44,6 +45,8 @@ public class ImagesBulkImportServiceImpl implements ImportService {
 
     private final ImageImportDomainObjectStrategy[] strategies;
 
+    private ImagePregenerationService imagePregenerationService;
+
     /**
      * Construct bulk import service.
      *
@@ -89,6 +92,13 @@ public class ImagesBulkImportServiceImpl implements ImportService {
                 statusListener.notifyPing("Processed {} of {} images", ++count, total);
             }
 
+            if (imagePregenerationService != null) {
+                final String token = imagePregenerationService.generateEnqueued();
+                if (token != null) {
+                    statusListener.notifyMessage("started pre-generation of image variants, job token {}", token);
+                }
+            }
+
         }
         return BulkImportResult.OK;
 
@@ -138,6 +148,10 @@ public class ImagesBulkImportServiceImpl implements ImportService {
                         imageVaultRootDirectory);
                 statusListener.notifyMessage("image {} {} added to image repository", file.getAbsolutePath(), newFileName);
 
+                if (imagePregenerationService != null) {
+                    imagePregenerationService.enqueue(strategy.getUrlPath(), newFileName, code, imageVaultRootDirectory);
+                }
+
             } catch (IOException e) {
                 statusListener.notifyError(
                         "can not add {} to image repository. Try to add it manually. Error is {}", e, file.getAbsolutePath(), e.getMessage());
@@ -148,4 +162,13 @@ public class ImagesBulkImportServiceImpl implements ImportService {
 
     }
 
+    /**
+     * Spring IoC setter. If set, resized variants of imported images are generated in background.
+     *
+     * @param imagePregenerationService image variants pre-generation service
+     */
+    public void setImagePregenerationService(final ImagePregenerationService imagePregenerationService) {
+        this.imagePregenerationService = imagePregenerationService;
+    }
+
 }
@@ -23,6 +23,7 @@ import org.yes.cart.bulkcommon.xml.XmlValueAdapter;
 import org.yes.cart.bulkimport.xml.XmlEntityImportHandler;
 import org.yes.cart.bulkimport.xml.XmlImportDescriptor;
 import org.yes.cart.bulkimport.xml.internal.*;
+import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.Seo;
 import org.yes.cart.domain.i18n.I18NModel;
 import org.yes.cart.domain.i18n.impl.StringI18NModel;
@@ -33,6 +34,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * User: denispavlov
@@ -46,6 +48,8 @@ public abstract class AbstractXmlEntityHandler<T, E> implements XmlEntityImportH
     private final String contextNamespace;
     private final String elementName;
 
+    private XmlImportScope importScope;
+
     protected AbstractXmlEntityHandler(final String elementName) {
         this.elementName = elementName;
         this.contextNamespace = "org.yes.cart.bulkimport.xml.internal";
@@ -317,6 +321,83 @@ public abstract class AbstractXmlEntityHandler<T, E> implements XmlEntityImportH
 
 
 
+    /**
+     * Lookup reference data (e.g. shop by code) using import scoped cache.
+     *
+     * @param type   type of object
+     * @param key    code or GUID
+     * @param loader loader to use if object is not cached
+     * @param <V>    type
+     *
+     * @return object or null if it does not exist
+     */
+    protected <V> V lookup(final Class<V> type, final String key, final Supplier<V> loader) {
+        if (importScope == null) {
+            return loader.get();
+        }
+        return importScope.lookup(type, key, loader);
+    }
+
+    /**
+     * Lookup entity saved in current flush batch of import scope, which may not be visible to queries yet.
+     *
+     * @param type   type of object
+     * @param key    key used to save the entity
+     * @param loader loader to use if entity was not saved in current batch
+     * @param <V>    type
+     *
+     * @return entity or null if it does not exist
+     */
+    protected <V> V lookupPending(final Class<V> type, final String key, final Supplier<V> loader) {
+        if (importScope == null) {
+            return loader.get();
+        }
+        return importScope.lookupPending(type, key, loader);
+    }
+
+    /**
+     * Flush changes and evict entity, which may be batched within import scope.
+     *
+     * @param dao    DAO
+     * @param entity entity to evict
+     * @param type   type of entity for {@link #lookupPending(Class, String, Supplier)}
+     * @param key    key of entity for {@link #lookupPending(Class, String, Supplier)}
+     */
+    protected void flushAndEvict(final GenericDAO dao, final Object entity, final Class type, final String key) {
+        if (importScope == null) {
+            dao.flush();
+            dao.evict(entity);
+        } else {
+            importScope.flushAndEvict(dao, entity, type, key);
+        }
+    }
+
+    /**
+     * Flush changes and evict entity, which may be batched within import scope.
+     *
+     * @param dao    DAO
+     * @param entity entity to evict (or null)
+     */
+    protected void flushAndEvict(final GenericDAO dao, final Object entity) {
+        if (importScope == null) {
+            dao.flush();
+            if (entity != null) {
+                dao.evict(entity);
+            }
+        } else {
+            importScope.flushAndEvict(dao, entity);
+        }
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param importScope import scope shared by handlers
+     */
+    public void setImportScope(final XmlImportScope importScope) {
+        this.importScope = importScope;
+    }
+
     /**
      * Convenience method to count entities.
      *
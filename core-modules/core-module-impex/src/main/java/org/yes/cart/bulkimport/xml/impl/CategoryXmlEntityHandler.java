@@ -61,7 +61,7 @@ public class CategoryXmlEntityHandler extends AbstractAttributableXmlEntityHandl
     protected void saveOrUpdate(final JobStatusListener statusListener, final Category domain, final CategoryType xmlType, final EntityImportModeType mode, final Map<String, Integer> entityCount) {
 
         if (xmlType.getParent() != null) {
-            final Category parent = this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getParent().getGuid());
+            final Category parent = lookup(Category.class, xmlType.getParent().getGuid(), () -> this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getParent().getGuid()));
             if (parent != null) {
                 if (domain.getParentId() != parent.getCategoryId()) {
                     domain.setParentId(parent.getCategoryId());
@@ -69,7 +69,7 @@ public class CategoryXmlEntityHandler extends AbstractAttributableXmlEntityHandl
             }
         }
         if (xmlType.getLink() != null) {
-            final Category link = this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getLink().getGuid());
+            final Category link = lookup(Category.class, xmlType.getLink().getGuid(), () -> this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getLink().getGuid()));
             if (link != null) {
                 if (domain.getLinkToId() == null || domain.getLinkToId() != link.getCategoryId()) {
                     domain.setLinkToId(link.getCategoryId());
@@ -81,7 +81,8 @@ public class CategoryXmlEntityHandler extends AbstractAttributableXmlEntityHandl
             if (xmlType.getNavigation().getAttributes() != null) {
                 if (xmlType.getNavigation().getAttributes().getProductType() != null) {
                     if (xmlType.getNavigation().getAttributes().getProductType().getGuid() != null) {
-                        final ProductType type = this.productTypeService.findSingleByCriteria(" where e.guid = ?1", xmlType.getNavigation().getAttributes().getProductType().getGuid());
+                        final String typeGuid = xmlType.getNavigation().getAttributes().getProductType().getGuid();
+                        final ProductType type = lookup(ProductType.class, typeGuid, () -> this.productTypeService.findSingleByCriteria(" where e.guid = ?1", typeGuid));
                         if (type != null) {
                             domain.setProductType(type);
                         }
@@ -37,6 +37,9 @@ public class ChunkFilter extends XMLFilterImpl {
     private final JAXBContext context;
     private final String chunkElement;
 
+    // Element unmarshaller, reused for all chunks
+    private Unmarshaller unmarshaller;
+
 
     /**
      * Remembers the depth of the elements as we forward
@@ -65,6 +68,25 @@ public class ChunkFilter extends XMLFilterImpl {
         this.exception = exception;
     }
 
+    /**
+     * Chunk filter that uses given unmarshaller for all chunks (see {@link JaxbContextRegistry#acquire(String)}).
+     *
+     * @param unmarshaller unmarshaller, which must not be used by other threads while file is parsed
+     * @param chunkElement chunk element name
+     * @param callback     chunk callback
+     * @param exception    exception callback
+     */
+    public ChunkFilter(final Unmarshaller unmarshaller,
+                       final String chunkElement,
+                       final HandleCallback<Object> callback,
+                       final HandleException exception) {
+        this.context = null;
+        this.unmarshaller = unmarshaller;
+        this.chunkElement = chunkElement;
+        this.callback = callback;
+        this.exception = exception;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -85,14 +107,15 @@ public class ChunkFilter extends XMLFilterImpl {
     private void initialiseForChunkElement(final String namespaceURI, final String localName, final String qName, final Attributes atts) throws SAXException {
 
         if ("".equals(namespaceURI) && localName.equals(this.chunkElement) ) {
-            // start a new unmarshaller
-            Unmarshaller unmarshaller;
-            try {
-                unmarshaller = context.createUnmarshaller();
-            } catch( JAXBException e ) {
-                // there's no way to recover from this error.
-                // we will abort the processing.
-                throw new SAXException(e);
+            // unmarshaller is created once and then reused for all chunks
+            if (unmarshaller == null) {
+                try {
+                    unmarshaller = context.createUnmarshaller();
+                } catch( JAXBException e ) {
+                    // there's no way to recover from this error.
+                    // we will abort the processing.
+                    throw new SAXException(e);
+                }
             }
             unmarshallerHandler = unmarshaller.getUnmarshallerHandler();
 
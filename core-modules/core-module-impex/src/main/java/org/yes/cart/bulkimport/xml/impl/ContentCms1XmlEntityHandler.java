@@ -57,7 +57,7 @@ public class ContentCms1XmlEntityHandler extends AbstractAttributableXmlEntityHa
     protected void saveOrUpdate(final JobStatusListener statusListener, final Category domain, final ContentType xmlType, final EntityImportModeType mode, final Map<String, Integer> entityCount) {
 
         if (xmlType.getParent() != null) {
-            final Category parent = this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getParent().getGuid());
+            final Category parent = lookup(Category.class, xmlType.getParent().getGuid(), () -> this.categoryService.findSingleByCriteria(" where e.guid = ?1", xmlType.getParent().getGuid()));
             if (parent != null) {
                 if (domain.getParentId() != parent.getCategoryId()) {
                     domain.setParentId(parent.getCategoryId());
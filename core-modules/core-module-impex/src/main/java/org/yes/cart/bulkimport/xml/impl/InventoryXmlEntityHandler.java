@@ -22,6 +22,7 @@ import org.yes.cart.bulkimport.xml.internal.QuantityType;
 import org.yes.cart.bulkimport.xml.internal.QuantityTypeType;
 import org.yes.cart.bulkimport.xml.internal.StockType;
 import org.yes.cart.domain.entity.SkuWarehouse;
+import org.yes.cart.domain.entity.Warehouse;
 import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.domain.SkuWarehouseService;
 import org.yes.cart.service.domain.WarehouseService;
@@ -47,8 +48,7 @@ public class InventoryXmlEntityHandler extends AbstractXmlEntityHandler<StockTyp
     protected void delete(final JobStatusListener statusListener, final SkuWarehouse inventory, final Map<String, Integer> entityCount) {
         inventory.setQuantity(BigDecimal.ZERO);
         this.skuWarehouseService.update(inventory);
-        this.skuWarehouseService.getGenericDao().flush();
-        this.skuWarehouseService.getGenericDao().evict(inventory);
+        flushAndEvict(this.skuWarehouseService.getGenericDao(), inventory, SkuWarehouse.class, inventory.getSkuCode() + ':' + inventory.getWarehouse().getCode());
     }
 
     @Override
@@ -79,13 +79,13 @@ public class InventoryXmlEntityHandler extends AbstractXmlEntityHandler<StockTyp
         } else {
             this.skuWarehouseService.update(domain);
         }
-        this.skuWarehouseService.getGenericDao().flush();
-        this.skuWarehouseService.getGenericDao().evict(domain);
+        flushAndEvict(this.skuWarehouseService.getGenericDao(), domain, SkuWarehouse.class, xmlType.getSku() + ':' + xmlType.getWarehouse());
     }
 
     @Override
     protected SkuWarehouse getOrCreate(final JobStatusListener statusListener, final StockType xmlType, final Map<String, Integer> entityCount) {
-        SkuWarehouse inventory = this.skuWarehouseService.findSingleByCriteria(" where e.skuCode = ?1 and e.warehouse.code = ?2", xmlType.getSku(), xmlType.getWarehouse());
+        SkuWarehouse inventory = lookupPending(SkuWarehouse.class, xmlType.getSku() + ':' + xmlType.getWarehouse(),
+                () -> this.skuWarehouseService.findSingleByCriteria(" where e.skuCode = ?1 and e.warehouse.code = ?2", xmlType.getSku(), xmlType.getWarehouse()));
         if (inventory != null) {
             return inventory;
         }
@@ -93,7 +93,7 @@ public class InventoryXmlEntityHandler extends AbstractXmlEntityHandler<StockTyp
         inventory.setSkuCode(xmlType.getSku());
         inventory.setAvailability(SkuWarehouse.AVAILABILITY_STANDARD);
         inventory.setFeatured(false);
-        inventory.setWarehouse(this.warehouseService.findSingleByCriteria(" where e.code = ?1", xmlType.getWarehouse()));
+        inventory.setWarehouse(lookup(Warehouse.class, xmlType.getWarehouse(), () -> this.warehouseService.findSingleByCriteria(" where e.code = ?1", xmlType.getWarehouse())));
         return inventory;
     }
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.xml.impl;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of {@link JAXBContext} keyed by context namespace (package of generated model).
+ * <p/>
+ * Context creation for large generated model takes seconds, whereas context itself is thread safe,
+ * so it is created only once per namespace. Unmarshallers are not thread safe but can be reused
+ * sequentially, so they are pooled per namespace and each import file borrows one for all its chunks.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:06
+ */
+public final class JaxbContextRegistry {
+
+    private static final int MAX_IDLE_UNMARSHALLERS = 8;
+
+    private static final Map<String, Entry> CONTEXTS = new ConcurrentHashMap<>();
+
+    private JaxbContextRegistry() {
+        // no instance
+    }
+
+    /**
+     * Get shared context.
+     *
+     * @param namespace context namespace
+     *
+     * @return context
+     *
+     * @throws JAXBException if context cannot be created
+     */
+    public static JAXBContext getContext(final String namespace) throws JAXBException {
+        return getEntry(namespace).context;
+    }
+
+    /**
+     * Borrow unmarshaller for given namespace. Unmarshaller must only be used by one thread and should
+     * be returned via {@link #release(String, Unmarshaller)} once file is processed.
+     *
+     * @param namespace context namespace
+     *
+     * @return unmarshaller
+     *
+     * @throws JAXBException if context or unmarshaller cannot be created
+     */
+    public static Unmarshaller acquire(final String namespace) throws JAXBException {
+        final Entry entry = getEntry(namespace);
+        final Unmarshaller idle = entry.idle.poll();
+        if (idle != null) {
+            entry.idleCount.decrementAndGet();
+            return idle;
+        }
+        return entry.context.createUnmarshaller();
+    }
+
+    /**
+     * Return unmarshaller to the pool.
+     *
+     * @param namespace    context namespace
+     * @param unmarshaller unmarshaller obtained via {@link #acquire(String)}
+     */
+    public static void release(final String namespace, final Unmarshaller unmarshaller) {
+        final Entry entry = CONTEXTS.get(namespace);
+        if (entry != null && unmarshaller != null && entry.idleCount.incrementAndGet() <= MAX_IDLE_UNMARSHALLERS) {
+            entry.idle.offer(unmarshaller);
+        } else if (entry != null && unmarshaller != null) {
+            entry.idleCount.decrementAndGet(); // pool is full, let it be collected
+        }
+    }
+
+    private static Entry getEntry(final String namespace) throws JAXBException {
+        Entry entry = CONTEXTS.get(namespace);
+        if (entry == null) {
+            synchronized (CONTEXTS) {
+                entry = CONTEXTS.get(namespace);
+                if (entry == null) {
+                    entry = new Entry(JAXBContext.newInstance(namespace));
+                    CONTEXTS.put(namespace, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private final JAXBContext context;
+        private final Queue<Unmarshaller> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger(0);
+
+        private Entry(final JAXBContext context) {
+            this.context = context;
+        }
+
+    }
+
+}
@@ -19,6 +19,7 @@ package org.yes.cart.bulkimport.xml.impl;
 import org.yes.cart.bulkimport.xml.XmlEntityImportHandler;
 import org.yes.cart.bulkimport.xml.internal.EntityImportModeType;
 import org.yes.cart.bulkimport.xml.internal.PriceType;
+import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.SkuPrice;
 import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.domain.PriceService;
@@ -43,7 +44,7 @@ public class PriceXmlEntityHandler extends AbstractXmlEntityHandler<PriceType, S
     @Override
     protected void delete(final JobStatusListener statusListener, final SkuPrice price, final Map<String, Integer> entityCount) {
         this.priceService.delete(price);
-        this.priceService.getGenericDao().flush();
+        flushAndEvict(this.priceService.getGenericDao(), null);
     }
 
     @Override
@@ -71,19 +72,18 @@ public class PriceXmlEntityHandler extends AbstractXmlEntityHandler<PriceType, S
         } else {
             this.priceService.update(domain);
         }
-        this.priceService.getGenericDao().flush();
-        this.priceService.getGenericDao().evict(domain);
+        flushAndEvict(this.priceService.getGenericDao(), domain, SkuPrice.class, domain.getGuid());
     }
 
     @Override
     protected SkuPrice getOrCreate(final JobStatusListener statusListener, final PriceType xmlType, final Map<String, Integer> entityCount) {
-        SkuPrice price = this.priceService.findSingleByCriteria(" where e.guid = ?1", xmlType.getGuid());
+        SkuPrice price = lookupPending(SkuPrice.class, xmlType.getGuid(), () -> this.priceService.findSingleByCriteria(" where e.guid = ?1", xmlType.getGuid()));
         if (price != null) {
             return price;
         }
         price = this.priceService.getGenericDao().getEntityFactory().getByIface(SkuPrice.class);
         price.setGuid(xmlType.getGuid());
-        price.setShop(this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getShop()));
+        price.setShop(lookup(Shop.class, xmlType.getShop(), () -> this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getShop())));
         price.setSkuCode(xmlType.getSku());
         price.setCurrency(xmlType.getCurrency());
         return price;
@@ -98,7 +98,7 @@ public class ProductCategoriesXmlEntityHandler extends AbstractXmlEntityHandler<
         }
         final ProductCategory pc = this.productCategoryService.getGenericDao().getEntityFactory().getByIface(ProductCategory.class);
         pc.setProduct(domain);
-        Category ct = this.categoryService.findSingleByCriteria(" where e.guid = ?1", cat.getGuid());
+        Category ct = lookup(Category.class, cat.getGuid(), () -> this.categoryService.findSingleByCriteria(" where e.guid = ?1", cat.getGuid()));
         if (ct == null) {
             final Category root = this.categoryService.getRootCategory();
             final Category pcCat = this.categoryService.getGenericDao().getEntityFactory().getByIface(Category.class);
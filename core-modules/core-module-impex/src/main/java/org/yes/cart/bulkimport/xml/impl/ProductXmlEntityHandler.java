@@ -84,7 +84,7 @@ public class ProductXmlEntityHandler extends AbstractAttributableXmlEntityHandle
         }
 
         if (xmlType.getProductType() != null) {
-            ProductType productType = this.productTypeService.findSingleByCriteria(" where e.guid = ?1", xmlType.getProductType().getGuid());
+            ProductType productType = lookup(ProductType.class, xmlType.getProductType().getGuid(), () -> this.productTypeService.findSingleByCriteria(" where e.guid = ?1", xmlType.getProductType().getGuid()));
             if (productType == null) {
                 productType = this.productTypeService.getGenericDao().getEntityFactory().getByIface(ProductType.class);
                 productType.setGuid(xmlType.getProductType().getGuid());
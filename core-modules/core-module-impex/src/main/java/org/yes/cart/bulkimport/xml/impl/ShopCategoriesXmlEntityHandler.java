@@ -97,7 +97,7 @@ public class ShopCategoriesXmlEntityHandler extends AbstractXmlEntityHandler<Sho
         }
         final ShopCategory pc = this.shopService.getGenericDao().getEntityFactory().getByIface(ShopCategory.class);
         pc.setShop(domain);
-        Category ct = this.categoryService.findSingleByCriteria(" where e.guid = ?1", cat.getGuid());
+        Category ct = lookup(Category.class, cat.getGuid(), () -> this.categoryService.findSingleByCriteria(" where e.guid = ?1", cat.getGuid()));
         if (ct == null) {
             final Category root = this.categoryService.getRootCategory();
             final Category pcCat = this.categoryService.getGenericDao().getEntityFactory().getByIface(Category.class);
@@ -198,7 +198,7 @@ public class ShopXmlEntityHandler extends AbstractAttributableXmlEntityHandler<S
         shop.setCode(xmlType.getCode());
         shop.setGuid(xmlType.getCode());
         if (StringUtils.isNotBlank(xmlType.getMasterCode())) {
-            final Shop master = this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getMasterCode());
+            final Shop master = lookup(Shop.class, xmlType.getMasterCode(), () -> this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getMasterCode()));
             if (master == null) {
                 statusListener.notifyWarning("Cannot resolve master shop {} when creating new shop {}", xmlType.getMasterCode(), xmlType.getCode());
             }
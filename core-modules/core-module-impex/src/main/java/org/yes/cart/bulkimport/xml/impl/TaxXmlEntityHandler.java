@@ -75,7 +75,7 @@ public class TaxXmlEntityHandler extends AbstractXmlEntityHandler<TaxType, Tax>
         }
         tax = this.taxService.getGenericDao().getEntityFactory().getByIface(Tax.class);
         tax.setGuid(xmlType.getGuid());
-        final Shop shop = this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getShop());
+        final Shop shop = lookup(Shop.class, xmlType.getShop(), () -> this.shopService.findSingleByCriteria(" where e.code = ?1", xmlType.getShop()));
         if (shop != null) {
             tax.setShopCode(shop.getCode());
         }
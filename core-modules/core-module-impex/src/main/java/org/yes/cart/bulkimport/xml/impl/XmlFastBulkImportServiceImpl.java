@@ -26,7 +26,7 @@ import org.yes.cart.bulkimport.xml.XmlEntityImportHandler;
 import org.yes.cart.bulkimport.xml.XmlImportDescriptor;
 import org.yes.cart.service.async.JobStatusListener;
 
-import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.BufferedReader;
 import java.io.File;
@@ -49,6 +49,8 @@ public class XmlFastBulkImportServiceImpl extends AbstractImportService<XmlImpor
 
     private Map<String, XmlEntityImportHandler> handlerMap = Collections.emptyMap();
 
+    private XmlImportScope importScope;
+
     public XmlFastBulkImportServiceImpl() {
         super(new SystemAdminFederationFacade());
     }
@@ -69,8 +71,8 @@ public class XmlFastBulkImportServiceImpl extends AbstractImportService<XmlImpor
             return;
         }
 
-        // org.yes.cart.bulkexport.xml.internal
-        final JAXBContext context = JAXBContext.newInstance(handler.getContextNamespace());
+        // org.yes.cart.bulkexport.xml.internal, context is shared and unmarshaller is reused for all chunks
+        final Unmarshaller unmarshaller = JaxbContextRegistry.acquire(handler.getContextNamespace());
 
         final SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
@@ -79,7 +81,7 @@ public class XmlFastBulkImportServiceImpl extends AbstractImportService<XmlImpor
         final Map<String, Integer> counts = new ConcurrentHashMap<>();
 
         final ChunkFilter splitter = new ChunkFilter(
-                context, handler.getElementName(),
+                unmarshaller, handler.getElementName(),
                 (tuple) -> {
                     handler.handle(statusListener, importDescriptor, tuple, valueDataAdapter, fileToImport.getName(), counts);
                 },
@@ -94,10 +96,26 @@ public class XmlFastBulkImportServiceImpl extends AbstractImportService<XmlImpor
         // connect two components
         reader.setContentHandler(splitter);
 
+        if (importScope != null) {
+            importScope.open();
+        }
         try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fileToImport), StandardCharsets.UTF_8))) {
 
             reader.parse(new InputSource(in));
 
+            JaxbContextRegistry.release(handler.getContextNamespace(), unmarshaller);
+
+            if (importScope != null) {
+                importScope.flush(); // flush last batch
+            }
+
+        } finally {
+
+            if (importScope != null) {
+                final long[] lookups = importScope.close();
+                statusListener.notifyMessage("reference data lookups : {} cached, {} loaded", lookups[0], lookups[1]);
+            }
+
         }
 
         for (final String key : new TreeSet<>(counts.keySet())) {
@@ -107,6 +125,15 @@ public class XmlFastBulkImportServiceImpl extends AbstractImportService<XmlImpor
 
     }
 
+    /**
+     * IoC.
+     *
+     * @param importScope import scope shared with handlers (lookup cache and batched flush)
+     */
+    public void setImportScope(final XmlImportScope importScope) {
+        this.importScope = importScope;
+    }
+
     /**
      * IoC.
      *
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.xml.impl;
+
+import org.yes.cart.dao.GenericDAO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Import scoped state shared by all XML entity handlers, which is opened for each imported file by
+ * {@link XmlFastBulkImportServiceImpl}:
+ * <p/>
+ * - size bounded (LRU) cache of reference data (shops, warehouses, product types, categories), so that
+ * handlers do not need to look them up for every element. Only found objects are cached, and since
+ * scope is bound to import thread and discarded when file is imported cached objects never outlive
+ * import transaction.<br/>
+ * - batched flush, so that entities are flushed and evicted every {@code flushInterval} elements rather
+ * than after each element. While batch is pending session is not flushed before queries (otherwise lookups
+ * of handlers would flush after each element anyway), so handlers resolve entities saved in current batch
+ * by key using {@link #lookupPending(Class, String, Supplier)}. Deletes are not batched since these are
+ * executed after inserts on flush.
+ * <p/>
+ * If scope is not opened (e.g. handler is used outside of import) lookups and flushes go straight through.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:02
+ */
+public class XmlImportScope {
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    private int maxLookups = 10000;
+    private int flushInterval = 1;
+
+    /**
+     * Open scope for current thread.
+     */
+    public void open() {
+        current.set(new Scope(maxLookups));
+    }
+
+    /**
+     * Flush all pending changes and evict flushed entities.
+     */
+    public void flush() {
+        final Scope scope = current.get();
+        if (scope != null) {
+            scope.flush();
+        }
+    }
+
+    /**
+     * Discard scope for current thread. Pending changes are left in session.
+     *
+     * @return lookup statistics: hits, misses
+     */
+    public long[] close() {
+        final Scope scope = current.get();
+        current.remove();
+        if (scope == null) {
+            return new long[] { 0L, 0L };
+        }
+        scope.restoreAutoFlush();
+        return new long[] { scope.hits, scope.misses };
+    }
+
+    /**
+     * Lookup reference data.
+     *
+     * @param type   type of object
+     * @param key    code or GUID
+     * @param loader loader to use if object is not cached
+     * @param <V>    type
+     *
+     * @return object or null if loader cannot find it
+     */
+    public <V> V lookup(final Class<V> type, final String key, final Supplier<V> loader) {
+
+        final Scope scope = current.get();
+        if (scope == null || key == null) {
+            return loader.get();
+        }
+
+        final String cacheKey = type.getName() + ':' + key;
+        final Object cached = scope.lookups.get(cacheKey);
+        if (cached != null) {
+            scope.hits++;
+            return type.cast(cached);
+        }
+
+        scope.misses++;
+        final V loaded = loader.get();
+        if (loaded != null) {
+            scope.lookups.put(cacheKey, loaded);
+        }
+        return loaded;
+
+    }
+
+    /**
+     * Lookup entity saved in current batch, which may not be visible to queries until batch is flushed.
+     *
+     * @param type   type of object
+     * @param key    key used to save the entity
+     * @param loader loader to use if entity was not saved in current batch
+     * @param <V>    type
+     *
+     * @return entity or null if loader cannot find it
+     */
+    public <V> V lookupPending(final Class<V> type, final String key, final Supplier<V> loader) {
+
+        final Scope scope = current.get();
+        if (scope == null || key == null) {
+            return loader.get();
+        }
+
+        final Object saved = scope.saved.get(type.getName() + ':' + key);
+        if (saved != null) {
+            return type.cast(saved);
+        }
+        return loader.get();
+
+    }
+
+    /**
+     * Flush entity changes and evict entity from session, which is done in batches if scope is opened.
+     *
+     * @param dao    DAO for entity
+     * @param entity entity to evict after flush (or null if there is nothing to evict, e.g. after delete)
+     */
+    public void flushAndEvict(final GenericDAO dao, final Object entity) {
+        flushAndEvict(dao, entity, null, null);
+    }
+
+    /**
+     * Flush entity changes and evict entity from session, which is done in batches if scope is opened.
+     *
+     * @param dao    DAO for entity
+     * @param entity entity to evict after flush (or null if there is nothing to evict, e.g. after delete)
+     * @param type   type of entity for {@link #lookupPending(Class, String, Supplier)}
+     * @param key    key of entity for {@link #lookupPending(Class, String, Supplier)} (or null)
+     */
+    public void flushAndEvict(final GenericDAO dao, final Object entity, final Class type, final String key) {
+
+        final Scope scope = current.get();
+        if (scope == null || flushInterval <= 1) {
+            dao.flush();
+            if (entity != null) {
+                dao.evict(entity);
+            }
+            return;
+        }
+
+        if (entity == null) {
+            // delete, flush it together with current batch
+            scope.dao = dao;
+            scope.unflushed++;
+            scope.flush();
+            return;
+        }
+
+        if (!scope.deferred) {
+            dao.setAutoFlush(false);
+            scope.deferred = true;
+        }
+        scope.dao = dao;
+        scope.pending.add(entity);
+        if (type != null && key != null) {
+            scope.saved.put(type.getName() + ':' + key, entity);
+        }
+        if (++scope.unflushed >= flushInterval) {
+            scope.flush();
+        }
+
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param maxLookups max number of reference objects cached per import
+     */
+    public void setMaxLookups(final int maxLookups) {
+        this.maxLookups = maxLookups;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param flushInterval number of elements after which changes are flushed (default is 1)
+     */
+    public void setFlushInterval(final int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    private static final class Scope {
+
+        private final Map<String, Object> lookups;
+        private final List<Object> pending = new ArrayList<>();
+        private final Map<String, Object> saved = new HashMap<>();
+        private GenericDAO dao;
+        private boolean deferred = false;
+        private int unflushed = 0;
+        private long hits = 0L;
+        private long misses = 0L;
+
+        private Scope(final int maxLookups) {
+            this.lookups = new LinkedHashMap<String, Object>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+                    return size() > maxLookups;
+                }
+            };
+        }
+
+        private void flush() {
+            try {
+                if (dao != null && unflushed > 0) {
+                    dao.flush();
+                    for (final Object entity : pending) {
+                        dao.evict(entity);
+                    }
+                }
+            } finally {
+                pending.clear();
+                saved.clear();
+                unflushed = 0;
+                restoreAutoFlush();
+            }
+        }
+
+        private void restoreAutoFlush() {
+            if (deferred) {
+                deferred = false;
+                dao.setAutoFlush(true);
+            }
+        }
+
+    }
+
+}
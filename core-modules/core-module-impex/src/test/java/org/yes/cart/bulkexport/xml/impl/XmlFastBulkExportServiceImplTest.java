@@ -17,6 +17,7 @@
 package org.yes.cart.bulkexport.xml.impl;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.hamcrest.Description;
 import org.hamcrest.Factory;
 import org.hamcrest.Matcher;
@@ -42,12 +43,16 @@ import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.sql.ResultSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -758,6 +763,59 @@ public class XmlFastBulkExportServiceImplTest extends BaseCoreDBTestCase {
 
     }
 
+    @Test
+    public void testDoExportShardedCompressed() throws Exception {
+        try {
+
+            final JobStatusListener listener = mockery.mock(JobStatusListener.class, "listener");
+
+            mockery.checking(new Expectations() {{
+                // ONLY allow messages during import
+                allowing(listener).notifyPing();
+                allowing(listener).notifyPing(with(any(String.class)), with(any(Object[].class)));
+                allowing(listener).notifyMessage(with(any(String.class)), with(any(Object[].class)));
+            }});
+
+            final ResultSet rs = getConnection().getConnection().createStatement().executeQuery ("select count(*) from TPRODUCT  ");
+            rs.next();
+            final long cntProd = rs.getLong(1);
+            rs.close();
+
+            final String gzToExport = "target/products-export-" + UUID.randomUUID().toString() + ".xml.gz";
+            bulkExportService.doExport(createContext("src/test/resources/export/xml/products.xml", listener, gzToExport));
+
+            final File gzXml = new File(gzToExport.substring(0, gzToExport.length() - 3));
+            try (InputStream in = new GZIPInputStream(new FileInputStream(gzToExport))) {
+                FileUtils.copyInputStreamToFile(in, gzXml);
+            }
+            final String gzContent = FileUtils.readFileToString(gzXml, "UTF-8");
+            assertEquals(cntProd, StringUtils.countMatches(gzContent, "<product id=\""));
+            assertTrue(gzContent.contains("guid=\"SOBOT\" code=\"SOBOT\">"));
+
+            validateXmlFile(gzXml);
+
+            final String zipToExport = "target/products-export-" + UUID.randomUUID().toString() + ".xml.zip";
+            bulkExportService.doExport(createContext("src/test/resources/export/xml/products.xml", listener, zipToExport));
+
+            final File zipXml = new File(zipToExport.substring(0, zipToExport.length() - 4));
+            try (ZipInputStream in = new ZipInputStream(new FileInputStream(zipToExport))) {
+                assertEquals(zipXml.getName(), in.getNextEntry().getName());
+                FileUtils.copyInputStreamToFile(in, zipXml);
+            }
+            assertEquals(cntProd, StringUtils.countMatches(FileUtils.readFileToString(zipXml, "UTF-8"), "<product id=\""));
+
+            validateXmlFile(zipXml);
+
+            mockery.assertIsSatisfied();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(e.getMessage());
+        }
+
+    }
+
+
     private void validateXmlFile(final File xml) throws Exception {
 
         final String schemaLang = "http://www.w3.org/2001/XMLSchema";
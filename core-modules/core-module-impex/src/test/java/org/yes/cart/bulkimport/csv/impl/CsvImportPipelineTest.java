@@ -0,0 +1,158 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.csv.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.yes.cart.bulkcommon.csv.CsvImpExColumn;
+import org.yes.cart.bulkcommon.csv.CsvValueAdapter;
+import org.yes.cart.bulkimport.csv.CsvImportColumn;
+import org.yes.cart.bulkimport.csv.CsvImportDescriptor;
+import org.yes.cart.bulkimport.csv.CsvImportTuple;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.service.async.JobStatusListener;
+import org.yes.cart.service.federation.FederationFacade;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:58
+ */
+public class CsvImportPipelineTest {
+
+    private static final String FILE = "src/test/resources/import/csv/productnames.csv";
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testReadInImportThread() throws Exception {
+
+        final List<String> guids = readGuids(null, null, 10);
+        assertFalse(guids.isEmpty());
+        assertEquals("12838770", guids.get(0));
+
+    }
+
+    @Test
+    public void testReadPipelined() throws Exception {
+
+        final List<String> sequential = readGuids(null, null, 10);
+        final List<String> pipelined = readGuids(new SimpleAsyncTaskExecutor(), new SimpleAsyncTaskExecutor(), 2);
+
+        assertEquals("Pipeline preserves file order", sequential, pipelined);
+
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+
+        final CsvImportDescriptor descriptor = createDescriptor();
+        final CsvImportPipeline pipeline = new CsvImportPipeline(new File(FILE), descriptor,
+                descriptor.getColumns(CsvImpExColumn.FIELD), createAdapter(),
+                new SimpleAsyncTaskExecutor(), new SimpleAsyncTaskExecutor(), 1);
+
+        pipeline.start();
+        assertNotNull(pipeline.next());
+        pipeline.close(); // reader must not block on full queue
+
+        final long read = pipeline.getRead();
+        Thread.sleep(300L);
+        assertTrue(pipeline.getRead() <= read + 1);
+
+    }
+
+    @Test
+    public void testFlushFailureReportsChunkRows() throws Exception {
+
+        final GenericDAO<Object, Long> genericDAO = context.mock(GenericDAO.class, "genericDAO");
+        final JobStatusListener listener = context.mock(JobStatusListener.class, "listener");
+        final IllegalStateException flushError = new IllegalStateException("constraint violation");
+
+        context.checking(new Expectations() {{
+            oneOf(genericDAO).flushClear(); will(throwException(flushError));
+            oneOf(genericDAO).clear();
+            oneOf(listener).notifyError(with(equal("during flush of rows : {} - {} \ndescriptor {} \nerror {}")), with(same(flushError)),
+                    with(equal(new Object[] { "productnames.csv:11", "productnames.csv:20", "productnames.xml", "constraint violation" })));
+        }});
+
+        final CsvBulkImportServiceImpl service = new CsvBulkImportServiceImpl(context.mock(FederationFacade.class, "federationFacade"));
+        service.setGenericDAO(genericDAO);
+
+        try {
+            service.flushChunk(listener, "productnames.xml",
+                    new CsvImportTupleImpl("productnames.csv", 11L, new String[0]),
+                    new CsvImportTupleImpl("productnames.csv", 20L, new String[0]));
+            fail("Flush error must fail the import");
+        } catch (IllegalStateException ise) {
+            assertSame(flushError, ise);
+        }
+
+        context.assertIsSatisfied();
+
+    }
+
+    private List<String> readGuids(final TaskExecutor reader, final TaskExecutor worker, final int queueSize) throws Exception {
+
+        final CsvImportDescriptor descriptor = createDescriptor();
+        final List<CsvImportColumn> columns = new ArrayList<>(descriptor.getColumns(CsvImpExColumn.FIELD));
+        final CsvImportColumn guid = descriptor.getColumn("guid");
+        final CsvValueAdapter adapter = createAdapter();
+
+        final CsvImportPipeline pipeline = new CsvImportPipeline(new File(FILE), descriptor, columns, adapter, reader, worker, queueSize);
+
+        final List<String> guids = new ArrayList<>();
+        try {
+            pipeline.start();
+            assertEquals(reader != null, pipeline.isPipelined());
+
+            CsvImportTuple tuple;
+            while ((tuple = pipeline.next()) != null) {
+                guids.add((String) tuple.getColumnValue(guid, adapter));
+            }
+            assertNull(pipeline.next());
+
+            assertEquals(guids.size(), pipeline.getRead());
+            assertEquals(guids.size() + 1, pipeline.getRowsRead()); // header
+            assertEquals(worker != null ? guids.size() : 0L, pipeline.getConverted());
+        } finally {
+            pipeline.close();
+        }
+        return guids;
+
+    }
+
+    private CsvImportDescriptor createDescriptor() throws Exception {
+        return new CsvImportDescriptorXStreamProvider().fromXML(new FileInputStream("src/test/resources/import/csv/productnames.xml"));
+    }
+
+    private CsvValueAdapter createAdapter() {
+        return new CsvImportValueAdapter(new DefaultConversionService());
+    }
+
+}
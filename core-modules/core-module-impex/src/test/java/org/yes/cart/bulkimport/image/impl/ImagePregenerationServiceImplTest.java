@@ -0,0 +1,167 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.image.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.yes.cart.service.async.model.JobStatus;
+import org.yes.cart.service.domain.ImageService;
+import org.yes.cart.service.media.MediaFileNameStrategy;
+import org.yes.cart.stream.io.IOProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:47
+ */
+public class ImagePregenerationServiceImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testGenerateEnqueued() throws Exception {
+
+        final ImageService imageService = context.mock(ImageService.class, "imageService");
+        final IOProvider ioProvider = context.mock(IOProvider.class, "ioProvider");
+        final MediaFileNameStrategy strategy = context.mock(MediaFileNameStrategy.class, "strategy");
+
+        context.checking(new Expectations() {{
+            allowing(imageService).getAllowedSizes(); will(returnValue(Arrays.asList("40x40", "80x80")));
+            allowing(imageService).getImageNameStrategy("/imgvault/product/"); will(returnValue(strategy));
+
+            allowing(strategy).resolveLocale(with(any(String.class))); will(returnValue(null));
+            allowing(strategy).resolveRelativeInternalFileNamePath("a_A_a.jpg", "A", null); will(returnValue("product/A/A/a_A_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("a_A_a.jpg", "A", null, "40", "40"); will(returnValue("product/A/A/40x40/a_A_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("a_A_a.jpg", "A", null, "80", "80"); will(returnValue("product/A/A/80x80/a_A_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("b_B_a.jpg", "B", null); will(returnValue("product/B/B/b_B_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("b_B_a.jpg", "B", null, "40", "40"); will(returnValue("product/B/B/40x40/b_B_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("b_B_a.jpg", "B", null, "80", "80"); will(returnValue("product/B/B/80x80/b_B_a.jpg"));
+
+            // A 40x40 is up to date, A 80x80 and B 40x40 are stored after resize
+            allowing(ioProvider).isNewerThan(with(equal("file:/vault/product/A/A/40x40/a_A_a.jpg")), with(equal("file:/vault/product/A/A/a_A_a.jpg")), with(any(Map.class))); will(returnValue(true));
+            exactly(2).of(ioProvider).isNewerThan(with(equal("file:/vault/product/A/A/80x80/a_A_a.jpg")), with(equal("file:/vault/product/A/A/a_A_a.jpg")), with(any(Map.class))); will(onConsecutiveCalls(returnValue(false), returnValue(true)));
+            exactly(2).of(ioProvider).isNewerThan(with(equal("file:/vault/product/B/B/40x40/b_B_a.jpg")), with(equal("file:/vault/product/B/B/b_B_a.jpg")), with(any(Map.class))); will(onConsecutiveCalls(returnValue(false), returnValue(true)));
+            allowing(ioProvider).isNewerThan(with(any(String.class)), with(any(String.class)), with(any(Map.class))); will(returnValue(false));
+
+            oneOf(imageService).resizeImage("file:/vault/product/A/A/a_A_a.jpg", "file:/vault/product/A/A/80x80/a_A_a.jpg", "80", "80"); will(returnValue(new byte[] { 1 }));
+            oneOf(imageService).resizeImage("file:/vault/product/B/B/b_B_a.jpg", "file:/vault/product/B/B/40x40/b_B_a.jpg", "40", "40"); will(returnValue(new byte[] { 1 }));
+            oneOf(imageService).resizeImage("file:/vault/product/B/B/b_B_a.jpg", "file:/vault/product/B/B/80x80/b_B_a.jpg", "80", "80"); will(returnValue(new byte[0]));
+        }});
+
+        final ImagePregenerationServiceImpl service =
+                new ImagePregenerationServiceImpl(new SyncTaskExecutor(), new SyncTaskExecutor(), imageService, ioProvider);
+
+        assertNull(service.generateEnqueued());
+
+        service.enqueue("/imgvault/product/", "a_A_a.jpg", "A", "file:/vault/");
+        service.enqueue("/imgvault/product/", "b_B_a.jpg", "B", "file:/vault/");
+        service.enqueue("/imgvault/product/", "a_A_a.jpg", "A", "file:/vault/"); // duplicate
+
+        final String token = service.generateEnqueued();
+        assertNotNull(token);
+
+        final JobStatus status = service.getStatus(token);
+        assertEquals(JobStatus.State.FINISHED, status.getState());
+        assertEquals(JobStatus.Completion.OK, status.getCompletion());
+        assertTrue(status.getReport(), status.getReport().contains("2 generated, 1 skipped (up to date), 1 failed"));
+
+        assertNull(service.generateEnqueued());
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testGenerateEnqueuedResizeTimeoutIsFailed() throws Exception {
+
+        final ImageService imageService = context.mock(ImageService.class, "imageService");
+        final IOProvider ioProvider = context.mock(IOProvider.class, "ioProvider");
+        final MediaFileNameStrategy strategy = context.mock(MediaFileNameStrategy.class, "strategy");
+
+        context.checking(new Expectations() {{
+            allowing(imageService).getAllowedSizes(); will(returnValue(Arrays.asList("40x40")));
+            allowing(imageService).getImageNameStrategy("/imgvault/product/"); will(returnValue(strategy));
+
+            allowing(strategy).resolveLocale(with(any(String.class))); will(returnValue(null));
+            allowing(strategy).resolveRelativeInternalFileNamePath("a_A_a.jpg", "A", null); will(returnValue("product/A/A/a_A_a.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("a_A_a.jpg", "A", null, "40", "40"); will(returnValue("product/A/A/40x40/a_A_a.jpg"));
+
+            // resize timed out, so original is returned and variant is not stored
+            allowing(ioProvider).isNewerThan(with(any(String.class)), with(any(String.class)), with(any(Map.class))); will(returnValue(false));
+            oneOf(imageService).resizeImage("file:/vault/product/A/A/a_A_a.jpg", "file:/vault/product/A/A/40x40/a_A_a.jpg", "40", "40"); will(returnValue(new byte[] { 1, 2, 3 }));
+        }});
+
+        final ImagePregenerationServiceImpl service =
+                new ImagePregenerationServiceImpl(new SyncTaskExecutor(), new SyncTaskExecutor(), imageService, ioProvider);
+
+        service.enqueue("/imgvault/product/", "a_A_a.jpg", "A", "file:/vault/");
+
+        final JobStatus status = service.getStatus(service.generateEnqueued());
+        assertEquals(JobStatus.State.FINISHED, status.getState());
+        assertTrue(status.getReport(), status.getReport().contains("0 generated, 0 skipped (up to date), 1 failed"));
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testGenerateEnqueuedForgetsFinishedJobs() throws Exception {
+
+        final ImageService imageService = context.mock(ImageService.class, "imageService");
+        final IOProvider ioProvider = context.mock(IOProvider.class, "ioProvider");
+        final MediaFileNameStrategy strategy = context.mock(MediaFileNameStrategy.class, "strategy");
+
+        context.checking(new Expectations() {{
+            allowing(imageService).getAllowedSizes(); will(returnValue(Collections.emptyList()));
+            allowing(imageService).getImageNameStrategy("/imgvault/product/"); will(returnValue(strategy));
+            allowing(strategy).resolveLocale(with(any(String.class))); will(returnValue(null));
+            allowing(strategy).resolveRelativeInternalFileNamePath(with(any(String.class)), with(any(String.class)), with(aNull(String.class))); will(returnValue("product/A/A/a_A_a.jpg"));
+        }});
+
+        final ImagePregenerationServiceImpl service =
+                new ImagePregenerationServiceImpl(new SyncTaskExecutor(), new SyncTaskExecutor(), imageService, ioProvider);
+
+        service.enqueue("/imgvault/product/", "a_A_a.jpg", "A", "file:/vault/");
+        final String first = service.generateEnqueued();
+
+        service.enqueue("/imgvault/product/", "b_B_a.jpg", "B", "file:/vault/");
+        final String second = service.generateEnqueued();
+
+        // first job is never polled by importer, so it is released when next job starts
+        try {
+            service.getStatus(first);
+            fail("Finished job must be released");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+
+        assertEquals(JobStatus.State.FINISHED, service.getStatus(second).getState());
+
+        context.assertIsSatisfied();
+
+    }
+
+}
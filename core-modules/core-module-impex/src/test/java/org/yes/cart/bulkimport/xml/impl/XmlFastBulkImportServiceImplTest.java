@@ -20,6 +20,8 @@ import org.hamcrest.Description;
 import org.hamcrest.Factory;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -527,10 +529,18 @@ public class XmlFastBulkImportServiceImplTest extends BaseCoreDBTestCase {
             long cntBeforePrices = rs.getLong(1);
             rs.close();
 
+            final Statistics statistics = ctx().getBean("sessionFactory", SessionFactory.class).getStatistics();
+            statistics.clear();
+            statistics.setStatisticsEnabled(true);
+
             dt = System.currentTimeMillis();
             bulkImportService.doImport(createContext("src/test/resources/import/xml/pricelist.xml", listener, importedFilesSet));
             final long skuPrice = System.currentTimeMillis() - dt;
 
+            statistics.setStatisticsEnabled(false);
+            System.out.println("sku price import: " + statistics.getFlushCount() + " flushes, "
+                    + statistics.getPrepareStatementCount() + " statements");
+
             rs = getConnection().getConnection().createStatement().executeQuery ("select count(*) from TSKUPRICE  ");
             rs.next();
             long cntPrices = rs.getLong(1);
@@ -540,6 +550,8 @@ public class XmlFastBulkImportServiceImplTest extends BaseCoreDBTestCase {
             System.out.println(String.format("%5d", change) + " sku price records in " + skuPrice + "millis (~" + (skuPrice / change) + " per item)");
 
             assertEquals(241L + cntBeforePrices, cntPrices);   // 180 new + 53 initialdata.xml
+            // price lookups do not flush pending batch, so prices are flushed in batches of 100 (xmlImportScope flushInterval)
+            assertTrue(String.valueOf(statistics.getFlushCount()), statistics.getFlushCount() <= 10L);
 
 
 
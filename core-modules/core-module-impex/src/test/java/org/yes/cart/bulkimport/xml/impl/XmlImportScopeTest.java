@@ -0,0 +1,208 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.xml.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.yes.cart.dao.GenericDAO;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:02
+ */
+public class XmlImportScopeTest {
+
+    private final Mockery mockery = new JUnit4Mockery();
+
+    @Test
+    public void testLookupWithoutScope() throws Exception {
+
+        final XmlImportScope scope = new XmlImportScope();
+        final AtomicInteger loads = new AtomicInteger(0);
+
+        assertEquals("SHOP10", scope.lookup(String.class, "SHOP10", () -> "SHOP10" + loads.incrementAndGet()).substring(0, 6));
+        assertEquals("SHOP10", scope.lookup(String.class, "SHOP10", () -> "SHOP10" + loads.incrementAndGet()).substring(0, 6));
+        assertEquals("No caching outside of import", 2, loads.get());
+
+        final long[] stats = scope.close();
+        assertEquals(0L, stats[0]);
+        assertEquals(0L, stats[1]);
+
+    }
+
+    @Test
+    public void testLookupInScope() throws Exception {
+
+        final XmlImportScope scope = new XmlImportScope();
+        scope.setMaxLookups(2);
+        final AtomicInteger loads = new AtomicInteger(0);
+
+        scope.open();
+
+        assertEquals("SHOP10", scope.lookup(String.class, "SHOP10", () -> { loads.incrementAndGet(); return "SHOP10"; }));
+        assertEquals("SHOP10", scope.lookup(String.class, "SHOP10", () -> { loads.incrementAndGet(); return "SHOP10"; }));
+        assertEquals(1, loads.get());
+
+        // not found is not cached
+        assertNull(scope.lookup(String.class, "SHOP20", () -> { loads.incrementAndGet(); return null; }));
+        assertNull(scope.lookup(String.class, "SHOP20", () -> { loads.incrementAndGet(); return null; }));
+        assertEquals(3, loads.get());
+
+        // keys are per type
+        assertEquals(Integer.valueOf(10), scope.lookup(Integer.class, "SHOP10", () -> { loads.incrementAndGet(); return 10; }));
+        assertEquals(4, loads.get());
+
+        // LRU, SHOP10 string is the eldest
+        scope.lookup(String.class, "SHOP30", () -> { loads.incrementAndGet(); return "SHOP30"; });
+        assertEquals(5, loads.get());
+        scope.lookup(String.class, "SHOP10", () -> { loads.incrementAndGet(); return "SHOP10"; });
+        assertEquals(6, loads.get());
+
+        final long[] stats = scope.close();
+        assertEquals(1L, stats[0]);
+        assertEquals(6L, stats[1]);
+
+        // closed scope is discarded
+        scope.lookup(String.class, "SHOP30", () -> { loads.incrementAndGet(); return "SHOP30"; });
+        assertEquals(7, loads.get());
+
+    }
+
+    @Test
+    public void testFlushAndEvictWithoutScope() throws Exception {
+
+        final GenericDAO dao = this.mockery.mock(GenericDAO.class);
+
+        final XmlImportScope scope = new XmlImportScope();
+        scope.setFlushInterval(100);
+
+        this.mockery.checking(new Expectations() {{
+            exactly(2).of(dao).flush();
+            oneOf(dao).evict("E1");
+        }});
+
+        scope.flushAndEvict(dao, "E1");
+        scope.flushAndEvict(dao, null);
+
+        this.mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testFlushAndEvictInScope() throws Exception {
+
+        final GenericDAO dao = this.mockery.mock(GenericDAO.class);
+
+        final XmlImportScope scope = new XmlImportScope();
+        scope.setFlushInterval(3);
+
+        this.mockery.checking(new Expectations() {{
+            exactly(3).of(dao).flush();
+            exactly(3).of(dao).setAutoFlush(false);
+            exactly(3).of(dao).setAutoFlush(true);
+            oneOf(dao).evict("E1");
+            oneOf(dao).evict("E3");
+            oneOf(dao).evict("E4");
+            oneOf(dao).evict("E5");
+            oneOf(dao).evict("E6");
+        }});
+
+        scope.open();
+
+        scope.flushAndEvict(dao, "E1");
+        scope.flushAndEvict(dao, null); // delete flushes pending batch
+        scope.flushAndEvict(dao, "E3");
+        scope.flushAndEvict(dao, "E4");
+        scope.flushAndEvict(dao, "E5"); // batch of 3
+        scope.flushAndEvict(dao, "E6");
+        scope.flush(); // last batch
+        scope.flush(); // nothing pending
+
+        scope.close();
+
+        this.mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testLookupPending() throws Exception {
+
+        final GenericDAO dao = this.mockery.mock(GenericDAO.class);
+
+        final XmlImportScope scope = new XmlImportScope();
+        scope.setFlushInterval(3);
+        final AtomicInteger loads = new AtomicInteger(0);
+
+        this.mockery.checking(new Expectations() {{
+            oneOf(dao).setAutoFlush(false);
+            oneOf(dao).flush();
+            oneOf(dao).evict("E1");
+            oneOf(dao).setAutoFlush(true);
+        }});
+
+        scope.open();
+
+        assertNull(scope.lookupPending(String.class, "G1", () -> { loads.incrementAndGet(); return null; }));
+        scope.flushAndEvict(dao, "E1", String.class, "G1");
+
+        // not flushed yet, so resolved from batch
+        assertEquals("E1", scope.lookupPending(String.class, "G1", () -> { loads.incrementAndGet(); return null; }));
+        assertEquals(1, loads.get());
+
+        scope.flush();
+
+        // flushed, so visible to queries
+        assertNull(scope.lookupPending(String.class, "G1", () -> { loads.incrementAndGet(); return null; }));
+        assertEquals(2, loads.get());
+
+        scope.close();
+
+        this.mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testCloseRestoresAutoFlush() throws Exception {
+
+        final GenericDAO dao = this.mockery.mock(GenericDAO.class);
+
+        final XmlImportScope scope = new XmlImportScope();
+        scope.setFlushInterval(3);
+
+        this.mockery.checking(new Expectations() {{
+            oneOf(dao).setAutoFlush(false);
+            oneOf(dao).setAutoFlush(true);
+        }});
+
+        scope.open();
+
+        scope.flushAndEvict(dao, "E1");
+
+        scope.close(); // import failed, pending changes are left in session
+
+        this.mockery.assertIsSatisfied();
+
+    }
+
+}
@@ -19,9 +19,15 @@ package org.yes.cart.cluster.service;
 import org.yes.cart.domain.dto.impl.CacheInfoDTO;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service responsible  to evict particular cache(s) depending on entity and operation.
+ * <p/>
+ * Bulk and batch change events use an empty array of primary keys as "evict all" marker, which means that
+ * all entities of given type have changed (e.g. admin cache eviction queue overflowed for this entity). Both
+ * sides of the wire rely on this contract: receivers must clear all caches of the entity (not evict nothing)
+ * and senders must never send empty array when there are no changes, but rather skip the event.
  *
  * User: Igor Azarny iazarny@yahoo.com
  * Date: 18 Aug 2013
@@ -84,8 +90,19 @@ public interface CacheDirector {
      *
      * @param entityOperation operation type
      * @param entityName entity type
-     * @param pkValues primary keys
+     * @param pkValues primary keys (empty array means that all entities of this type have changed)
      */
     int onCacheableBulkChange(String entityOperation, String entityName, Long[] pkValues);
 
+    /**
+     * Fire batch of entity change events. Each distinct cache is cleared (or has a given key evicted)
+     * only once, no matter how many changes in the batch resolve to it.
+     *
+     * @param changes entity name to entity operation to primary keys (empty array means that all
+     *                entities of this type have changed)
+     *
+     * @return number of cache operations performed
+     */
+    int onCacheableBatchChange(Map<String, Map<String, Long[]>> changes);
+
 }
@@ -16,6 +16,7 @@
 package org.yes.cart.cluster.service;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * User: denispavlov
@@ -40,11 +41,29 @@ public interface CacheEvictionQueue {
      */
     CacheEvictionItem dequeue();
 
+    /**
+     * Get first item waiting for it if queue is empty.
+     *
+     * @param timeoutMs max time to wait for an item in ms
+     *
+     * @return cache eviction or null if queue is still empty after timeout
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    CacheEvictionItem dequeue(long timeoutMs) throws InterruptedException;
+
     /**
      * Clear current cache queue;
      */
     void clear();
 
+    /**
+     * Queue statistics for monitoring (queue depth, coalesced and overflow counts).
+     *
+     * @return statistics
+     */
+    Map<String, String> getStatistics();
+
     interface CacheEvictionItem {
 
         String getUser();
@@ -53,6 +72,12 @@ public interface CacheEvictionQueue {
 
         String getEntityName();
 
+        /**
+         * @return true if too many changes were made to this entity, so all caches must be evicted
+         *         (in which case {@link #getPKs()} is empty)
+         */
+        boolean isEvictAll();
+
         Collection<Long> getPKs();
 
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.service;
+
+/**
+ * Listener notified by {@link CacheDirector} about entity changes. Allows components that keep
+ * derived data keyed by something other than entity PK to invalidate only affected entries instead
+ * of relying on "all" eviction strategy.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:21
+ */
+public interface CacheableChangeListener {
+
+    /**
+     * Entity change event.
+     *
+     * @param entityOperation operation type (see {@link CacheDirector.EntityOperation})
+     * @param entityName      entity type
+     * @param pkValues        primary keys (empty array means that all entities of this type have changed)
+     */
+    void onCacheableChange(String entityOperation, String entityName, Long[] pkValues);
+
+}
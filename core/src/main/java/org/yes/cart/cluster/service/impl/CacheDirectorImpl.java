@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.yes.cart.cluster.service.CacheDirector;
+import org.yes.cart.cluster.service.CacheableChangeListener;
 import org.yes.cart.domain.dto.impl.CacheInfoDTO;
 import org.yes.cart.domain.misc.Pair;
 
@@ -45,6 +46,8 @@ public class CacheDirectorImpl implements CacheDirector {
 
     private Set<String> skipEvictAll = Collections.emptySet();
 
+    private Map<String, List<CacheableChangeListener>> cacheableChangeListeners = Collections.emptyMap();
+
     /**
      * {@inheritDoc}
      */
@@ -153,6 +156,8 @@ public class CacheDirectorImpl implements CacheDirector {
     @Override
     public int onCacheableChange(final String entityOperation, final String entityName, final Long pkValue) {
 
+        notifyListeners(entityOperation, entityName, new Long[] { pkValue });
+
         int cnt = 0;
 
         final Set<Pair<String, String>> cacheNames = resolveCacheNames(entityOperation, entityName);
@@ -200,6 +205,8 @@ public class CacheDirectorImpl implements CacheDirector {
     @Override
     public int onCacheableBulkChange(final String entityOperation, final String entityName, final Long[] pkValues) {
 
+        notifyListeners(entityOperation, entityName, pkValues);
+
         int cnt = 0;
 
         final Set<Pair<String, String>> cacheNames = resolveCacheNames(entityOperation, entityName);
@@ -220,6 +227,13 @@ public class CacheDirectorImpl implements CacheDirector {
 
                         cnt += pkValues.length;
 
+                    } else if("key".equals(cacheStrategy.getSecond()) && pkValues.length == 0) {
+
+                        // evict all for entity
+                        cache.clear();
+
+                        cnt++;
+
                     } else if("key".equals(cacheStrategy.getSecond())) {
 
                         for (final Long pkValue : pkValues) {
@@ -245,6 +259,118 @@ public class CacheDirectorImpl implements CacheDirector {
         return cnt;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int onCacheableBatchChange(final Map<String, Map<String, Long[]>> changes) {
+
+        final Set<String> clearAll = new HashSet<>();
+        final Map<String, Set<Long>> evictKeys = new HashMap<>();
+
+        for (final Map.Entry<String, Map<String, Long[]>> entity : changes.entrySet()) {
+
+            for (final Map.Entry<String, Long[]> operation : entity.getValue().entrySet()) {
+
+                notifyListeners(operation.getKey(), entity.getKey(), operation.getValue());
+
+                final Set<Pair<String, String>> cacheNames = resolveCacheNames(operation.getKey(), entity.getKey());
+
+                if (cacheNames != null) {
+
+                    final Long[] pkValues = operation.getValue();
+
+                    for (Pair<String, String> cacheStrategy : cacheNames) {
+
+                        if ("all".equals(cacheStrategy.getSecond())
+                                || ("key".equals(cacheStrategy.getSecond()) && pkValues.length == 0)) {
+
+                            clearAll.add(cacheStrategy.getFirst());
+
+                        } else if ("key".equals(cacheStrategy.getSecond())) {
+
+                            evictKeys.computeIfAbsent(cacheStrategy.getFirst(), k -> new HashSet<>()).addAll(Arrays.asList(pkValues));
+
+                        } else {
+
+                            LOG.warn("The [{}] cache eviction strategy not supported", cacheStrategy.getSecond());
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        int cnt = 0;
+
+        final CacheManager cm = getCacheManager();
+
+        for (final String cacheName : clearAll) {
+
+            final Cache cache = cm.getCache(cacheName);
+
+            if (cache != null) {
+
+                cache.clear();
+
+                cnt++;
+
+            }
+
+        }
+
+        for (final Map.Entry<String, Set<Long>> keys : evictKeys.entrySet()) {
+
+            if (clearAll.contains(keys.getKey())) {
+                continue; // already cleared
+            }
+
+            final Cache cache = cm.getCache(keys.getKey());
+
+            if (cache != null) {
+
+                for (final Long pkValue : keys.getValue()) {
+
+                    cache.evict(pkValue);
+
+                    cnt++;
+
+                }
+
+            }
+
+        }
+
+        return cnt;
+    }
+
+    /**
+     * Notify change listeners registered for given entity.
+     *
+     * @param entityOperation given operation
+     * @param entityName given entity name
+     * @param pkValues primary keys
+     */
+    void notifyListeners(final String entityOperation, final String entityName, final Long[] pkValues) {
+
+        final List<CacheableChangeListener> listeners = this.cacheableChangeListeners.get(entityName);
+
+        if (listeners != null) {
+            for (final CacheableChangeListener listener : listeners) {
+                try {
+                    listener.onCacheableChange(entityOperation, entityName, pkValues);
+                } catch (Exception exp) {
+                    LOG.error("Change listener failed for " + entityName + " " + entityOperation + ": " + exp.getMessage(), exp);
+                }
+            }
+        }
+
+    }
+
     /**
      * Resolve caches names for invalidation for given entity and operation.
      * @param entityOperation given operation
@@ -277,4 +403,9 @@ public class CacheDirectorImpl implements CacheDirector {
     public void setSkipEvictAll(final Set<String> skipEvictAll) {
         this.skipEvictAll = skipEvictAll;
     }
+
+    /** IoC. Set listeners to notify about entity changes (entity name to listeners).  */
+    public void setCacheableChangeListeners(final Map<String, List<CacheableChangeListener>> cacheableChangeListeners) {
+        this.cacheableChangeListeners = cacheableChangeListeners;
+    }
 }
@@ -94,6 +94,7 @@ public class PromotionContextFactoryImpl implements PromotionContextFactory {
                 }
             }
         }
+        ctx.buildIndex();
         return ctx;
     }
 
@@ -18,6 +18,8 @@ package org.yes.cart.promotion.impl;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.domain.entity.Customer;
 import org.yes.cart.domain.entity.Promotion;
@@ -36,6 +38,8 @@ import java.util.*;
  */
 public class PromotionContextImpl implements PromotionContext {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PromotionContextImpl.class);
+
     private final String shopCode;
     private final String currency;
     private final PromotionApplicationStrategy strategy;
@@ -45,6 +49,8 @@ public class PromotionContextImpl implements PromotionContext {
 
     private final Map<String, List<List<PromoTriplet>>> promotionBuckets = new HashMap<>();
 
+    private PromotionIndex itemPromotionIndex;
+
     PromotionContextImpl(final String shopCode,
                          final String currency,
                          final PromotionApplicationStrategy strategy,
@@ -85,6 +91,25 @@ public class PromotionContextImpl implements PromotionContext {
         }
     }
 
+    /**
+     * Build index of item promotions. Must be invoked after all promotions are added.
+     */
+    void buildIndex() {
+
+        final List<List<PromoTriplet>> itemPromoBuckets = promotionBuckets.get(Promotion.TYPE_ITEM);
+        if (CollectionUtils.isNotEmpty(itemPromoBuckets)) {
+            itemPromotionIndex = new PromotionIndex(itemPromoBuckets);
+        }
+
+    }
+
+    /**
+     * @return item promotion index or null if context is not indexed
+     */
+    PromotionIndex getItemPromotionIndex() {
+        return itemPromotionIndex;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getShopCode() {
@@ -145,27 +170,52 @@ public class PromotionContextImpl implements PromotionContext {
             return;
         }
 
+        final List<String> customerTags = getCustomerTags(customer);
+
         final Map<String, Object> context = new HashMap<>();
         context.put(PromotionCondition.VAR_CONDITION_SUPPORT, this.conditionSupport);
         context.put(PromotionCondition.VAR_REGISTERED, customer != null && !customer.isGuest());
         context.put(PromotionCondition.VAR_CUSTOMER, customer);
-        context.put(PromotionCondition.VAR_CUSTOMER_TAGS, getCustomerTags(customer));
+        context.put(PromotionCondition.VAR_CUSTOMER_TAGS, customerTags);
         context.put(PromotionCondition.VAR_CUSTOMER_TYPE, getCustomerType(cart, customer));
         context.put(PromotionCondition.VAR_CUSTOMER_PRICING_POLICY, getCustomerPricingPolicies(cart, customer));
         context.put(PromotionCondition.VAR_CART, cart);
 
+        final PromotionIndex index = this.itemPromotionIndex;
+        final long evaluated = index != null ? index.getEvaluated() : 0L;
+        final long skipped = index != null ? index.getSkipped() : 0L;
+
         for (final CartItem item : cart.getCartItemList()) {
 
             if (!item.isFixedPrice()) { // Offers do not participate in promotions
 
                 context.put(PromotionCondition.VAR_CART_ITEM, item);
 
-                applyPromotions(itemPromoBuckets, context);
+                if (index != null) {
+
+                    final List<List<PromoTriplet>> candidates = index.select(
+                            item.getProductSkuCode(), cart.getShoppingContext().getCustomerShopId(), customerTags, this.conditionSupport);
+
+                    if (!candidates.isEmpty()) {
+                        applyPromotions(candidates, context);
+                    }
+
+                } else {
+
+                    applyPromotions(itemPromoBuckets, context);
+
+                }
 
             }
 
         }
 
+        if (index != null) {
+            // counters are shared by all carts, so this is approximate under concurrent load
+            LOG.debug("Item promotions for cart {}: {} evaluated, {} skipped by index",
+                    cart.getGuid(), index.getEvaluated() - evaluated, index.getSkipped() - skipped);
+        }
+
     }
 
     /** {@inheritDoc} */
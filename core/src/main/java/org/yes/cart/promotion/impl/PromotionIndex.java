@@ -0,0 +1,383 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.yes.cart.domain.entity.Brand;
+import org.yes.cart.promotion.PromoTriplet;
+import org.yes.cart.promotion.PromotionConditionSupport;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of item promotions by predicates declared in their eligibility conditions.
+ *
+ * Condition is analysed as conjunction of top level terms ("A &amp;&amp; B &amp;&amp; ..."). If one of the terms
+ * is one of the standard rule templates:
+ *
+ * SKU == 'X' (or shoppingCartItem.productSkuCode == 'X'),
+ * ['X', 'Y'].contains(SKU) (or .contains(shoppingCartItem.productSkuCode)),
+ * isSKUinCategory(SKU, 'X', 'Y'),
+ * isSKUofBrand(SKU, 'X', 'Y'),
+ * customerTags.contains('X')
+ *
+ * then condition can only be true if this term is true, so promotion is indexed by it. Promotions with
+ * conditions that cannot be analysed (disjunctions, multiple statements, custom scripts) are always
+ * candidates. For each cart item only candidate promotions are passed to application strategy, bucket
+ * structure (and hence combinability) is preserved.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:29
+ */
+final class PromotionIndex {
+
+    private static final String ITEM_SKU = "(?:SKU|shoppingCartItem\\??\\.productSkuCode)";
+    private static final String LITERALS = "('[^'\\\\]*'(?:\\s*,\\s*'[^'\\\\]*')*)";
+
+    private static final Pattern SKU_EQ = Pattern.compile("^" + ITEM_SKU + "\\s*==\\s*('[^'\\\\]*')$");
+    private static final Pattern SKU_EQ_REVERSE = Pattern.compile("^('[^'\\\\]*')\\s*==\\s*" + ITEM_SKU + "$");
+    private static final Pattern SKU_IN = Pattern.compile("^\\[\\s*" + LITERALS + "\\s*\\]\\.contains\\(\\s*" + ITEM_SKU + "\\s*\\)$");
+    private static final Pattern CATEGORY = Pattern.compile("^isSKUinCategory\\(\\s*SKU\\s*,\\s*" + LITERALS + "\\s*\\)$");
+    private static final Pattern BRAND = Pattern.compile("^isSKUofBrand\\(\\s*SKU\\s*,\\s*" + LITERALS + "\\s*\\)$");
+    private static final Pattern TAG = Pattern.compile("^customerTags\\.contains\\(\\s*'([^'\\\\]*)'\\s*\\)$");
+    private static final Pattern LITERAL = Pattern.compile("'([^'\\\\]*)'");
+
+    private final List<List<PromoTriplet>> buckets;
+    private final int[][] ordinals;
+    private final int size;
+
+    private final BitSet unguarded = new BitSet();
+    private final Map<String, BitSet> bySku = new HashMap<>();
+    private final Map<String, BitSet> byTag = new HashMap<>();
+    private final Map<List<String>, BitSet> byCategories = new LinkedHashMap<>();
+    private final Map<List<String>, BitSet> byBrands = new LinkedHashMap<>();
+
+    private final AtomicLong evaluated = new AtomicLong(0L);
+    private final AtomicLong skipped = new AtomicLong(0L);
+
+    /**
+     * Build index for given promotion buckets.
+     *
+     * @param buckets promotion buckets (0th bucket are combinable promotions)
+     */
+    PromotionIndex(final List<List<PromoTriplet>> buckets) {
+
+        this.buckets = buckets;
+        this.ordinals = new int[buckets.size()][];
+
+        int ordinal = 0;
+        for (int b = 0; b < buckets.size(); b++) {
+            final List<PromoTriplet> bucket = buckets.get(b);
+            this.ordinals[b] = new int[bucket.size()];
+            for (int p = 0; p < bucket.size(); p++) {
+                this.ordinals[b][p] = ordinal;
+                index(ordinal, bucket.get(p).getPromotion().getEligibilityCondition());
+                ordinal++;
+            }
+        }
+        this.size = ordinal;
+
+    }
+
+    private void index(final int ordinal, final String condition) {
+
+        final List<String> terms = new ArrayList<>();
+        if (StringUtils.isBlank(condition) || !splitConjunction(condition, terms)) {
+            this.unguarded.set(ordinal);
+            return;
+        }
+
+        // Use most selective term: SKU, category, brand, customer tag
+        for (final Pattern pattern : new Pattern[] { SKU_EQ, SKU_EQ_REVERSE, SKU_IN }) {
+            for (final String term : terms) {
+                final Matcher sku = pattern.matcher(term);
+                if (sku.matches()) {
+                    for (final String code : literals(sku.group(1))) {
+                        this.bySku.computeIfAbsent(code, k -> new BitSet()).set(ordinal);
+                    }
+                    return;
+                }
+            }
+        }
+        for (final String term : terms) {
+            final Matcher category = CATEGORY.matcher(term);
+            if (category.matches()) {
+                this.byCategories.computeIfAbsent(literals(category.group(1)), k -> new BitSet()).set(ordinal);
+                return;
+            }
+        }
+        for (final String term : terms) {
+            final Matcher brand = BRAND.matcher(term);
+            if (brand.matches()) {
+                this.byBrands.computeIfAbsent(literals(brand.group(1)), k -> new BitSet()).set(ordinal);
+                return;
+            }
+        }
+        for (final String term : terms) {
+            final Matcher tag = TAG.matcher(term);
+            if (tag.matches()) {
+                this.byTag.computeIfAbsent(tag.group(1), k -> new BitSet()).set(ordinal);
+                return;
+            }
+        }
+
+        this.unguarded.set(ordinal);
+
+    }
+
+    private static List<String> literals(final String list) {
+        final List<String> values = new ArrayList<>();
+        final Matcher literal = LITERAL.matcher(list);
+        while (literal.find()) {
+            values.add(literal.group(1));
+        }
+        return values;
+    }
+
+    /**
+     * Split expression into top level conjunction terms.
+     *
+     * @param expression expression
+     * @param terms      terms (output)
+     *
+     * @return true if expression is a single conjunction, false if it cannot be safely analysed
+     */
+    static boolean splitConjunction(final String expression, final List<String> terms) {
+
+        String expr = expression.trim();
+        if (expr.startsWith("return ")) {
+            expr = expr.substring(7).trim();
+        }
+        while (expr.endsWith(";")) {
+            expr = expr.substring(0, expr.length() - 1).trim();
+        }
+
+        int depth = 0;
+        int start = 0;
+        boolean quoted = false;
+        char lastSignificant = '&';
+        final List<String> parts = new ArrayList<>();
+        for (int i = 0; i < expr.length(); i++) {
+            final char ch = expr.charAt(i);
+            if (quoted) {
+                if (ch == '\\') {
+                    return false;
+                } else if (ch == '\'') {
+                    quoted = false;
+                }
+                continue;
+            }
+            switch (ch) {
+                case '\'':
+                    quoted = true;
+                    break;
+                case '"':
+                case ';':
+                case '{':
+                case '}':
+                    // strings with interpolation, multiple statements and closures are not analysed
+                    return false;
+                case '(':
+                case '[':
+                    depth++;
+                    break;
+                case ')':
+                case ']':
+                    depth--;
+                    break;
+                case '\n':
+                case '\r':
+                    // new line terminates statement unless expression obviously continues
+                    if (depth == 0 && lastSignificant != '&' && lastSignificant != '(' && lastSignificant != ',') {
+                        final String rest = expr.substring(i).trim();
+                        if (!rest.startsWith("&&")) {
+                            return false;
+                        }
+                    }
+                    break;
+                case '|':
+                case '?':
+                    if (depth == 0 && !(ch == '?' && i + 1 < expr.length() && expr.charAt(i + 1) == '.')) {
+                        // disjunction, ternary or elvis operator at top level
+                        return false;
+                    }
+                    break;
+                case '&':
+                    if (depth == 0) {
+                        if (i + 1 < expr.length() && expr.charAt(i + 1) == '&') {
+                            parts.add(expr.substring(start, i));
+                            start = i + 2;
+                            i++;
+                        } else {
+                            return false;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (!Character.isWhitespace(ch)) {
+                lastSignificant = ch;
+            }
+        }
+        if (quoted || depth != 0) {
+            return false;
+        }
+        parts.add(expr.substring(start));
+
+        for (final String part : parts) {
+            final String term = part.trim();
+            if (term.isEmpty()) {
+                return false;
+            }
+            final String unwrapped = unwrap(term);
+            if (unwrapped != null) {
+                if (!splitConjunction(unwrapped, terms)) {
+                    // parenthesised term that cannot be analysed is still a valid opaque term
+                    terms.add(term);
+                }
+            } else {
+                terms.add(term);
+            }
+        }
+        return true;
+
+    }
+
+    /*
+     * Remove parentheses enclosing whole term, null if term is not enclosed.
+     */
+    private static String unwrap(final String term) {
+        if (term.charAt(0) != '(' || term.charAt(term.length() - 1) != ')') {
+            return null;
+        }
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < term.length() - 1; i++) {
+            final char ch = term.charAt(i);
+            if (ch == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && ch == '(') {
+                depth++;
+            } else if (!quoted && ch == ')') {
+                depth--;
+                if (depth == 0) {
+                    return null; // closes before end, e.g. "(a) && (b)"
+                }
+            }
+        }
+        return term.substring(1, term.length() - 1);
+    }
+
+    /**
+     * Select candidate promotions for given cart item.
+     *
+     * @param sku              item SKU
+     * @param customerShopId   customer shop
+     * @param customerTags     customer tags
+     * @param conditionSupport condition support
+     *
+     * @return buckets with candidate promotions only
+     */
+    List<List<PromoTriplet>> select(final String sku,
+                                    final Long customerShopId,
+                                    final List<String> customerTags,
+                                    final PromotionConditionSupport conditionSupport) {
+
+        final BitSet candidates = (BitSet) this.unguarded.clone();
+
+        if (sku != null) {
+            final BitSet skuCandidates = this.bySku.get(sku);
+            if (skuCandidates != null) {
+                candidates.or(skuCandidates);
+            }
+            if (!this.byBrands.isEmpty()) {
+                final Brand brand = conditionSupport.getProductBrand(sku);
+                if (brand != null) {
+                    for (final Map.Entry<List<String>, BitSet> brands : this.byBrands.entrySet()) {
+                        for (final String brandName : brands.getKey()) {
+                            if (brandName.equalsIgnoreCase(brand.getName())) {
+                                candidates.or(brands.getValue());
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            for (final Map.Entry<List<String>, BitSet> categories : this.byCategories.entrySet()) {
+                final List<String> guids = categories.getKey();
+                if (conditionSupport.isProductInCategory(sku, customerShopId, guids.toArray(new String[guids.size()]))) {
+                    candidates.or(categories.getValue());
+                }
+            }
+        }
+
+        for (final String tag : customerTags) {
+            final BitSet tagCandidates = this.byTag.get(tag);
+            if (tagCandidates != null) {
+                candidates.or(tagCandidates);
+            }
+        }
+
+        final int selected = candidates.cardinality();
+        this.evaluated.addAndGet(selected);
+        this.skipped.addAndGet(this.size - selected);
+
+        if (selected == this.size) {
+            return this.buckets;
+        }
+
+        final List<List<PromoTriplet>> rez = new ArrayList<>();
+        for (int b = 0; b < this.buckets.size(); b++) {
+            final List<PromoTriplet> bucket = this.buckets.get(b);
+            final int[] bucketOrdinals = this.ordinals[b];
+            List<PromoTriplet> filtered = null;
+            for (int p = 0; p < bucketOrdinals.length; p++) {
+                if (candidates.get(bucketOrdinals[p])) {
+                    if (filtered == null) {
+                        filtered = new ArrayList<>(bucketOrdinals.length - p);
+                    }
+                    filtered.add(bucket.get(p));
+                }
+            }
+            if (filtered != null) {
+                rez.add(filtered.size() == bucket.size() ? bucket : filtered);
+            }
+        }
+        return rez;
+
+    }
+
+    /**
+     * @return number of promotions (condition evaluations) passed to application strategy
+     */
+    long getEvaluated() {
+        return evaluated.get();
+    }
+
+    /**
+     * @return number of promotions (condition evaluations) skipped since they could not be eligible
+     */
+    long getSkipped() {
+        return skipped.get();
+    }
+
+}
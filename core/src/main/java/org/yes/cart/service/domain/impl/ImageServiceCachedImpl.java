@@ -87,6 +87,14 @@ public class ImageServiceCachedImpl implements ImageService {
         return imageService.isSizeAllowed(width, height);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getAllowedSizes() {
+        return imageService.getAllowedSizes();
+    }
+
     /** {@inheritDoc} */
     @Override
     public MediaFileNameStrategy getImageNameStrategy(final String url) {
@@ -21,13 +21,16 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.SeoImage;
 import org.yes.cart.service.domain.ImageService;
 import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.service.media.ImageResizeEngine;
 import org.yes.cart.service.media.MediaFileNameStrategy;
 import org.yes.cart.service.media.MediaFileNameStrategyResolver;
+import org.yes.cart.service.media.impl.ImageResizeEngineAwtImpl;
 import org.yes.cart.stream.io.IOProvider;
 
 import javax.imageio.ImageIO;
@@ -35,10 +38,10 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.math.BigDecimal;
-import java.util.Collections;
+import java.util.*;
 import java.util.List;
-import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Image service to resize and store resized image.
@@ -67,6 +70,21 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
 
     private final IOProvider ioProvider;
 
+    private ImageResizeEngine resizeEngine = new ImageResizeEngineAwtImpl();
+
+    private ThreadPoolTaskExecutor resizeExecutor;
+    private long resizeTimeoutMs = 10000L;
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> resizesInFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong resizesRequested = new AtomicLong(0L);
+    private final AtomicLong resizesCoalesced = new AtomicLong(0L);
+    private final AtomicLong resizesRejected = new AtomicLong(0L);
+    private final AtomicLong resizesTimedOut = new AtomicLong(0L);
+    private final AtomicLong resizesCompleted = new AtomicLong(0L);
+    private final AtomicLong resizeTotalMs = new AtomicLong(0L);
+    private final AtomicLong resizeMaxMs = new AtomicLong(0L);
+    private volatile long resizeLastMs = 0L;
 
     /**
      * Construct image service.
@@ -122,6 +140,7 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
         this.allowedSizes = properties.getProperty("imagevault.resize.allowed.sizes", this.allowedSizes);
         this.cropToFit = Boolean.valueOf(properties.getProperty("imagevault.resize.crop.to.fit", String.valueOf(this.cropToFit)));
         this.forceCropToFitOnSize = NumberUtils.toInt(properties.getProperty("imagevault.resize.force.crop.to.fit.on.size"), this.forceCropToFitOnSize);
+        this.resizeTimeoutMs = NumberUtils.toLong(properties.getProperty("imagevault.resize.timeout.ms"), this.resizeTimeoutMs);
 
         this.defaultBorder = new Color(
                 NumberUtils.toInt(properties.getProperty("imagevault.resize.border.color.R"), this.defaultBorder.getRed()),
@@ -154,15 +173,14 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
 
         try {
 
-            final InputStream bis = new ByteArrayInputStream(content);
+            int x = NumberUtils.toInt(width);
+            int y = NumberUtils.toInt(height);
 
-            final BufferedImage originalImg = ImageIO.read(bis);
+            final BufferedImage originalImg = resizeEngine.read(content, x, y);
             if (originalImg != null) {
                 final String codec = getCodecFromFilename(filename);
                 final boolean supportsAlpha = hasAlphaSupport(codec);
 
-                int x = NumberUtils.toInt(width);
-                int y = NumberUtils.toInt(height);
                 int originalX = originalImg.getWidth();
                 int originalY = originalImg.getHeight();
 
@@ -171,7 +189,6 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
                 final int imageType = originalImg.getType();
 
                 final Image resizedImg;
-                //            final BufferedImage resizedImg;
                 final int padX, padY;
                 if (doCropToFit) {
                     // crop the original to best fit of target size
@@ -180,24 +197,13 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
                     padY = 0;
 
                     final BufferedImage croppedImg = originalImg.getSubimage(cropDims[0], cropDims[1], cropDims[2], cropDims[3]);
-                    resizedImg = croppedImg.getScaledInstance(x, y, Image.SCALE_SMOOTH);
-
-                    //                final BufferedImage croppedImg = originalImg.getSubimage(cropDims[0], cropDims[1], cropDims[2], cropDims[3]);
-                    //                resizedImg = new BufferedImage(y, x, imageType);
-                    //                Graphics2D graphics = resizedImg.createGraphics();
-                    //                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                    //                graphics.drawImage(croppedImg, 0, 0, x, y, null);
+                    resizedImg = resizeEngine.scale(croppedImg, x, y);
                 } else {
                     int[] scaleDims = scaleImageToCenter(x, y, originalX, originalY);
                     padX = scaleDims[0];
                     padY = scaleDims[1];
 
-                    resizedImg = originalImg.getScaledInstance(scaleDims[2], scaleDims[3], Image.SCALE_SMOOTH);
-
-                    //                resizedImg = new BufferedImage(scaleDims[3], scaleDims[2], imageType);
-                    //                Graphics2D graphics = resizedImg.createGraphics();
-                    //                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                    //                graphics.drawImage(originalImg, 0, 0, scaleDims[2], scaleDims[3], null);
+                    resizedImg = resizeEngine.scale(originalImg, scaleDims[2], scaleDims[3]);
                 }
 
                 // base canvas
@@ -210,6 +216,7 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
 
                 // insert scaled image
                 graphics.drawImage(resizedImg, padX, padY, null);
+                graphics.dispose();
 
                 final ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
@@ -325,6 +332,25 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
         return isSizeAllowed(width + "x" + height);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getAllowedSizes() {
+
+        final SystemService systemService = getSystemService();
+        final String allowedSizes = systemService != null ? systemService.getAttributeValue(AttributeNamesKeys.System.SYSTEM_ALLOWED_IMAGE_SIZES) : null;
+
+        final List<String> sizes = new ArrayList<>();
+        for (final String size : StringUtils.split(StringUtils.isNotBlank(allowedSizes) ? allowedSizes : this.allowedSizes, ", ")) {
+            if (size.matches("\\d+x\\d+") && !sizes.contains(size)) {
+                sizes.add(size);
+            }
+        }
+        return sizes;
+
+    }
+
     /** {@inheritDoc} */
     @Override
     public MediaFileNameStrategy getImageNameStrategy(final String url) {
@@ -357,23 +383,8 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
 
                 if (!resizedIsNewer) {
 
-                    final byte[] originalContent = ioProvider.read(original, ctx);
-                    final byte[] resizedContent = resizeImage(original, originalContent, width, height);
-
-                    if (resizedContent.length > 0) {
-                        ioProvider.write(resized, resizedContent, ctx);
-                        return resizedContent;
-                    }
-
-                    /*
-                         If we failed to resize this is probably due to invalid color metadata for the original image.
-                         JDK image API will fail if the metadata is incorrect. In order to fail gracefully we
-                         just pass back the original bytes so that the original image is used instead. There will be an
-                         ERROR log produced by catch block from #resizeImage(), so sys admins should provide regular
-                         feedback to business users to fix these images. Usually the fix is  simply erasing all meta
-                         from the image.
-                     */
-                    return originalContent;
+                    return resizeSingleFlight(original, resized, width, height, cropToFit);
+
                 }
 
                 return ioProvider.read(resized, ctx);
@@ -391,6 +402,155 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
         }
     }
 
+    /*
+     * Only one resize per target file runs at any time, all concurrent requests for the same target wait for
+     * its result. Resize runs on resize executor (if configured) so that number of concurrent resizes is bounded.
+     * If executor is saturated or resize takes longer than resize timeout original image is served instead.
+     */
+    private byte[] resizeSingleFlight(final String original,
+                                      final String resized,
+                                      final String width,
+                                      final String height,
+                                      final boolean cropToFit) throws IOException {
+
+        final CompletableFuture<byte[]> resize = new CompletableFuture<>();
+        final CompletableFuture<byte[]> inProgress = this.resizesInFlight.putIfAbsent(resized, resize);
+        if (inProgress != null) {
+            this.resizesCoalesced.incrementAndGet();
+            return awaitResize(inProgress, original, resized);
+        }
+
+        this.resizesRequested.incrementAndGet();
+
+        final long submitted = System.currentTimeMillis();
+        final Runnable task = () -> {
+            byte[] content = null;
+            Throwable error = null;
+            try {
+                content = resizeAndStore(original, resized, width, height, cropToFit);
+            } catch (Throwable exp) {
+                error = exp;
+            }
+            // release target before waiting callers proceed, so that subsequent requests see the new file
+            this.resizesInFlight.remove(resized, resize);
+            recordResize(System.currentTimeMillis() - submitted);
+            if (error != null) {
+                resize.completeExceptionally(error);
+            } else {
+                resize.complete(content);
+            }
+        };
+
+        if (this.resizeExecutor == null) {
+            task.run();
+        } else {
+            try {
+                this.resizeExecutor.execute(task);
+            } catch (RejectedExecutionException ree) {
+                this.resizesRejected.incrementAndGet();
+                this.resizesInFlight.remove(resized, resize);
+                LOG.warn("Image resize pool is saturated, serving original image {} instead of {}", original, resized);
+                try {
+                    final byte[] originalContent = ioProvider.read(original, Collections.EMPTY_MAP);
+                    resize.complete(originalContent);
+                    return originalContent;
+                } catch (IOException ioe) {
+                    resize.completeExceptionally(ioe);
+                    throw ioe;
+                }
+            }
+        }
+
+        return awaitResize(resize, original, resized);
+
+    }
+
+    private byte[] awaitResize(final CompletableFuture<byte[]> resize,
+                               final String original,
+                               final String resized) throws IOException {
+
+        try {
+            return resize.get(this.resizeTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException te) {
+            this.resizesTimedOut.incrementAndGet();
+            LOG.warn("Image resize {} is taking longer than {}ms, serving original image {}", resized, this.resizeTimeoutMs, original);
+            return ioProvider.read(original, Collections.EMPTY_MAP);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return ioProvider.read(original, Collections.EMPTY_MAP);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+
+    }
+
+    private byte[] resizeAndStore(final String original,
+                                  final String resized,
+                                  final String width,
+                                  final String height,
+                                  final boolean cropToFit) throws IOException {
+
+        final Map<String, Object> ctx = Collections.EMPTY_MAP;
+
+        final byte[] originalContent = ioProvider.read(original, ctx);
+        final byte[] resizedContent = resizeImage(original, originalContent, width, height, cropToFit);
+
+        if (resizedContent.length > 0) {
+            ioProvider.write(resized, resizedContent, ctx);
+            return resizedContent;
+        }
+
+        /*
+             If we failed to resize this is probably due to invalid color metadata for the original image.
+             JDK image API will fail if the metadata is incorrect. In order to fail gracefully we
+             just pass back the original bytes so that the original image is used instead. There will be an
+             ERROR log produced by catch block from #resizeImage(), so sys admins should provide regular
+             feedback to business users to fix these images. Usually the fix is  simply erasing all meta
+             from the image.
+         */
+        return originalContent;
+
+    }
+
+    private void recordResize(final long latencyMs) {
+        this.resizesCompleted.incrementAndGet();
+        this.resizeTotalMs.addAndGet(latencyMs);
+        this.resizeMaxMs.accumulateAndGet(latencyMs, Math::max);
+        this.resizeLastMs = latencyMs;
+    }
+
+    /**
+     * Resize statistics: requested (actual resizes), coalesced (requests that waited for resize of the same
+     * file already in progress), rejected (pool saturated), timedOut, completed, resize pool queue depth and
+     * active threads and latency (including time in queue).
+     *
+     * @return statistics
+     */
+    public Map<String, String> getResizeStatistics() {
+
+        final long completed = this.resizesCompleted.get();
+
+        final Map<String, String> stats = new TreeMap<>();
+        stats.put("inFlight", String.valueOf(this.resizesInFlight.size()));
+        stats.put("requested", String.valueOf(this.resizesRequested.get()));
+        stats.put("coalesced", String.valueOf(this.resizesCoalesced.get()));
+        stats.put("rejected", String.valueOf(this.resizesRejected.get()));
+        stats.put("timedOut", String.valueOf(this.resizesTimedOut.get()));
+        stats.put("completed", String.valueOf(completed));
+        if (this.resizeExecutor != null && this.resizeExecutor.getThreadPoolExecutor() != null) {
+            stats.put("queueDepth", String.valueOf(this.resizeExecutor.getThreadPoolExecutor().getQueue().size()));
+            stats.put("active", String.valueOf(this.resizeExecutor.getActiveCount()));
+        }
+        stats.put("latencyLastMs", String.valueOf(this.resizeLastMs));
+        stats.put("latencyMaxMs", String.valueOf(this.resizeMaxMs.get()));
+        stats.put("latencyAvgMs", String.valueOf(completed == 0L ? 0L : this.resizeTotalMs.get() / completed));
+        return stats;
+
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean isImageInRepository(final String fullFileName,
@@ -501,6 +661,33 @@ public class ImageServiceImpl extends BaseGenericServiceImpl<SeoImage> implement
         return seoImages.get(0);
     }
 
+    /**
+     * Spring IoC setter.
+     *
+     * @param resizeEngine engine used to decode and scale images (default is AWT area averaging)
+     */
+    public void setResizeEngine(final ImageResizeEngine resizeEngine) {
+        this.resizeEngine = resizeEngine;
+    }
+
+    /**
+     * Spring IoC setter. If set, resizes are performed on this (bounded) pool rather than request thread.
+     *
+     * @param resizeExecutor resize executor
+     */
+    public void setResizeExecutor(final ThreadPoolTaskExecutor resizeExecutor) {
+        this.resizeExecutor = resizeExecutor;
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param resizeTimeoutMs max time in ms to wait for resize, original image is served afterwards
+     */
+    public void setResizeTimeoutMs(final long resizeTimeoutMs) {
+        this.resizeTimeoutMs = resizeTimeoutMs;
+    }
+
     /**
      * Spring IoC.
      *
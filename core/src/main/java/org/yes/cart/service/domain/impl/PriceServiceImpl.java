@@ -40,6 +40,8 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
 
     private final GenericDAO<SkuPrice, Long> skuPriceDao;
 
+    private SkuPriceTable priceTable;
+
     /**
      * Constructor.
      *
@@ -65,6 +67,12 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
                                     final String pricingPolicy,
                                     final String supplier) {
 
+        if (priceTable != null) {
+            final SkuPrice price = priceTable.getMinimalPrice(productId, selectedSku, customerShopId, masterShopId,
+                    currencyCode, quantity, enforceTier, pricingPolicy, supplier, now());
+            return price != null ? price : skuPriceDao.getEntityFactory().getByIface(SkuPrice.class);
+        }
+
         final List<Pair<String, SkuPrice>> skuPrices;
         if (selectedSku == null && productId != null) {
             skuPrices = getSkuPrices(productId, customerShopId, masterShopId, currencyCode, pricingPolicy, supplier);
@@ -147,6 +155,11 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
                                               final String pricingPolicy,
                                               final String supplier) {
 
+        if (priceTable != null) {
+            return priceTable.getAllCurrentPrices(productId, selectedSku, customerShopId, masterShopId,
+                    currencyCode, pricingPolicy, supplier, now());
+        }
+
         final List<Pair<String, SkuPrice>> skuPrices;
         if (selectedSku == null && productId != null) {
             skuPrices = getSkuPrices(productId, customerShopId, masterShopId, currencyCode, pricingPolicy, supplier);
@@ -395,7 +408,9 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
     @Override
     public SkuPrice create(final SkuPrice instance) {
         ensureNonZeroPrices(instance);
-        return super.create(instance);
+        final SkuPrice created = super.create(instance);
+        invalidatePriceTable(instance);
+        return created;
     }
 
     /**
@@ -404,7 +419,24 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
     @Override
     public SkuPrice update(final SkuPrice instance) {
         ensureNonZeroPrices(instance);
-        return super.update(instance);
+        final SkuPrice updated = super.update(instance);
+        invalidatePriceTable(instance);
+        return updated;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(final SkuPrice instance) {
+        super.delete(instance);
+        invalidatePriceTable(instance);
+    }
+
+    private void invalidatePriceTable(final SkuPrice entity) {
+        if (priceTable != null && entity.getSkuCode() != null) {
+            priceTable.invalidateSku(entity.getSkuCode());
+        }
     }
 
 
@@ -498,4 +530,14 @@ public class PriceServiceImpl extends BaseGenericServiceImpl<SkuPrice> implement
                 query.getSecond()
         );
     }
+
+    /**
+     * Spring IoC.
+     *
+     * @param priceTable precomputed price table, if not set prices are resolved by querying database
+     */
+    public void setPriceTable(final SkuPriceTable priceTable) {
+        this.priceTable = priceTable;
+    }
+
 }
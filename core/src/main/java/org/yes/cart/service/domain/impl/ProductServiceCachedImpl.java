@@ -384,6 +384,14 @@ public class ProductServiceCachedImpl implements ProductService {
         productService.reindexProductSku(code);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reindexProductSkus(final Collection<String> codes) {
+        productService.reindexProductSkus(codes);
+    }
+
 
     /**
      * {@inheritDoc}
@@ -744,6 +744,26 @@ public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implemen
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reindexProductSkus(final Collection<String> codes) {
+        if (CollectionUtils.isNotEmpty(codes)) {
+            final List<Object[]> skuAndProductIds = productSkuDao.findQueryObjectsByNamedQuery("SKU.AND.PRODUCT.IDS.BY.CODES", new ArrayList<>(codes));
+            if (!skuAndProductIds.isEmpty()) {
+                final List<Long> skuIds = new ArrayList<>(skuAndProductIds.size());
+                final Set<Long> productIds = new LinkedHashSet<>();
+                for (final Object[] skuAndProductId : skuAndProductIds) {
+                    skuIds.add((Long) skuAndProductId[0]);
+                    productIds.add((Long) skuAndProductId[1]);
+                }
+                productSkuDao.fullTextSearchReindex(skuIds);
+                productDao.fullTextSearchReindex(productIds);
+            }
+        }
+    }
+
     private Pair<String, Object[]> findProductQuery(final boolean count,
                                                     final String sort,
                                                     final boolean sortDescending,
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.domain.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.yes.cart.cluster.service.CacheDirector;
+import org.yes.cart.cluster.service.CacheableChangeListener;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.utils.MoneyUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precomputed price table used by {@link PriceServiceImpl} to resolve minimal and tier prices without
+ * database round trip and intermediate lists on every lookup.
+ *
+ * All prices of a SKU (all shops, currencies, pricing policies and suppliers) are loaded by single query
+ * and kept in "priceService-priceTable" cache as immutable rows grouped by shop and currency. Tiers within
+ * a group are sorted by quantity and have minimal positive price precomputed. Validity time frame is
+ * checked on lookup, so rows do not depend on current time and only need refreshing when prices change.
+ * Product to SKU codes mapping is kept in "priceService-priceTableProductSkus" cache.
+ *
+ * Refresh is incremental: price change events only evict rows of affected SKU codes (reverse mapping from
+ * price PK to SKU code is kept in the same cache alongside the rows).
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:21
+ */
+public class SkuPriceTable implements CacheableChangeListener {
+
+    private static final String SKU_PRICE_ENTITY = "SkuPriceEntity";
+
+    private static final Comparator<Tier> TIER_ORDER = (t1, t2) -> {
+        final int byTier = t1.quantity.compareTo(t2.quantity);
+        if (byTier != 0) {
+            return byTier;
+        }
+        final int byPrice = t1.minPrice.compareTo(t2.minPrice);
+        if (byPrice != 0) {
+            return byPrice;
+        }
+        return Long.compare(t1.pk, t2.pk);
+    };
+
+    private final GenericDAO<SkuPrice, Long> skuPriceDao;
+
+    private final Cache priceTableCache;
+    private final Cache productSkusCache;
+
+    private final AtomicLong generation = new AtomicLong(0L);
+
+    /**
+     * Construct price table.
+     *
+     * @param skuPriceDao  price DAO
+     * @param cacheManager cache manager
+     */
+    public SkuPriceTable(final GenericDAO<SkuPrice, Long> skuPriceDao,
+                         final CacheManager cacheManager) {
+        this.skuPriceDao = skuPriceDao;
+        this.priceTableCache = cacheManager.getCache("priceService-priceTable");
+        this.productSkusCache = cacheManager.getCache("priceService-priceTableProductSkus");
+    }
+
+    /**
+     * Resolve minimal price. Semantics are the same as {@link PriceServiceImpl#getMinimalPrice(Long, String, long, Long, String, BigDecimal, boolean, String, String)},
+     * prices with equal tier and price are resolved in favour of lower PK.
+     *
+     * @param productId      product PK (used only if SKU is not specified)
+     * @param selectedSku    optional SKU code
+     * @param customerShopId shop
+     * @param masterShopId   optional fallback shop
+     * @param currencyCode   currency code
+     * @param quantity       optional quantity
+     * @param enforceTier    enforce highest eligible tier
+     * @param pricingPolicy  optional pricing policy
+     * @param supplier       optional supplier
+     * @param now            time to check validity of prices
+     *
+     * @return minimal price or null if there is no eligible price
+     */
+    public SkuPrice getMinimalPrice(final Long productId,
+                                    final String selectedSku,
+                                    final long customerShopId,
+                                    final Long masterShopId,
+                                    final String currencyCode,
+                                    final BigDecimal quantity,
+                                    final boolean enforceTier,
+                                    final String pricingPolicy,
+                                    final String supplier,
+                                    final LocalDateTime now) {
+
+        final String[] skus = resolveSkus(productId, selectedSku);
+        final String policy = StringUtils.isNotBlank(pricingPolicy) ? pricingPolicy : null;
+        final String supplierCode = StringUtils.isNotBlank(supplier) ? supplier : null;
+
+        Tier best = null;
+        for (final String sku : skus) {
+            for (final Group group : getRows(sku).groups) {
+                if (group.matches(customerShopId, masterShopId, currencyCode)) {
+                    for (final Tier tier : group.tiers) {
+                        if (quantity != null && tier.quantity.compareTo(quantity) > 0) {
+                            break; // tiers are sorted by quantity
+                        }
+                        if (tier.isEligible(policy, supplierCode, now) && isBetter(tier, best, enforceTier)) {
+                            best = tier;
+                        }
+                    }
+                }
+            }
+        }
+
+        return best != null ? best.price : null;
+
+    }
+
+    /**
+     * Resolve all currently valid prices, one (the cheapest) per tier, sorted by tier. Semantics are the same
+     * as {@link PriceServiceImpl#getAllCurrentPrices(Long, String, long, Long, String, String, String)}.
+     *
+     * @param productId      product PK (used only if SKU is not specified)
+     * @param selectedSku    optional SKU code
+     * @param customerShopId shop
+     * @param masterShopId   optional fallback shop
+     * @param currencyCode   currency code
+     * @param pricingPolicy  optional pricing policy
+     * @param supplier       optional supplier
+     * @param now            time to check validity of prices
+     *
+     * @return prices
+     */
+    public List<SkuPrice> getAllCurrentPrices(final Long productId,
+                                              final String selectedSku,
+                                              final long customerShopId,
+                                              final Long masterShopId,
+                                              final String currencyCode,
+                                              final String pricingPolicy,
+                                              final String supplier,
+                                              final LocalDateTime now) {
+
+        final String[] skus = resolveSkus(productId, selectedSku);
+        final String policy = StringUtils.isNotBlank(pricingPolicy) ? pricingPolicy : null;
+        final String supplierCode = StringUtils.isNotBlank(supplier) ? supplier : null;
+
+        final List<Tier> eligible = new ArrayList<>();
+        for (final String sku : skus) {
+            for (final Group group : getRows(sku).groups) {
+                if (group.matches(customerShopId, masterShopId, currencyCode)) {
+                    for (final Tier tier : group.tiers) {
+                        if (tier.isEligible(policy, supplierCode, now)) {
+                            eligible.add(tier);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (eligible.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        eligible.sort(TIER_ORDER);
+
+        final List<SkuPrice> prices = new ArrayList<>(eligible.size());
+        BigDecimal last = null;
+        for (final Tier tier : eligible) {
+            if (last == null || tier.quantity.compareTo(last) != 0) {
+                prices.add(tier.price);
+                last = tier.quantity;
+            }
+        }
+        return prices;
+
+    }
+
+    /**
+     * Invalidate rows for given SKU.
+     *
+     * @param skuCode SKU code
+     */
+    public void invalidateSku(final String skuCode) {
+        this.generation.incrementAndGet();
+        this.priceTableCache.evict(skuCode);
+    }
+
+    /**
+     * Invalidate whole table.
+     */
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        this.priceTableCache.clear();
+        this.productSkusCache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCacheableChange(final String entityOperation, final String entityName, final Long[] pkValues) {
+
+        if (SKU_PRICE_ENTITY.equals(entityName)) {
+            invalidatePrices(entityOperation, pkValues);
+        } else {
+            // SKU code mapping changed, price rows are keyed by SKU code and are not affected
+            this.generation.incrementAndGet();
+            this.productSkusCache.clear();
+        }
+
+    }
+
+    private void invalidatePrices(final String entityOperation, final Long[] pkValues) {
+
+        if (pkValues.length == 0) {
+            invalidateAll();
+            return;
+        }
+
+        this.generation.incrementAndGet();
+
+        final Set<String> skus = new HashSet<>();
+        boolean unresolved = false;
+        for (final Long pk : pkValues) {
+            final Cache.ValueWrapper sku = this.priceTableCache.get(pk);
+            if (sku != null) {
+                skus.add((String) sku.get());
+                this.priceTableCache.evict(pk);
+            } else {
+                unresolved = true;
+            }
+        }
+
+        if (!CacheDirector.EntityOperation.DELETE.equals(entityOperation)) {
+            // new or changed prices, SKU code may have changed on update
+            for (final Object sku : this.skuPriceDao.findQueryObjectByNamedQuery("SKUPRICE.SKUCODES.BY.IDS", Arrays.asList(pkValues))) {
+                skus.add((String) sku);
+            }
+        } else if (unresolved) {
+            // removed price may still be in rows if its reverse mapping was evicted independently
+            this.priceTableCache.clear();
+            return;
+        }
+
+        for (final String sku : skus) {
+            this.priceTableCache.evict(sku);
+        }
+
+    }
+
+    private String[] resolveSkus(final Long productId, final String selectedSku) {
+
+        if (selectedSku != null) {
+            return new String[] { selectedSku };
+        } else if (productId != null) {
+            return getProductSkus(productId);
+        }
+        return new String[0];
+
+    }
+
+    private String[] getProductSkus(final Long productId) {
+
+        final Cache.ValueWrapper cached = this.productSkusCache.get(productId);
+        if (cached != null) {
+            return (String[]) cached.get();
+        }
+
+        final long gen = this.generation.get();
+        final List<Object> codes = this.skuPriceDao.findQueryObjectByNamedQuery("SKU.CODES.BY.PRODUCT.ID", productId);
+        final String[] skus = codes.toArray(new String[codes.size()]);
+        if (gen == this.generation.get()) {
+            this.productSkusCache.put(productId, skus);
+        }
+        return skus;
+
+    }
+
+    private Rows getRows(final String sku) {
+
+        final Cache.ValueWrapper cached = this.priceTableCache.get(sku);
+        if (cached != null) {
+            return (Rows) cached.get();
+        }
+
+        // do not publish rows if there was invalidation while loading, since they may be stale
+        final long gen = this.generation.get();
+        final Rows rows = loadRows(sku);
+        if (gen == this.generation.get()) {
+            for (final Group group : rows.groups) {
+                for (final Tier tier : group.tiers) {
+                    this.priceTableCache.put(tier.pk, sku);
+                }
+            }
+            this.priceTableCache.put(sku, rows);
+        }
+        return rows;
+
+    }
+
+    private Rows loadRows(final String sku) {
+
+        final Map<String, List<Tier>> grouped = new LinkedHashMap<>();
+        for (final Object[] row : this.skuPriceDao.findQueryObjectsByNamedQuery("SKUPRICE.TABLE.BY.SKUCODE", sku)) {
+            final Tier tier = new Tier((SkuPrice) row[0], (Long) row[1]);
+            grouped.computeIfAbsent(tier.shopId + ":" + tier.price.getCurrency(), k -> new ArrayList<>()).add(tier);
+        }
+
+        final Group[] result = new Group[grouped.size()];
+        int i = 0;
+        for (final List<Tier> tiers : grouped.values()) {
+            tiers.sort(TIER_ORDER);
+            final Tier first = tiers.get(0);
+            result[i++] = new Group(first.shopId, first.price.getCurrency(), tiers.toArray(new Tier[tiers.size()]));
+        }
+        return new Rows(result);
+
+    }
+
+    private static boolean isBetter(final Tier tier, final Tier best, final boolean enforceTier) {
+
+        if (best == null) {
+            return true;
+        }
+        if (enforceTier) {
+            // largest tier first
+            final int byTier = tier.quantity.compareTo(best.quantity);
+            if (byTier != 0) {
+                return byTier > 0;
+            }
+        }
+        // cheapest price
+        final int byPrice = tier.minPrice.compareTo(best.minPrice);
+        return byPrice < 0 || (byPrice == 0 && tier.pk < best.pk);
+
+    }
+
+    /**
+     * All prices of single SKU.
+     */
+    private static final class Rows {
+
+        private final Group[] groups;
+
+        private Rows(final Group[] groups) {
+            this.groups = groups;
+        }
+
+    }
+
+    /**
+     * Prices of single SKU in given shop and currency.
+     */
+    private static final class Group {
+
+        private final long shopId;
+        private final String currency;
+        private final Tier[] tiers;
+
+        private Group(final long shopId, final String currency, final Tier[] tiers) {
+            this.shopId = shopId;
+            this.currency = currency;
+            this.tiers = tiers;
+        }
+
+        private boolean matches(final long customerShopId, final Long masterShopId, final String currencyCode) {
+            return (this.shopId == customerShopId || (masterShopId != null && this.shopId == masterShopId))
+                    && this.currency.equals(currencyCode);
+        }
+
+    }
+
+    /**
+     * Single price with precomputed lookup values.
+     */
+    private static final class Tier {
+
+        private final SkuPrice price;
+        private final long pk;
+        private final long shopId;
+        private final BigDecimal quantity;
+        private final BigDecimal minPrice;
+        private final String pricingPolicy;
+        private final String supplier;
+
+        private Tier(final SkuPrice price, final long shopId) {
+            this.price = price;
+            this.pk = price.getSkuPriceId();
+            this.shopId = shopId;
+            this.quantity = price.getQuantity();
+            this.minPrice = MoneyUtils.minPositive(price.getSalePriceForCalculation());
+            this.pricingPolicy = StringUtils.isEmpty(price.getPricingPolicy()) ? null : price.getPricingPolicy();
+            this.supplier = StringUtils.isEmpty(price.getSupplier()) ? null : price.getSupplier();
+        }
+
+        private boolean isEligible(final String policy, final String supplierCode, final LocalDateTime now) {
+            return (this.pricingPolicy == null || this.pricingPolicy.equals(policy))
+                    && (this.supplier == null || this.supplier.equals(supplierCode))
+                    && this.price.isAvailable(now);
+        }
+
+    }
+
+}
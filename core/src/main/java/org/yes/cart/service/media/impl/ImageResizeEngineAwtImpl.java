@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.media.impl;
+
+import org.yes.cart.service.media.ImageResizeEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Resize engine that decodes full image and uses AWT area averaging scaling ({@link Image#SCALE_SMOOTH}).
+ * Produces good quality images but is slow and memory hungry for large originals.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:42
+ */
+public class ImageResizeEngineAwtImpl implements ImageResizeEngine {
+
+    /** {@inheritDoc} */
+    @Override
+    public BufferedImage read(final byte[] content, final int targetX, final int targetY) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(content));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Image scale(final BufferedImage source, final int width, final int height) {
+        return source.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.media.impl;
+
+import org.yes.cart.service.media.ImageResizeEngine;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Fast resize engine.
+ * <p/>
+ * Large images are decoded with subsampling (every n-th pixel) so that decoded image is no less than
+ * twice the target size, which avoids decoding full 6000px originals for small thumbnails. Scaling is
+ * done in steps each halving the image using bilinear or bicubic interpolation until the target size
+ * is reached, which gives quality comparable to area averaging at fraction of the cost.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:42
+ */
+public class ImageResizeEngineProgressiveImpl implements ImageResizeEngine {
+
+    private Object interpolation = RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+    private boolean subsampling = true;
+
+    /** {@inheritDoc} */
+    @Override
+    public BufferedImage read(final byte[] content, final int targetX, final int targetY) throws IOException {
+
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(new ByteArrayInputStream(content))) {
+
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                final ImageReadParam param = reader.getDefaultReadParam();
+                if (this.subsampling && targetX > 0 && targetY > 0) {
+                    final int factor = Math.min(reader.getWidth(0) / (targetX * 2), reader.getHeight(0) / (targetY * 2));
+                    if (factor > 1) {
+                        param.setSourceSubsampling(factor, factor, 0, 0);
+                    }
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Image scale(final BufferedImage source, final int width, final int height) {
+
+        final int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int currentX = source.getWidth();
+        int currentY = source.getHeight();
+
+        do {
+            // halve each dimension until it reaches target, upscale (if any) is done in one step
+            currentX = currentX > width ? Math.max(currentX / 2, width) : width;
+            currentY = currentY > height ? Math.max(currentY / 2, height) : height;
+
+            final BufferedImage step = new BufferedImage(currentX, currentY, type);
+            final Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, this.interpolation);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentX, currentY, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+
+        } while (currentX != width || currentY != height);
+
+        return current;
+
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param interpolation interpolation to use for each step: "bilinear" or "bicubic" (default)
+     */
+    public void setInterpolation(final String interpolation) {
+        if ("bilinear".equalsIgnoreCase(interpolation)) {
+            this.interpolation = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+        } else if ("bicubic".equalsIgnoreCase(interpolation)) {
+            this.interpolation = RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+        } else {
+            throw new IllegalArgumentException("Unsupported interpolation: " + interpolation);
+        }
+    }
+
+    /**
+     * Spring IoC setter.
+     *
+     * @param subsampling set to true (default) to decode large images at lower resolution
+     */
+    public void setSubsampling(final boolean subsampling) {
+        this.subsampling = subsampling;
+    }
+
+}
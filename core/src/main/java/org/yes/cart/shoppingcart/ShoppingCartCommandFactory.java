@@ -39,4 +39,14 @@ public interface ShoppingCartCommandFactory extends ShoppingCartCommand, Seriali
      */
     void execute(String key, ShoppingCart shoppingCart, Map<String, Object> parameters) throws IllegalArgumentException;
 
+    /**
+     * Execute a chain of commands (i.e. several calls to this factory) against the same cart. When
+     * deferred recalculation is enabled the cart is recalculated only once at the end of the chain.
+     * In either case the cart is fully recalculated when this method returns.
+     *
+     * @param shoppingCart the shopping cart
+     * @param chain        commands to execute
+     */
+    void executeChain(ShoppingCart shoppingCart, Runnable chain);
+
 }
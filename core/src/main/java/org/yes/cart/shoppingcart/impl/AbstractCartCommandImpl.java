@@ -70,11 +70,18 @@ public abstract class AbstractCartCommandImpl implements ConfigurableShoppingCar
     public abstract void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters);
 
     /**
-     * Recalculate shopping cart.
+     * Recalculate shopping cart. If deferred recalculation is enabled on command factory the cart is
+     * only marked for recalculation, which is performed once all commands are executed.
      *
      * @param shoppingCart current cart
      */
     protected void recalculate(final MutableShoppingCart shoppingCart) {
+        if (!CartRecalculationScope.defer(shoppingCart, () -> recalculateNow(shoppingCart))) {
+            recalculateNow(shoppingCart);
+        }
+    }
+
+    private void recalculateNow(final MutableShoppingCart shoppingCart) {
         shoppingCart.recalculate();
         setCheckoutOptions(shoppingCart);
     }
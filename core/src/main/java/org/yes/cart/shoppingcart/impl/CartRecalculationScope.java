@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.shoppingcart.impl;
+
+import org.yes.cart.shoppingcart.ShoppingCart;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Thread bound scope of deferred cart recalculation. While scope is open commands only record that
+ * cart needs recalculation, and the recalculation is performed once per cart when the outermost scope
+ * is closed (or explicitly via {@link #perform(ShoppingCart)}).
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 18:53
+ */
+final class CartRecalculationScope {
+
+    private static final ThreadLocal<CartRecalculationScope> CURRENT = new ThreadLocal<>();
+
+    private final Map<ShoppingCart, Runnable> pending = new IdentityHashMap<>(2);
+    private int depth = 0;
+    private int requested = 0;
+    private int performed = 0;
+
+    private CartRecalculationScope() {
+        // use open()
+    }
+
+    /**
+     * Open new or join current scope.
+     *
+     * @return current scope
+     */
+    static CartRecalculationScope open() {
+        CartRecalculationScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new CartRecalculationScope();
+            CURRENT.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Defer recalculation if scope is open for current thread.
+     *
+     * @param shoppingCart  cart
+     * @param recalculation recalculation to perform at the end of the scope
+     *
+     * @return true if recalculation is deferred, false if caller must recalculate now
+     */
+    static boolean defer(final ShoppingCart shoppingCart, final Runnable recalculation) {
+        final CartRecalculationScope scope = CURRENT.get();
+        if (scope == null) {
+            return false;
+        }
+        scope.requested++;
+        scope.pending.put(shoppingCart, recalculation);
+        return true;
+    }
+
+    /**
+     * Perform pending recalculation for given cart now (if any).
+     *
+     * @param shoppingCart cart
+     */
+    void perform(final ShoppingCart shoppingCart) {
+        final Runnable recalculation = this.pending.remove(shoppingCart);
+        if (recalculation != null) {
+            this.performed++;
+            recalculation.run();
+        }
+    }
+
+    /**
+     * Leave scope. Outermost scope performs all pending recalculations.
+     *
+     * @param failure exception thrown by commands within this scope (or null). If recalculation fails
+     *                as well its exception is added to the suppressed exceptions of this failure, so
+     *                that the original cause is not masked
+     *
+     * @return true if this was the outermost scope
+     */
+    boolean close(final Throwable failure) {
+        if (--this.depth > 0) {
+            return false;
+        }
+        try {
+            while (!this.pending.isEmpty()) {
+                final Iterator<Map.Entry<ShoppingCart, Runnable>> it = this.pending.entrySet().iterator();
+                final Runnable recalculation = it.next().getValue();
+                it.remove();
+                this.performed++;
+                recalculation.run();
+            }
+        } catch (RuntimeException | Error exp) {
+            if (failure == null) {
+                throw exp;
+            }
+            failure.addSuppressed(exp);
+        } finally {
+            CURRENT.remove();
+        }
+        return true;
+    }
+
+    /**
+     * @return number of recalculations requested by commands within this scope
+     */
+    int getRequested() {
+        return requested;
+    }
+
+    /**
+     * @return number of recalculations actually performed
+     */
+    int getPerformed() {
+        return performed;
+    }
+
+}
@@ -21,9 +21,16 @@ import org.slf4j.LoggerFactory;
 import org.yes.cart.shoppingcart.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * .
+ * Command factory executes all commands in chain in the order of their priority.
+ * <p/>
+ * When deferred recalculation is enabled ({@link #setDeferredRecalculation(boolean)}) commands only
+ * mark the cart for recalculation and the factory recalculates the cart once after the last command
+ * in the outermost {@code execute} (or {@link #executeChain(ShoppingCart, Runnable)}) call. Deferred
+ * recalculation is off by default, since commands later in the chain would see state that is only refreshed by
+ * recalculation (e.g. {@link ShoppingCart#isBillingAddressNotRequired()}) before it is recalculated.
  * <p/>
  * User: dogma
  * Date: Jan 22, 2011
@@ -41,6 +48,10 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
     private ConfigurableShoppingCartCommand[] commands;
     private final Map<String, ConfigurableShoppingCartCommand> commandByKey = new HashMap<>();
 
+    private boolean deferredRecalculation = false;
+    private final AtomicLong recalculationsRequested = new AtomicLong(0L);
+    private final AtomicLong recalculationsPerformed = new AtomicLong(0L);
+
     public ShoppingCartCommandFactoryImpl(final ShoppingCartCommandConfigurationProvider configurationProvider) {
         this.configurationProvider = configurationProvider;
     }
@@ -71,8 +82,17 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
     /** {@inheritDoc} */
     @Override
     public void execute(final ShoppingCart shoppingCart, final Map<String, Object> parameters) {
-        for (ShoppingCartCommand command : commands) {
-            command.execute(shoppingCart, parameters);
+        final CartRecalculationScope scope = openScope();
+        Throwable failure = null;
+        try {
+            for (ShoppingCartCommand command : commands) {
+                command.execute(shoppingCart, parameters);
+            }
+        } catch (RuntimeException | Error exp) {
+            failure = exp;
+            throw exp;
+        } finally {
+            closeScope(scope, failure);
         }
     }
 
@@ -80,12 +100,77 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
     @Override
     public void execute(final String key, final ShoppingCart shoppingCart, final Map<String, Object> parameters) throws IllegalArgumentException {
         if (commandByKey.containsKey(key)) {
-            commandByKey.get(key).execute(shoppingCart, parameters);
+            final CartRecalculationScope scope = openScope();
+            Throwable failure = null;
+            try {
+                commandByKey.get(key).execute(shoppingCart, parameters);
+            } catch (RuntimeException | Error exp) {
+                failure = exp;
+                throw exp;
+            } finally {
+                closeScope(scope, failure);
+            }
         } else {
             throw new IllegalArgumentException("Command " + key + " is not mapped");
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void executeChain(final ShoppingCart shoppingCart, final Runnable chain) {
+        final CartRecalculationScope scope = openScope();
+        Throwable failure = null;
+        try {
+            chain.run();
+            if (scope != null) {
+                // this may be a nested chain, so make sure this cart is recalculated before we return
+                scope.perform(shoppingCart);
+            }
+        } catch (RuntimeException | Error exp) {
+            failure = exp;
+            throw exp;
+        } finally {
+            closeScope(scope, failure);
+        }
+    }
+
+    private CartRecalculationScope openScope() {
+        return this.deferredRecalculation ? CartRecalculationScope.open() : null;
+    }
+
+    private void closeScope(final CartRecalculationScope scope, final Throwable failure) {
+        if (scope != null && scope.close(failure)) {
+            recalculationsRequested.addAndGet(scope.getRequested());
+            recalculationsPerformed.addAndGet(scope.getPerformed());
+        }
+    }
+
+    /**
+     * @return deferred recalculation statistics
+     */
+    public Map<String, String> getRecalculationStatistics() {
+
+        final long requested = recalculationsRequested.get();
+        final long performed = recalculationsPerformed.get();
+
+        final Map<String, String> stats = new TreeMap<>();
+        stats.put("deferred", String.valueOf(this.deferredRecalculation));
+        stats.put("requested", String.valueOf(requested));
+        stats.put("performed", String.valueOf(performed));
+        stats.put("saved", String.valueOf(requested - performed));
+        return stats;
+
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param deferredRecalculation true to recalculate cart once per outermost command execution
+     */
+    public void setDeferredRecalculation(final boolean deferredRecalculation) {
+        this.deferredRecalculation = deferredRecalculation;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getCmdKey() {
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.yes.cart.domain.entity.Brand;
+import org.yes.cart.domain.entity.Promotion;
+import org.yes.cart.promotion.PromoTriplet;
+import org.yes.cart.promotion.PromotionConditionSupport;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:29
+ */
+public class PromotionIndexTest {
+
+    private final Mockery mockery = new JUnit4Mockery();
+
+    @Test
+    public void testSplitConjunction() throws Exception {
+
+        final List<String> terms = new ArrayList<>();
+        assertTrue(PromotionIndex.splitConjunction("SKU == 'A' && customerTags.contains('vip')", terms));
+        assertEquals(Arrays.asList("SKU == 'A'", "customerTags.contains('vip')"), terms);
+
+        terms.clear();
+        assertTrue(PromotionIndex.splitConjunction("(isSKUofBrand(SKU, 'X')) && (shoppingCartItem.qty >= 2 && registered)", terms));
+        assertEquals(Arrays.asList("isSKUofBrand(SKU, 'X')", "shoppingCartItem.qty >= 2", "registered"), terms);
+
+        terms.clear();
+        assertTrue(PromotionIndex.splitConjunction("(a || b) && SKU == 'A && B'", terms));
+        assertEquals(Arrays.asList("(a || b)", "SKU == 'A && B'"), terms);
+
+        terms.clear();
+        assertTrue(PromotionIndex.splitConjunction("SKU == 'A' &&\ncustomer?.email?.contains('x')", terms));
+        assertEquals(Arrays.asList("SKU == 'A'", "customer?.email?.contains('x')"), terms);
+
+        assertFalse(PromotionIndex.splitConjunction("SKU == 'A' || SKU == 'B'", new ArrayList<>()));
+        assertFalse(PromotionIndex.splitConjunction("registered ? SKU == 'A' : true", new ArrayList<>()));
+        assertFalse(PromotionIndex.splitConjunction("def address = customer.getDefaultAddress('S');\naddress != null", new ArrayList<>()));
+        assertFalse(PromotionIndex.splitConjunction("def sku = 'A'\nSKU == sku", new ArrayList<>()));
+        assertFalse(PromotionIndex.splitConjunction("SKU == \"${x}\"", new ArrayList<>()));
+
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+
+        final PromotionConditionSupport support = mockery.mock(PromotionConditionSupport.class, "support");
+        final Brand brand = mockery.mock(Brand.class, "brand");
+
+        final PromoTriplet any = triplet(1L, "shoppingCartItem.qty >= 2");
+        final PromoTriplet skuA = triplet(2L, "SKU == 'A'");
+        final PromoTriplet skuBC = triplet(3L, "['B', 'C'].contains(shoppingCartItem.productSkuCode) && registered");
+        final PromoTriplet category = triplet(4L, "isSKUinCategory(SKU, 'CAT1', 'CAT2')");
+        final PromoTriplet brandX = triplet(5L, "isSKUofBrand(SKU, 'x')");
+        final PromoTriplet vip = triplet(6L, "customerTags.contains('vip')");
+        final PromoTriplet skuOrVip = triplet(7L, "SKU == 'A' || customerTags.contains('vip')");
+
+        final List<List<PromoTriplet>> buckets = new ArrayList<>();
+        buckets.add(Arrays.asList(any, skuA, skuBC, category));
+        buckets.add(Collections.singletonList(brandX));
+        buckets.add(Collections.singletonList(vip));
+        buckets.add(Collections.singletonList(skuOrVip));
+
+        mockery.checking(new Expectations() {{
+            allowing(support).getProductBrand("A"); will(returnValue(brand));
+            allowing(support).getProductBrand("B"); will(returnValue(null));
+            allowing(brand).getName(); will(returnValue("X"));
+            allowing(support).isProductInCategory("A", 1010L, new String[] { "CAT1", "CAT2" }); will(returnValue(false));
+            allowing(support).isProductInCategory("B", 1010L, new String[] { "CAT1", "CAT2" }); will(returnValue(true));
+        }});
+
+        final PromotionIndex index = new PromotionIndex(buckets);
+
+        final List<List<PromoTriplet>> forA = index.select("A", 1010L, Collections.emptyList(), support);
+        assertEquals(3, forA.size());
+        assertEquals(Arrays.asList(any, skuA), forA.get(0));
+        assertSame(buckets.get(1), forA.get(1));
+        assertSame(buckets.get(3), forA.get(2));
+
+        final List<List<PromoTriplet>> forB = index.select("B", 1010L, Collections.singletonList("vip"), support);
+        assertEquals(3, forB.size());
+        assertEquals(Arrays.asList(any, skuBC, category), forB.get(0));
+        assertSame(buckets.get(2), forB.get(1));
+        assertSame(buckets.get(3), forB.get(2));
+
+        assertEquals(9L, index.getEvaluated());
+        assertEquals(5L, index.getSkipped());
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    private PromoTriplet triplet(final long id, final String condition) {
+
+        final Promotion promotion = mockery.mock(Promotion.class, "promo" + id);
+        mockery.checking(new Expectations() {{
+            allowing(promotion).getPromotionId(); will(returnValue(id));
+            allowing(promotion).getEligibilityCondition(); will(returnValue(condition));
+        }});
+        return new PromoTripletImpl(promotion, null, null);
+
+    }
+
+}
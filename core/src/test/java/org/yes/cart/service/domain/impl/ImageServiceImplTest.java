@@ -18,6 +18,7 @@ package org.yes.cart.service.domain.impl;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.yes.cart.BaseCoreDBTestCase;
 import org.yes.cart.constants.Constants;
 import org.yes.cart.constants.ServiceSpringKeys;
@@ -25,9 +26,18 @@ import org.yes.cart.domain.entity.SeoImage;
 import org.yes.cart.exception.UnableToCreateInstanceException;
 import org.yes.cart.exception.UnmappedInterfaceException;
 import org.yes.cart.service.domain.ImageService;
+import org.yes.cart.stream.io.IOProvider;
 
 import java.io.File;
-import java.util.UUID;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -234,4 +244,113 @@ public class ImageServiceImplTest  extends BaseCoreDBTestCase {
     }
     
     
+    @Test
+    public void testResizeSingleFlight() throws Exception {
+
+        final byte[] original = Files.readAllBytes(Paths.get("src/test/resources/imgresize/resize-150x200.jpg"));
+        final CountDownLatch readStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRead = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        final Map<String, byte[]> written = Collections.synchronizedMap(new HashMap<>());
+
+        final IOProvider ioProvider = new StubIOProvider() {
+            @Override
+            public byte[] read(final String uri, final Map<String, Object> context) {
+                if (uri.equals("original.jpg") && reads.incrementAndGet() == 1) {
+                    readStarted.countDown();
+                    try {
+                        releaseRead.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return original;
+            }
+
+            @Override
+            public void write(final String uri, final byte[] content, final Map<String, Object> context) {
+                written.put(uri, content);
+            }
+        };
+
+        final ThreadPoolTaskExecutor resizeExecutor = new ThreadPoolTaskExecutor();
+        resizeExecutor.setCorePoolSize(1);
+        resizeExecutor.setMaxPoolSize(1);
+        resizeExecutor.setQueueCapacity(0);
+        resizeExecutor.initialize();
+
+        final ImageServiceImpl srv = new ImageServiceImpl(null, null, "", 255, 255, 255, false, 0, true, ioProvider);
+        srv.setResizeExecutor(resizeExecutor);
+
+        final ExecutorService requests = Executors.newFixedThreadPool(5);
+        try {
+
+            final List<Future<byte[]>> results = new ArrayList<>();
+            results.add(requests.submit(() -> srv.resizeImage("original.jpg", "80x80/original.jpg", "80", "80")));
+            assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; i++) {
+                results.add(requests.submit(() -> srv.resizeImage("original.jpg", "80x80/original.jpg", "80", "80")));
+            }
+
+            // pool is busy resizing, so different file falls back to original
+            assertSame(original, srv.resizeImage("original.jpg", "120x120/original.jpg", "120", "120"));
+
+            while (!"4".equals(srv.getResizeStatistics().get("coalesced"))) {
+                Thread.sleep(10L);
+            }
+            releaseRead.countDown();
+
+            final byte[] resized = results.get(0).get(10, TimeUnit.SECONDS);
+            assertNotSame(original, resized);
+            assertSame(resized, written.get("80x80/original.jpg"));
+            for (final Future<byte[]> result : results) {
+                assertSame(resized, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, written.size());
+
+            final Map<String, String> stats = srv.getResizeStatistics();
+            assertEquals("2", stats.get("requested"));
+            assertEquals("4", stats.get("coalesced"));
+            assertEquals("1", stats.get("rejected"));
+            assertEquals("1", stats.get("completed"));
+            assertEquals("0", stats.get("inFlight"));
+
+        } finally {
+            requests.shutdownNow();
+            resizeExecutor.shutdown();
+        }
+
+    }
+
+    private static class StubIOProvider implements IOProvider {
+
+        @Override
+        public boolean supports(final String uri) {
+            return true;
+        }
+
+        @Override
+        public boolean exists(final String uri, final Map<String, Object> context) {
+            return false;
+        }
+
+        @Override
+        public boolean isNewerThan(final String uriToCheck, final String uriToCheckAgainst, final Map<String, Object> context) {
+            return false;
+        }
+
+        @Override
+        public byte[] read(final String uri, final Map<String, Object> context) {
+            return new byte[0];
+        }
+
+        @Override
+        public void write(final String uri, final byte[] content, final Map<String, Object> context) {
+        }
+
+        @Override
+        public void delete(final String uri, final Map<String, Object> context) {
+        }
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.domain.impl;
+
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.yes.cart.BaseCoreDBTestCase;
+import org.yes.cart.cluster.service.CacheDirector;
+import org.yes.cart.cluster.service.CacheableChangeListener;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.utils.MoneyUtils;
+import org.yes.cart.utils.TimeContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:21
+ */
+public class SkuPriceTableTest extends BaseCoreDBTestCase {
+
+    @Test
+    public void testSameAsDatabaseLookup() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = ctx().getBean("skuPriceDao", GenericDAO.class);
+        final SkuPriceTable table = ctx().getBean("skuPriceTable", SkuPriceTable.class);
+        final PriceServiceImpl legacy = new PriceServiceImpl(skuPriceDao);
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+
+                int checked = 0;
+                for (final Object[] target : new Object[][] {
+                        { 10000L, null }, { 10000L, "SOBOT-LIGHT" }, { null, "WV_CARRIERSLA_KG" }, { null, "NO-SUCH-SKU" }
+                }) {
+                    for (final long[] shops : new long[][] { { 10L, 0L }, { 1011L, 0L }, { 1011L, 10L } }) {
+                        final Long master = shops[1] > 0L ? shops[1] : null;
+                        for (final String policy : new String[] { null, "", "P1" }) {
+
+                            assertSamePrices(
+                                    legacy.getAllCurrentPrices((Long) target[0], (String) target[1], shops[0], master, "EUR", policy, null),
+                                    table.getAllCurrentPrices((Long) target[0], (String) target[1], shops[0], master, "EUR", policy, null, TimeContext.getLocalDateTime())
+                            );
+
+                            for (final String qty : new String[] { null, "0.25", "1", "2", "3", "10.25" }) {
+                                final BigDecimal quantity = qty != null ? new BigDecimal(qty) : null;
+                                for (final boolean enforceTier : new boolean[] { false, true }) {
+
+                                    final SkuPrice expected = legacy.getMinimalPrice((Long) target[0], (String) target[1], shops[0], master, "EUR", quantity, enforceTier, policy, null);
+                                    final SkuPrice actual = table.getMinimalPrice((Long) target[0], (String) target[1], shops[0], master, "EUR", quantity, enforceTier, policy, null, TimeContext.getLocalDateTime());
+
+                                    if (expected.getSkuPriceId() == 0L) {
+                                        assertNull(actual);
+                                    } else {
+                                        assertNotNull(actual);
+                                        assertSamePrice(expected, actual);
+                                    }
+                                    checked++;
+                                }
+                            }
+                        }
+                    }
+                }
+                assertEquals(432, checked);
+
+            }
+        });
+
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = ctx().getBean("skuPriceDao", GenericDAO.class);
+        final SkuPriceTable table = ctx().getBean("skuPriceTable", SkuPriceTable.class);
+        final CacheableChangeListener listener = ctx().getBean("skuPriceTableListener", CacheableChangeListener.class);
+
+        final BigDecimal qty = new BigDecimal("0.25");
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                final SkuPrice price = table.getMinimalPrice(null, "WV_CARRIERSLA_KG", 10L, null, "EUR", qty, false, null, null, TimeContext.getLocalDateTime());
+                assertEquals(500L, price.getSkuPriceId());
+                assertEquals(0, new BigDecimal("6.50").compareTo(price.getRegularPrice()));
+                skuPriceDao.executeHsqlUpdate("update SkuPriceEntity sp set sp.regularPrice = ?1 where sp.skuPriceId = ?2", new BigDecimal("5.00"), 500L);
+            }
+        });
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                // out of band change is not visible until notification
+                final SkuPrice price = table.getMinimalPrice(null, "WV_CARRIERSLA_KG", 10L, null, "EUR", qty, false, null, null, TimeContext.getLocalDateTime());
+                assertEquals(0, new BigDecimal("6.50").compareTo(price.getRegularPrice()));
+            }
+        });
+
+        listener.onCacheableChange(CacheDirector.EntityOperation.UPDATE, "SkuPriceEntity", new Long[] { 500L });
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                final SkuPrice price = table.getMinimalPrice(null, "WV_CARRIERSLA_KG", 10L, null, "EUR", qty, false, null, null, TimeContext.getLocalDateTime());
+                assertEquals(500L, price.getSkuPriceId());
+                assertEquals(0, new BigDecimal("5.00").compareTo(price.getRegularPrice()));
+                skuPriceDao.executeHsqlUpdate("delete from SkuPriceEntity sp where sp.skuPriceId = ?1", 500L);
+            }
+        });
+
+        listener.onCacheableChange(CacheDirector.EntityOperation.DELETE, "SkuPriceEntity", new Long[] { 500L });
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                final SkuPrice price = table.getMinimalPrice(null, "WV_CARRIERSLA_KG", 10L, null, "EUR", qty, false, null, null, TimeContext.getLocalDateTime());
+                assertTrue(price == null || price.getSkuPriceId() != 500L);
+            }
+        });
+
+    }
+
+    private void assertSamePrices(final List<SkuPrice> expected, final List<SkuPrice> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSamePrice(expected.get(i), actual.get(i));
+        }
+    }
+
+    private void assertSamePrice(final SkuPrice expected, final SkuPrice actual) {
+        // prices with same tier and price value are equivalent, so do not compare PK
+        assertEquals(expected.getSkuCode(), actual.getSkuCode());
+        assertEquals(0, expected.getQuantity().compareTo(actual.getQuantity()));
+        assertEquals(0, MoneyUtils.minPositive(expected.getSalePriceForCalculation())
+                .compareTo(MoneyUtils.minPositive(actual.getSalePriceForCalculation())));
+    }
+
+}
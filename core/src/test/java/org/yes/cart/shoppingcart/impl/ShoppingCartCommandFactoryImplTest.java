@@ -20,12 +20,9 @@ import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
-import org.yes.cart.shoppingcart.ConfigurableShoppingCartCommand;
-import org.yes.cart.shoppingcart.ShoppingCartCommand;
+import org.yes.cart.shoppingcart.*;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -125,4 +122,125 @@ public class ShoppingCartCommandFactoryImplTest {
 
 
     }
+
+    @Test
+    public void testDeferredRecalculation() throws Exception {
+
+        final ShoppingCartCommandConfigurationProvider provider = mockery.mock(ShoppingCartCommandConfigurationProvider.class, "provider");
+        final ShoppingCartCommandConfigurationVisitor checkout = mockery.mock(ShoppingCartCommandConfigurationVisitor.class, "checkout");
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+
+        mockery.checking(new Expectations() {{
+            allowing(provider).provide("CHECKOUT"); will(returnValue(checkout));
+            exactly(3).of(cart).recalculate();
+            exactly(3).of(checkout).visit(cart);
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl(provider);
+        factory.setDeferredRecalculation(true);
+        registerRecalculatingCommand(factory, "CMD1");
+        registerRecalculatingCommand(factory, "CMD2");
+        registerRecalculatingCommand(factory, "CMD3");
+
+        final Map<String, Object> all = new HashMap<>();
+        all.put("CMD1", "1");
+        all.put("CMD2", "1");
+        all.put("CMD3", "1");
+
+        // three commands in single chain -> one recalculation
+        factory.execute(cart, all);
+
+        // single command -> one recalculation
+        factory.execute("CMD2", cart, Collections.singletonMap("CMD2", "1"));
+
+        // explicit chain -> one recalculation
+        factory.executeChain(cart, () -> {
+            factory.execute(cart, Collections.singletonMap("CMD1", "1"));
+            factory.execute(cart, Collections.singletonMap("CMD3", "1"));
+        });
+
+        final Map<String, String> stats = factory.getRecalculationStatistics();
+        assertEquals("6", stats.get("requested"));
+        assertEquals("3", stats.get("performed"));
+        assertEquals("3", stats.get("saved"));
+
+    }
+
+    @Test
+    public void testDeferredRecalculationFailureDoesNotMaskCommandFailure() throws Exception {
+
+        final ShoppingCartCommandConfigurationProvider provider = mockery.mock(ShoppingCartCommandConfigurationProvider.class, "provider");
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+
+        final IllegalStateException recalculationFailure = new IllegalStateException("recalculation");
+
+        mockery.checking(new Expectations() {{
+            allowing(provider).provide("CHECKOUT"); will(returnValue(null));
+            exactly(2).of(cart).recalculate(); will(throwException(recalculationFailure));
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl(provider);
+        factory.setDeferredRecalculation(true);
+        registerRecalculatingCommand(factory, "CMD1");
+
+        final IllegalArgumentException commandFailure = new IllegalArgumentException("command");
+        new AbstractCartCommandImpl(factory) {
+            @Override
+            public String getCmdKey() {
+                return "CMD2";
+            }
+
+            @Override
+            public int getPriority() {
+                return 1;
+            }
+
+            @Override
+            public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+                if (parameters.containsKey("CMD2")) {
+                    throw commandFailure;
+                }
+            }
+        };
+
+        final Map<String, Object> all = new HashMap<>();
+        all.put("CMD1", "1");
+        all.put("CMD2", "1");
+
+        try {
+            factory.execute(cart, all);
+            fail("Command failure expected");
+        } catch (IllegalArgumentException exp) {
+            assertSame(commandFailure, exp);
+            assertArrayEquals(new Throwable[] { recalculationFailure }, exp.getSuppressed());
+        }
+
+        // no command failure, so recalculation failure is thrown as is
+        try {
+            factory.execute(cart, Collections.singletonMap("CMD1", "1"));
+            fail("Recalculation failure expected");
+        } catch (IllegalStateException exp) {
+            assertSame(recalculationFailure, exp);
+        }
+
+    }
+
+    private void registerRecalculatingCommand(final ShoppingCartCommandRegistry registry, final String key) {
+
+        new AbstractCartCommandImpl(registry) {
+            @Override
+            public String getCmdKey() {
+                return key;
+            }
+
+            @Override
+            public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+                if (parameters.containsKey(key)) {
+                    recalculate(shoppingCart);
+                }
+            }
+        };
+
+    }
+
 }
@@ -492,4 +492,12 @@ public interface GenericDAO<T, PK extends Serializable> {
      * Clear session.
      */
     void clear();
+
+    /**
+     * Switch automatic flush of session before queries. With automatic flush off changes are only flushed
+     * explicitly or on commit, so queries do not see changes that are not flushed yet.
+     *
+     * @param autoFlush true to flush before queries (default), false to flush explicitly or on commit only
+     */
+    void setAutoFlush(boolean autoFlush);
 }
@@ -22,6 +22,7 @@ import org.yes.cart.search.dao.IndexBuilder;
 import org.yes.cart.search.dto.FilteredNavigationRecordRequest;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +63,13 @@ public interface GenericFTSCapableDAO<T, PK extends Serializable, FTQ> extends G
      */
     void fullTextSearchReindex(PK primaryKey, boolean purgeOnly);
 
+    /**
+     * Force reindex given entities in a single batch.
+     *
+     * @param primaryKeys to reindex.
+     */
+    void fullTextSearchReindex(Collection<PK> primaryKeys);
+
 
     /**
      * Get the full text search result.
@@ -17,6 +17,7 @@
 package org.yes.cart.search.dao;
 
 import java.io.Serializable;
+import java.util.Collection;
 
 /**
  * Index builder uses {@link GenericFTS} and {@link org.yes.cart.dao.GenericDAO} to mediate data and store it in
@@ -88,4 +89,12 @@ public interface IndexBuilder<T, PK extends Serializable> {
      */
     void fullTextSearchReindex(PK primaryKey, boolean purgeOnly);
 
+    /**
+     * Force reindex given entities in a single batch. Entities that no longer exist are purged
+     * from the index.
+     *
+     * @param primaryKeys to reindex.
+     */
+    void fullTextSearchReindex(Collection<PK> primaryKeys);
+
 }
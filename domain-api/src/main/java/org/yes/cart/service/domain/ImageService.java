@@ -20,6 +20,7 @@ import org.yes.cart.domain.entity.SeoImage;
 import org.yes.cart.service.media.MediaFileNameStrategy;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * User: Igor Azarny iazarny@yahoo.com
@@ -108,6 +109,13 @@ public interface ImageService extends GenericService<SeoImage> {
      */
     boolean isSizeAllowed(String width, String height);
 
+    /**
+     * Get all sizes allowed for resizing.
+     *
+     * @return sizes in width x height format, for example 50x60
+     */
+    List<String> getAllowedSizes();
+
     /**
      * Get the image name strategy.
      *
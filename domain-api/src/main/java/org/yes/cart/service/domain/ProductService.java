@@ -299,6 +299,13 @@ public interface ProductService extends GenericService<Product> {
      */
     void reindexProductSku(String code);
 
+    /**
+     * Reindex the products in a single batch.
+     *
+     * @param codes the product SKU codes
+     */
+    void reindexProductSkus(Collection<String> codes);
+
 
     /**
      * Get product sku by code.
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.media;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Image resize engine responsible for decoding original image and scaling it (or its cropped
+ * region) to given size. Cropping, padding and encoding of final image is done by image service,
+ * so engines only differ in speed and quality of decoding and scaling.
+ * <p/>
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 19:42
+ */
+public interface ImageResizeEngine {
+
+    /**
+     * Decode image. Engine may decode large images at lower resolution, but decoded image must be
+     * at least twice the target size in both dimensions (or original size if it is smaller), so that
+     * any crop of the image to target ratio can be scaled to target size without loss of quality.
+     *
+     * @param content original image content
+     * @param targetX target width
+     * @param targetY target height
+     *
+     * @return decoded image or null if content is not a supported image
+     *
+     * @throws IOException in case of decoding errors
+     */
+    BufferedImage read(byte[] content, int targetX, int targetY) throws IOException;
+
+    /**
+     * Scale image to given size.
+     *
+     * @param source source image
+     * @param width  target width
+     * @param height target height
+     *
+     * @return scaled image
+     */
+    Image scale(BufferedImage source, int width, int height);
+
+}
@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.yes.cart.cluster.node.Message;
 import org.yes.cart.cluster.node.Node;
 import org.yes.cart.cluster.node.NodeService;
 import org.yes.cart.cluster.node.RspMessage;
@@ -31,6 +32,7 @@ import org.yes.cart.service.async.model.AsyncContext;
 import org.yes.cart.service.async.utils.RunAsUserAuthentication;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -43,11 +45,15 @@ public class CacheEvictionQueueProcessorImpl implements Runnable, DisposableBean
     private static final Logger LOG = LoggerFactory.getLogger(CacheEvictionQueueProcessorImpl.class);
 
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
+    private final Map<String, String> legacyNodes = new ConcurrentHashMap<>();
 
     private CacheEvictionQueue cacheEvictionQueue;
     private NodeService nodeService;
     private AsyncContextFactory asyncContextFactory;
 
+    private long batchWindowMs = 500L;
+    private int batchMaxItems = 100;
+
     /**
      * {@inheritDoc}
      */
@@ -55,41 +61,22 @@ public class CacheEvictionQueueProcessorImpl implements Runnable, DisposableBean
     public void run() {
 
         int count = 0;
+        int items = 0;
 
         try {
 
-            CacheEvictionQueue.CacheEvictionItem item;
-            while (!this.shutdown.get() && (item = this.cacheEvictionQueue.dequeue()) != null) {
-
-                try {
-                    SecurityContextHolder.getContext().setAuthentication(new RunAsUserAuthentication(item.getUser(), "", Collections.EMPTY_LIST));
-                    final Map<String, Object> params = new HashMap<>();
-                    params.put(AsyncContext.TIMEOUT_KEY, AttributeNamesKeys.System.SYSTEM_CONNECTOR_CACHE_TIMEOUT_MS);
-                    final AsyncContext threadContext = asyncContextFactory.getInstance(params);
-
-                    final List<Node> cluster = nodeService.getSfNodes();
-                    final List<String> targets = new ArrayList<>();
-                    for (final Node node : cluster) {
-                        targets.add(node.getId());
-                    }
-
-                    final HashMap<String, Object> payload = new HashMap<>();
-                    payload.put("entityOperation", item.getOperation());
-                    payload.put("entityName", item.getEntityName());
-                    payload.put("pkValues", item.getPKs().toArray(new Long[item.getPKs().size()]));
+            while (!this.shutdown.get()) {
 
-                    final RspMessage message = new ContextRspMessageImpl(
-                            nodeService.getCurrentNodeId(),
-                            targets,
-                            "CacheDirector.onCacheableBulkChange",
-                            payload,
-                            threadContext
-                    );
+                final Map<String, HashMap<String, HashMap<String, Long[]>>> batch = new HashMap<>();
+                final int drained = drainBatch(batch);
+                if (drained == 0) {
+                    break;
+                }
+                items += drained;
 
-                    nodeService.broadcast(message);
+                for (final Map.Entry<String, HashMap<String, HashMap<String, Long[]>>> userBatch : batch.entrySet()) {
+                    broadcastBatch(userBatch.getKey(), userBatch.getValue());
                     count++;
-                } finally {
-                    SecurityContextHolder.clearContext();
                 }
             }
 
@@ -97,10 +84,207 @@ public class CacheEvictionQueueProcessorImpl implements Runnable, DisposableBean
             LOG.error("Unable to perform remote cache eviction: " + exp.getMessage(), exp);
         }
 
-        LOG.info("Performed {} cache eviction calls", count);
+        LOG.info("Performed {} cache eviction calls for {} items, {}", count, items, this.cacheEvictionQueue.getStatistics());
 
     }
 
+    /**
+     * Drain queue into batch by user, entity name and operation. Once queue is empty we wait for further
+     * items until batch window is over, so that changes that follow shortly after go into the same message.
+     *
+     * @param batch batch to fill
+     *
+     * @return number of items drained
+     *
+     * @throws InterruptedException if interrupted while waiting for more items
+     */
+    int drainBatch(final Map<String, HashMap<String, HashMap<String, Long[]>>> batch) throws InterruptedException {
+
+        final long windowEnd = System.currentTimeMillis() + this.batchWindowMs;
+        int drained = 0;
+
+        while (!this.shutdown.get() && drained < this.batchMaxItems) {
+
+            final CacheEvictionQueue.CacheEvictionItem item;
+            if (drained == 0) {
+                item = this.cacheEvictionQueue.dequeue();
+            } else {
+                // items already in the queue always go into this batch, only waiting is limited by window
+                final long remaining = windowEnd - System.currentTimeMillis();
+                item = remaining > 0L ? this.cacheEvictionQueue.dequeue(remaining) : this.cacheEvictionQueue.dequeue();
+            }
+            if (item == null) {
+                break;
+            }
+
+            // empty PK's signify evict all for entity
+            final Long[] pkValues = item.isEvictAll() ? new Long[0] : item.getPKs().toArray(new Long[item.getPKs().size()]);
+
+            batch.computeIfAbsent(item.getUser(), k -> new HashMap<>())
+                    .computeIfAbsent(item.getEntityName(), k -> new HashMap<>())
+                    .merge(item.getOperation(), pkValues, CacheEvictionQueueProcessorImpl::mergePKs);
+
+            drained++;
+
+        }
+
+        return drained;
+
+    }
+
+    static Long[] mergePKs(final Long[] existing, final Long[] more) {
+        if (existing.length == 0 || more.length == 0) {
+            return new Long[0];
+        }
+        final Set<Long> all = new HashSet<>(Arrays.asList(existing));
+        all.addAll(Arrays.asList(more));
+        return all.toArray(new Long[all.size()]);
+    }
+
+    /**
+     * Send batch to all storefront nodes. Nodes that are known not to support batch message (i.e. nodes
+     * of previous version during rolling upgrade) and nodes that did not respond to batch message are sent
+     * legacy bulk messages instead.
+     *
+     * @param user    user
+     * @param payload batch
+     */
+    void broadcastBatch(final String user, final HashMap<String, HashMap<String, Long[]>> payload) {
+
+        try {
+            SecurityContextHolder.getContext().setAuthentication(new RunAsUserAuthentication(user, "", Collections.EMPTY_LIST));
+            final Map<String, Object> params = new HashMap<>();
+            params.put(AsyncContext.TIMEOUT_KEY, AttributeNamesKeys.System.SYSTEM_CONNECTOR_CACHE_TIMEOUT_MS);
+            final AsyncContext threadContext = asyncContextFactory.getInstance(params);
+
+            final Map<String, Node> cluster = new HashMap<>();
+            final List<String> targets = new ArrayList<>();
+            final List<String> legacyTargets = new ArrayList<>();
+            for (final Node node : nodeService.getSfNodes()) {
+                cluster.put(node.getId(), node);
+                if (node.getFullVersion().equals(this.legacyNodes.get(node.getId()))) {
+                    legacyTargets.add(node.getId());
+                } else {
+                    targets.add(node.getId());
+                }
+            }
+
+            if (!targets.isEmpty()) {
+
+                final RspMessage message = new ContextRspMessageImpl(
+                        nodeService.getCurrentNodeId(),
+                        targets,
+                        "CacheDirector.onCacheableBatchChange",
+                        payload,
+                        threadContext
+                );
+
+                nodeService.broadcast(message);
+
+                final Set<String> probe = new HashSet<>(targets);
+                probe.removeAll(respondedNodes(message));
+                if (!probe.isEmpty()) {
+
+                    // no listener for batch message (or node is down), try legacy messages
+                    final Set<String> responded = broadcastLegacy(new ArrayList<>(probe), payload, threadContext);
+                    for (final String nodeId : responded) {
+                        final Node node = cluster.get(nodeId);
+                        if (node != null) {
+                            LOG.info("Node {} {} does not support batch cache eviction, legacy messages will be used",
+                                    nodeId, node.getFullVersion());
+                            this.legacyNodes.put(nodeId, node.getFullVersion());
+                        }
+                    }
+
+                }
+
+            }
+
+            if (!legacyTargets.isEmpty()) {
+                broadcastLegacy(legacyTargets, payload, threadContext);
+            }
+
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+    }
+
+    /**
+     * Send batch as legacy bulk messages (one per entity and operation). Legacy nodes do not recognise
+     * empty PK's as evict all, so they are asked to evict all caches instead.
+     *
+     * @param targets       nodes
+     * @param payload       batch
+     * @param threadContext context
+     *
+     * @return nodes that responded
+     */
+    private Set<String> broadcastLegacy(final List<String> targets,
+                                        final HashMap<String, HashMap<String, Long[]>> payload,
+                                        final AsyncContext threadContext) {
+
+        final Set<String> responded = new HashSet<>();
+
+        boolean evictAll = false;
+        for (final HashMap<String, Long[]> operations : payload.values()) {
+            for (final Long[] pkValues : operations.values()) {
+                evictAll |= pkValues.length == 0;
+            }
+        }
+
+        if (evictAll) {
+
+            final RspMessage message = new ContextRspMessageImpl(
+                    nodeService.getCurrentNodeId(),
+                    targets,
+                    "CacheDirector.evictAllCache",
+                    Boolean.TRUE,
+                    threadContext
+            );
+
+            nodeService.broadcast(message);
+            responded.addAll(respondedNodes(message));
+            return responded;
+
+        }
+
+        for (final Map.Entry<String, HashMap<String, Long[]>> entity : payload.entrySet()) {
+            for (final Map.Entry<String, Long[]> operation : entity.getValue().entrySet()) {
+
+                final HashMap<String, Object> bulk = new HashMap<>();
+                bulk.put("entityOperation", operation.getKey());
+                bulk.put("entityName", entity.getKey());
+                bulk.put("pkValues", operation.getValue());
+
+                final RspMessage message = new ContextRspMessageImpl(
+                        nodeService.getCurrentNodeId(),
+                        targets,
+                        "CacheDirector.onCacheableBulkChange",
+                        bulk,
+                        threadContext
+                );
+
+                nodeService.broadcast(message);
+                responded.addAll(respondedNodes(message));
+
+            }
+        }
+
+        return responded;
+
+    }
+
+    private Set<String> respondedNodes(final RspMessage message) {
+        final Set<String> responded = new HashSet<>();
+        if (message.getResponses() != null) {
+            for (final Message response : message.getResponses()) {
+                responded.add(response.getSource());
+            }
+        }
+        return responded;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -136,4 +320,22 @@ public class CacheEvictionQueueProcessorImpl implements Runnable, DisposableBean
         this.asyncContextFactory = asyncContextFactory;
     }
 
+    /**
+     * Spring IoC.
+     *
+     * @param batchWindowMs time to wait for more items before sending the batch
+     */
+    public void setBatchWindowMs(final long batchWindowMs) {
+        this.batchWindowMs = batchWindowMs;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param batchMaxItems max number of queue items (user, operation, entity) in single batch message
+     */
+    public void setBatchMaxItems(final int batchMaxItems) {
+        this.batchMaxItems = batchMaxItems;
+    }
+
 }
@@ -23,6 +23,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.yes.cart.bulkimport.image.ImageImportDomainObjectStrategy;
+import org.yes.cart.bulkimport.image.ImagePregenerationService;
 import org.yes.cart.bulkjob.impl.BulkJobAutoContextImpl;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.service.async.AsyncContextFactory;
@@ -67,6 +68,8 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
 
     private final AuthenticationManager authenticationManager;
 
+    private ImagePregenerationService imagePregenerationService;
+
     public LocalFileShareImageVaultProcessorImpl(final SystemService systemService,
                                                  final FileSystemIOProvider ioProvider,
                                                  final MediaFileNameStrategy[] imageNameStrategies,
@@ -123,7 +126,17 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
             if (shopAuth.isAuthenticated()) {
                 SecurityContextHolder.getContext().setAuthentication(new RunAsUserAuthentication(user, pass, shopAuth.getAuthorities()));
 
-                final int reattached = scanRoot(imageVault);
+                final boolean pregenerate = imagePregenerationService != null
+                        && Boolean.valueOf(configuration.getProperty("config.pregenerate"));
+
+                final int reattached = scanRoot(imageVault, imgVault, pregenerate);
+
+                if (pregenerate) {
+                    final String pregenerateToken = imagePregenerationService.generateEnqueued();
+                    if (pregenerateToken != null) {
+                        LOG.info("Started pre-generation of image variants, job token {}", pregenerateToken);
+                    }
+                }
 
                 final boolean reindex = Boolean.valueOf(configuration.getProperty("config.reindex"));
 
@@ -168,7 +181,7 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
 
     }
 
-    private int scanRoot(final File imageVault) {
+    private int scanRoot(final File imageVault, final String imgVault, final boolean pregenerate) {
 
         final Set<String> scanned = new HashSet<>();
         int count = 0;
@@ -185,7 +198,7 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
 
             if (dir.exists()) {
 
-                count += scanRootDirectory(dir, strategy);
+                count += scanRootDirectory(dir, strategy, imgVault, pregenerate);
 
             }
 
@@ -193,7 +206,10 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
         return count;
     }
 
-    private int scanRootDirectory(final File dir, final MediaFileNameStrategy strategy) {
+    private int scanRootDirectory(final File dir,
+                                  final MediaFileNameStrategy strategy,
+                                  final String imgVault,
+                                  final boolean pregenerate) {
 
         final JobStatusListener statusListener = new JobStatusListenerLoggerWrapperImpl(LOG);
 
@@ -252,6 +268,9 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
                         } else {
                             LOG.info("Reattached file {}", image.getAbsolutePath());
                             count++;
+                            if (pregenerate) {
+                                imagePregenerationService.enqueue(strategy.getUrlPath(), fileName, objectCode, imgVault);
+                            }
                         }
                     }
 
@@ -270,6 +289,16 @@ public class LocalFileShareImageVaultProcessorImpl implements Runnable {
         return count;
     }
 
+    /**
+     * Spring IoC setter. If set and "config.pregenerate" is true, resized variants of reattached images
+     * are generated in background.
+     *
+     * @param imagePregenerationService image variants pre-generation service
+     */
+    public void setImagePregenerationService(final ImagePregenerationService imagePregenerationService) {
+        this.imagePregenerationService = imagePregenerationService;
+    }
+
     private AsyncContext createCtx(final String cacheTimeOutKey) {
         final Map<String, Object> param = new HashMap<>();
         param.put(AsyncContext.TIMEOUT_KEY, cacheTimeOutKey);
@@ -27,15 +27,21 @@ import org.yes.cart.service.async.model.AsyncContext;
 import org.yes.cart.service.async.utils.ThreadLocalAsyncContextUtils;
 import org.yes.cart.utils.log.Markers;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Coalescing cache eviction queue. All changes for the same (user, operation, entity) are merged
+ * into a single pending item backed by primitive long set, so duplicate PKs do not occupy any
+ * additional memory. Once number of PKs in item exceeds {@link #setMaxQueueSize(int)} the item
+ * degrades to "evict all" for the entity, so no evictions are ever lost.
+ *
  * User: denispavlov
  * Date: 26/05/2018
  * Time: 08:42
@@ -44,18 +50,22 @@ public class CacheEvictionQueueImpl implements CacheEvictionQueue, DisposableBea
 
     private static final Logger LOG = LoggerFactory.getLogger(CacheEvictionQueueImpl.class);
 
-    private final Map<Key, Set<Long>> queue = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, PendingItem> queue = new ConcurrentHashMap<>();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final AtomicLong pending = new AtomicLong(0L);
+    private final AtomicLong enqueued = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong overflows = new AtomicLong(0L);
+    private final AtomicLong dequeued = new AtomicLong(0L);
 
     private int maxQueueSize = 1000;
 
     @Override
     public void enqueue(final String entityOperation, final String entityName, final Long pkValue) {
 
-        if (this.queue.size() > maxQueueSize) {
-            LOG.error(Markers.alert(), "Cache eviction queue is full");
-            return;
-        }
-
         final Authentication auth = SecurityContextHolder.getContext() != null ? SecurityContextHolder.getContext().getAuthentication() : null;
         String username = auth != null && auth.isAuthenticated() ? auth.getName() : null;
         if (username == null) {
@@ -68,50 +78,180 @@ public class CacheEvictionQueueImpl implements CacheEvictionQueue, DisposableBea
             return;
         }
 
-        queue.compute(new Key(username, entityOperation, entityName), (k, v) ->
-                (v == null) ? Collections.singleton(pkValue) :
-                        (v.contains(pkValue) ? v :
-                        Stream.of(v, Collections.singleton(pkValue))
-                                .flatMap(Collection::stream)
-                                .collect(Collectors.toSet())));
+        enqueued.incrementAndGet();
+
+        final Key key = new Key(username, entityOperation, entityName);
+        while (true) {
+            final boolean[] created = new boolean[1];
+            final PendingItem item = this.queue.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return new PendingItem(k);
+            });
+            final int added = item.add(pkValue, this.maxQueueSize);
+            if (added == PendingItem.DEQUEUED) {
+                continue; // item was taken by processor just now, so need a new one
+            }
+            if (created[0]) {
+                signalNotEmpty();
+            }
+            if (added == PendingItem.ADDED) {
+                pending.incrementAndGet();
+            } else if (added == PendingItem.OVERFLOW) {
+                overflows.incrementAndGet();
+                LOG.warn(Markers.alert(), "Cache eviction queue for {} {} exceeded {} items, all {} caches will be evicted",
+                        entityOperation, entityName, this.maxQueueSize, entityName);
+            } else {
+                coalesced.incrementAndGet();
+            }
+            return;
+        }
 
     }
 
     @Override
     public CacheEvictionItem dequeue() {
 
-        final Key key = this.queue.isEmpty() ? null : this.queue.keySet().iterator().next();
-        if (key == null) {
-            return null;
+        for (final Key key : this.queue.keySet()) {
+            final PendingItem item = this.queue.remove(key);
+            if (item != null) {
+                final CacheEvictionItem evict = item.close();
+                if (evict == null) {
+                    continue; // item was just created and has nothing in it yet, enqueue will retry
+                }
+                pending.addAndGet(-item.counted);
+                dequeued.incrementAndGet();
+                return evict;
+            }
         }
+        return null;
 
-        final Set<Long> update = this.queue.remove(key);
+    }
 
-        return new Item(key, update);
+    @Override
+    public CacheEvictionItem dequeue(final long timeoutMs) throws InterruptedException {
+
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.lock.lockInterruptibly();
+        try {
+            // new items are signalled under lock, so there is no lost wake up between check and wait
+            while (this.queue.isEmpty() && nanos > 0L) {
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return dequeue();
 
     }
 
+    private void signalNotEmpty() {
+        this.lock.lock();
+        try {
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     @Override
     public void clear() {
 
-        queue.clear();
+        for (final Key key : this.queue.keySet()) {
+            final PendingItem item = this.queue.remove(key);
+            if (item != null) {
+                item.close();
+                pending.addAndGet(-item.counted);
+            }
+        }
+
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+
+        final long enqueuedCount = enqueued.get();
+        final long coalescedCount = coalesced.get();
+
+        final Map<String, String> stats = new TreeMap<>();
+        stats.put("queueDepth", String.valueOf(this.queue.size()));
+        stats.put("pendingPKs", String.valueOf(pending.get()));
+        stats.put("enqueued", String.valueOf(enqueuedCount));
+        stats.put("coalesced", String.valueOf(coalescedCount));
+        stats.put("coalesceRatio", enqueuedCount == 0L ? "0.00" :
+                String.format(Locale.US, "%.2f", (double) coalescedCount / (double) enqueuedCount));
+        stats.put("overflows", String.valueOf(overflows.get()));
+        stats.put("dequeued", String.valueOf(dequeued.get()));
+        stats.put("maxQueueSize", String.valueOf(this.maxQueueSize));
+        return stats;
 
     }
 
     @Override
     public void destroy() throws Exception {
-        LOG.debug("Shutting down cache eviction queue");
+        LOG.debug("Shutting down cache eviction queue, {}", getStatistics());
         this.queue.clear();
     }
 
+    /**
+     * Mutable pending item. Once dequeued the item is closed and all subsequent changes go to a new item.
+     */
+    static class PendingItem {
+
+        static final int ADDED = 0;
+        static final int DUPLICATE = 1;
+        static final int OVERFLOW = 2;
+        static final int DEQUEUED = 3;
+
+        private final Key key;
+        private LongSet pks = new LongSet();
+        private boolean evictAll = false;
+        private boolean closed = false;
+        private int counted = 0;
+
+        PendingItem(final Key key) {
+            this.key = key;
+        }
+
+        synchronized int add(final Long pkValue, final int max) {
+            if (this.closed) {
+                return DEQUEUED;
+            }
+            if (this.evictAll) {
+                return DUPLICATE;
+            }
+            if (pkValue != null && this.pks.contains(pkValue)) {
+                return DUPLICATE;
+            }
+            if (pkValue == null || this.pks.size() >= max) {
+                this.evictAll = true;
+                this.pks = null;
+                return OVERFLOW;
+            }
+            this.pks.add(pkValue);
+            this.counted++;
+            return ADDED;
+        }
+
+        synchronized CacheEvictionItem close() {
+            this.closed = true;
+            if (!this.evictAll && this.counted == 0) {
+                return null; // empty PK's mean evict all, so never return empty item
+            }
+            return new Item(this.key, this.evictAll, this.evictAll ? Collections.emptySet() : this.pks.toSet());
+        }
+
+    }
+
     private static class Item implements CacheEvictionItem {
 
         private final Key key;
+        private final boolean evictAll;
         private final Set<Long> pks;
 
 
-        private Item(final Key key, final Set<Long> pks) {
+        private Item(final Key key, final boolean evictAll, final Set<Long> pks) {
             this.key = key;
+            this.evictAll = evictAll;
             this.pks = pks;
         }
 
@@ -130,19 +270,24 @@ public class CacheEvictionQueueImpl implements CacheEvictionQueue, DisposableBea
             return key.entityName;
         }
 
+        @Override
+        public boolean isEvictAll() {
+            return evictAll;
+        }
+
         @Override
         public Set<Long> getPKs() {
             return pks;
         }
     }
 
-    private static class Key {
+    static class Key {
 
         private final String user;
         private final String entityOperation;
         private final String entityName;
 
-        private Key(final String user, final String entityOperation, final String entityName) {
+        Key(final String user, final String entityOperation, final String entityName) {
             this.user = user;
             this.entityOperation = entityOperation;
             this.entityName = entityName;
@@ -170,7 +315,100 @@ public class CacheEvictionQueueImpl implements CacheEvictionQueue, DisposableBea
     }
 
     /**
-     * Maximum cache eviction items in queue.
+     * Open addressing set of primitive longs (linear probing). Not thread safe.
+     */
+    static class LongSet {
+
+        private static final long EMPTY = 0L;
+
+        private long[] keys = new long[16];
+        private boolean hasEmptyKey = false;
+        private int size = 0;
+
+        boolean add(final long value) {
+            if (value == EMPTY) {
+                if (this.hasEmptyKey) {
+                    return false;
+                }
+                this.hasEmptyKey = true;
+                this.size++;
+                return true;
+            }
+            if ((this.size + 1) * 4 > this.keys.length * 3) {
+                rehash(this.keys.length << 1);
+            }
+            if (insert(this.keys, value)) {
+                this.size++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean contains(final long value) {
+            if (value == EMPTY) {
+                return this.hasEmptyKey;
+            }
+            final int mask = this.keys.length - 1;
+            int slot = mix(value) & mask;
+            while (this.keys[slot] != EMPTY) {
+                if (this.keys[slot] == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        Set<Long> toSet() {
+            final Set<Long> set = new HashSet<>(this.size * 4 / 3 + 1);
+            if (this.hasEmptyKey) {
+                set.add(EMPTY);
+            }
+            for (final long key : this.keys) {
+                if (key != EMPTY) {
+                    set.add(key);
+                }
+            }
+            return set;
+        }
+
+        private void rehash(final int capacity) {
+            final long[] rehashed = new long[capacity];
+            for (final long key : this.keys) {
+                if (key != EMPTY) {
+                    insert(rehashed, key);
+                }
+            }
+            this.keys = rehashed;
+        }
+
+        private static boolean insert(final long[] table, final long value) {
+            final int mask = table.length - 1;
+            int slot = mix(value) & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            return true;
+        }
+
+        private static int mix(final long value) {
+            final long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+    }
+
+    /**
+     * Maximum number of pending PKs for single (user, operation, entity) after which the item is
+     * converted to evict all.
      *
      * @param maxQueueSize max size
      */
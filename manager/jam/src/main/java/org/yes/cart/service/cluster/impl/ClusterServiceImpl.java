@@ -165,7 +165,15 @@ public class ClusterServiceImpl implements ClusterService {
         }
 
         final String admin = nodeService.getCurrentNodeId();
-        List<ConfigurationDTO> adminRez = localModuleDirector.getConfigurations();
+        List<ConfigurationDTO> adminRez = new ArrayList<>(localModuleDirector.getConfigurations());
+        adminRez.add(new ConfigurationDTO(
+                "cluster",
+                "cacheEvictionQueue",
+                CacheEvictionQueue.class.getName(),
+                true,
+                cacheEvictionQueue.getStatistics(),
+                Collections.emptyList()
+        ));
         for (final ConfigurationDTO configurationDTO : adminRez) {
             configurationDTO.setNodeId(admin);
         }
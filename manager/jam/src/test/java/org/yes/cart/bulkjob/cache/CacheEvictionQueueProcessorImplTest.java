@@ -0,0 +1,341 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.cache;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.yes.cart.cluster.node.*;
+import org.yes.cart.cluster.node.impl.BasicMessageImpl;
+import org.yes.cart.cluster.node.impl.NodeImpl;
+import org.yes.cart.service.async.AsyncContextFactory;
+import org.yes.cart.service.async.model.AsyncContext;
+import org.yes.cart.service.cluster.impl.CacheEvictionQueueImpl;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:45
+ */
+public class CacheEvictionQueueProcessorImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private CacheEvictionQueueImpl queue;
+    private TestNodeService nodeService;
+    private CacheEvictionQueueProcessorImpl processor;
+
+    @Before
+    public void setUp() throws Exception {
+
+        final AsyncContextFactory asyncContextFactory = context.mock(AsyncContextFactory.class, "asyncContextFactory");
+        final AsyncContext asyncContext = context.mock(AsyncContext.class, "asyncContext");
+
+        context.checking(new Expectations() {{
+            allowing(asyncContextFactory).getInstance(with(any(Map.class))); will(returnValue(asyncContext));
+        }});
+
+        queue = new CacheEvictionQueueImpl();
+        nodeService = new TestNodeService();
+
+        processor = new CacheEvictionQueueProcessorImpl();
+        processor.setCacheEvictionQueue(queue);
+        processor.setNodeService(nodeService);
+        processor.setAsyncContextFactory(asyncContextFactory);
+
+        login();
+
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testMergePKs() throws Exception {
+
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), new HashSet<>(Arrays.asList(
+                CacheEvictionQueueProcessorImpl.mergePKs(new Long[] { 1L, 2L }, new Long[] { 2L, 3L }))));
+
+        // evict all always wins
+        assertEquals(0, CacheEvictionQueueProcessorImpl.mergePKs(new Long[] { 1L }, new Long[0]).length);
+        assertEquals(0, CacheEvictionQueueProcessorImpl.mergePKs(new Long[0], new Long[] { 1L }).length);
+
+    }
+
+    @Test
+    public void testDrainBatchEmpty() throws Exception {
+
+        processor.setBatchWindowMs(1000L);
+
+        final long start = System.currentTimeMillis();
+        assertEquals(0, processor.drainBatch(new HashMap<>()));
+        assertTrue("Empty queue must not wait for window", System.currentTimeMillis() - start < 500L);
+
+    }
+
+    @Test
+    public void testDrainBatchGroupsByUserEntityAndOperation() throws Exception {
+
+        queue.enqueue("Update", "ProductEntity", 1L);
+        queue.enqueue("Update", "ProductEntity", 2L);
+        queue.enqueue("Delete", "ProductEntity", 3L);
+        queue.enqueue("Update", "CategoryEntity", null); // evict all
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("other", "", Collections.emptyList()));
+        queue.enqueue("Update", "ProductEntity", 4L);
+
+        processor.setBatchWindowMs(0L);
+
+        final Map<String, HashMap<String, HashMap<String, Long[]>>> batch = new HashMap<>();
+        assertEquals(4, processor.drainBatch(batch));
+
+        assertEquals(2, batch.size());
+        final HashMap<String, HashMap<String, Long[]>> admin = batch.get("admin");
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(Arrays.asList(admin.get("ProductEntity").get("Update"))));
+        assertArrayEquals(new Long[] { 3L }, admin.get("ProductEntity").get("Delete"));
+        assertArrayEquals("Evict all is sent as empty PK's", new Long[0], admin.get("CategoryEntity").get("Update"));
+        assertArrayEquals(new Long[] { 4L }, batch.get("other").get("ProductEntity").get("Update"));
+
+    }
+
+    @Test
+    public void testDrainBatchMaxItems() throws Exception {
+
+        queue.enqueue("Update", "ProductEntity", 1L);
+        queue.enqueue("Update", "CategoryEntity", 1L);
+        queue.enqueue("Update", "BrandEntity", 1L);
+
+        processor.setBatchMaxItems(2);
+
+        assertEquals(2, processor.drainBatch(new HashMap<>()));
+        assertEquals(1, processor.drainBatch(new HashMap<>()));
+        assertEquals(0, processor.drainBatch(new HashMap<>()));
+
+    }
+
+    @Test
+    public void testDrainBatchWaitsForLateItemsWithinWindow() throws Exception {
+
+        queue.enqueue("Update", "ProductEntity", 1L);
+
+        final Thread late = new Thread(() -> {
+            login();
+            try {
+                Thread.sleep(100L);
+                queue.enqueue("Update", "CategoryEntity", 1L);
+            } catch (InterruptedException ie) {
+                // test will fail
+            }
+        });
+        late.start();
+
+        processor.setBatchWindowMs(500L);
+
+        final Map<String, HashMap<String, HashMap<String, Long[]>>> batch = new HashMap<>();
+        final long start = System.currentTimeMillis();
+        assertEquals(2, processor.drainBatch(batch));
+        final long took = System.currentTimeMillis() - start;
+        late.join();
+
+        assertTrue(batch.get("admin").containsKey("CategoryEntity"));
+        assertTrue("Late item must be picked up within window", took >= 100L);
+
+    }
+
+    @Test
+    public void testRunSendsBatchToNewNodesAndLegacyToOldNodes() throws Exception {
+
+        nodeService.nodes.add(new NodeImpl(false, "SF1", "SFW", "DEFAULT", "YCCLUSTER", "4.1.0", "2", false));
+        nodeService.nodes.add(new NodeImpl(false, "SF2", "SFW", "DEFAULT", "YCCLUSTER", "4.0.0", "1", false));
+        nodeService.legacy.add("YCCLUSTER.SF2");
+
+        queue.enqueue("Update", "ProductEntity", 1L);
+        queue.enqueue("Delete", "CategoryEntity", 2L);
+        processor.setBatchWindowMs(0L);
+
+        processor.run();
+
+        // batch to both, SF2 does not respond, so legacy messages are sent to SF2 only
+        assertEquals(3, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBatchChange", nodeService.sent.get(0).getSubject());
+        assertEquals(Arrays.asList("YCCLUSTER.SF1", "YCCLUSTER.SF2"), nodeService.sent.get(0).getTargets());
+        final Set<String> legacy = new HashSet<>();
+        for (final Message message : nodeService.sent.subList(1, 3)) {
+            assertEquals("CacheDirector.onCacheableBulkChange", message.getSubject());
+            assertEquals(Collections.singletonList("YCCLUSTER.SF2"), message.getTargets());
+            final Map<String, Object> bulk = (Map<String, Object>) message.getPayload();
+            legacy.add(bulk.get("entityOperation") + ":" + bulk.get("entityName") + ":" + Arrays.asList((Long[]) bulk.get("pkValues")));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Update:ProductEntity:[1]", "Delete:CategoryEntity:[2]")), legacy);
+
+        // SF2 is now known to be legacy, so it does not receive batch message anymore
+        nodeService.sent.clear();
+        login();
+        queue.enqueue("Update", "ProductEntity", 3L);
+        processor.run();
+
+        assertEquals(2, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBatchChange", nodeService.sent.get(0).getSubject());
+        assertEquals(Collections.singletonList("YCCLUSTER.SF1"), nodeService.sent.get(0).getTargets());
+        assertEquals("CacheDirector.onCacheableBulkChange", nodeService.sent.get(1).getSubject());
+        assertEquals(Collections.singletonList("YCCLUSTER.SF2"), nodeService.sent.get(1).getTargets());
+
+        // SF2 is upgraded, so batch message is tried again
+        nodeService.sent.clear();
+        nodeService.nodes.set(1, new NodeImpl(false, "SF2", "SFW", "DEFAULT", "YCCLUSTER", "4.1.0", "2", false));
+        nodeService.legacy.clear();
+        login();
+        queue.enqueue("Update", "ProductEntity", 4L);
+        processor.run();
+
+        assertEquals(1, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBatchChange", nodeService.sent.get(0).getSubject());
+        assertEquals(Arrays.asList("YCCLUSTER.SF1", "YCCLUSTER.SF2"), nodeService.sent.get(0).getTargets());
+
+    }
+
+    @Test
+    public void testRunEvictAllOnLegacyNodes() throws Exception {
+
+        nodeService.nodes.add(new NodeImpl(false, "SF2", "SFW", "DEFAULT", "YCCLUSTER", "4.0.0", "1", false));
+        nodeService.legacy.add("YCCLUSTER.SF2");
+
+        queue.enqueue("Update", "ProductEntity", null); // evict all
+        processor.setBatchWindowMs(0L);
+
+        processor.run();
+
+        // legacy nodes cannot handle empty PK's, so all caches are evicted
+        assertEquals(2, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBatchChange", nodeService.sent.get(0).getSubject());
+        assertEquals("CacheDirector.evictAllCache", nodeService.sent.get(1).getSubject());
+        assertEquals(Boolean.TRUE, nodeService.sent.get(1).getPayload());
+
+    }
+
+    @Test
+    public void testRunNodeDownIsNotMarkedAsLegacy() throws Exception {
+
+        nodeService.nodes.add(new NodeImpl(false, "SF1", "SFW", "DEFAULT", "YCCLUSTER", "4.1.0", "2", false));
+        nodeService.down.add("YCCLUSTER.SF1");
+
+        queue.enqueue("Update", "ProductEntity", 1L);
+        processor.setBatchWindowMs(0L);
+        processor.run();
+
+        assertEquals(2, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBulkChange", nodeService.sent.get(1).getSubject());
+
+        // node is back, still gets batch message
+        nodeService.down.clear();
+        nodeService.sent.clear();
+        login();
+        queue.enqueue("Update", "ProductEntity", 2L);
+        processor.run();
+
+        assertEquals(1, nodeService.sent.size());
+        assertEquals("CacheDirector.onCacheableBatchChange", nodeService.sent.get(0).getSubject());
+
+    }
+
+    private static void login() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("admin", "", Collections.emptyList()));
+    }
+
+    /**
+     * Node service that responds on behalf of storefront nodes. Legacy nodes have no listener for batch
+     * message and nodes that are down do not respond at all.
+     */
+    private static class TestNodeService implements NodeService {
+
+        private final List<Node> nodes = new ArrayList<>();
+        private final Set<String> legacy = new HashSet<>();
+        private final Set<String> down = new HashSet<>();
+        private final List<Message> sent = new ArrayList<>();
+
+        @Override
+        public void broadcast(final Message message) {
+            sent.add(message);
+            for (final String target : message.getTargets()) {
+                if (down.contains(target)
+                        || (legacy.contains(target) && "CacheDirector.onCacheableBatchChange".equals(message.getSubject()))) {
+                    continue;
+                }
+                ((RspMessage) message).addResponse(new BasicMessageImpl(target, message.getSubject(), 1));
+            }
+        }
+
+        @Override
+        public String getCurrentNodeId() {
+            return "YCCLUSTER.JAM";
+        }
+
+        @Override
+        public Map<String, String> getConfiguration() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public List<Node> getCluster() {
+            return nodes;
+        }
+
+        @Override
+        public List<Node> getBlacklisted() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Node getCurrentNode() {
+            return null;
+        }
+
+        @Override
+        public Node getAdminNode() {
+            return null;
+        }
+
+        @Override
+        public List<Node> getSfNodes() {
+            return nodes;
+        }
+
+        @Override
+        public List<Node> getOtherSfNodes() {
+            return nodes;
+        }
+
+        @Override
+        public void subscribe(final String subject, final MessageListener listener) {
+            // not used
+        }
+    }
+
+}
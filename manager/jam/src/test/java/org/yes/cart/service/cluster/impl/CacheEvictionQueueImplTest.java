@@ -0,0 +1,310 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.cluster.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.yes.cart.cluster.service.CacheEvictionQueue;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 20:40
+ */
+public class CacheEvictionQueueImplTest {
+
+    @Before
+    public void setUp() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("admin", "", Collections.emptyList()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testEnqueueNoUser() throws Exception {
+
+        SecurityContextHolder.clearContext();
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.enqueue("Update", "Product", 1L);
+
+        assertNull(queue.dequeue());
+        assertEquals("0", queue.getStatistics().get("enqueued"));
+
+    }
+
+    @Test
+    public void testEnqueueCoalesced() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", 2L);
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", 2L);
+        queue.enqueue("Delete", "Product", 1L);
+
+        final Map<String, String> stats = queue.getStatistics();
+        assertEquals("2", stats.get("queueDepth"));
+        assertEquals("3", stats.get("pendingPKs"));
+        assertEquals("5", stats.get("enqueued"));
+        assertEquals("2", stats.get("coalesced"));
+        assertEquals("0.40", stats.get("coalesceRatio"));
+
+        final Map<String, CacheEvictionQueue.CacheEvictionItem> items = dequeueAll(queue);
+        assertEquals(2, items.size());
+
+        final CacheEvictionQueue.CacheEvictionItem update = items.get("Update:Product");
+        assertEquals("admin", update.getUser());
+        assertEquals("Product", update.getEntityName());
+        assertFalse(update.isEvictAll());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(update.getPKs()));
+
+        final CacheEvictionQueue.CacheEvictionItem delete = items.get("Delete:Product");
+        assertFalse(delete.isEvictAll());
+        assertEquals(Collections.singleton(1L), new HashSet<>(delete.getPKs()));
+
+        assertNull(queue.dequeue());
+        assertEquals("0", queue.getStatistics().get("pendingPKs"));
+        assertEquals("2", queue.getStatistics().get("dequeued"));
+
+    }
+
+    @Test
+    public void testEnqueueOverflowDegradesToEvictAll() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.setMaxQueueSize(3);
+
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", 2L);
+        queue.enqueue("Update", "Product", 3L);
+        queue.enqueue("Update", "Product", 3L); // duplicate does not overflow
+        assertEquals("0", queue.getStatistics().get("overflows"));
+
+        queue.enqueue("Update", "Product", 4L);
+        queue.enqueue("Update", "Product", 5L); // already evict all
+
+        final Map<String, String> stats = queue.getStatistics();
+        assertEquals("1", stats.get("queueDepth"));
+        assertEquals("1", stats.get("overflows"));
+        assertEquals("2", stats.get("coalesced"));
+
+        final CacheEvictionQueue.CacheEvictionItem item = queue.dequeue();
+        assertTrue(item.isEvictAll());
+        assertTrue(item.getPKs().isEmpty());
+        assertNull(queue.dequeue());
+        assertEquals("0", queue.getStatistics().get("pendingPKs"));
+
+    }
+
+    @Test
+    public void testEnqueueNullPkIsEvictAll() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", null);
+
+        final CacheEvictionQueue.CacheEvictionItem item = queue.dequeue();
+        assertTrue(item.isEvictAll());
+        assertTrue(item.getPKs().isEmpty());
+
+    }
+
+    @Test
+    public void testMaxQueueSizeIsPerEntity() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.setMaxQueueSize(2);
+
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", 2L);
+        queue.enqueue("Update", "Category", 1L);
+        queue.enqueue("Update", "Category", 2L);
+        queue.enqueue("Delete", "Category", 3L);
+
+        assertEquals("0", queue.getStatistics().get("overflows"));
+        assertEquals("5", queue.getStatistics().get("pendingPKs"));
+
+        final Map<String, CacheEvictionQueue.CacheEvictionItem> items = dequeueAll(queue);
+        assertEquals(3, items.size());
+        for (final CacheEvictionQueue.CacheEvictionItem item : items.values()) {
+            assertFalse(item.isEvictAll());
+        }
+
+    }
+
+    @Test
+    public void testEnqueueAfterDequeueGoesToNewItem() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.enqueue("Update", "Product", 1L);
+
+        final CacheEvictionQueue.CacheEvictionItem first = queue.dequeue();
+        assertEquals(Collections.singleton(1L), new HashSet<>(first.getPKs()));
+
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Product", 2L);
+
+        final CacheEvictionQueue.CacheEvictionItem second = queue.dequeue();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(second.getPKs()));
+        assertEquals("Dequeued item is not affected", Collections.singleton(1L), new HashSet<>(first.getPKs()));
+
+    }
+
+    @Test
+    public void testPendingItemClosedOnDequeue() throws Exception {
+
+        final CacheEvictionQueueImpl.PendingItem item =
+                new CacheEvictionQueueImpl.PendingItem(new CacheEvictionQueueImpl.Key("admin", "Update", "Product"));
+
+        assertEquals(CacheEvictionQueueImpl.PendingItem.ADDED, item.add(1L, 10));
+        assertEquals(CacheEvictionQueueImpl.PendingItem.DUPLICATE, item.add(1L, 10));
+
+        final CacheEvictionQueue.CacheEvictionItem closed = item.close();
+        assertEquals(Collections.singleton(1L), new HashSet<>(closed.getPKs()));
+
+        assertEquals(CacheEvictionQueueImpl.PendingItem.DEQUEUED, item.add(2L, 10));
+        assertEquals(Collections.singleton(1L), new HashSet<>(closed.getPKs()));
+
+    }
+
+    @Test
+    public void testEmptyPendingItemIsNeverDequeued() throws Exception {
+
+        final CacheEvictionQueueImpl.PendingItem item =
+                new CacheEvictionQueueImpl.PendingItem(new CacheEvictionQueueImpl.Key("admin", "Update", "Product"));
+
+        // item is created, but enqueue has not added PK yet, empty PK's would mean evict all
+        assertNull(item.close());
+        assertEquals(CacheEvictionQueueImpl.PendingItem.DEQUEUED, item.add(1L, 10));
+
+    }
+
+    @Test
+    public void testConcurrentEnqueueAndDequeueLosesNothing() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.setMaxQueueSize(Integer.MAX_VALUE);
+
+        final int threads = 4;
+        final int perThread = 5000;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long offset = t * perThread;
+            executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken("admin", "", Collections.emptyList()));
+                try {
+                    for (long pk = 0; pk < perThread; pk++) {
+                        queue.enqueue("Update", "Product", offset + pk);
+                    }
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    done.countDown();
+                }
+            });
+        }
+
+        final Set<Long> received = new HashSet<>();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        while (!finished.get()) {
+            finished.set(done.await(1, TimeUnit.MILLISECONDS));
+            CacheEvictionQueue.CacheEvictionItem item;
+            while ((item = queue.dequeue()) != null) {
+                assertFalse(item.isEvictAll());
+                received.addAll(item.getPKs());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(threads * perThread, received.size());
+        assertEquals("0", queue.getStatistics().get("pendingPKs"));
+
+    }
+
+    @Test
+    public void testClear() throws Exception {
+
+        final CacheEvictionQueueImpl queue = new CacheEvictionQueueImpl();
+        queue.enqueue("Update", "Product", 1L);
+        queue.enqueue("Update", "Category", 1L);
+
+        queue.clear();
+
+        assertNull(queue.dequeue());
+        assertEquals("0", queue.getStatistics().get("queueDepth"));
+        assertEquals("0", queue.getStatistics().get("pendingPKs"));
+
+    }
+
+    @Test
+    public void testLongSet() throws Exception {
+
+        final CacheEvictionQueueImpl.LongSet set = new CacheEvictionQueueImpl.LongSet();
+
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.add(-1L));
+        assertTrue(set.add(Long.MAX_VALUE));
+        assertFalse(set.add(Long.MAX_VALUE));
+
+        final Set<Long> expected = new HashSet<>(Arrays.asList(0L, -1L, Long.MAX_VALUE));
+        for (long i = 1; i <= 1000L; i++) { // several rehashes
+            assertTrue(set.add(i * 16L));
+            expected.add(i * 16L);
+        }
+        for (long i = 1; i <= 1000L; i++) {
+            assertTrue(set.contains(i * 16L));
+            assertFalse(set.contains(i * 16L + 1L));
+            assertFalse(set.add(i * 16L));
+        }
+
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, set.toSet());
+
+    }
+
+    private Map<String, CacheEvictionQueue.CacheEvictionItem> dequeueAll(final CacheEvictionQueueImpl queue) {
+        final Map<String, CacheEvictionQueue.CacheEvictionItem> items = new HashMap<>();
+        CacheEvictionQueue.CacheEvictionItem item;
+        while ((item = queue.dequeue()) != null) {
+            items.put(item.getOperation() + ":" + item.getEntityName(), item);
+        }
+        return items;
+    }
+
+}
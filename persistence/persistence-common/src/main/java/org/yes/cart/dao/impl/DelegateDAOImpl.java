@@ -383,4 +383,12 @@ public class DelegateDAOImpl<T, PK extends Serializable> implements GenericDAO<T
         delegate.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAutoFlush(final boolean autoFlush) {
+        delegate.setAutoFlush(autoFlush);
+    }
+
 }
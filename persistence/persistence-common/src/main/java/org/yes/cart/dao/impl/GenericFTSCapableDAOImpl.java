@@ -29,6 +29,7 @@ import org.yes.cart.search.dto.FilteredNavigationRecordRequest;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -406,6 +407,14 @@ public class GenericFTSCapableDAOImpl<T, PK extends Serializable>
         genericDAO.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAutoFlush(final boolean autoFlush) {
+        genericDAO.setAutoFlush(autoFlush);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -489,6 +498,14 @@ public class GenericFTSCapableDAOImpl<T, PK extends Serializable>
         indexBuilder.fullTextSearchReindex(primaryKey, purgeOnly);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fullTextSearchReindex(final Collection<PK> primaryKeys) {
+        indexBuilder.fullTextSearchReindex(primaryKeys);
+    }
+
     private List<T> getEntitiesByPks(final List<PK> pks) {
         final List<T> entities = new ArrayList<>();
         if (CollectionUtils.isNotEmpty(pks)) {
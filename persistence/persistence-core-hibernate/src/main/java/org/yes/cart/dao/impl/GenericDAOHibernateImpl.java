@@ -598,4 +598,12 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable> implements Gene
         sessionFactory.getCurrentSession().clear();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAutoFlush(final boolean autoFlush) {
+        sessionFactory.getCurrentSession().setHibernateFlushMode(autoFlush ? FlushMode.AUTO : FlushMode.COMMIT);
+    }
+
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.impl;
+
+import org.yes.cart.domain.entity.AttrValue;
+
+import java.util.*;
+
+/**
+ * Immutable attribute code index for attributable entities. Index is built from attribute collection
+ * and remembers the collection instance, so that entity can detect that collection was replaced
+ * (see {@link #isValidFor(Collection)}). Collection contents are not tracked, entities must discard
+ * the index whenever they hand out mutable collection (i.e. in getAttributes() and setAttributes()).
+ *
+ * Since index is immutable and all fields are final it is safe to share entities with index between
+ * threads (e.g. cached storefront entities) without additional synchronisation.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 18:32
+ */
+final class AttrValueIndex<T extends AttrValue> {
+
+    private final Collection<T> source;
+    private final Map<String, T> firstByCode;
+    private final Map<String, T> lastByCode;
+    private final NavigableMap<String, List<T>> allByCode;
+
+    /**
+     * @param attributes attributes to index
+     */
+    AttrValueIndex(final Collection<T> attributes) {
+
+        this.source = attributes;
+
+        final int size = attributes != null ? attributes.size() : 0;
+        final Map<String, T> firstByCode = new HashMap<>(size * 2);
+        final Map<String, T> lastByCode = new HashMap<>(size * 2);
+        final NavigableMap<String, List<T>> allByCode = new TreeMap<>();
+        if (attributes != null) {
+            for (final T attrValue : attributes) {
+                if (attrValue != null && attrValue.getAttributeCode() != null) {
+                    final String code = attrValue.getAttributeCode();
+                    firstByCode.putIfAbsent(code, attrValue);
+                    lastByCode.put(code, attrValue);
+                    allByCode.computeIfAbsent(code, k -> new ArrayList<>(1)).add(attrValue);
+                }
+            }
+        }
+        this.firstByCode = Collections.unmodifiableMap(firstByCode);
+        this.lastByCode = Collections.unmodifiableMap(lastByCode);
+        this.allByCode = Collections.unmodifiableNavigableMap(allByCode);
+
+    }
+
+    /**
+     * Check if this index still represents given attributes.
+     *
+     * @param attributes current entity attributes
+     *
+     * @return true if this index was built for same collection
+     */
+    boolean isValidFor(final Collection<T> attributes) {
+        return this.source == attributes;
+    }
+
+    /**
+     * @param attributeCode attribute code
+     *
+     * @return first attribute value with given code or null
+     */
+    T get(final String attributeCode) {
+        if (attributeCode == null) {
+            return null;
+        }
+        return this.firstByCode.get(attributeCode);
+    }
+
+    /**
+     * @param attributeCode attribute code
+     *
+     * @return last attribute value with given code or null
+     */
+    T getLast(final String attributeCode) {
+        if (attributeCode == null) {
+            return null;
+        }
+        return this.lastByCode.get(attributeCode);
+    }
+
+    /**
+     * @param attributeCode attribute code
+     *
+     * @return all attribute values with given code (never null)
+     */
+    List<T> getAll(final String attributeCode) {
+        if (attributeCode == null) {
+            return Collections.emptyList();
+        }
+        final List<T> all = this.allByCode.get(attributeCode);
+        return all != null ? all : Collections.emptyList();
+    }
+
+    /**
+     * @param prefix attribute code prefix
+     *
+     * @return all attribute values which codes start with given prefix (never null)
+     */
+    List<T> getAllStartingWith(final String prefix) {
+        final List<T> all = new ArrayList<>();
+        for (final Map.Entry<String, List<T>> entry : this.allByCode.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            all.addAll(entry.getValue());
+        }
+        return all;
+    }
+
+    /**
+     * @return unmodifiable map of last attribute value by code
+     */
+    Map<String, T> asMap() {
+        return this.lastByCode;
+    }
+
+}
@@ -53,6 +53,7 @@ public class CategoryEntity implements org.yes.cart.domain.entity.Category, java
     private LocalDateTime availablefrom;
     private LocalDateTime availableto;
     private Collection<AttrValueCategory> attributes = new ArrayList<>(0);
+    private transient AttrValueIndex<AttrValueCategory> attributesIndex;
     private SeoEntity seoInternal;
     private Set<ProductCategory> productCategory = new HashSet<>(0);
     private Boolean navigationByAttributes;
@@ -196,12 +197,23 @@ public class CategoryEntity implements org.yes.cart.domain.entity.Category, java
 
     @Override
     public Collection<AttrValueCategory> getAttributes() {
+        this.attributesIndex = null; // collection may be modified by caller
         return this.attributes;
     }
 
     @Override
     public void setAttributes(final Collection<AttrValueCategory> attributes) {
         this.attributes = attributes;
+        this.attributesIndex = null;
+    }
+
+    private AttrValueIndex<AttrValueCategory> getAttributesIndexInternal() {
+        AttrValueIndex<AttrValueCategory> index = this.attributesIndex;
+        if (index == null || !index.isValidFor(this.attributes)) {
+            index = new AttrValueIndex<>(this.attributes);
+            this.attributesIndex = index;
+        }
+        return index;
     }
 
     public SeoEntity getSeoInternal() {
@@ -361,36 +373,16 @@ public class CategoryEntity implements org.yes.cart.domain.entity.Category, java
 
     @Override
     public Set<AttrValueCategory> getAttributesByCode(final String attributeCode) {
-        if (attributeCode == null) {
-            return null;
-        }
-        final Set<AttrValueCategory> result = new HashSet<>();
-        if (this.attributes != null) {
-            for (AttrValueCategory attrValue : this.attributes) {
-                if (attributeCode.equals(attrValue.getAttributeCode())) {
-                    result.add(attrValue);
-                }
-            }
-        }
-        if (result.isEmpty()) {
+        final List<AttrValueCategory> all = getAttributesIndexInternal().getAll(attributeCode);
+        if (all.isEmpty()) {
             return null;
         }
-        return result;
+        return new HashSet<>(all);
     }
 
     @Override
     public AttrValueCategory getAttributeByCode(String attributeCode) {
-        if (attributeCode == null) {
-            return null;
-        }
-        if (this.attributes != null) {
-            for (AttrValueCategory attrValue : this.attributes) {
-                if (attributeCode.equals(attrValue.getAttributeCode())) {
-                    return attrValue;
-                }
-            }
-        }
-        return null;
+        return getAttributesIndexInternal().get(attributeCode);
     }
 
 
@@ -412,13 +404,7 @@ public class CategoryEntity implements org.yes.cart.domain.entity.Category, java
 
     @Override
     public Map<String, AttrValue> getAllAttributesAsMap() {
-        final Map<String, AttrValue> rez = new HashMap<>();
-        for (AttrValue attrValue : getAllAttributes()) {
-            if (attrValue != null && attrValue.getAttributeCode() != null) {
-                rez.put(attrValue.getAttributeCode(), attrValue);
-            }
-        }
-        return rez;
+        return new HashMap<>(getAttributesIndexInternal().asMap());
     }
 
     @Override
@@ -57,6 +57,7 @@ public class ProductEntity implements org.yes.cart.domain.entity.Product, java.i
     private Brand brand;
     private ProductType producttype;
     private Set<AttrValueProduct> attributes = new HashSet<>(0);
+    private transient AttrValueIndex<AttrValueProduct> attributesIndex;
     private Set<ProductCategory> productCategory = new HashSet<>(0);
     private Collection<ProductSku> sku = new ArrayList<>(0);
     private Set<ProductEnsembleOption> ensebleOption = new HashSet<>(0);
@@ -201,11 +202,8 @@ public class ProductEntity implements org.yes.cart.domain.entity.Product, java.i
     @Override
     public I18NModel getDisplayDescription() {
         final StringI18NModel model = new StringI18NModel();
-        for (AttrValue attr : attributes) {
-            if (attr.getAttributeCode() != null &&
-                    attr.getAttributeCode().startsWith(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX)) {
-                model.putValue(getLocale(attr.getAttributeCode()), attr.getVal());
-            }
+        for (AttrValue attr : getAttributesIndexInternal().getAllStartingWith(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX)) {
+            model.putValue(getLocale(attr.getAttributeCode()), attr.getVal());
         }
         return model;
     }
@@ -260,12 +258,23 @@ public class ProductEntity implements org.yes.cart.domain.entity.Product, java.i
 
     @Override
     public Set<AttrValueProduct> getAttributes() {
+        this.attributesIndex = null; // collection may be modified by caller
         return this.attributes;
     }
 
     @Override
     public void setAttributes(final Set<AttrValueProduct> attributes) {
         this.attributes = attributes;
+        this.attributesIndex = null;
+    }
+
+    private AttrValueIndex<AttrValueProduct> getAttributesIndexInternal() {
+        AttrValueIndex<AttrValueProduct> index = this.attributesIndex;
+        if (index == null || !index.isValidFor(this.attributes)) {
+            index = new AttrValueIndex<>(this.attributes);
+            this.attributesIndex = index;
+        }
+        return index;
     }
 
     @Override
@@ -438,42 +447,17 @@ public class ProductEntity implements org.yes.cart.domain.entity.Product, java.i
 
     @Override
     public Collection<AttrValueProduct> getAttributesByCode(final String attributeCode) {
-        final Collection<AttrValueProduct> result = new ArrayList<>();
-        if (attributeCode != null && this.attributes != null) {
-            for (AttrValueProduct attrValue : this.attributes) {
-                if (attributeCode.equals(attrValue.getAttributeCode())) {
-                    result.add(attrValue);
-                }
-            }
-        }
-        return result;
+        return new ArrayList<>(getAttributesIndexInternal().getAll(attributeCode));
     }
 
     @Override
     public Map<String, AttrValue> getAllAttributesAsMap() {
-        final Map<String, AttrValue> rez = new HashMap<>();
-        if (this.attributes != null) {
-            for (AttrValue attrValue : this.attributes) {
-                if (attrValue != null && attrValue.getAttributeCode() != null) {
-                    rez.put(attrValue.getAttributeCode(), attrValue);
-                }
-            }
-        }
-        return rez;
+        return new HashMap<>(getAttributesIndexInternal().asMap());
     }
 
     @Override
     public AttrValueProduct getAttributeByCode(final String attributeCode) {
-        if (attributeCode != null) {
-            if (this.attributes != null) {
-                for (AttrValueProduct attrValue : this.attributes) {
-                    if (attributeCode.equals(attrValue.getAttributeCode())) {
-                        return attrValue;
-                    }
-                }
-            }
-        }
-        return null;
+        return getAttributesIndexInternal().get(attributeCode);
     }
 
 
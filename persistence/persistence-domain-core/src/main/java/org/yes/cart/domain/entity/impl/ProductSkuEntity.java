@@ -58,6 +58,7 @@ public class ProductSkuEntity implements org.yes.cart.domain.entity.ProductSku,
     private int rank;
     private String barCode;
     private Collection<AttrValueProductSku> attributes = new ArrayList<>(0);
+    private transient AttrValueIndex<AttrValueProductSku> attributesIndex;
     private SeoEntity seoInternal;
     private Instant createdTimestamp;
     private Instant updatedTimestamp;
@@ -164,11 +165,8 @@ public class ProductSkuEntity implements org.yes.cart.domain.entity.ProductSku,
     @Override
     public I18NModel getDisplayDescription() {
         final StringI18NModel model = new StringI18NModel();
-        for (AttrValue attr : attributes) {
-            if (attr.getAttributeCode() != null &&
-                    attr.getAttributeCode().startsWith(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX)) {
-                model.putValue(getLocale(attr.getAttributeCode()), attr.getVal());
-            }
+        for (AttrValue attr : getAttributesIndexInternal().getAllStartingWith(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX)) {
+            model.putValue(getLocale(attr.getAttributeCode()), attr.getVal());
         }
         return model;
     }
@@ -219,12 +217,23 @@ public class ProductSkuEntity implements org.yes.cart.domain.entity.ProductSku,
 
     @Override
     public Collection<AttrValueProductSku> getAttributes() {
+        this.attributesIndex = null; // collection may be modified by caller
         return this.attributes;
     }
 
     @Override
     public void setAttributes(final Collection<AttrValueProductSku> attributes) {
         this.attributes = attributes;
+        this.attributesIndex = null;
+    }
+
+    private AttrValueIndex<AttrValueProductSku> getAttributesIndexInternal() {
+        AttrValueIndex<AttrValueProductSku> index = this.attributesIndex;
+        if (index == null || !index.isValidFor(this.attributes)) {
+            index = new AttrValueIndex<>(this.attributes);
+            this.attributesIndex = index;
+        }
+        return index;
     }
 
     public SeoEntity getSeoInternal() {
@@ -311,30 +320,12 @@ public class ProductSkuEntity implements org.yes.cart.domain.entity.ProductSku,
 
     @Override
     public Collection<AttrValueProductSku> getAttributesByCode(final String attributeCode) {
-        final Collection<AttrValueProductSku> result = new ArrayList<>();
-        if (attributeCode != null && this.attributes != null) {
-            for (AttrValueProductSku attrValue : this.attributes) {
-                if (attributeCode.equals(attrValue.getAttributeCode())) {
-                    result.add(attrValue);
-                }
-            }
-        }
-        return result;
+        return new ArrayList<>(getAttributesIndexInternal().getAll(attributeCode));
     }
 
     @Override
     public AttrValueProductSku getAttributeByCode(final String attributeCode) {
-        if (attributeCode == null) {
-            return null;
-        }
-        if (this.attributes != null) {
-            for (AttrValueProductSku attrValue : this.attributes) {
-                if (attributeCode.equals(attrValue.getAttributeCode())) {
-                    return attrValue;
-                }
-            }
-        }
-        return null;
+        return getAttributesIndexInternal().get(attributeCode);
     }
 
 
@@ -356,15 +347,7 @@ public class ProductSkuEntity implements org.yes.cart.domain.entity.ProductSku,
 
     @Override
     public Map<String, AttrValue> getAllAttributesAsMap() {
-        final Map<String, AttrValue> rez = new HashMap<>();
-        if (this.attributes != null) {
-            for (AttrValue attrValue : this.attributes) {
-                if (attrValue != null && attrValue.getAttributeCode() != null) {
-                    rez.put(attrValue.getAttributeCode(), attrValue);
-                }
-            }
-        }
-        return rez;
+        return new HashMap<>(getAttributesIndexInternal().asMap());
     }
 
     @Override
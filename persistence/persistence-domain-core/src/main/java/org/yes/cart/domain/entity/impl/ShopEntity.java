@@ -57,8 +57,7 @@ public class ShopEntity implements org.yes.cart.domain.entity.Shop, java.io.Seri
 
     // Below are internal caches as Shop object is long lived.
 
-    private Map<String, AttrValueShop> attributesMap = null;
-    private Map<String, List<AttrValueShop>> attributesMapMulti = null;
+    private transient AttrValueIndex<AttrValueShop> attributesIndex;
 
     private List<String> supportedCurrenciesAsList;
     private List<String> supportedShippingCountriesAsList;
@@ -201,12 +200,14 @@ public class ShopEntity implements org.yes.cart.domain.entity.Shop, java.io.Seri
 
     @Override
     public Collection<AttrValueShop> getAttributes() {
+        this.attributesIndex = null; // collection may be modified by caller
         return this.attributes;
     }
 
     @Override
     public void setAttributes(final Collection<AttrValueShop> attributes) {
         this.attributes = attributes;
+        this.attributesIndex = null;
     }
 
     @Override
@@ -214,40 +215,18 @@ public class ShopEntity implements org.yes.cart.domain.entity.Shop, java.io.Seri
         return new ArrayList<>(attributes != null ? attributes : Collections.emptyList());
     }
 
-    private void resetAttributesMapsInternal() {
-        final Map<String, AttrValueShop> rez = new HashMap<>(this.attributes != null ? this.attributes.size() * 2 : 50);
-        final Map<String, List<AttrValueShop>> rezMulti = new HashMap<>(this.attributes != null ? this.attributes.size() * 2 : 50);
-        if (this.attributes != null) {
-            for (AttrValueShop attrValue : this.attributes) {
-                if (attrValue != null && attrValue.getAttributeCode() != null) {
-                    final String code = attrValue.getAttributeCode();
-                    rez.put(code, attrValue);
-                    final List<AttrValueShop> attrs = rezMulti.computeIfAbsent(code, k -> new ArrayList<>(3));
-                    attrs.add(attrValue);
-                }
-            }
-        }
-        this.attributesMap = rez;
-        this.attributesMapMulti = rezMulti;
-    }
-
-    private Map<String, AttrValueShop> getAttributesMapInternal(final boolean reset) {
-        if (this.attributesMap == null || reset) {
-            this.resetAttributesMapsInternal();
+    private AttrValueIndex<AttrValueShop> getAttributesIndexInternal() {
+        AttrValueIndex<AttrValueShop> index = this.attributesIndex;
+        if (index == null || !index.isValidFor(this.attributes)) {
+            index = new AttrValueIndex<>(this.attributes);
+            this.attributesIndex = index;
         }
-        return this.attributesMap;
-    }
-
-    private Map<String, List<AttrValueShop>> getAttributesMapMultiInternal(final boolean reset) {
-        if (this.attributesMapMulti == null || reset) {
-            this.resetAttributesMapsInternal();
-        }
-        return this.attributesMapMulti;
+        return index;
     }
 
     @Override
     public Map<String, AttrValue> getAllAttributesAsMap() {
-        return (Map) this.getAttributesMapInternal(false);
+        return (Map) this.getAttributesIndexInternal().asMap();
     }
 
     public SeoEntity getSeoInternal() {
@@ -565,22 +544,12 @@ public class ShopEntity implements org.yes.cart.domain.entity.Shop, java.io.Seri
 
     @Override
     public Collection<AttrValueShop> getAttributesByCode(final String attributeCode) {
-        final Collection<AttrValueShop> result = new ArrayList<>();
-        if (attributeCode != null) {
-            final List<AttrValueShop> list = this.getAttributesMapMultiInternal(false).get(attributeCode); // build maps
-            if (list != null) {
-                result.addAll(list);
-            }
-        }
-        return result;
+        return new ArrayList<>(this.getAttributesIndexInternal().getAll(attributeCode));
     }
 
     @Override
     public AttrValueShop getAttributeByCode(final String attributeCode) {
-        if (attributeCode == null) {
-            return null;
-        }
-        return this.getAttributesMapInternal(false).get(attributeCode);
+        return this.getAttributesIndexInternal().getLast(attributeCode);
     }
 
     @Override
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.impl;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yes.cart.constants.AttributeNamesKeys;
+import org.yes.cart.domain.entity.AttrValue;
+import org.yes.cart.domain.entity.AttrValueProduct;
+import org.yes.cart.domain.entity.AttrValueShop;
+import org.yes.cart.domain.i18n.I18NModel;
+import org.yes.cart.domain.i18n.impl.StringI18NModel;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 18:32
+ */
+public class AttrValueIndexTest {
+
+    private static final String[] LANGUAGES = { "en", "de", "ru", "uk", "fr", "it" };
+
+    /**
+     * Throughput of storefront attribute read paths of attributable entities using {@link AttrValueIndex}
+     * against previous linear scan of attribute collection: shop attribute read on every cart load, product
+     * attribute lookup and product display description, sample results on single CPU sandbox (ops/ms):
+     *
+     * attributes:                      80        300
+     * shop attribute indexed:        ~22K       ~58K
+     * shop attribute scan:          ~4.6K      ~0.9K
+     * product attribute indexed:     ~34K       ~33K
+     * product attribute scan:        ~0.9K     ~0.24K
+     * product description indexed:  ~1.6K      ~1.4K
+     * product description scan:     ~1.7K      ~0.7K
+     *
+     * Conclusion: indexed lookups do not depend on number of attributes and are 5-100x faster than scan,
+     * description is on par with scan for small products and twice as fast for large ones
+     *
+     * @throws Exception errors
+     */
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testAttributeLookupPerformance() throws Exception {
+
+        for (final int attributes : new int[] { 80, 300 }) {
+
+            final List<AttrValueShop> shopAttributes = new ArrayList<>();
+            for (int i = 0; i < attributes; i++) {
+                final AttrValueEntityShop av = new AttrValueEntityShop();
+                av.setAttributeCode("SHOP_ATTR_" + i);
+                av.setVal(String.valueOf(i));
+                shopAttributes.add(av);
+            }
+            final AttrValueEntityShop expiry = new AttrValueEntityShop();
+            expiry.setAttributeCode(AttributeNamesKeys.Shop.CART_SESSION_EXPIRY_SECONDS);
+            expiry.setVal("3600");
+            shopAttributes.add(expiry);
+
+            final ShopEntity shop = new ShopEntity();
+            shop.setAttributes(shopAttributes);
+
+            final Set<AttrValueProduct> productAttributes = new HashSet<>();
+            for (int i = 0; i < attributes; i++) {
+                final AttrValueEntityProduct av = new AttrValueEntityProduct();
+                av.setAttributeCode("PRODUCT_ATTR_" + i);
+                av.setVal(String.valueOf(i));
+                productAttributes.add(av);
+            }
+            for (final String language : LANGUAGES) {
+                final AttrValueEntityProduct av = new AttrValueEntityProduct();
+                av.setAttributeCode(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX + language);
+                av.setVal("Description " + language);
+                productAttributes.add(av);
+            }
+
+            final ProductEntity product = new ProductEntity();
+            product.setAttributes(productAttributes);
+            final String productAttribute = "PRODUCT_ATTR_" + (attributes / 2);
+
+            performanceRoutine(attributes, "shop attribute indexed", () ->
+                    shop.getAttributeValueByCode(AttributeNamesKeys.Shop.CART_SESSION_EXPIRY_SECONDS));
+            performanceRoutine(attributes, "shop attribute scan", () ->
+                    scan(shop.getAttributes(), AttributeNamesKeys.Shop.CART_SESSION_EXPIRY_SECONDS));
+            performanceRoutine(attributes, "product attribute indexed", () ->
+                    product.getAttributeValueByCode(productAttribute));
+            performanceRoutine(attributes, "product attribute scan", () ->
+                    scan(product.getAttributes(), productAttribute));
+            performanceRoutine(attributes, "product description indexed", product::getDisplayDescription);
+            performanceRoutine(attributes, "product description scan", () -> {
+                final I18NModel model = new StringI18NModel();
+                for (final AttrValue attr : product.getAttributes()) {
+                    if (attr.getAttributeCode() != null &&
+                            attr.getAttributeCode().startsWith(AttributeNamesKeys.Product.PRODUCT_DESCRIPTION_PREFIX)) {
+                        model.putValue(product.getLocale(attr.getAttributeCode()), attr.getVal());
+                    }
+                }
+                return model;
+            });
+
+        }
+
+    }
+
+    private void performanceRoutine(final int attributes,
+                                    final String name,
+                                    final Supplier<?> lookup) {
+
+        final int runs = 1000000;
+
+        int found = 0;
+        for (int i = 0; i < runs; i++) { // warm up
+            found += lookup.get() != null ? 1 : 0;
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            found += lookup.get() != null ? 1 : 0;
+        }
+        final long took = Math.max(1L, System.nanoTime() - start);
+
+        assertTrue(found == 2 * runs);
+
+        System.out.println(String.format("attributes: %3d, %-27s: %8.0f ops/ms", attributes, name, runs * 1000000d / took));
+
+    }
+
+    private static String scan(final Iterable<? extends AttrValue> attributes, final String attributeCode) {
+        for (final AttrValue attrValue : attributes) {
+            if (attributeCode.equals(attrValue.getAttributeCode())) {
+                return attrValue.getVal();
+            }
+        }
+        return null;
+    }
+
+}
@@ -20,13 +20,14 @@ import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
+import org.yes.cart.domain.entity.AttrValueProduct;
 import org.yes.cart.domain.entity.ProductSku;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertSame;
+import static org.junit.Assert.*;
 
 /**
  * User: Igor Azarny
@@ -104,4 +105,43 @@ public class ProductEntityTest {
         assertSame(sku1, pe.getDefaultSku());
 
     }
+
+    @Test
+    public void testAttributeIndexInvalidation() throws Exception {
+
+        final ProductEntity pe = new ProductEntity();
+        pe.setAttributes(new HashSet<>(Arrays.asList(attr("A", "1"), attr("PRODUCT_DESCRIPTION_en", "desc"))));
+
+        assertEquals("1", pe.getAttributeValueByCode("A"));
+        assertNull(pe.getAttributeValueByCode("B"));
+        assertEquals("desc", pe.getDisplayDescription().getValue("en"));
+
+        // modification of collection
+        pe.getAttributes().add(attr("B", "2"));
+        assertEquals("2", pe.getAttributeValueByCode("B"));
+        assertEquals(3, pe.getAllAttributesAsMap().size());
+
+        // modification of collection that does not change its size
+        pe.getAttributes().removeIf(av -> "B".equals(av.getAttributeCode()));
+        pe.getAttributes().add(attr("C", "3"));
+        assertNull(pe.getAttributeValueByCode("B"));
+        assertEquals("3", pe.getAttributeValueByCode("C"));
+        assertEquals(3, pe.getAllAttributesAsMap().size());
+
+        // replacing collection
+        pe.setAttributes(new HashSet<>(Collections.singletonList(attr("PRODUCT_DESCRIPTION_de", "beschreibung"))));
+        assertNull(pe.getAttributeValueByCode("A"));
+        assertTrue(pe.getAttributesByCode("A").isEmpty());
+        assertNull(pe.getDisplayDescription().getValue("en"));
+        assertEquals("beschreibung", pe.getDisplayDescription().getValue("de"));
+
+    }
+
+    private AttrValueProduct attr(final String code, final String val) {
+        final AttrValueEntityProduct av = new AttrValueEntityProduct();
+        av.setAttributeCode(code);
+        av.setVal(val);
+        return av;
+    }
+
 }
@@ -363,6 +363,37 @@ public class ShopEntityTest {
     }
 
 
+    @Test
+    public void testGetAttributeByCodeDuplicateCodes() throws Exception {
+
+        final ShopEntity shopEntity = new ShopEntity();
+
+        final AttrValueShop av1 = context.mock(AttrValueShop.class, "av1");
+        final AttrValueShop av2 = context.mock(AttrValueShop.class, "av2");
+        final AttrValueShop av3 = context.mock(AttrValueShop.class, "av3");
+
+        context.checking(new Expectations() {{
+            allowing(av1).getAttributeCode(); will(returnValue("A"));
+            allowing(av2).getAttributeCode(); will(returnValue("A"));
+            allowing(av3).getAttributeCode(); will(returnValue("B"));
+        }});
+
+        shopEntity.setAttributes(new ArrayList<>(Arrays.asList(av1, av2)));
+
+        // last value wins
+        assertSame(av2, shopEntity.getAttributeByCode("A"));
+        assertSame(av2, shopEntity.getAllAttributesAsMap().get("A"));
+        assertEquals(Arrays.asList(av1, av2), shopEntity.getAttributesByCode("A"));
+
+        // same size modification of collection
+        shopEntity.getAttributes().remove(av2);
+        shopEntity.getAttributes().add(av3);
+
+        assertSame(av1, shopEntity.getAttributeByCode("A"));
+        assertSame(av3, shopEntity.getAttributeByCode("B"));
+
+    }
+
     @Test
     public void testGetSupportedCarrierSlaRanksAsMap() throws Exception {
 
@@ -51,6 +51,7 @@ public class AdapterUtils {
     private static final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
 
     public static final String FIELD_PK = "_PK";
+    public static final String FIELD_PK_DV = "_PK_DV";
     public static final String FIELD_CLASS = "_CLASS";
     public static final String FIELD_OBJECT = "_OBJECT";
     public static final String FIELD_INDEXTIME = "_IDXTIME";
@@ -16,6 +16,7 @@
 
 package org.yes.cart.search.dao;
 
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.IndexWriter;
@@ -70,6 +71,18 @@ public interface LuceneIndexProvider {
      */
     void refreshIndexIfNecessary();
 
+    /**
+     * Facet reader state for sorted set doc values facet field. State is bound to the reader
+     * of the searcher provided by {@link #provideIndexReader()}, therefore implementations may
+     * cache it for each reader generation so that it only has to be built once per refresh.
+     *
+     * @param searcher searcher acquired via {@link #provideIndexReader()}
+     * @param field    facet field
+     *
+     * @return reader state
+     */
+    SortedSetDocValuesReaderState provideFacetsReaderState(IndexSearcher searcher, String field);
+
 
     /**
      * Searcher for given index. Note that provided index searcher operated on cached
@@ -111,5 +124,56 @@ public interface LuceneIndexProvider {
      */
     void refreshIfNecessary();
 
+    /**
+     * Mark index as changed. Changes become visible to searchers within configured max staleness,
+     * so that multiple changes can be coalesced into single refresh. If provider does not support
+     * background refresh then this is the same as {@link #refreshIfNecessary()}.
+     */
+    void scheduleRefresh();
+
+    /**
+     * Block until all changes up to given generation are visible to searchers (read your writes).
+     *
+     * @param generation sequence number of the change as returned by writer operations
+     *                   (or {@link IndexWriter#getMaxCompletedSequenceNumber()})
+     */
+    void waitForGeneration(long generation);
+
+    /**
+     * Start shadow rebuild. Shadow rebuild creates new empty generation of the index which is
+     * not visible to searchers until {@link #commitShadowRebuild()} is invoked. Live index remains
+     * fully operational during the rebuild.
+     *
+     * @return true if shadow generation is created, false if rebuild is already in progress or
+     *         shadow rebuild is not supported
+     */
+    boolean beginShadowRebuild();
+
+    /**
+     * Writer for shadow generation.
+     *
+     * @return writer or null if there is no shadow rebuild in progress
+     */
+    IndexWriter provideShadowIndexWriter();
+
+    /**
+     * Commit shadow generation and atomically make it live. Searchers acquired before the swap
+     * remain valid until released. Previous live generation is retained so that it is possible
+     * to {@link #rollbackToPreviousGeneration()}.
+     */
+    void commitShadowRebuild();
+
+    /**
+     * Discard shadow generation (e.g. if rebuild failed). Live index is not affected.
+     */
+    void abortShadowRebuild();
+
+    /**
+     * Make previous generation live again.
+     *
+     * @return true if rolled back, false if there is no previous generation
+     */
+    boolean rollbackToPreviousGeneration();
+
 
 }
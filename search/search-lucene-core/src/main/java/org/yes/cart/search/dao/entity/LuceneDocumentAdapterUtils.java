@@ -17,6 +17,7 @@
 package org.yes.cart.search.dao.entity;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.lucene.document.*;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.index.IndexOptions;
@@ -149,6 +150,14 @@ public class LuceneDocumentAdapterUtils {
              */
             // document.add(new SortedNumericDocValuesField(FIELD_PK, NumberUtils.toLong(value)));
 
+            /*
+                Numeric doc value for PK allows to stream PK's of matching documents without loading
+                stored fields (see PrimaryKeyCollector)
+             */
+            if (NumberUtils.isDigits(value)) {
+                document.add(new NumericDocValuesField(FIELD_PK_DV, NumberUtils.toLong(value)));
+            }
+
             /*
                 Stored string is required for projections i.e. document.get('_PK')
              */
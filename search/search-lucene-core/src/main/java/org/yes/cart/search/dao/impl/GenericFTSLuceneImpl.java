@@ -23,7 +23,6 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.*;
 import org.apache.lucene.facet.range.LongRange;
 import org.apache.lucene.facet.range.LongRangeFacetCounts;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
@@ -35,10 +34,12 @@ import org.yes.cart.domain.i18n.impl.StringI18NModel;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.search.dao.GenericFTS;
 import org.yes.cart.search.dao.LuceneIndexProvider;
+import org.yes.cart.search.dao.entity.AdapterUtils;
 import org.yes.cart.search.dto.FilteredNavigationRecordRequest;
 import org.yes.cart.search.query.impl.AsIsAnalyzer;
 import org.yes.cart.utils.log.Markers;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -52,7 +53,7 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
 
     private static final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
 
-    private static final Set<String> PKS = Collections.singleton("_PK");
+    private static final Set<String> PKS = Collections.singleton(AdapterUtils.FIELD_PK);
 
     private static final int MAX_FACETS = 100;
 
@@ -97,12 +98,13 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
 
         IndexSearcher searcher = this.luceneIndexProvider.provideIndexReader();
         try {
-            final TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
-            if (topDocs.totalHits.value > 0) {
-                for (final ScoreDoc hit : topDocs.scoreDocs) {
-                    final Document doc = searcher.doc(hit.doc, PKS);
-                    pks.add(Long.valueOf(doc.get("_PK")));
-                    logExplanation(searcher, query, null, hit.doc);
+            // Stream PK's of all matches in relevance order, no need to allocate top docs for whole index
+            final PrimaryKeyCollector collector = new PrimaryKeyCollector(true);
+            searcher.search(query, collector);
+            pks.addAll(collector.getPks());
+            if (LOGFTQ.isTraceEnabled()) {
+                for (final Integer doc : collector.getDocs()) {
+                    logExplanation(searcher, query, null, doc);
                 }
             }
         } catch (IllegalStateException ise) {
@@ -130,19 +132,13 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
 
         IndexSearcher searcher = this.luceneIndexProvider.provideIndexReader();
         try {
-            final TopDocs topDocs;
-            Sort sort = null;
-            if (StringUtils.isNotBlank(sortFieldName)) {
-                sort = new Sort(new SortField(sortFieldName, SortField.Type.STRING_VAL, reverse));
-                topDocs = searcher.search(query, firstResult + maxResults, sort);
-            } else {
-                topDocs = searcher.search(query, firstResult + maxResults);
-            }
-            if (topDocs.totalHits.value > 0) {
-                for (int i = firstResult; i < firstResult + maxResults; i++) {
+            final Sort sort = createSort(sortFieldName, reverse);
+            final TopDocs topDocs = searchTopDocs(searcher, query, sort, firstResult, maxResults, -1);
+            if (topDocs != null) {
+                for (int i = firstResult; i < topDocs.scoreDocs.length; i++) {
                     final ScoreDoc hit = topDocs.scoreDocs[i];
                     final Document doc = searcher.doc(hit.doc, PKS);
-                    pks.add(Long.valueOf(doc.get("_PK")));
+                    pks.add(Long.valueOf(doc.get(AdapterUtils.FIELD_PK)));
                     logExplanation(searcher, query, sort, hit.doc);
                 }
             }
@@ -170,22 +166,25 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
         LOGFTQ.debug("Run query {}", query);
 
         Pair<List<Object[]>, Integer> result = EMPTY;
-        int lastResult = maxResults < 0 ? Integer.MAX_VALUE : firstResult + maxResults;
 
         IndexSearcher searcher = this.luceneIndexProvider.provideIndexReader();
         try {
             final Set<String> retrieve = new HashSet<>(Arrays.asList(fields));
-            final TopDocs topDocs;
-            Sort sort = null;
-            if (StringUtils.isNotBlank(sortFieldName)) {
-                sort = new Sort(new SortField(sortFieldName, SortField.Type.STRING_VAL, reverse));
-                topDocs = searcher.search(query, lastResult, sort);
-            } else {
-                topDocs = searcher.search(query, lastResult);
-            }
-            if (topDocs.totalHits.value > firstResult) {
-
-                lastResult = lastResult > topDocs.totalHits.value ? (int) topDocs.totalHits.value : lastResult;
+            // Unbounded page needs exact count anyway, so get it upfront to size the collector
+            final int count = maxResults < 0 ? searcher.count(query) : -1;
+            final Sort sort = createSort(sortFieldName, reverse);
+            final TopDocs topDocs = searchTopDocs(searcher, query, sort, firstResult, maxResults, count);
+            if (topDocs != null) {
+
+                final int lastResult = topDocs.scoreDocs.length;
+                final int total;
+                if (count >= 0) {
+                    total = count;
+                } else if (topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO) {
+                    total = (int) topDocs.totalHits.value;
+                } else {
+                    total = searcher.count(query); // collector stopped counting early, so use count only path
+                }
 
                 final List<Object[]> resItems = new ArrayList<>(lastResult - firstResult);
 
@@ -200,7 +199,7 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
                     logExplanation(searcher, query, sort, hit.doc);
                 }
 
-                return new Pair<>(resItems, (int) topDocs.totalHits.value);
+                return new Pair<>(resItems, total);
             }
         } catch (IllegalStateException ise) {
             LOG.warn("Failed to run query " + query + ", caused: " + ise.getMessage());
@@ -215,6 +214,63 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
         return result;
     }
 
+    private Sort createSort(final String sortFieldName, final boolean reverse) {
+        if (StringUtils.isNotBlank(sortFieldName)) {
+            return new Sort(new SortField(sortFieldName, SortField.Type.STRING_VAL, reverse));
+        }
+        return null;
+    }
+
+    /**
+     * Run paged query. Collector is sized to the requested page (i.e. firstResult + maxResults) rather
+     * than all matching documents in order to keep memory footprint proportional to the page.
+     *
+     * @param searcher    searcher
+     * @param query       query
+     * @param sort        optional sort
+     * @param firstResult first result
+     * @param maxResults  max results (negative for all)
+     * @param count       count of matches if already known, negative otherwise
+     *
+     * @return top docs or null if page is beyond the results
+     *
+     * @throws IOException error
+     */
+    private TopDocs searchTopDocs(final IndexSearcher searcher,
+                                  final Query query,
+                                  final Sort sort,
+                                  final int firstResult,
+                                  final int maxResults,
+                                  final int count) throws IOException {
+
+        int numHits;
+        if (maxResults < 0) {
+            numHits = count >= 0 ? count : searcher.count(query);
+        } else {
+            numHits = (int) Math.min((long) firstResult + maxResults, Integer.MAX_VALUE);
+            if (count >= 0) {
+                numHits = Math.min(numHits, count);
+            }
+        }
+
+        if (numHits <= firstResult) {
+            return null;
+        }
+
+        final TopDocs topDocs;
+        if (sort != null) {
+            topDocs = searcher.search(query, numHits, sort);
+        } else {
+            topDocs = searcher.search(query, numHits);
+        }
+
+        if (topDocs.scoreDocs.length <= firstResult) {
+            return null;
+        }
+        return topDocs;
+
+    }
+
     private void logExplanation(final IndexSearcher searcher, final Query query, final Sort sort, final int doc) throws Exception {
         if (LOGFTQ.isTraceEnabled()) {
 
@@ -287,7 +343,7 @@ public class GenericFTSLuceneImpl implements GenericFTS<Long, org.apache.lucene.
 
                     } else {
 
-                        facets = new SortedSetDocValuesFacetCounts(new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader(), request.getField()), fc);
+                        facets = new SortedSetDocValuesFacetCounts(this.luceneIndexProvider.provideFacetsReaderState(searcher, request.getField()), fc);
 
                     }
 
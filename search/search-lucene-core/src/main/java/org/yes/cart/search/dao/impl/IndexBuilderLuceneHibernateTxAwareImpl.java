@@ -24,10 +24,14 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.dao.ResultsIterator;
+import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.search.dao.LuceneDocumentAdapter;
 import org.yes.cart.search.dao.LuceneIndexProvider;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * User: denispavlov
@@ -40,6 +44,9 @@ public class IndexBuilderLuceneHibernateTxAwareImpl<T, PK extends Serializable>
     protected SessionFactory sessionFactory;
     protected PlatformTransactionManager platformTransactionManager;
     protected String findAllNamedQuery;
+    protected String findByIdsNamedQuery;
+    protected String findPrimaryKeyRangeNamedQuery;
+    protected String findRangeNamedQuery;
 
     public IndexBuilderLuceneHibernateTxAwareImpl(final LuceneDocumentAdapter<T, PK> documentAdapter,
                                                   final LuceneIndexProvider indexProvider,
@@ -54,6 +61,15 @@ public class IndexBuilderLuceneHibernateTxAwareImpl<T, PK extends Serializable>
         return genericDao.findById(primaryKey);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected List<T> findByIds(final Collection<PK> primaryKeys) {
+        if (StringUtils.isBlank(this.findByIdsNamedQuery)) {
+            return super.findByIds(primaryKeys);
+        }
+        return genericDao.findByNamedQuery(this.findByIdsNamedQuery, new ArrayList<>(primaryKeys));
+    }
+
     /** {@inheritDoc} */
     @Override
     protected ResultsIterator<T> findAllIterator() {
@@ -63,6 +79,29 @@ public class IndexBuilderLuceneHibernateTxAwareImpl<T, PK extends Serializable>
         return genericDao.findByNamedQueryIterator(this.findAllNamedQuery);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected Pair<Long, Long> findPrimaryKeyRange() {
+        if (StringUtils.isBlank(this.findPrimaryKeyRangeNamedQuery) || StringUtils.isBlank(this.findRangeNamedQuery)) {
+            return null;
+        }
+        final List<Object> range = genericDao.findQueryObjectByNamedQuery(this.findPrimaryKeyRangeNamedQuery);
+        if (range.isEmpty() || !(range.get(0) instanceof Object[])) {
+            return null;
+        }
+        final Object[] minMax = (Object[]) range.get(0);
+        if (minMax[0] == null || minMax[1] == null) {
+            return null; // no data
+        }
+        return new Pair<>(((Number) minMax[0]).longValue(), ((Number) minMax[1]).longValue());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ResultsIterator<T> findRangeIterator(final long fromPk, final long toPk) {
+        return genericDao.findByNamedQueryIterator(this.findRangeNamedQuery, fromPk, toPk);
+    }
+
     /** {@inheritDoc} */
     @Override
     protected T unproxyEntity(final T entity) {
@@ -119,4 +158,31 @@ public class IndexBuilderLuceneHibernateTxAwareImpl<T, PK extends Serializable>
     public void setFindAllNamedQuery(final String findAllNamedQuery) {
         this.findAllNamedQuery = findAllNamedQuery;
     }
+
+    /**
+     * Sprig IoC.
+     *
+     * @param findByIdsNamedQuery named query to load entities for batch reindex, ?1 list of PK's
+     */
+    public void setFindByIdsNamedQuery(final String findByIdsNamedQuery) {
+        this.findByIdsNamedQuery = findByIdsNamedQuery;
+    }
+
+    /**
+     * Sprig IoC.
+     *
+     * @param findPrimaryKeyRangeNamedQuery named query to find min and max PK (required for parallel reindex)
+     */
+    public void setFindPrimaryKeyRangeNamedQuery(final String findPrimaryKeyRangeNamedQuery) {
+        this.findPrimaryKeyRangeNamedQuery = findPrimaryKeyRangeNamedQuery;
+    }
+
+    /**
+     * Sprig IoC.
+     *
+     * @param findRangeNamedQuery named query to perform find all in PK range, ?1 from (inclusive), ?2 to (exclusive)
+     */
+    public void setFindRangeNamedQuery(final String findRangeNamedQuery) {
+        this.findRangeNamedQuery = findRangeNamedQuery;
+    }
 }
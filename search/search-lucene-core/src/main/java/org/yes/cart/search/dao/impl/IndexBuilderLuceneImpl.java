@@ -26,6 +26,7 @@ import org.apache.lucene.index.Term;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.yes.cart.dao.ResultsIterator;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.search.dao.IndexBuilder;
@@ -38,8 +39,11 @@ import org.yes.cart.utils.TimeContext;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * User: denispavlov
@@ -56,6 +60,11 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
     private final LuceneIndexProvider indexProvider;
 
     private TaskExecutor indexExecutor;
+    private TaskExecutor indexWorkerExecutor;
+    private int reindexThreads = 4;
+    private int reindexMaxSegments = 0;
+    private boolean shadowRebuild = false;
+    private boolean readYourWrites = false;
 
     public IndexBuilderLuceneImpl(final LuceneDocumentAdapter<T, PK> documentAdapter,
                                   final LuceneIndexProvider indexProvider) {
@@ -72,6 +81,63 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
         this.indexExecutor = indexExecutor;
     }
 
+    /**
+     * Executor that will perform slices of full reindex in parallel. Must have at least
+     * {@link #setReindexThreads(int)} threads available.
+     *
+     * @param indexWorkerExecutor index worker executor
+     */
+    public void setIndexWorkerExecutor(final TaskExecutor indexWorkerExecutor) {
+        this.indexWorkerExecutor = indexWorkerExecutor;
+    }
+
+    /**
+     * Number of threads used for full reindex. If more than one thread is configured then primary
+     * key range is split into equal slices, each of which is processed by a separate worker (see
+     * {@link #findPrimaryKeyRange()}).
+     *
+     * Default is 4 (same as in "ft.config.reindexThreads"), slicing is only used if index worker executor is set.
+     *
+     * @param reindexThreads number of threads (1 for single threaded reindex)
+     */
+    public void setReindexThreads(final int reindexThreads) {
+        this.reindexThreads = reindexThreads;
+    }
+
+    /**
+     * Final merge after full reindex. Positive values force merge down to specified number of segments,
+     * zero or negative values let the merge policy decide if merge is necessary. Default is 0 (same as in
+     * "ft.config.reindexMaxSegments").
+     *
+     * @param reindexMaxSegments max segments after full reindex
+     */
+    public void setReindexMaxSegments(final int reindexMaxSegments) {
+        this.reindexMaxSegments = reindexMaxSegments;
+    }
+
+    /**
+     * Full reindex into shadow generation of the index (see {@link LuceneIndexProvider#beginShadowRebuild()}).
+     * With shadow rebuild the live index stays complete during the rebuild and the new index becomes visible
+     * in a single swap once it is fully built, merged and committed. Without shadow rebuild documents are
+     * replaced in the live index batch by batch.
+     *
+     * @param shadowRebuild true to rebuild in shadow generation
+     */
+    public void setShadowRebuild(final boolean shadowRebuild) {
+        this.shadowRebuild = shadowRebuild;
+    }
+
+    /**
+     * Single entity reindex blocks until the change is visible to searchers. By default single entity
+     * reindex only schedules refresh (see {@link LuceneIndexProvider#scheduleRefresh()}), so that frequent
+     * updates (e.g. inventory feeds) do not reopen the index for each entity.
+     *
+     * @param readYourWrites true to wait for changes to become visible
+     */
+    public void setReadYourWrites(final boolean readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
     /**
      * Extension hook for persistence layer.
      *
@@ -81,6 +147,25 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
      */
     protected abstract T findById(final PK primaryKey);
 
+    /**
+     * Extension hook for persistence layer. Default implementation loads entities one by one,
+     * persistence layer should override this to load all entities in a single query.
+     *
+     * @param primaryKeys PKs
+     *
+     * @return entities to index (entities that do not exist are omitted)
+     */
+    protected List<T> findByIds(final Collection<PK> primaryKeys) {
+        final List<T> entities = new ArrayList<>(primaryKeys.size());
+        for (final PK primaryKey : primaryKeys) {
+            final T entity = this.findById(primaryKey);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -104,13 +189,18 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
             long counts[] = new long[] { 0L, 0L, 0L };
             fullTextSearchReindexSingleEntity(iw, name, documents, remove, indexTime, counts);
 
+            final IndexWriter shadow = indexProvider.provideShadowIndexWriter();
+            if (shadow != null) {
+                // Full reindex in progress, so keep shadow up to date as it may have already passed this entity
+                fullTextSearchReindexSingleEntity(shadow, name, documents, remove, indexTime, new long[] { 0L, 0L, 0L });
+            }
+
             if (LOGFTQ.isTraceEnabled()) {
                 LOGFTQ.trace("Processed index entity {} with PK {}, added: {}, removed: {}, failed: {}",
                         name, primaryKey, counts[0], counts[1], counts[2]);
             }
 
-            // Refresh ensures we use an updated index
-            indexProvider.refreshIfNecessary();
+            refreshAfterUpdate(iw);
 
         } catch (Exception exp) {
             LOGFTQ.error("Unable to remove " + name + " document with _PK:" + primaryKey, exp);
@@ -118,6 +208,79 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fullTextSearchReindex(final Collection<PK> primaryKeys) {
+
+        if (primaryKeys == null || primaryKeys.isEmpty()) {
+            return;
+        }
+
+        final Set<PK> missing = new LinkedHashSet<>(primaryKeys);
+        final List<T> entities = this.findByIds(missing);
+
+        final long indexTime = now();
+        final String name = indexProvider.getName();
+        final IndexWriter iw = indexProvider.provideIndexWriter();
+        final IndexWriter shadow = indexProvider.provideShadowIndexWriter();
+        try {
+
+            long counts[] = new long[] { 0L, 0L, 0L };
+            for (final T entity : entities) {
+
+                final Pair<PK, Document[]> documents = this.documentAdapter.toDocument(entity);
+                if (documents == null || documents.getFirst() == null) {
+                    continue;
+                }
+                missing.remove(documents.getFirst());
+                final boolean remove = documents.getSecond() == null || documents.getSecond().length == 0;
+
+                fullTextSearchReindexSingleEntity(iw, name, documents, remove, indexTime, counts);
+                if (shadow != null) {
+                    // Full reindex in progress, so keep shadow up to date as it may have already passed this entity
+                    fullTextSearchReindexSingleEntity(shadow, name, documents, remove, indexTime, new long[] { 0L, 0L, 0L });
+                }
+
+            }
+
+            for (final PK primaryKey : missing) {
+                // Entity no longer exists
+                final Term pk = new Term(AdapterUtils.FIELD_PK, String.valueOf(primaryKey));
+                iw.deleteDocuments(pk);
+                if (shadow != null) {
+                    shadow.deleteDocuments(pk);
+                }
+                counts[1]++;
+                LOGFTQ.trace("Removing {} document _PK:{}", name, primaryKey);
+            }
+
+            if (LOGFTQ.isDebugEnabled()) {
+                LOGFTQ.debug("Processed batch of {} index entities {}, added: {}, removed: {}, failed: {}",
+                        primaryKeys.size(), name, counts[0], counts[1], counts[2]);
+            }
+
+            refreshAfterUpdate(iw);
+
+        } catch (Exception exp) {
+            LOGFTQ.error("Unable to reindex " + name + " documents with _PK:" + primaryKeys, exp);
+        }
+
+    }
+
+    private void refreshAfterUpdate(final IndexWriter iw) {
+
+        if (this.readYourWrites) {
+            // Refresh ensures we use an updated index
+            indexProvider.waitForGeneration(iw.getMaxCompletedSequenceNumber());
+        } else {
+            // Refresh in background, so that subsequent updates are coalesced
+            indexProvider.scheduleRefresh();
+        }
+
+    }
+
     /**
      * Process single entity update in the FT index.
      *
@@ -184,6 +347,7 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
 
     private final AtomicInteger asyncRunningState = new AtomicInteger(IDLE);
     private final AtomicLong currentIndexingCount = new AtomicLong(0);
+    private volatile AtomicLongArray currentSliceIndexingCount = new AtomicLongArray(0);
 
     /**
      * {@inheritDoc}
@@ -206,6 +370,21 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
         );
     }
 
+    /**
+     * Progress of current (or last) full reindex for each slice of primary key range.
+     * Single threaded reindex has no slices.
+     *
+     * @return indexed count for each slice
+     */
+    public long[] getFullTextIndexSliceCounts() {
+        final AtomicLongArray slices = this.currentSliceIndexingCount;
+        final long[] counts = new long[slices.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = slices.get(i);
+        }
+        return counts;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -252,6 +431,28 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
      */
     protected abstract ResultsIterator<T> findAllIterator();
 
+    /**
+     * Extension hook for persistence layer. Primary key range of all entities to be indexed, which is
+     * used to partition full reindex into slices.
+     *
+     * @return min and max primary key (inclusive) or null if partitioning is not supported
+     */
+    protected Pair<Long, Long> findPrimaryKeyRange() {
+        return null;
+    }
+
+    /**
+     * Extension hook for persistence layer. Only used if {@link #findPrimaryKeyRange()} is supported.
+     *
+     * @param fromPk primary key from (inclusive)
+     * @param toPk   primary key to (exclusive)
+     *
+     * @return scroll through results in given range
+     */
+    protected ResultsIterator<T> findRangeIterator(final long fromPk, final long toPk) {
+        throw new UnsupportedOperationException("Range iterator is not supported by " + getClass().getName());
+    }
+
     /**
      * Extension hook for persistence layer.
      *
@@ -283,6 +484,7 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
             final Logger log = LOGFTQ;
 
             Object tx = null;
+            boolean shadow = false;
             try {
                 TimeContext.setNow(); // TODO: Time Machine
                 currentIndexingCount.set(0);
@@ -298,51 +500,87 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
                 }
 
                 final long indexTime = now();
-                final IndexWriter iw = indexProvider.provideIndexWriter();
 
-                final ResultsIterator<T> all = findAllIterator();
+                shadow = this.shadowRebuild && indexProvider.beginShadowRebuild();
+                final IndexWriter iw = shadow ? indexProvider.provideShadowIndexWriter() : indexProvider.provideIndexWriter();
 
-                try {
+                final Pair<Long, Long> range = this.reindexThreads > 1 && this.indexWorkerExecutor != null ? findPrimaryKeyRange() : null;
+
+                if (range != null) {
+
+                    index = reindexSlices(iw, name, range, indexTime, batchSize, counts);
+
+                    if (!shadow) {
+                        // Remove unindexed values
+                        iw.deleteDocuments(LongPoint.newRangeQuery(AdapterUtils.FIELD_INDEXTIME, 0, indexTime - 1));
+                    }
+
+                } else {
 
-                    while (all.hasNext()) {
+                    currentSliceIndexingCount = new AtomicLongArray(0);
 
-                        final T entity = unproxyEntity(all.next());
+                    final ResultsIterator<T> all = findAllIterator();
 
-                        final Pair<PK, Document[]> documents = documentAdapter.toDocument(entity);
-                        boolean remove = documents == null || documents.getSecond() == null || documents.getSecond().length == 0;
+                    try {
+
+                        while (all.hasNext()) {
+
+                            final T entity = unproxyEntity(all.next());
 
-                        fullTextSearchReindexSingleEntity(iw, name, documents, remove, indexTime, counts);
+                            final Pair<PK, Document[]> documents = documentAdapter.toDocument(entity);
+                            boolean remove = documents == null || documents.getSecond() == null || documents.getSecond().length == 0;
 
-                        index++;
+                            fullTextSearchReindexSingleEntity(iw, name, documents, remove, indexTime, counts);
 
-                        if (index % batchSize == 0) {
-                            // TODO: may need to revisit this in favour of iw.flush()
-                            iw.commit();  //apply changes to indexes
-                            indexProvider.refreshIfNecessary(); // make changes visible
-                            endBatch(tx);
-                            if (log.isInfoEnabled()) {
-                                log.info("Indexed {} items of {} class", index, indexProvider.getName());
+                            index++;
+
+                            if (index % batchSize == 0) {
+                                if (!shadow) {
+                                    // TODO: may need to revisit this in favour of iw.flush()
+                                    iw.commit();  //apply changes to indexes
+                                    indexProvider.refreshIfNecessary(); // make changes visible
+                                }
+                                endBatch(tx);
+                                if (log.isInfoEnabled()) {
+                                    log.info("Indexed {} items of {} class", index, indexProvider.getName());
+                                }
                             }
+                            currentIndexingCount.compareAndSet(index - 1, index);
                         }
-                        currentIndexingCount.compareAndSet(index - 1, index);
-                    }
 
-                    // Remove unindexed values
-                    iw.deleteDocuments(LongPoint.newRangeQuery(AdapterUtils.FIELD_INDEXTIME, 0, indexTime - 1));
+                        if (!shadow) {
+                            // Remove unindexed values
+                            iw.deleteDocuments(LongPoint.newRangeQuery(AdapterUtils.FIELD_INDEXTIME, 0, indexTime - 1));
+                        }
+
+                    } finally {
+                        all.close();
+                    }
 
-                } finally {
-                    all.close();
                 }
 
                 iw.commit();  //apply changes to indexes
-                indexProvider.refreshIfNecessary(); // make changes visible
+                if (!shadow) {
+                    indexProvider.refreshIfNecessary(); // make changes visible
+                }
                 endBatch(tx);
                 if (log.isInfoEnabled()) {
                     log.info("Indexed {} items of {} class, added: {}, removed: {}, failed: {}", index, indexProvider.getName(), counts[0], counts[1], counts[2]);
                 }
-                iw.forceMerge(1, true); // optimise the index
+                if (this.reindexMaxSegments > 0) {
+                    iw.forceMerge(this.reindexMaxSegments, true); // optimise the index
+                } else {
+                    iw.maybeMerge(); // let merge policy decide
+                }
+                if (shadow) {
+                    indexProvider.commitShadowRebuild(); // swap fully built index
+                    shadow = false;
+                }
             } catch (Exception exp) {
                 LOGFTQ.error("Error during indexing", exp);
+                if (shadow) {
+                    indexProvider.abortShadowRebuild(); // live index is untouched
+                }
             } finally {
                 asyncRunningState.set(COMPLETED);
                 if (async) {
@@ -361,6 +599,165 @@ public abstract class IndexBuilderLuceneImpl<T, PK extends Serializable> impleme
         };
     }
 
+    /**
+     * Split primary key range into slices and index each slice by a separate worker. Each worker runs
+     * in its own transaction (and hence its own read only session) and feeds the shared index writer.
+     *
+     * @param iw         index writer
+     * @param indexName  index name
+     * @param range      min and max primary keys
+     * @param indexTime  time of this index
+     * @param batchSize  batch size
+     * @param counts     counts[3] = { added, removed, failed }
+     *
+     * @return number of indexed entities
+     *
+     * @throws InterruptedException if interrupted while waiting for workers
+     * @throws IllegalStateException if any slice failed, so that incomplete index is not committed
+     */
+    private long reindexSlices(final IndexWriter iw,
+                               final String indexName,
+                               final Pair<Long, Long> range,
+                               final long indexTime,
+                               final int batchSize,
+                               final long[] counts) throws InterruptedException {
+
+        final long min = range.getFirst();
+        final long max = range.getSecond();
+        final int slices = (int) Math.max(1L, Math.min((long) this.reindexThreads, max - min + 1L));
+        final long sliceSize = (max - min) / slices + 1L;
+
+        final AtomicLongArray progress = new AtomicLongArray(slices);
+        currentSliceIndexingCount = progress;
+
+        final long[][] sliceCounts = new long[slices][];
+        final Throwable[] sliceFailures = new Throwable[slices];
+        final CountDownLatch done = new CountDownLatch(slices);
+
+        LOGFTQ.info("Full reindex for {} class using {} slices of {} PK's, range {}..{}", indexName, slices, sliceSize, min, max);
+
+        for (int i = 0; i < slices; i++) {
+
+            final int slice = i;
+            final long fromPk = min + slice * sliceSize;
+            final long toPk = slice == slices - 1 ? max + 1L : fromPk + sliceSize;
+            sliceCounts[slice] = new long[] { 0L, 0L, 0L };
+
+            final Runnable worker = () -> {
+                try {
+                    reindexSlice(iw, indexName, slice, fromPk, toPk, indexTime, batchSize, progress, sliceCounts[slice]);
+                } catch (Throwable trw) {
+                    sliceFailures[slice] = trw;
+                } finally {
+                    done.countDown();
+                }
+            };
+
+            try {
+                this.indexWorkerExecutor.execute(worker);
+            } catch (TaskRejectedException rejected) {
+                LOGFTQ.warn("Index worker executor is saturated, slice {} of {} class will run in current thread", slice, indexName);
+                worker.run();
+            }
+
+        }
+
+        done.await();
+
+        IllegalStateException failure = null;
+        for (int i = 0; i < slices; i++) {
+            if (sliceFailures[i] != null) {
+                if (failure == null) {
+                    failure = new IllegalStateException("Full reindex for " + indexName + " class failed in slice " + i, sliceFailures[i]);
+                } else {
+                    failure.addSuppressed(sliceFailures[i]);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        long index = 0L;
+        for (int i = 0; i < slices; i++) {
+            index += progress.get(i);
+            counts[0] += sliceCounts[i][0];
+            counts[1] += sliceCounts[i][1];
+            counts[2] += sliceCounts[i][2];
+        }
+        return index;
+
+    }
+
+    private void reindexSlice(final IndexWriter iw,
+                              final String indexName,
+                              final int slice,
+                              final long fromPk,
+                              final long toPk,
+                              final long indexTime,
+                              final int batchSize,
+                              final AtomicLongArray progress,
+                              final long[] counts) throws Exception {
+
+        final Logger log = LOGFTQ;
+
+        Object tx = null;
+        long index = 0;
+        try {
+            TimeContext.setNow(); // TODO: Time Machine
+            tx = startTx();
+
+            final ResultsIterator<T> all = findRangeIterator(fromPk, toPk);
+
+            try {
+
+                while (all.hasNext()) {
+
+                    final T entity = unproxyEntity(all.next());
+
+                    final Pair<PK, Document[]> documents = documentAdapter.toDocument(entity);
+                    boolean remove = documents == null || documents.getSecond() == null || documents.getSecond().length == 0;
+
+                    fullTextSearchReindexSingleEntity(iw, indexName, documents, remove, indexTime, counts);
+
+                    index++;
+                    progress.incrementAndGet(slice);
+                    currentIndexingCount.incrementAndGet();
+
+                    if (index % batchSize == 0) {
+                        endBatch(tx);
+                        if (log.isInfoEnabled()) {
+                            log.info("Indexed {} items of {} class in slice {} [{}..{})", index, indexName, slice, fromPk, toPk);
+                        }
+                    }
+                }
+
+            } finally {
+                all.close();
+            }
+
+            if (log.isInfoEnabled()) {
+                log.info("Indexed {} items of {} class in slice {} [{}..{}), added: {}, removed: {}, failed: {}",
+                        index, indexName, slice, fromPk, toPk, counts[0], counts[1], counts[2]);
+            }
+
+        } catch (Exception exp) {
+            LOGFTQ.error("Error during indexing of slice " + slice + " [" + fromPk + ".." + toPk + ")", exp);
+            throw exp;
+        } finally {
+            try {
+                if (tx != null) {
+                    endTx(tx);
+                }
+            } catch (Exception exp) {
+                // OK
+            }
+            LuceneSearchUtil.destroy(); // ensure analysers are unloaded
+            TimeContext.destroy();
+        }
+
+    }
+
     long now() {
         return TimeContext.getMillis();
     }
@@ -17,11 +17,14 @@
 package org.yes.cart.search.dao.impl;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.*;
 import org.slf4j.Logger;
@@ -32,8 +35,14 @@ import org.yes.cart.search.dao.LuceneIndexProvider;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * In Memory implementation of Lucene index provider.
@@ -41,6 +50,16 @@ import java.nio.file.Paths;
  * FOR TEST PURPOSES ONLY as it uses small byte buffers and result poor performance on large indexes.
  * see {@link RAMDirectory} for more details.
  *
+ * Provider supports shadow rebuild, whereby full index is built in a separate generation directory
+ * ({uri}/{name}/{generation}/index and {uri}/{name}/{generation}/taxonomy) and then swapped with the
+ * live generation. Active generation is recorded in {uri}/{name}/generation file so that it survives
+ * restarts. Index that was built before shadow rebuild was introduced ({uri}/{name}/index) is treated
+ * as default generation.
+ *
+ * If refresh max staleness is configured then index and facets are refreshed by background threads
+ * (see {@link ControlledRealTimeReopenThread}), so that many single entity updates result in a single
+ * reopen of the index. Otherwise {@link #scheduleRefresh()} refreshes immediately.
+ *
  *
  * User: denispavlov
  * Date: 31/03/2017
@@ -50,22 +69,61 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
 
     private final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
 
-    private Directory index = null;
-    private SearcherManager indexReaderManager;
-    private IndexWriter indexWriter;
+    private static final String DEFAULT_GENERATION = "";
+    private static final String GENERATION_FILE = "generation";
 
-    private Directory facets = null;
-    private SearcherTaxonomyManager facetsReaderManager;
-    private DirectoryTaxonomyWriter facetsWriter;
+    private volatile IndexGeneration live;
+    private volatile IndexGeneration shadow;
+    private IndexGeneration previous;
 
     private final String name;
     private final String uri;
 
+    private long refreshMaxStaleMs = 0L;
+    private long refreshMinStaleMs = 50L;
+
+    private final AtomicLong refreshRequests = new AtomicLong(0L);
+    private final AtomicLong refreshes = new AtomicLong(0L);
+
     public LuceneIndexProviderImpl(final String name, final String uri) {
         this.name = name;
         this.uri = uri;
     }
 
+    /**
+     * Max time in milliseconds before changes become visible to searchers after {@link #scheduleRefresh()}.
+     * Zero or negative value disables background refresh, so every refresh request reopens the index.
+     *
+     * @param refreshMaxStaleMs max staleness
+     */
+    public void setRefreshMaxStaleMs(final long refreshMaxStaleMs) {
+        this.refreshMaxStaleMs = refreshMaxStaleMs;
+    }
+
+    /**
+     * Max time in milliseconds before changes become visible to searchers when some thread is waiting
+     * for them (see {@link #waitForGeneration(long)}).
+     *
+     * @param refreshMinStaleMs min staleness
+     */
+    public void setRefreshMinStaleMs(final long refreshMinStaleMs) {
+        this.refreshMinStaleMs = refreshMinStaleMs;
+    }
+
+    /**
+     * @return number of refresh requests made via {@link #scheduleRefresh()}
+     */
+    public long getRefreshRequests() {
+        return refreshRequests.get();
+    }
+
+    /**
+     * @return number of times index was actually reopened
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -80,7 +138,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public IndexSearcher provideIndexReader() {
         try {
-            return indexReaderManager.acquire();
+            return live.indexReaderManager.acquire();
         } catch (IOException e) {
             LOGFTQ.error("Unable to acquire index reader " + name + ", cause: " + e.getMessage());
             throw new RuntimeException(e);
@@ -93,7 +151,8 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public void releaseIndexReader(final IndexSearcher searcher) {
         try {
-            indexReaderManager.release(searcher);
+            // release only decrements reference of the searcher's reader, so it is safe if generation was swapped
+            live.indexReaderManager.release(searcher);
         } catch (IOException e) {
             LOGFTQ.error("Unable to release index reader " + name + ", cause: " + e.getMessage());
             throw new RuntimeException(e);
@@ -105,17 +164,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
      */
     @Override
     public IndexWriter provideIndexWriter() {
-        if (indexWriter == null) {
-            final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            try {
-                return indexWriter = new IndexWriter(index, config);
-            } catch (IOException e) {
-                LOGFTQ.error("Unable to acquire index writer " + name + ", cause: " + e.getMessage());
-                throw new RuntimeException(e);
-            }
-        }
-        return indexWriter;
+        return live.indexWriter;
     }
 
     /**
@@ -124,12 +173,33 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public void refreshIndexIfNecessary() {
         try {
-            indexReaderManager.maybeRefreshBlocking();
+            live.indexReaderManager.maybeRefreshBlocking();
         } catch (IOException e) {
             LOGFTQ.error("Unable to refresh index " + name + ", cause: " + e.getMessage());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedSetDocValuesReaderState provideFacetsReaderState(final IndexSearcher searcher, final String field) {
+        try {
+            return live.facetsReaderStateCache.getState(searcher.getIndexReader(), field);
+        } catch (IOException e) {
+            LOGFTQ.error("Unable to create facets reader state " + name + " for " + field + ", cause: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Facet reader state cache statistics.
+     *
+     * @return cache
+     */
+    public SortedSetDocValuesReaderStateCache getFacetsReaderStateCache() {
+        return live.facetsReaderStateCache;
+    }
 
     /**
      * {@inheritDoc}
@@ -137,7 +207,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public SearcherTaxonomyManager.SearcherAndTaxonomy provideFacetsReader() {
         try {
-            return facetsReaderManager.acquire();
+            return live.facetsReaderManager.acquire();
         } catch (IOException e) {
             LOGFTQ.error("Unable to acquire facets reader " + name + ", cause: " + e.getMessage());
             throw new RuntimeException(e);
@@ -150,7 +220,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public void releaseFacetsReader(final SearcherTaxonomyManager.SearcherAndTaxonomy searcher) {
         try {
-            facetsReaderManager.release(searcher);
+            live.facetsReaderManager.release(searcher);
         } catch (IOException e) {
             LOGFTQ.error("Unable to release facets reader " + name + ", cause: " + e.getMessage());
             throw new RuntimeException(e);
@@ -162,15 +232,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
      */
     @Override
     public DirectoryTaxonomyWriter provideFacetsWriter() {
-        if (facetsWriter == null) {
-            try {
-                return facetsWriter = new DirectoryTaxonomyWriter(facets, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            } catch (IOException e) {
-                LOGFTQ.error("Unable to acquire facets writer " + name + ", cause: " + e.getMessage());
-                throw new RuntimeException(e);
-            }
-        }
-        return facetsWriter;
+        return live.facetsWriter;
     }
 
     /**
@@ -179,7 +241,7 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public void refreshFacetsIfNecessary() {
         try {
-            facetsReaderManager.maybeRefreshBlocking();
+            live.facetsReaderManager.maybeRefreshBlocking();
         } catch (IOException e) {
             LOGFTQ.error("Unable to refresh facets " + name + ", cause: " + e.getMessage());
         }
@@ -194,20 +256,259 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
         this.refreshFacetsIfNecessary();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scheduleRefresh() {
+
+        refreshRequests.incrementAndGet();
+        if (live.indexReopenThread == null) {
+            this.refreshIfNecessary();
+        }
+        // else background threads will pick up changes within max staleness
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void waitForGeneration(final long generation) {
+
+        final IndexGeneration current = live;
+        if (current.indexReopenThread == null || generation > current.indexWriter.getMaxCompletedSequenceNumber()) {
+            // no background refresh or generation belongs to another index generation (e.g. after swap)
+            this.refreshIfNecessary();
+            return;
+        }
+
+        try {
+            current.indexReopenThread.waitForGeneration(generation);
+            current.facetsReopenThread.waitForGeneration(generation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean beginShadowRebuild() {
+
+        if (shadow != null) {
+            LOGFTQ.warn("Shadow rebuild for {} is already in progress", name);
+            return false;
+        }
+
+        final String generation = "g" + System.currentTimeMillis();
+        try {
+            shadow = openGeneration(generation, IndexWriterConfig.OpenMode.CREATE, false);
+            LOGFTQ.info("Started shadow rebuild for {}, generation {}", name, generation);
+            return true;
+        } catch (Exception e) {
+            LOGFTQ.error("Unable to start shadow rebuild " + name + ", cause: " + e.getMessage(), e);
+            return false;
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IndexWriter provideShadowIndexWriter() {
+        final IndexGeneration current = shadow;
+        return current != null ? current.indexWriter : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void commitShadowRebuild() {
+
+        final IndexGeneration built = shadow;
+        if (built == null) {
+            throw new IllegalStateException("No shadow rebuild in progress for " + name);
+        }
+
+        try {
+            built.indexWriter.commit();
+            built.facetsWriter.commit();
+            built.openReaders();
+        } catch (IOException e) {
+            LOGFTQ.error("Unable to commit shadow rebuild " + name + ", cause: " + e.getMessage(), e);
+            abortShadowRebuild();
+            throw new RuntimeException(e);
+        }
+
+        final IndexGeneration discard = previous;
+        previous = live;
+        live = built;
+        shadow = null;
+
+        writeActiveGeneration(built.id);
+
+        LOGFTQ.info("Swapped live index for {} from generation '{}' to '{}'", name, previous.id, built.id);
+
+        if (discard != null) {
+            closeGeneration(discard);
+            deleteGeneration(discard.id);
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void abortShadowRebuild() {
+
+        final IndexGeneration aborted = shadow;
+        if (aborted != null) {
+            shadow = null;
+            LOGFTQ.info("Aborted shadow rebuild for {}, generation {}", name, aborted.id);
+            closeGeneration(aborted);
+            deleteGeneration(aborted.id);
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean rollbackToPreviousGeneration() {
+
+        if (previous == null) {
+            LOGFTQ.warn("No previous generation to roll back to for {}", name);
+            return false;
+        }
+
+        final IndexGeneration rolledBack = live;
+        live = previous;
+        previous = rolledBack;
+
+        writeActiveGeneration(live.id);
+
+        LOGFTQ.info("Rolled back live index for {} from generation '{}' to '{}'", name, rolledBack.id, live.id);
+
+        return true;
+
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void afterPropertiesSet() throws Exception {
 
-        index = getInstance(uri + File.separatorChar + name + File.separatorChar + "index");
-        provideIndexWriter();
-        indexReaderManager = new SearcherManager(indexWriter, null);
+        live = openGeneration(readActiveGeneration(), IndexWriterConfig.OpenMode.CREATE_OR_APPEND, true);
+
+    }
+
+    private IndexGeneration openGeneration(final String generation,
+                                           final IndexWriterConfig.OpenMode mode,
+                                           final boolean openReaders) throws Exception {
+
+        final Directory index = getInstance(generationUri(generation, "index"));
+        final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setOpenMode(mode);
+        final IndexWriter indexWriter;
+        try {
+            indexWriter = new IndexWriter(index, config);
+        } catch (IOException e) {
+            LOGFTQ.error("Unable to acquire index writer " + name + ", cause: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        final Directory facets = getInstance(generationUri(generation, "taxonomy"));
+        final DirectoryTaxonomyWriter facetsWriter;
+        try {
+            facetsWriter = new DirectoryTaxonomyWriter(facets, mode);
+        } catch (IOException e) {
+            LOGFTQ.error("Unable to acquire facets writer " + name + ", cause: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        final IndexGeneration indexGeneration = new IndexGeneration(generation, index, indexWriter, facets, facetsWriter);
+        if (openReaders) {
+            indexGeneration.openReaders();
+        }
+        return indexGeneration;
+
+    }
+
+    private String generationUri(final String generation, final String type) {
+        if (DEFAULT_GENERATION.equals(generation)) {
+            return uri + File.separatorChar + name + File.separatorChar + type;
+        }
+        return uri + File.separatorChar + name + File.separatorChar + generation + File.separatorChar + type;
+    }
 
-        facets = getInstance(uri + File.separatorChar + name + File.separatorChar + "taxonomy");
-        provideFacetsWriter();
-        facetsReaderManager = new SearcherTaxonomyManager(indexWriter, null, facetsWriter);
+    /**
+     * @return base path for this index or null for in memory index
+     */
+    private Path getBasePath() {
+        if (uri != null) {
+            for (final String prefix : new String[] { "auto://", "mmap://", "nio://", "simple://" }) {
+                if (uri.startsWith(prefix)) {
+                    return fromString(prefix, uri + File.separatorChar + name);
+                }
+            }
+        }
+        return null;
+    }
 
+    private String readActiveGeneration() {
+        final Path base = getBasePath();
+        if (base != null) {
+            final Path file = base.resolve(GENERATION_FILE);
+            if (Files.exists(file)) {
+                try {
+                    final String generation = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+                    LOGFTQ.info("Active generation for {} is '{}'", name, generation);
+                    return generation;
+                } catch (IOException e) {
+                    LOGFTQ.error("Unable to read active generation " + name + ", cause: " + e.getMessage());
+                }
+            }
+        }
+        return DEFAULT_GENERATION;
+    }
+
+    private void writeActiveGeneration(final String generation) {
+        final Path base = getBasePath();
+        if (base != null) {
+            try {
+                final Path tmp = base.resolve(GENERATION_FILE + ".tmp");
+                Files.write(tmp, generation.getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, base.resolve(GENERATION_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOGFTQ.error("Unable to write active generation " + name + ", cause: " + e.getMessage());
+            }
+        }
+    }
+
+    private void deleteGeneration(final String generation) {
+        final Path base = getBasePath();
+        if (base != null) {
+            final Path[] paths = DEFAULT_GENERATION.equals(generation) ?
+                    new Path[] { base.resolve("index"), base.resolve("taxonomy") } :
+                    new Path[] { base.resolve(generation) };
+            for (final Path path : paths) {
+                if (Files.exists(path)) {
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+                    } catch (IOException e) {
+                        LOGFTQ.error("Unable to remove generation '" + generation + "' of " + name + ", cause: " + e.getMessage());
+                    }
+                }
+            }
+        }
     }
 
     Directory getInstance(final String uri) throws Exception {
@@ -244,40 +545,125 @@ public class LuceneIndexProviderImpl implements LuceneIndexProvider, Initializin
     @Override
     public void destroy() throws Exception {
 
-        LOGFTQ.info("Closing directory for {}", name);
+        LOGFTQ.info("Refresh statistics for {}, requests: {}, refreshes: {}", name, refreshRequests.get(), refreshes.get());
+        abortShadowRebuild();
+        if (previous != null) {
+            closeGeneration(previous);
+        }
+        closeGeneration(live);
+
+    }
+
+    private void closeGeneration(final IndexGeneration generation) {
+
+        LOGFTQ.info("Closing directory for {} generation '{}', {}", name, generation.id, generation.facetsReaderStateCache);
+        if (generation.indexReopenThread != null) {
+            generation.indexReopenThread.close();
+            generation.facetsReopenThread.close();
+        }
+        if (generation.facetsReaderStateCache != null) {
+            generation.facetsReaderStateCache.clear();
+        }
         try {
-            indexReaderManager.close();
+            if (generation.indexReaderManager != null) {
+                generation.indexReaderManager.close();
+            }
         } catch (IOException e) {
             LOGFTQ.error("Unable to release index searchers " + name + ", cause: " + e.getMessage());
         }
         try {
-            if (indexWriter != null) {
-                indexWriter.close();
-            }
+            generation.indexWriter.close();
         } catch (IOException e) {
             LOGFTQ.error("Unable to release index writer " + name + ", cause: " + e.getMessage());
         }
         try {
-            index.close();
+            generation.index.close();
         } catch (IOException e) {
             LOGFTQ.error("Unable to release index directory " + name + ", cause: " + e.getMessage());
         }
         try {
-            facetsReaderManager.close();
+            if (generation.facetsReaderManager != null) {
+                generation.facetsReaderManager.close();
+            }
         } catch (IOException e) {
             LOGFTQ.error("Unable to release facet searchers " + name + ", cause: " + e.getMessage());
         }
         try {
-            if (facetsWriter != null) {
-                facetsWriter.close();
-            }
+            generation.facetsWriter.close();
         } catch (IOException e) {
             LOGFTQ.error("Unable to release facet writer " + name + ", cause: " + e.getMessage());
         }
         try {
-            facets.close();
+            generation.facets.close();
         } catch (IOException e) {
             LOGFTQ.error("Unable to release facet directory " + name + ", cause: " + e.getMessage());
         }
     }
+
+    /**
+     * Single generation of the index, which comprises of index and taxonomy directories, their writers
+     * and reader managers.
+     */
+    private final class IndexGeneration {
+
+        private final String id;
+
+        private final Directory index;
+        private final IndexWriter indexWriter;
+        private SearcherManager indexReaderManager;
+        private SortedSetDocValuesReaderStateCache facetsReaderStateCache;
+
+        private final Directory facets;
+        private final DirectoryTaxonomyWriter facetsWriter;
+        private SearcherTaxonomyManager facetsReaderManager;
+
+        private ControlledRealTimeReopenThread<IndexSearcher> indexReopenThread;
+        private ControlledRealTimeReopenThread<SearcherTaxonomyManager.SearcherAndTaxonomy> facetsReopenThread;
+
+        private IndexGeneration(final String id,
+                                final Directory index,
+                                final IndexWriter indexWriter,
+                                final Directory facets,
+                                final DirectoryTaxonomyWriter facetsWriter) {
+            this.id = id;
+            this.index = index;
+            this.indexWriter = indexWriter;
+            this.facets = facets;
+            this.facetsWriter = facetsWriter;
+        }
+
+        private void openReaders() throws IOException {
+            indexReaderManager = new SearcherManager(indexWriter, null);
+            facetsReaderStateCache = new SortedSetDocValuesReaderStateCache(name, indexReaderManager);
+            indexReaderManager.addListener(facetsReaderStateCache);
+            facetsReaderManager = new SearcherTaxonomyManager(indexWriter, null, facetsWriter);
+            indexReaderManager.addListener(new ReferenceManager.RefreshListener() {
+                @Override
+                public void beforeRefresh() {
+                    // nothing to do
+                }
+
+                @Override
+                public void afterRefresh(final boolean didRefresh) {
+                    if (didRefresh) {
+                        refreshes.incrementAndGet();
+                    }
+                }
+            });
+            if (refreshMaxStaleMs > 0L) {
+                final double maxStaleSec = refreshMaxStaleMs / 1000d;
+                final double minStaleSec = Math.min(refreshMinStaleMs, refreshMaxStaleMs) / 1000d;
+                indexReopenThread = new ControlledRealTimeReopenThread<>(indexWriter, indexReaderManager, maxStaleSec, minStaleSec);
+                indexReopenThread.setName("FT index refresh " + name + " " + id);
+                indexReopenThread.setDaemon(true);
+                indexReopenThread.start();
+                facetsReopenThread = new ControlledRealTimeReopenThread<>(indexWriter, facetsReaderManager, maxStaleSec, minStaleSec);
+                facetsReopenThread.setName("FT facets refresh " + name + " " + id);
+                facetsReopenThread.setDaemon(true);
+                facetsReopenThread.start();
+            }
+        }
+
+    }
+
 }
@@ -16,6 +16,7 @@
 
 package org.yes.cart.search.dao.impl;
 
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.IndexWriter;
@@ -54,6 +55,11 @@ public class NoopLuceneIndexProviderImpl implements LuceneIndexProvider {
 
     }
 
+    @Override
+    public SortedSetDocValuesReaderState provideFacetsReaderState(final IndexSearcher searcher, final String field) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public SearcherTaxonomyManager.SearcherAndTaxonomy provideFacetsReader() {
         throw new UnsupportedOperationException();
@@ -78,4 +84,39 @@ public class NoopLuceneIndexProviderImpl implements LuceneIndexProvider {
     public void refreshIfNecessary() {
 
     }
+
+    @Override
+    public void scheduleRefresh() {
+
+    }
+
+    @Override
+    public void waitForGeneration(final long generation) {
+
+    }
+
+    @Override
+    public boolean beginShadowRebuild() {
+        return false;
+    }
+
+    @Override
+    public IndexWriter provideShadowIndexWriter() {
+        return null;
+    }
+
+    @Override
+    public void commitShadowRebuild() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void abortShadowRebuild() {
+
+    }
+
+    @Override
+    public boolean rollbackToPreviousGeneration() {
+        return false;
+    }
 }
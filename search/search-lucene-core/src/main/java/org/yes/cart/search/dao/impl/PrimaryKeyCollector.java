@@ -0,0 +1,189 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.search.dao.impl;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.ArrayUtil;
+import org.yes.cart.search.dao.entity.AdapterUtils;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Collector that streams primary keys of all matching documents without allocating top docs
+ * for the whole index. Primary keys are read from {@link AdapterUtils#FIELD_PK_DV} doc values,
+ * if segment does not have doc values (e.g. index built by previous version) then collector
+ * falls back to stored {@link AdapterUtils#FIELD_PK} field.
+ *
+ * Results are ordered by relevance (highest score first, ties in index order), which is the same
+ * order as top docs would give, unless scoring is disabled in which case index order is used.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 17:50
+ */
+public class PrimaryKeyCollector extends SimpleCollector {
+
+    private static final Set<String> PKS = Collections.singleton(AdapterUtils.FIELD_PK);
+
+    private final boolean scored;
+
+    private long[] pks = new long[64];
+    private float[] scores;
+    private int[] docs = new int[64];
+    private int size = 0;
+
+    private LeafReader reader;
+    private NumericDocValues pkValues;
+    private Scorable scorer;
+    private int docBase;
+
+    /**
+     * @param scored order results by relevance
+     */
+    public PrimaryKeyCollector(final boolean scored) {
+        this.scored = scored;
+        this.scores = scored ? new float[64] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doSetNextReader(final LeafReaderContext context) throws IOException {
+        this.reader = context.reader();
+        this.docBase = context.docBase;
+        this.pkValues = this.reader.getNumericDocValues(AdapterUtils.FIELD_PK_DV);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setScorer(final Scorable scorer) throws IOException {
+        this.scorer = scorer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void collect(final int doc) throws IOException {
+
+        final long pk;
+        if (this.pkValues != null && this.pkValues.advanceExact(doc)) {
+            pk = this.pkValues.longValue();
+        } else {
+            final Document document = this.reader.document(doc, PKS);
+            final String stored = document.get(AdapterUtils.FIELD_PK);
+            if (stored == null) {
+                return;
+            }
+            pk = Long.valueOf(stored);
+        }
+
+        if (this.size == this.pks.length) {
+            // oversize depends on element size, so keep all arrays at the same length as PK's
+            this.pks = ArrayUtil.grow(this.pks, this.size + 1);
+            this.docs = ArrayUtil.growExact(this.docs, this.pks.length);
+            if (this.scored) {
+                this.scores = ArrayUtil.growExact(this.scores, this.pks.length);
+            }
+        }
+
+        this.pks[this.size] = pk;
+        this.docs[this.size] = this.docBase + doc;
+        if (this.scored) {
+            this.scores[this.size] = this.scorer.score();
+        }
+        this.size++;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScoreMode scoreMode() {
+        return this.scored ? ScoreMode.COMPLETE : ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    /**
+     * @return number of collected documents
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return primary keys of matching documents
+     */
+    public List<Long> getPks() {
+
+        final List<Long> result = new ArrayList<>(this.size);
+        for (final int position : order()) {
+            result.add(this.pks[position]);
+        }
+        return result;
+
+    }
+
+    /**
+     * @return global doc ids of matching documents
+     */
+    public List<Integer> getDocs() {
+
+        final List<Integer> result = new ArrayList<>(this.size);
+        for (final int position : order()) {
+            result.add(this.docs[position]);
+        }
+        return result;
+
+    }
+
+    private int[] order() {
+
+        final int[] order = new int[this.size];
+        if (!this.scored) {
+            for (int i = 0; i < this.size; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        // Scores are non negative, so float bits preserve the order. Sort key is inverted score in
+        // high bits and collection position (i.e. index order) in low bits
+        final long[] keys = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            final long inverted = Integer.MAX_VALUE - Float.floatToIntBits(Math.max(0f, this.scores[i]));
+            keys[i] = (inverted << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < this.size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.search.dao.impl;
+
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for {@link SortedSetDocValuesReaderState} objects. Building the state requires walking
+ * the whole ordinal map for the facet field, which is expensive on large indexes, however the
+ * state is only valid for the reader it was built for. Therefore states are cached per facet
+ * field and per reader generation (version of {@link DirectoryReader}) as handed out by the
+ * {@link SearcherManager}.
+ *
+ * This cache is registered as refresh listener of the searcher manager so that all states that
+ * belong to older generations are dropped once the manager refreshes.
+ *
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 17:46
+ */
+public class SortedSetDocValuesReaderStateCache implements ReferenceManager.RefreshListener {
+
+    private static final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
+
+    private final String name;
+    private final SearcherManager searcherManager;
+
+    private final ConcurrentMap<Key, SortedSetDocValuesReaderState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong builds = new AtomicLong(0L);
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong buildTimeNanos = new AtomicLong(0L);
+    private final AtomicLong evictions = new AtomicLong(0L);
+
+    public SortedSetDocValuesReaderStateCache(final String name,
+                                              final SearcherManager searcherManager) {
+        this.name = name;
+        this.searcherManager = searcherManager;
+    }
+
+    /**
+     * Get reader state for given reader and facet field.
+     *
+     * @param reader reader (must be the reader of searcher acquired from searcher manager)
+     * @param field  facet field
+     *
+     * @return state for given field
+     *
+     * @throws IOException error reading index
+     */
+    public SortedSetDocValuesReaderState getState(final IndexReader reader, final String field) throws IOException {
+
+        if (!(reader instanceof DirectoryReader)) {
+            // Not a reader produced by searcher manager, so we do not know its generation
+            return build(reader, field);
+        }
+
+        final Key key = new Key(field, ((DirectoryReader) reader).getVersion());
+
+        final SortedSetDocValuesReaderState cached = states.get(key);
+        if (cached != null && cached.getReader() == reader) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        final SortedSetDocValuesReaderState state = build(reader, field);
+        states.put(key, state);
+        return state;
+
+    }
+
+    private SortedSetDocValuesReaderState build(final IndexReader reader, final String field) throws IOException {
+
+        final long start = System.nanoTime();
+        final SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, field);
+        final long took = System.nanoTime() - start;
+
+        builds.incrementAndGet();
+        buildTimeNanos.addAndGet(took);
+
+        if (LOGFTQ.isDebugEnabled()) {
+            LOGFTQ.debug("Built facet reader state for {} field {} in {}ms", name, field, took / 1000000L);
+        }
+
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeRefresh() {
+        // nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterRefresh(final boolean didRefresh) throws IOException {
+
+        if (!didRefresh || states.isEmpty()) {
+            return;
+        }
+
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            final IndexReader current = searcher.getIndexReader();
+            final long version = current instanceof DirectoryReader ? ((DirectoryReader) current).getVersion() : -1L;
+            final int before = states.size();
+            states.keySet().removeIf(key -> key.version != version);
+            final int removed = before - states.size();
+            if (removed > 0) {
+                evictions.addAndGet(removed);
+            }
+            if (LOGFTQ.isDebugEnabled()) {
+                LOGFTQ.debug("Refreshed facet reader states for {}, dropped: {}, {}", name, removed, this);
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+    }
+
+    /**
+     * Drop all cached states.
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * @return number of cached states
+     */
+    public int getSize() {
+        return states.size();
+    }
+
+    /**
+     * @return number of times reader state had to be built
+     */
+    public long getBuilds() {
+        return builds.get();
+    }
+
+    /**
+     * @return number of times reader state was served from cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return total time spent building reader states (in nanoseconds)
+     */
+    public long getBuildTimeNanos() {
+        return buildTimeNanos.get();
+    }
+
+    /**
+     * @return number of states dropped due to index refresh
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SortedSetDocValuesReaderStateCache{" +
+                "name='" + name + '\'' +
+                ", size=" + states.size() +
+                ", builds=" + builds.get() +
+                ", hits=" + hits.get() +
+                ", buildTimeMs=" + (buildTimeNanos.get() / 1000000L) +
+                ", evictions=" + evictions.get() +
+                '}';
+    }
+
+    private static final class Key {
+
+        private final String field;
+        private final long version;
+
+        private Key(final String field, final long version) {
+            this.field = field;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return version == key.version && field.equals(key.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, version);
+        }
+    }
+
+}
@@ -20,13 +20,16 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.TermQuery;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.yes.cart.dao.ResultsIterator;
 import org.yes.cart.domain.i18n.I18NModel;
 import org.yes.cart.domain.misc.Pair;
@@ -166,6 +169,7 @@ public class FTSLuceneImplTest {
     private static class MapIndexBuilderLucene extends IndexBuilderLuceneImpl<Map<String, Object>, Long> {
 
         private List<Map<String, Object>> docs = null;
+        private Long failingPk = null;
 
         public MapIndexBuilderLucene(final LuceneDocumentAdapter<Map<String, Object>, Long> documentAdapter,
                                      final LuceneIndexProvider indexProvider) {
@@ -177,6 +181,10 @@ public class FTSLuceneImplTest {
             this.docs = docs;
         }
 
+        public void setFailingPk(final Long failingPk) {
+            this.failingPk = failingPk;
+        }
+
         @Override
         protected Map<String, Object> findById(final Long primaryKey) {
             for (final Map<String, Object> doc : this.docs) {
@@ -220,6 +228,57 @@ public class FTSLuceneImplTest {
             };
         }
 
+        @Override
+        protected Pair<Long, Long> findPrimaryKeyRange() {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (final Map<String, Object> doc : this.docs) {
+                final long pk = NumberUtils.toLong((String) doc.get(AdapterUtils.FIELD_PK));
+                min = Math.min(min, pk);
+                max = Math.max(max, pk);
+            }
+            return new Pair<>(min, max);
+        }
+
+        @Override
+        protected ResultsIterator<Map<String, Object>> findRangeIterator(final long fromPk, final long toPk) {
+
+            if (this.failingPk != null && this.failingPk >= fromPk && this.failingPk < toPk) {
+                throw new IllegalStateException("Unable to load range " + fromPk + ".." + toPk);
+            }
+
+            final List<Map<String, Object>> range = new ArrayList<>();
+            for (final Map<String, Object> doc : this.docs) {
+                final long pk = NumberUtils.toLong((String) doc.get(AdapterUtils.FIELD_PK));
+                if (pk >= fromPk && pk < toPk) {
+                    range.add(doc);
+                }
+            }
+            final Iterator<Map<String, Object>> it = range.iterator();
+
+            return new ResultsIterator<Map<String, Object>>() {
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+
+                @Override
+                public void close() {
+
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Map<String, Object> next() {
+                    return it.next();
+                }
+            };
+        }
+
         @Override
         protected Map<String, Object> unproxyEntity(final Map<String, Object> entity) {
             return entity;
@@ -367,6 +426,213 @@ public class FTSLuceneImplTest {
 
     }
 
+    @Test
+    public void testFullTextSearchReindexParallel() throws Exception {
+
+        final List<Map<String, Object>> docs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Map<String, Object> doc = new HashMap<>();
+            doc.put("_PK", String.valueOf(100000 + i * 3));
+            doc.put("name", i % 2 == 0 ? "even" : "odd");
+            docs.add(doc);
+        }
+        indexBuilderLucene.setDocs(docs);
+        indexBuilderLucene.setIndexWorkerExecutor(new SimpleAsyncTaskExecutor());
+        indexBuilderLucene.setReindexThreads(3);
+        indexBuilderLucene.setReindexMaxSegments(0);
+
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+
+        assertEquals(100L, indexBuilderLucene.getFullTextIndexState().getLastIndexCount());
+        final long[] slices = indexBuilderLucene.getFullTextIndexSliceCounts();
+        assertEquals(3, slices.length);
+        assertEquals(100L, slices[0] + slices[1] + slices[2]);
+        for (final long slice : slices) {
+            assertTrue(slice > 0L);
+        }
+
+        assertEquals(100, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+        assertEquals(50, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "even"))));
+        final List<Long> pks = genericFTSLucene.fullTextSearch(new TermQuery(new Term("name", "odd")));
+        assertEquals(50, pks.size());
+        assertTrue(pks.contains(100003L));
+        assertTrue(pks.contains(100297L));
+
+        // Reindex again with fewer documents, stale documents must be removed
+        docs.subList(50, 100).clear();
+
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+
+        assertEquals(50, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+        assertEquals(25, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "even"))));
+
+    }
+
+    @Test
+    public void testFullTextSearchReindexParallelSliceFailure() throws Exception {
+
+        final List<Map<String, Object>> docs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            final Map<String, Object> doc = new HashMap<>();
+            doc.put("_PK", String.valueOf(100000 + i));
+            doc.put("name", i % 2 == 0 ? "even" : "odd");
+            docs.add(doc);
+        }
+        indexBuilderLucene.setDocs(docs);
+        indexBuilderLucene.setIndexWorkerExecutor(new SimpleAsyncTaskExecutor());
+        indexBuilderLucene.setReindexThreads(3);
+        indexBuilderLucene.setReindexMaxSegments(0);
+
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+        assertEquals(30, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+
+        // Last slice fails, stale documents must not be removed from live index
+        indexBuilderLucene.setFailingPk(100025L);
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+        provider.refreshIfNecessary();
+
+        assertEquals(30, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+        final List<Long> pks = genericFTSLucene.fullTextSearch(new MatchAllDocsQuery());
+        assertTrue(pks.contains(100020L));
+        assertTrue(pks.contains(100029L));
+
+        // Incomplete shadow index must not be swapped in
+        final IndexWriter liveBefore = provider.provideIndexWriter();
+        indexBuilderLucene.setShadowRebuild(true);
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+
+        assertNull(provider.provideShadowIndexWriter());
+        assertSame(liveBefore, provider.provideIndexWriter());
+        assertEquals(30, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+
+    }
+
+    @Test
+    public void testFullTextSearchReindexShadow() throws Exception {
+
+        final List<Map<String, Object>> docs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final Map<String, Object> doc = new HashMap<>();
+            doc.put("_PK", String.valueOf(100000 + i));
+            doc.put("name", i % 2 == 0 ? "even" : "odd");
+            docs.add(doc);
+        }
+        indexBuilderLucene.setDocs(docs);
+        indexBuilderLucene.setShadowRebuild(true);
+
+        indexBuilderLucene.fullTextSearchReindex(false, 5);
+
+        assertNull(provider.provideShadowIndexWriter());
+        assertEquals(20, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+
+        // Searcher acquired before the swap remains usable after the swap
+        final IndexSearcher before = provider.provideIndexReader();
+        final IndexWriter liveBefore = provider.provideIndexWriter();
+
+        docs.subList(10, 20).clear();
+
+        assertTrue(provider.beginShadowRebuild());
+        assertFalse(provider.beginShadowRebuild());
+        final IndexWriter shadow = provider.provideShadowIndexWriter();
+        assertNotNull(shadow);
+        assertNotSame(liveBefore, shadow);
+        provider.abortShadowRebuild();
+        assertNull(provider.provideShadowIndexWriter());
+        assertSame(liveBefore, provider.provideIndexWriter());
+
+        indexBuilderLucene.fullTextSearchReindex(false, 5);
+
+        assertNotSame(liveBefore, provider.provideIndexWriter());
+        assertEquals(10, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+        assertEquals(20, before.count(new MatchAllDocsQuery()));
+        provider.releaseIndexReader(before);
+
+        // Single entity updates go to the new live generation
+        indexBuilderLucene.fullTextSearchReindex(100001L);
+        assertEquals(5, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "odd"))));
+
+        assertTrue(provider.rollbackToPreviousGeneration());
+        assertSame(liveBefore, provider.provideIndexWriter());
+        assertEquals(20, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+
+        assertTrue(provider.rollbackToPreviousGeneration());
+        assertEquals(10, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+
+    }
+
+    @Test
+    public void testFullTextSearchReindexBatch() throws Exception {
+
+        final List<Map<String, Object>> docs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final Map<String, Object> doc = new HashMap<>();
+            doc.put("_PK", String.valueOf(100000 + i));
+            doc.put("name", "old");
+            docs.add(doc);
+        }
+        indexBuilderLucene.setDocs(docs);
+
+        indexBuilderLucene.fullTextSearchReindex(false, 10);
+
+        assertEquals(5, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "old"))));
+
+        docs.get(0).put("name", "new");
+        docs.get(1).put("name", "new");
+        docs.remove(2);
+
+        indexBuilderLucene.fullTextSearchReindex(Arrays.asList(100000L, 100001L, 100002L, 100001L));
+
+        assertEquals(4, genericFTSLucene.fullTextSearchCount(new MatchAllDocsQuery()));
+        assertEquals(2, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "new"))));
+        assertEquals(2, genericFTSLucene.fullTextSearchCount(new TermQuery(new Term("name", "old"))));
+
+    }
+
+    @Test
+    public void testFullTextSearchReindexCoalescedRefresh() throws Exception {
+
+        final LuceneIndexProviderImpl nrtProvider = new LuceneIndexProviderImpl("nrt", "ram");
+        nrtProvider.setRefreshMaxStaleMs(60000L);
+        nrtProvider.setRefreshMinStaleMs(10L);
+        nrtProvider.afterPropertiesSet();
+        try {
+
+            final GenericFTSLuceneImpl nrtFts = new GenericFTSLuceneImpl();
+            nrtFts.setLuceneIndexProvider(nrtProvider);
+            final MapIndexBuilderLucene nrtBuilder = new MapIndexBuilderLucene(documentAdapter, nrtProvider);
+
+            final List<Map<String, Object>> docs = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final Map<String, Object> doc = new HashMap<>();
+                doc.put("_PK", String.valueOf(100000 + i));
+                doc.put("name", "item");
+                docs.add(doc);
+            }
+            nrtBuilder.setDocs(docs);
+
+            nrtBuilder.fullTextSearchReindex(100000L);
+            nrtBuilder.fullTextSearchReindex(100001L);
+            nrtBuilder.fullTextSearchReindex(100002L);
+
+            // Changes are not visible until max staleness
+            assertEquals(0, nrtFts.fullTextSearchCount(new MatchAllDocsQuery()));
+            assertEquals(3L, nrtProvider.getRefreshRequests());
+            assertEquals(0L, nrtProvider.getRefreshes());
+
+            nrtBuilder.setReadYourWrites(true);
+            nrtBuilder.fullTextSearchReindex(100003L);
+
+            // Waiting for generation makes all changes visible in one refresh
+            assertEquals(4, nrtFts.fullTextSearchCount(new MatchAllDocsQuery()));
+            assertEquals(3L, nrtProvider.getRefreshRequests());
+            assertEquals(1L, nrtProvider.getRefreshes());
+
+        } finally {
+            nrtProvider.destroy();
+        }
+
+    }
+
     @Test
     public void testFullTextSearchNavigation() throws Exception {
 
@@ -488,6 +754,26 @@ public class FTSLuceneImplTest {
         checkFacetValue(facets, "desc", 2);
 
 
+        // Reader states are built once per field for current reader and dropped on refresh
+        final SortedSetDocValuesReaderStateCache stateCache = provider.getFacetsReaderStateCache();
+        assertEquals(2, stateCache.getSize());
+        assertEquals(2L, stateCache.getBuilds());
+        assertEquals(4L, stateCache.getHits());
+
+        provider.provideIndexWriter().deleteDocuments(new Term(AdapterUtils.FIELD_PK, "111114"));
+        provider.refreshIfNecessary();
+
+        assertEquals(0, stateCache.getSize());
+        assertEquals(2L, stateCache.getEvictions());
+
+        rez = genericFTSLucene.fullTextSearchNavigation(new MatchAllDocsQuery(), fr);
+
+        facets = rez.get("Names");
+        assertEquals(3, facets.size());
+        checkFacetValue(facets, "element", 3);
+        assertEquals(2, stateCache.getSize());
+        assertEquals(4L, stateCache.getBuilds());
+
     }
 
     private void checkFacetValue(List<Pair<Pair<String, I18NModel>, Integer>> facets, String expectedValue, Integer expectedCount) {
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.search.dao.impl;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yes.cart.search.dao.entity.AdapterUtils;
+import org.yes.cart.search.dao.entity.LuceneDocumentAdapterUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: agent
+ * Date: 18/10/2026
+ * Time: 17:50
+ */
+public class GenericFTSLuceneImplTest {
+
+    private static final Set<String> PKS = Collections.singleton(AdapterUtils.FIELD_PK);
+
+    @Test
+    public void testFullTextSearchManyResults() throws Exception {
+
+        final LuceneIndexProviderImpl provider = new LuceneIndexProviderImpl("many", "ram");
+        provider.afterPropertiesSet();
+
+        final IndexWriter iw = provider.provideIndexWriter();
+        for (int i = 0; i < 1000; i++) {
+            final Document doc = new Document();
+            LuceneDocumentAdapterUtils.addPkField(doc, Object.class, String.valueOf(i + 1));
+            LuceneDocumentAdapterUtils.addSimpleField(doc, "category", "all");
+            iw.addDocument(doc);
+        }
+        iw.commit();
+        provider.refreshIfNecessary();
+
+        final GenericFTSLuceneImpl fts = new GenericFTSLuceneImpl();
+        fts.setLuceneIndexProvider(provider);
+
+        // collector buffers have to grow well beyond initial capacity
+        final List<Long> pks = fts.fullTextSearch(new TermQuery(new Term("category", "all")));
+        assertEquals(1000, pks.size());
+        assertEquals(1000, new HashSet<>(pks).size());
+
+        provider.destroy();
+
+    }
+
+    /**
+     * Throughput of search paths of {@link GenericFTSLuceneImpl} against previous approach of collecting
+     * {@code Integer.MAX_VALUE} top docs, query matches half of synthetic RAM index, page is 20 items
+     * from offset 40, sample results on single CPU sandbox (ops/s):
+     *
+     * documents:                 10000     100000
+     * ids streaming:              ~490        ~60
+     * ids top docs (all):          ~80         ~9
+     * page sized:                 ~310        ~33
+     * page top docs (all):        ~300        ~19
+     * count only:                 ~14K       ~34K
+     * count top docs (all):       ~400        ~25
+     *
+     * Conclusion: streaming PK's is ~6x faster than reading stored PK's of all top docs, page sized
+     * collector pays off on larger indexes and count only path does not depend on number of matches
+     *
+     * @throws Exception errors
+     */
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testSearchPerformance() throws Exception {
+
+        for (final int documents : new int[] { 10000, 100000 }) {
+
+            final LuceneIndexProviderImpl provider = new LuceneIndexProviderImpl("performance", "ram");
+            provider.afterPropertiesSet();
+
+            final IndexWriter iw = provider.provideIndexWriter();
+            for (int i = 0; i < documents; i++) {
+                final Document doc = new Document();
+                LuceneDocumentAdapterUtils.addPkField(doc, Object.class, String.valueOf(i + 1));
+                LuceneDocumentAdapterUtils.addSimpleField(doc, "category", i % 2 == 0 ? "broad" : "narrow" + (i % 100));
+                LuceneDocumentAdapterUtils.addSortField(doc, "name_sort", "name" + (documents - i));
+                iw.addDocument(doc);
+            }
+            iw.commit();
+            provider.refreshIfNecessary();
+
+            final GenericFTSLuceneImpl fts = new GenericFTSLuceneImpl();
+            fts.setLuceneIndexProvider(provider);
+
+            final Query broad = new TermQuery(new Term("category", "broad"));
+
+            performanceRoutine(documents, "ids streaming", () -> fts.fullTextSearch(broad).size());
+            performanceRoutine(documents, "ids top docs (all)", () -> {
+                final IndexSearcher searcher = provider.provideIndexReader();
+                try {
+                    int total = 0;
+                    final TopDocs topDocs = searcher.search(broad, Integer.MAX_VALUE);
+                    for (final ScoreDoc hit : topDocs.scoreDocs) {
+                        total += Long.valueOf(searcher.doc(hit.doc, PKS).get(AdapterUtils.FIELD_PK)).intValue() > 0 ? 1 : 0;
+                    }
+                    return total;
+                } finally {
+                    provider.releaseIndexReader(searcher);
+                }
+            });
+            performanceRoutine(documents, "page sized", () ->
+                    fts.fullTextSearch(broad, 40, 20, "name_sort", false, AdapterUtils.FIELD_PK).getFirst().size());
+            performanceRoutine(documents, "page top docs (all)", () -> {
+                final IndexSearcher searcher = provider.provideIndexReader();
+                try {
+                    int total = 0;
+                    final TopDocs topDocs = searcher.search(broad, Integer.MAX_VALUE, new Sort(new SortField("name_sort", SortField.Type.STRING_VAL, false)));
+                    for (int i = 40; i < 60; i++) {
+                        total += searcher.doc(topDocs.scoreDocs[i].doc, PKS).get(AdapterUtils.FIELD_PK) != null ? 1 : 0;
+                    }
+                    return total;
+                } finally {
+                    provider.releaseIndexReader(searcher);
+                }
+            });
+            performanceRoutine(documents, "count only", () -> fts.fullTextSearchCount(broad));
+            performanceRoutine(documents, "count top docs (all)", () -> {
+                final IndexSearcher searcher = provider.provideIndexReader();
+                try {
+                    return (int) searcher.search(broad, Integer.MAX_VALUE).totalHits.value;
+                } finally {
+                    provider.releaseIndexReader(searcher);
+                }
+            });
+
+            provider.destroy();
+
+        }
+
+    }
+
+    private void performanceRoutine(final int documents,
+                                    final String name,
+                                    final Callable<Integer> search) throws Exception {
+
+        final int runs = 200;
+
+        long total = 0L;
+        for (int i = 0; i < runs; i++) { // warm up
+            total += search.call();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            total += search.call();
+        }
+        final long took = Math.max(1L, System.nanoTime() - start);
+
+        assertTrue(total > 0L);
+
+        System.out.println(String.format("documents: %6d, %-20s: %8.0f ops/s", documents, name, runs * 1000000000d / took));
+
+    }
+
+}
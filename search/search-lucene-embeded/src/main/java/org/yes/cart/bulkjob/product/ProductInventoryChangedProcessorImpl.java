@@ -200,10 +200,8 @@ public class ProductInventoryChangedProcessorImpl extends AbstractLastRunDepende
             productService.reindexProductsSku(getBatchSize(), true);
 
         } else {
-            for (final String sku : skuCodes) {
-                // batch only
-                productService.reindexProductSku(sku);
-            }
+            // batch only
+            productService.reindexProductSkus(skuCodes);
         }
 
     }
@@ -87,7 +87,7 @@ public class WicketLoginCommandImpl extends LoginCommandImpl {
     protected void recalculate(final MutableShoppingCart shoppingCart) {
 
         // This call will merge the cart
-        cartRepository.storeShoppingCart(shoppingCart);
+        cartRepository.flushShoppingCart(shoppingCart);
 
         super.recalculate(shoppingCart);
 
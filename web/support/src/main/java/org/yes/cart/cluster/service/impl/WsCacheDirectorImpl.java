@@ -96,6 +96,13 @@ public class WsCacheDirectorImpl extends CacheDirectorImpl implements CacheDirec
             );
 
         });
+        nodeService.subscribe("CacheDirector.onCacheableBatchChange", message -> {
+
+            final Map<String, Map<String, Long[]>> payload = (Map<String, Map<String, Long[]>>) message.getPayload();
+
+            return WsCacheDirectorImpl.this.onCacheableBatchChange(payload);
+
+        });
     }
 
 }
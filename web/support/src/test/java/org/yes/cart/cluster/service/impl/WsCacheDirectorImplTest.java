@@ -28,6 +28,8 @@ import org.yes.cart.domain.dto.impl.CacheInfoDTO;
 import org.yes.cart.domain.misc.Pair;
 
 import javax.naming.NamingException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -175,5 +177,54 @@ public class WsCacheDirectorImplTest {
         assertNotNull(cacheDirector.getCacheManager().getCache("categoryService-categoryHasSubcategory").get("hi"));
     }
 
+    @Test
+    public void testOnCacheableBulkChangeEvictAll() {
+        cacheDirector.getCacheManager().getCache("productService-productById").put(123L, "there");
+        cacheDirector.getCacheManager().getCache("productService-productById").put(124L, "there");
+        cacheDirector.onCacheableBulkChange(CacheDirector.EntityOperation.UPDATE, "ProductEntity", new Long[] { 123L });
+        assertNull(cacheDirector.getCacheManager().getCache("productService-productById").get(123L));
+        assertNotNull(cacheDirector.getCacheManager().getCache("productService-productById").get(124L));
+        cacheDirector.onCacheableBulkChange(CacheDirector.EntityOperation.UPDATE, "ProductEntity", new Long[0]);
+        assertNull(cacheDirector.getCacheManager().getCache("productService-productById").get(124L));
+    }
+
+    @Test
+    public void testOnCacheableBatchChange() {
+        cacheDirector.getCacheManager().getCache("attributeService-availableAttributesByProductTypeId").put("hi", "there");
+        cacheDirector.getCacheManager().getCache("categoryService-categoryHasSubcategory").put("hi", "there");
+        cacheDirector.getCacheManager().getCache("productService-productById").put(123L, "there");
+        cacheDirector.getCacheManager().getCache("productService-productById").put(124L, "there");
+
+        final Map<String, Map<String, Long[]>> changes = new HashMap<>();
+        changes.computeIfAbsent("AttributeEntity", k -> new HashMap<>()).put(CacheDirector.EntityOperation.UPDATE, new Long[] { 123L });
+        changes.computeIfAbsent("AttributeEntity", k -> new HashMap<>()).put(CacheDirector.EntityOperation.DELETE, new Long[] { 124L });
+        changes.computeIfAbsent("ProductEntity", k -> new HashMap<>()).put(CacheDirector.EntityOperation.UPDATE, new Long[] { 123L });
+
+        cacheDirector.onCacheableBatchChange(changes);
+
+        assertNull(cacheDirector.getCacheManager().getCache("attributeService-availableAttributesByProductTypeId").get("hi"));
+        assertNotNull(cacheDirector.getCacheManager().getCache("categoryService-categoryHasSubcategory").get("hi"));
+        assertNull(cacheDirector.getCacheManager().getCache("productService-productById").get(123L));
+        assertNotNull(cacheDirector.getCacheManager().getCache("productService-productById").get(124L));
+
+        // update and delete of attribute resolve to the same caches, each must be cleared only once
+        final Map<String, Map<String, Long[]>> attributes = new HashMap<>();
+        attributes.put("AttributeEntity", changes.get("AttributeEntity"));
+        final Set<String> distinct = new HashSet<>();
+        for (final String operation : attributes.get("AttributeEntity").keySet()) {
+            for (final Pair<String, String> cache : cacheDirector.resolveCacheNames(operation, "AttributeEntity")) {
+                if ("all".equals(cache.getSecond()) && cacheDirector.getCacheManager().getCache(cache.getFirst()) != null) {
+                    distinct.add(cache.getFirst());
+                }
+            }
+        }
+        assertFalse(distinct.isEmpty());
+        assertEquals(distinct.size(), cacheDirector.onCacheableBatchChange(attributes));
+
+        changes.get("ProductEntity").put(CacheDirector.EntityOperation.UPDATE, new Long[0]);
+        cacheDirector.onCacheableBatchChange(changes);
+        assertNull(cacheDirector.getCacheManager().getCache("productService-productById").get(124L));
+    }
+
 
 }